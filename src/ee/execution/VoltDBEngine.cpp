@@ -2572,6 +2572,14 @@ size_t VoltDBEngine::tableHashCode(int32_t tableId) {
     return table->hashCode();
 }
 
+int64_t VoltDBEngine::tableGeneration(int32_t tableId) {
+    PersistentTable *table = dynamic_cast<PersistentTable*>(getTableById(tableId));
+    if (table == NULL) {
+        return -1;
+    }
+    return table->observeGeneration();
+}
+
 void VoltDBEngine::setHashinator(TheHashinator* hashinator) {
     m_hashinator.reset(hashinator);
 }
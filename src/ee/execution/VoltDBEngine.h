@@ -503,6 +503,12 @@ class __attribute__((visibility("default"))) VoltDBEngine {
          */
         size_t tableHashCode(int32_t tableId);
 
+        /**
+         * Retrieve the generation of the specified table, see PersistentTable::observeGeneration().
+         * Returns -1 if the table doesn't exist or isn't a persistent table.
+         */
+        int64_t tableGeneration(int32_t tableId);
+
         void updateHashinator(char const* config,
                               int32_t* configPtr, uint32_t numTokens);
 
@@ -67,6 +67,7 @@
 #include "indexes/tableindexfactory.h"
 
 #include <boost/date_time/posix_time/posix_time.hpp>
+#include <atomic>
 
 namespace voltdb {
 
@@ -133,6 +134,8 @@ PersistentTable::PersistentTable(int partitionColumn,
     , m_deltaTable(NULL)
     , m_deltaTableActive(false)
     , m_releaseReplicated(this)
+    , m_generation(nextGeneration())
+    , m_generationObserved(false)
 {
     for (int ii = 0; ii < TUPLE_BLOCK_NUM_BUCKETS; ii++) {
         m_blocksNotPendingSnapshotLoad.push_back(TBBucketPtr(new TBBucket()));
@@ -811,6 +814,7 @@ void PersistentTable::insertPersistentTuple(TableTuple& source, bool fallible, b
 
 void PersistentTable::doInsertTupleCommon(TableTuple& source, TableTuple& target,
                                         bool fallible, bool shouldDRStream, bool delayTupleDelete) {
+    markModified();
     if (fallible) {
         // not null checks at first
         FAIL_IF(!checkNulls(target)) {
@@ -919,6 +923,7 @@ void PersistentTable::insertTupleCommon(TableTuple& source, TableTuple& target,
  * strings or create an UndoAction or update a materialized view.
  */
 void PersistentTable::insertTupleForUndo(char* tuple) {
+    markModified();
     TableTuple target(m_schema);
     target.move(tuple);
     target.setPendingDeleteOnUndoReleaseFalse();
@@ -953,6 +958,7 @@ void PersistentTable::updateTupleWithSpecificIndexes(TableTuple& targetTupleToUp
                                                      std::vector<TableIndex*> const& indexesToUpdate,
                                                      bool fallible,
                                                      bool updateDRTimestamp) {
+    markModified();
     UndoQuantum* uq = NULL;
     char* oldTupleData = NULL;
     int tupleLength = targetTupleToUpdate.tupleLength();
@@ -1146,6 +1152,7 @@ void PersistentTable::updateTupleWithSpecificIndexes(TableTuple& targetTupleToUp
 void PersistentTable::updateTupleForUndo(char* tupleWithUnwantedValues,
                                          char* sourceTupleDataWithNewValues,
                                          bool revertIndexes) {
+    markModified();
     TableTuple matchable(m_schema);
     // Get the address of the tuple in the table from one of the copies on hand.
     // Any TableScan OR a primary key lookup on an already updated index will find the tuple
@@ -1199,6 +1206,7 @@ void PersistentTable::updateTupleForUndo(char* tupleWithUnwantedValues,
 }
 
 void PersistentTable::deleteTuple(TableTuple& target, bool fallible) {
+    markModified();
     UndoQuantum* uq = ExecutorContext::currentUndoQuantum();
     bool createUndoAction = fallible && (uq != NULL);
 
@@ -1340,6 +1348,7 @@ void PersistentTable::deleteTupleForSchemaChange(TableTuple& target) {
  *     can be used directly.
  */
 void PersistentTable::deleteTupleForUndo(char* tupleData, bool skipLookup) {
+    markModified();
     TableTuple matchable(tupleData, m_schema);
     TableTuple target(tupleData, m_schema);
     //* enable for debug */ std::cout << "DEBUG: undoing "
@@ -1819,6 +1828,13 @@ size_t PersistentTable::hashCode() {
     return hashCode;
 }
 
+int64_t PersistentTable::nextGeneration() {
+    // Shared by the sites of the process so a table replaced by another one
+    // (truncate, swap, schema change) never ends up with the same value.
+    static std::atomic<int64_t> s_nextGeneration(1);
+    return s_nextGeneration.fetch_add(1);
+}
+
 void PersistentTable::notifyBlockWasCompactedAway(TBPtr block) {
     if (m_blocksNotPendingSnapshot.find(block) == m_blocksNotPendingSnapshot.end()) {
         // do not find block in not pending snapshot container
@@ -422,6 +422,17 @@ public:
      */
     size_t hashCode();
 
+    /**
+     * Return a value identifying the current contents of the table, used to skip unchanged
+     * tables in incremental snapshots. Once the value has been returned the next modification
+     * of the table replaces it with a new process wide unique value, so getting the same
+     * value twice means the table was not modified in between.
+     */
+    int64_t observeGeneration() {
+        m_generationObserved = true;
+        return m_generation;
+    }
+
     size_t getBlocksNotPendingSnapshotCount() {
         return m_blocksNotPendingSnapshot.size();
     }
@@ -847,6 +858,20 @@ private:
     // Objects used to coordinate compaction of Replicated tables
     SynchronizedUndoQuantumReleaseInterest m_releaseReplicated;
     SynchronizedDummyUndoQuantumReleaseInterest m_releaseDummyReplicated;
+
+    // Value returned by observeGeneration() and whether it has been returned since
+    // the last time it changed.
+    int64_t m_generation;
+    bool m_generationObserved;
+
+    static int64_t nextGeneration();
+
+    void markModified() {
+        if (m_generationObserved) {
+            m_generation = nextGeneration();
+            m_generationObserved = false;
+        }
+    }
 };
 
 inline PersistentTableSurgeon::PersistentTableSurgeon(PersistentTable& table) :
@@ -194,6 +194,8 @@ private:
 
     void tableHashCode( struct ipc_command *cmd);
 
+    void tableGeneration( struct ipc_command *cmd);
+
     void hashinate(struct ipc_command* cmd);
 
     void updateHashinator(struct ipc_command *cmd);
@@ -568,6 +570,10 @@ bool VoltDBIPC::execute(struct ipc_command *cmd) {
           setViewsEnabled(cmd);
           result = kErrorCode_None;
           break;
+      case 32:
+          tableGeneration(cmd);
+          result = kErrorCode_None;
+          break;
       default:
         result = stub(cmd);
     }
@@ -1492,6 +1498,16 @@ void VoltDBIPC::tableHashCode( struct ipc_command *cmd) {
     writeOrDie(m_fd, (unsigned char*)response, 9);
 }
 
+void VoltDBIPC::tableGeneration( struct ipc_command *cmd) {
+    table_hash_code *generationRequest = (table_hash_code*) cmd;
+    const int32_t tableId = ntohl(generationRequest->tableId);
+    int64_t tableGeneration = m_engine->tableGeneration(tableId);
+    char response[9];
+    response[0] = kErrorCode_Success;
+    *reinterpret_cast<int64_t*>(&response[1]) = htonll(tableGeneration);
+    writeOrDie(m_fd, (unsigned char*)response, 9);
+}
+
 void VoltDBIPC::exportAction(struct ipc_command *cmd) {
     export_action *action = (export_action*)cmd;
 
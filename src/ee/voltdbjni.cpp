@@ -1091,6 +1091,18 @@ SHAREDLIB_JNIEXPORT jlong JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeTabl
     return 0;
 }
 
+/*
+ * Class:     org_voltdb_jni_ExecutionEngine
+ * Method:    nativeTableGeneration
+ * Signature: (JI)J
+ */
+SHAREDLIB_JNIEXPORT jlong JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeTableGeneration
+  (JNIEnv *env, jobject obj, jlong engine_ptr, jint tableId) {
+    VOLT_DEBUG("nativeTableGeneration in C++ called");
+    VoltDBEngine *engine = castToEngine(engine_ptr);
+    return engine->tableGeneration(tableId);
+}
+
 /*
  * Class:     org_voltdb_jni_ExecutionEngine
  * Method:    nativeExportAction
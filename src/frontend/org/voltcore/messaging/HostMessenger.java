@@ -410,6 +410,8 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
     private final JoinAcceptor m_acceptor;
 
     private static final String SECONDARY_PICONETWORK_THREADS = "secondaryPicoNetworkThreads";
+    // move client connections off saturated network threads, off unless set to true
+    private static final String NETWORK_REBALANCE = "networkRebalance";
 
     public Mailbox getMailbox(long hsId) {
         return m_siteMailboxes.get(hsId);
@@ -424,6 +426,9 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         m_config = config;
         m_hostWatcher = hostWatcher;
         m_network = new VoltNetworkPool(m_config.networkThreads, 0, m_config.coreBindIds, "Server");
+        if (Boolean.getBoolean(NETWORK_REBALANCE)) {
+            m_network.enableRebalancing();
+        }
         m_acceptor = config.acceptor;
         //This ref is updated after the mesh decision is made.
         m_paused.set(m_config.startPause);
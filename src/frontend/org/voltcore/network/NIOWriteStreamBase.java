@@ -29,6 +29,7 @@ import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.RateLimitedLogger;
+import org.voltcore.utils.ZeroCopySerialization;
 
 /**
 *
@@ -107,55 +108,82 @@ public abstract class NIOWriteStreamBase {
             processedWrites++;
             final int serializedSize = ds.getSerializedSize();
             if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) continue;
-            BBContainer outCont = m_queuedBuffers.peekLast();
-            ByteBuffer outbuf = null;
-            if (outCont == null || !outCont.b().hasRemaining()) {
+            final int payloadSize =
+                    ds instanceof ZeroCopySerialization ? ((ZeroCopySerialization)ds).getPayloadSize() : 0;
+            if (payloadSize > 0) {
+                // Only the header is copied, the payload buffer is queued as is
+                final ZeroCopySerialization zcs = (ZeroCopySerialization)ds;
+                bytesQueued += serializeToPool(pool, zcs, serializedSize - payloadSize, true);
+                final BBContainer payload = zcs.takePayload();
+                // Queued buffers are flipped when they are drained
+                payload.b().position(payload.b().limit());
+                m_queuedBuffers.offer(payload);
+                bytesQueued += payloadSize;
+            } else {
+                bytesQueued += serializeToPool(pool, ds, serializedSize, false);
+            }
+        }
+        updateQueued(bytesQueued, true);
+        return processedWrites;
+    }
+
+    private int serializeToPool(final NetworkDBBPool pool, final DeferredSerialization ds,
+                                final int serializedSize, final boolean headerOnly) throws IOException {
+        BBContainer outCont = m_queuedBuffers.peekLast();
+        ByteBuffer outbuf = null;
+        if (outCont == null || !outCont.b().hasRemaining()) {
+            outCont = pool.acquire();
+            outCont.b().clear();
+            m_queuedBuffers.offer(outCont);
+        }
+
+        outbuf = outCont.b();
+
+        if (outbuf.remaining() >= serializedSize) {
+            // Fast path, serialize to direct buffer creating no garbage
+            final int oldLimit = outbuf.limit();
+            outbuf.limit(outbuf.position() + serializedSize);
+            final ByteBuffer slice = outbuf.slice();
+            serialize(ds, slice, headerOnly);
+            checkSloppySerialization(slice, ds);
+            slice.position(0);
+            outbuf.position(outbuf.limit());
+            outbuf.limit(oldLimit);
+            return slice.remaining();
+        }
+
+        // Slow path serialize to heap, and then put in buffers
+        ByteBuffer buf = ByteBuffer.allocate(serializedSize);
+        serialize(ds, buf, headerOnly);
+        checkSloppySerialization(buf, ds);
+        buf.position(0);
+        final int bytesQueued = buf.remaining();
+        // Copy data allocated in heap buffer to direct buffer
+        while (buf.hasRemaining()) {
+            if (!outbuf.hasRemaining()) {
                 outCont = pool.acquire();
-                outCont.b().clear();
+                outbuf = outCont.b();
+                outbuf.clear();
                 m_queuedBuffers.offer(outCont);
             }
-
-            outbuf = outCont.b();
-
-            if (outbuf.remaining() >= serializedSize) {
-                // Fast path, serialize to direct buffer creating no garbage
-                final int oldLimit = outbuf.limit();
-                outbuf.limit(outbuf.position() + serializedSize);
-                final ByteBuffer slice = outbuf.slice();
-                ds.serialize(slice);
-                checkSloppySerialization(slice, ds);
-                slice.position(0);
-                bytesQueued += slice.remaining();
-                outbuf.position(outbuf.limit());
-                outbuf.limit(oldLimit);
+            if (outbuf.remaining() >= buf.remaining()) {
+                outbuf.put(buf);
             } else {
-                // Slow path serialize to heap, and then put in buffers
-                ByteBuffer buf = ByteBuffer.allocate(serializedSize);
-                ds.serialize(buf);
-                checkSloppySerialization(buf, ds);
-                buf.position(0);
-                bytesQueued += buf.remaining();
-                // Copy data allocated in heap buffer to direct buffer
-                while (buf.hasRemaining()) {
-                    if (!outbuf.hasRemaining()) {
-                        outCont = pool.acquire();
-                        outbuf = outCont.b();
-                        outbuf.clear();
-                        m_queuedBuffers.offer(outCont);
-                    }
-                    if (outbuf.remaining() >= buf.remaining()) {
-                        outbuf.put(buf);
-                    } else {
-                        final int oldLimit = buf.limit();
-                        buf.limit(buf.position() + outbuf.remaining());
-                        outbuf.put(buf);
-                        buf.limit(oldLimit);
-                    }
-                }
+                final int oldLimit = buf.limit();
+                buf.limit(buf.position() + outbuf.remaining());
+                outbuf.put(buf);
+                buf.limit(oldLimit);
             }
         }
-        updateQueued(bytesQueued, true);
-        return processedWrites;
+        return bytesQueued;
+    }
+
+    private static void serialize(DeferredSerialization ds, ByteBuffer buf, boolean headerOnly) throws IOException {
+        if (headerOnly) {
+            ((ZeroCopySerialization)ds).serializeHeader(buf);
+        } else {
+            ds.serialize(buf);
+        }
     }
 
     private static final boolean ASSERT_ON;
@@ -58,6 +58,15 @@ public class TLSVoltPort extends VoltPort  {
         m_interestOps = key.interestOps();
     }
 
+    /*
+     * Decryption and encryption complete asynchronously on the cipher service
+     * and come back to the network of the port, so keep the port where it is.
+     */
+    @Override
+    boolean canMove() {
+        return false;
+    }
+
     @Override
     void die() {
         super.die();
@@ -110,6 +110,11 @@ class VoltNetwork implements Runnable, IOStatsIntf
 
     private final NinjaKeySet m_ninjaSelectedKeys;
 
+    // Time spent handling ready ports and tasks, written only by the network thread
+    private volatile long m_busyNanos = 0;
+    // Share of the last rebalancing interval that was busy, set by the pool
+    volatile double m_utilization = 0.0;
+
     /**
      * Start this VoltNetwork's thread;
      */
@@ -269,10 +274,30 @@ class VoltNetwork implements Runnable, IOStatsIntf
      * @param c
      */
     Future<?> unregisterChannel (Connection c) {
-        FutureTask<Object> ft = new FutureTask<Object>(getUnregisterRunnable(c), null);
-        m_tasks.offer(ft);
+        SettableFuture<Object> done = SettableFuture.create();
+        queueUnregister((VoltPort)c, done);
+        return done;
+    }
+
+    private void queueUnregister(final VoltPort port, final SettableFuture<Object> done) {
+        m_tasks.offer(new Runnable() {
+            @Override
+            public void run() {
+                // Moved away after this was queued, the port is unregistered where it lives now
+                final VoltNetwork network = port.m_network;
+                if (network != VoltNetwork.this && network != null) {
+                    network.queueUnregister(port, done);
+                    return;
+                }
+                try {
+                    getUnregisterRunnable(port).run();
+                    done.set(null);
+                } catch (Throwable t) {
+                    done.setException(t);
+                }
+            }
+        });
         m_selector.wakeup();
-        return ft;
     }
 
     void addToChangeList(final VoltPort port) {
@@ -285,20 +310,122 @@ class VoltNetwork implements Runnable, IOStatsIntf
             m_tasks.offer(new Runnable() {
                 @Override
                 public void run() {
-                    callPort(port);
+                    if (!forwardIfMoved(port, true)) {
+                        callPort(port);
+                    }
                 }
             });
         } else {
             m_tasks.offer(new Runnable() {
                 @Override
                 public void run() {
-                    installInterests(port);
+                    if (!forwardIfMoved(port, false)) {
+                        installInterests(port);
+                    }
                 }
             });
         }
         m_selector.wakeup();
     }
 
+    /*
+     * A change queued before the port was moved to another network belongs to that network now.
+     * The new network has already been handed the port so the change is applied after it.
+     */
+    private boolean forwardIfMoved(VoltPort port, boolean runFirst) {
+        final VoltNetwork network = port.m_network;
+        if (network == this || network == null) {
+            return false;
+        }
+        network.addToChangeList(port, runFirst);
+        return true;
+    }
+
+    /**
+     * Move the busiest port that accounts for no more than the given share of the messages
+     * this network read since the last call over to another network. Ports that carry more
+     * than that stay, moving them would only move the hot spot.
+     */
+    void shedLoad(final VoltNetwork target, final double share) {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                long total = 0;
+                for (VoltPort port : m_ports) {
+                    total += port.m_messagesRead - port.m_messagesReadAtRebalance;
+                }
+                final long limit = (long)(total * share);
+                VoltPort candidate = null;
+                long candidateMessages = 0;
+                for (VoltPort port : m_ports) {
+                    final long messages = port.m_messagesRead - port.m_messagesReadAtRebalance;
+                    port.m_messagesReadAtRebalance = port.m_messagesRead;
+                    if (messages > candidateMessages && messages <= limit && port.canMove()) {
+                        candidate = port;
+                        candidateMessages = messages;
+                    }
+                }
+                if (candidate != null) {
+                    moveNow(candidate, target);
+                }
+            }
+        });
+    }
+
+    /**
+     * Move a port to another network, the move happens on this network's thread.
+     */
+    void move(final VoltPort port, final VoltNetwork target) {
+        queueTask(new Runnable() {
+            @Override
+            public void run() {
+                moveNow(port, target);
+            }
+        });
+    }
+
+    /*
+     * Runs on this network's thread, so the port is not running. The port's network is switched
+     * and the target is handed the port while holding the port lock: a concurrent interest
+     * change or unregistration either is queued here before the switch and gets forwarded, or
+     * is queued on the target after the hand off.
+     */
+    private void moveNow(final VoltPort port, final VoltNetwork target) {
+        if (target == this || target.isStopping() || m_shouldStop ||
+                !m_ports.contains(port) || port.isDead() || port.m_isShuttingDown) {
+            return;
+        }
+        synchronized (port.m_lock) {
+            final SelectionKey key = port.getKey();
+            key.attach(null);
+            key.cancel();
+            m_ports.remove(port);
+            m_numPorts.decrementAndGet();
+            port.m_network = target;
+            target.queueTask(new Runnable() {
+                @Override
+                public void run() {
+                    target.adopt(port);
+                }
+            });
+        }
+        if (networkLog.isDebugEnabled()) {
+            networkLog.debug("Moved " + port + " from " + networkThreadName + " to " + target.networkThreadName);
+        }
+    }
+
+    private void adopt(VoltPort port) {
+        try {
+            SelectionKey key = port.m_channel.register(m_selector, port.interestOps(), port);
+            port.moved(this, key);
+            m_ports.add(port);
+            m_numPorts.incrementAndGet();
+        } catch (ClosedChannelException e) {
+            // unregistered while it was being moved
+            port.unregistered();
+        }
+    }
+
     @Override
     public void run() {
         final ThreadLocalRandom r = ThreadLocalRandom.current();
@@ -314,6 +441,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
                         LatencyWatchdog.pet();
 
                         final int readyKeys = m_selector.select();
+                        final long busyStart = System.nanoTime();
 
                         /*
                          * Run the task queue immediately after selection to catch
@@ -340,6 +468,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
                         while ((task = m_tasks.poll()) != null) {
                             task.run();
                         }
+                        m_busyNanos += System.nanoTime() - busyStart;
                     }
                 } catch (Throwable ex) {
                     ex.printStackTrace();
@@ -565,6 +694,10 @@ class VoltNetwork implements Runnable, IOStatsIntf
         return m_numPorts.get();
     }
 
+    long busyNanos() {
+        return m_busyNanos;
+    }
+
     public Future<Set<Connection>> getConnections() {
         final SettableFuture<Set<Connection>> connectionsFuture = SettableFuture.create();
         queueTask(new Runnable() {
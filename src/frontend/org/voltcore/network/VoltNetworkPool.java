@@ -29,7 +29,9 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -37,6 +39,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLEngine;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.Pair;
 
 public class VoltNetworkPool {
@@ -47,9 +50,22 @@ public class VoltNetworkPool {
 
     private static final VoltLogger m_logger = new VoltLogger(VoltNetworkPool.class.getName());
 
+    /*
+     * Rebalancing: a network busier than SATURATED_UTILIZATION hands a connection to the least
+     * busy network if that one is at least IMBALANCE less busy. At most one connection moves
+     * per network per interval.
+     */
+    private static final long REBALANCE_INTERVAL_MS = Long.getLong("NETWORK_REBALANCE_INTERVAL_MS", 1000);
+    static final double SATURATED_UTILIZATION = 0.8;
+    static final double IMBALANCE = 0.25;
+
     private final VoltNetwork m_networks[];
     private final AtomicLong m_nextNetwork = new AtomicLong();
     public final String m_poolName;
+    private boolean m_rebalance = false;
+    private ScheduledExecutorService m_rebalancer = null;
+    private long m_lastBusyNanos[];
+    private long m_lastRebalanceNanos;
 
     public VoltNetworkPool() {
         this(1, 1, null, "");
@@ -76,18 +92,98 @@ public class VoltNetworkPool {
         }
     }
 
+    /**
+     * Have connections move from saturated networks to idle ones. Must be called before
+     * {@link #start()}, does nothing for a pool with a single network.
+     */
+    public void enableRebalancing() {
+        m_rebalance = true;
+    }
+
     public void start() {
         for (VoltNetwork vn : m_networks) {
             vn.start();
         }
+        if (m_rebalance && m_networks.length > 1 && m_rebalancer == null) {
+            m_lastBusyNanos = new long[m_networks.length];
+            m_lastRebalanceNanos = System.nanoTime();
+            m_rebalancer = Executors.newSingleThreadScheduledExecutor(
+                    CoreUtils.getThreadFactory("Volt " + m_poolName + " Network Rebalancer"));
+            m_rebalancer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        rebalance(System.nanoTime());
+                    } catch (Throwable t) {
+                        m_logger.warn("Error rebalancing network connections", t);
+                    }
+                }
+            }, REBALANCE_INTERVAL_MS, REBALANCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
     }
 
     public void shutdown() throws InterruptedException {
+        if (m_rebalancer != null) {
+            m_rebalancer.shutdownNow();
+            m_rebalancer.awaitTermination(1, TimeUnit.SECONDS);
+        }
         for (VoltNetwork vn : m_networks) {
             vn.shutdown();
         }
     }
 
+    /*
+     * Work out how busy each network was since the last call and move a connection
+     * off the busiest one if it is saturated and another has room.
+     */
+    void rebalance(long nowNanos) {
+        final long elapsed = nowNanos - m_lastRebalanceNanos;
+        if (elapsed <= 0) {
+            return;
+        }
+        m_lastRebalanceNanos = nowNanos;
+        final double utilization[] = new double[m_networks.length];
+        for (int ii = 0; ii < m_networks.length; ii++) {
+            final long busyNanos = m_networks[ii].busyNanos();
+            utilization[ii] = Math.min(1.0, (busyNanos - m_lastBusyNanos[ii]) / (double)elapsed);
+            m_lastBusyNanos[ii] = busyNanos;
+            m_networks[ii].m_utilization = utilization[ii];
+        }
+
+        final int move[] = pickRebalance(utilization);
+        if (move != null) {
+            final double share = (utilization[move[0]] - utilization[move[1]]) / (2 * utilization[move[0]]);
+            if (m_logger.isDebugEnabled()) {
+                m_logger.debug(String.format("%s is %.0f%% busy and %s is %.0f%% busy, moving a connection",
+                        m_networks[move[0]].networkThreadName, utilization[move[0]] * 100,
+                        m_networks[move[1]].networkThreadName, utilization[move[1]] * 100));
+            }
+            m_networks[move[0]].shedLoad(m_networks[move[1]], share);
+        }
+    }
+
+    /**
+     * @return indexes of the network to move a connection from and of the network to move it to,
+     * or null if the networks are balanced enough
+     */
+    static int[] pickRebalance(double utilization[]) {
+        int busiest = 0;
+        int idlest = 0;
+        for (int ii = 1; ii < utilization.length; ii++) {
+            if (utilization[ii] > utilization[busiest]) {
+                busiest = ii;
+            }
+            if (utilization[ii] < utilization[idlest]) {
+                idlest = ii;
+            }
+        }
+        if (utilization[busiest] < SATURATED_UTILIZATION ||
+                utilization[busiest] - utilization[idlest] < IMBALANCE) {
+            return null;
+        }
+        return new int[] { busiest, idlest };
+    }
+
     public Connection registerChannel(
             final SocketChannel channel,
             final InputHandler handler,
@@ -105,16 +201,24 @@ public class VoltNetworkPool {
             final SSLEngine sslEngine) throws IOException {
         //Start with a round robin base policy
         VoltNetwork vn = m_networks[(int)(m_nextNetwork.getAndIncrement() % m_networks.length)];
-        //Then do a load based policy which is a little racy
+        //Then do a load based policy which is a little racy, staying off saturated networks
+        //when there is one that isn't
         for (int ii = 0; ii < m_networks.length; ii++) {
             if (m_networks[ii] == vn) continue;
-            if (vn.numPorts() > m_networks[ii].numPorts()) {
+            final boolean saturated = vn.m_utilization >= SATURATED_UTILIZATION;
+            final boolean otherSaturated = m_networks[ii].m_utilization >= SATURATED_UTILIZATION;
+            if ((saturated && !otherSaturated) ||
+                    (saturated == otherSaturated && vn.numPorts() > m_networks[ii].numPorts())) {
                 vn = m_networks[ii];
             }
         }
         return vn.registerChannel(channel, handler, interestOps, dns, cipherService, sslEngine);
     }
 
+    VoltNetwork[] getNetworks() {
+        return m_networks;
+    }
+
     public List<Long> getThreadIds() {
         ArrayList<Long> ids = new ArrayList<Long>();
         for (VoltNetwork vn : m_networks) {
@@ -123,6 +227,14 @@ public class VoltNetworkPool {
         return ids;
     }
 
+    /**
+     * Row key of the totals of a network of the pool in the IO stats, connections use positive
+     * keys and the totals of all networks use -1.
+     */
+    static long networkStatsKey(int networkIndex) {
+        return -2L - networkIndex;
+    }
+
     public Map<Long, Pair<String, long[]>>
         getIOStats(final boolean interval, List<IOStatsIntf> picoNetworks)
                 throws ExecutionException, InterruptedException {
@@ -138,18 +250,25 @@ public class VoltNetworkPool {
         }
 
         long globalStats[] = null;
+        int taskIndex = 0;
         for (Future<Map<Long, Pair<String, long[]>>> statsFuture : statTasks) {
+            final int networkIndex = taskIndex++;
             try {
                 Map<Long, Pair<String, long[]>> stats = statsFuture.get(500, TimeUnit.MILLISECONDS);
+                final long localStats[] = stats.get(-1L).getSecond();
                 if (globalStats == null) {
-                    globalStats = stats.get(-1L).getSecond();
+                    globalStats = localStats.clone();
                 } else {
-                    final long localStats[] = stats.get(-1L).getSecond();
                     for (int ii = 0; ii < localStats.length; ii++) {
                         globalStats[ii] += localStats[ii];
                     }
                 }
                 retval.putAll(stats);
+                if (networkIndex < m_networks.length) {
+                    // totals of each network thread of the pool
+                    retval.put(networkStatsKey(networkIndex),
+                               Pair.of(m_networks[networkIndex].networkThreadName, localStats));
+                }
             } catch (TimeoutException e) {
                 m_logger.warn("Timed out retrieving stats from network thread, probably harmless", e);
             }
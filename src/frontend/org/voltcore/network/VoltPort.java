@@ -31,14 +31,14 @@ import org.voltcore.logging.VoltLogger;
 /** Encapsulates a socket registration for a VoltNetwork */
 public class VoltPort implements Connection
 {
-    /** The network this port participates in */
-    protected final VoltNetwork m_network;
+    /** The network this port participates in, changes if the port is moved to another network */
+    protected volatile VoltNetwork m_network;
 
     protected static final VoltLogger networkLog = new VoltLogger("NETWORK");
 
     public static final int MAX_MESSAGE_LENGTH = 52428800;
 
-    protected final NetworkDBBPool m_pool;
+    protected NetworkDBBPool m_pool;
 
     /** The currently selected operations on this port. */
     private int m_readyOps = 0;
@@ -75,6 +75,8 @@ public class VoltPort implements Connection
     protected VoltNIOWriteStream m_writeStream;
     protected long m_messagesRead = 0;
     private long m_lastMessagesRead = 0;
+    // messages read when the network last looked for a port to move
+    long m_messagesReadAtRebalance = 0;
 
     /*
      * This variable will be changed to the actual hostname some time later. It
@@ -147,6 +149,23 @@ public class VoltPort implements Connection
         m_interestOps = key.interestOps();
     }
 
+    /**
+     * Switch to the key of another network's selector after being moved to it.
+     * Invoked on the thread of the new network, the read and write streams
+     * carry over as they are.
+     */
+    void moved(VoltNetwork network, SelectionKey key) {
+        m_selectionKey = key;
+        m_pool = network.m_pool;
+    }
+
+    /**
+     * @return true if the port can be moved to another network of its pool
+     */
+    boolean canMove() {
+        return true;
+    }
+
     /**
      * Lock the VoltPort for running by the VoltNetwork executor service. This prevents anything from sneaking in a messing with
      * the selector set until the executor service has had a chance to handle all the I/O.
@@ -461,7 +480,10 @@ public class VoltPort implements Connection
 
     @Override
     public Future<?> unregister() {
-        return m_network.unregisterChannel(this);
+        // the port lock orders this against a move to another network
+        synchronized(m_lock) {
+            return m_network.unregisterChannel(this);
+        }
     }
 
     @Override
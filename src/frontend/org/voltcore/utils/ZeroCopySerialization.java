@@ -0,0 +1,55 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+
+/**
+ * A DeferredSerialization whose message ends with a payload that is already serialized in
+ * a direct buffer. A write stream that knows about it only serializes the header and queues
+ * the payload container as is, so the payload is not copied again on its way to the socket.
+ *
+ * The payload is owned by the serialization until it is handed over. After a successful
+ * {@link #getSerializedSize()} the stream either calls {@link #serialize(ByteBuffer)},
+ * which writes the whole message and releases the payload, or
+ * {@link #serializeHeader(ByteBuffer)} followed by {@link #takePayload()}, or {@link #cancel()}.
+ * A serialization that returns {@link #EMPTY_MESSAGE_LENGTH} releases the payload itself.
+ */
+public interface ZeroCopySerialization extends DeferredSerialization {
+    /**
+     * @return number of bytes at the end of the message that are held by the payload,
+     * 0 if this message has no payload and must be serialized with {@link #serialize(ByteBuffer)}.
+     * Only valid after {@link #getSerializedSize()}.
+     */
+    int getPayloadSize();
+
+    /**
+     * Serialize everything that comes before the payload. The buffer has exactly
+     * getSerializedSize() - getPayloadSize() bytes remaining.
+     */
+    void serializeHeader(ByteBuffer buf) throws IOException;
+
+    /**
+     * Hand the payload over to the caller, who is responsible for discarding it.
+     * @return container of the payload with the position at 0 and the limit at the payload size
+     */
+    BBContainer takePayload();
+}
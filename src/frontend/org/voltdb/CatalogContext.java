@@ -39,6 +39,7 @@ import org.voltdb.catalog.Deployment;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.SnapshotSchedule;
 import org.voltdb.catalog.Table;
+import org.voltdb.compiler.AdHocCompilerCache;
 import org.voltdb.compiler.PlannerTool;
 import org.voltdb.compiler.deploymentfile.DeploymentType;
 import org.voltdb.settings.ClusterSettings;
@@ -284,6 +285,8 @@ public class CatalogContext {
             newCatalog = catalogInfo.m_catalog;
         }
 
+        // The planner tool may be updated in place, so hold on to the cache of the current catalog
+        AdHocCompilerCache previousAdHocCache = m_ptool.getAdHocCache();
         CatalogContext retval =
             new CatalogContext(
                     newCatalog,
@@ -295,6 +298,7 @@ public class CatalogContext {
                     m_ptool,
                     messenger,
                     hasSchemaChange);
+        retval.m_ptool.carryOverPlans(previousAdHocCache, diffCommands);
         return retval;
     }
 
@@ -246,6 +246,19 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
      * @return buf to allow call chaining.
      */
     public ByteBuffer flattenToBuffer(ByteBuffer buf) {
+        return flattenToBuffer(buf, true);
+    }
+
+    /**
+     * Flatten everything but the body of the last result table, which the caller sends
+     * separately. The length of that table is included.
+     * @return buf to allow call chaining.
+     */
+    public ByteBuffer flattenHeaderToBuffer(ByteBuffer buf) {
+        return flattenToBuffer(buf, false);
+    }
+
+    private ByteBuffer flattenToBuffer(ByteBuffer buf, boolean withLastTableBody) {
         assert setProperly;
         buf.put((byte)0); //version
         buf.putLong(clientHandle);
@@ -279,9 +292,13 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             }
         }
         buf.putShort((short) results.length);
-        for (VoltTable vt : results)
+        for (int i = 0; i < results.length; i++)
         {
-            vt.flattenToBuffer(buf);
+            if (withLastTableBody || i < results.length - 1) {
+                results[i].flattenToBuffer(buf);
+            } else {
+                buf.putInt(results[i].getSerializedSize() - 4);
+            }
         }
         return buf;
     }
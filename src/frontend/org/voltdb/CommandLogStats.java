@@ -31,7 +31,14 @@ public class CommandLogStats extends StatsSource {
         OUTSTANDING_TXNS,
         IN_USE_SEGMENT_COUNT,
         SEGMENT_COUNT,
-        FSYNC_INTERVAL
+        FSYNC_INTERVAL,
+        TXNS_LOGGED,
+        BYTES_LOGGED,
+        TXNS_PER_SECOND,
+        FSYNC_COUNT,
+        AVG_FSYNC_LATENCY,
+        MAX_FSYNC_LATENCY,
+        AVG_BATCH_SIZE
     };
 
     public CommandLogStats(CommandLog commandLog) {
@@ -47,6 +54,13 @@ public class CommandLogStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo(StatName.IN_USE_SEGMENT_COUNT.name(), VoltType.INTEGER));
         columns.add(new VoltTable.ColumnInfo(StatName.SEGMENT_COUNT.name(), VoltType.INTEGER));
         columns.add(new VoltTable.ColumnInfo(StatName.FSYNC_INTERVAL.name(), VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo(StatName.TXNS_LOGGED.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.BYTES_LOGGED.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.TXNS_PER_SECOND.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.FSYNC_COUNT.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.AVG_FSYNC_LATENCY.name(), VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo(StatName.MAX_FSYNC_LATENCY.name(), VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo(StatName.AVG_BATCH_SIZE.name(), VoltType.INTEGER));
     }
 
     @Override
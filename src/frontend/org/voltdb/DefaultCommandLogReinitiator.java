@@ -17,18 +17,105 @@
 
 package org.voltdb;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.KeeperException;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.InstanceId;
+import org.voltcore.zk.ZKCountdownLatch;
+import org.voltcore.zk.ZKUtil;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.dtxn.TransactionCreator;
+import org.voltdb.iv2.Cartographer;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
 
 /**
  * The default command log reinitiator for community edition VoltDB.
+ *
+ * Without a command log directory (or when the node is not recovering) there is nothing to replay
+ * and completion is reported right away. Otherwise the segments written by {@link GroupCommitCommandLog}
+ * are read in log order and every invocation newer than the restored snapshot is reinitiated:
+ * single partition transactions by the host that leads the partition, multi-partition transactions
+ * once by the host running the MPI, with each partition leader sending a sentinel at the transaction's
+ * position in the partition's log so the replay sequencer keeps the original order. All hosts meet
+ * at a ZooKeeper barrier before replay is reported complete.
  */
 public class DefaultCommandLogReinitiator implements CommandLogReinitiator
 {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
     private Callback m_callback;
 
+    private final int m_hostId;
+    private final HostMessenger m_messenger;
+    private final File m_logDir;
+    private final Set<Integer> m_liveHosts;
+    private final GroupCommitLogReader m_reader;
+    private final Map<Integer, Long> m_startingSpHandles;
+
+    private TransactionCreator m_initiator = null;
+    private RestoreAgent.SnapshotInfo m_snapshotInfo = null;
+    private final AtomicLong m_replayedTxns = new AtomicLong(0);
+    private final AtomicLong m_outstandingTxns = new AtomicLong(0);
+
+    public DefaultCommandLogReinitiator() {
+        m_hostId = -1;
+        m_messenger = null;
+        m_logDir = null;
+        m_liveHosts = null;
+        m_reader = null;
+        m_startingSpHandles = null;
+    }
+
+    /**
+     * Constructor signature matches the one used by {@link RestoreAgent} for the enterprise reinitiator
+     */
+    public DefaultCommandLogReinitiator(int hostId, StartAction startAction, HostMessenger messenger,
+                                        String clPath, Set<Integer> liveHosts) {
+        m_hostId = hostId;
+        m_messenger = messenger;
+        m_logDir = new File(clPath);
+        m_liveHosts = liveHosts;
+
+        GroupCommitLogReader reader = null;
+        Map<Integer, Long> startingSpHandles = null;
+        if (startAction.doesRecover()) {
+            reader = new GroupCommitLogReader(m_logDir);
+            try {
+                startingSpHandles = reader.getStartingSpHandles();
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to read command log segments in " + m_logDir, true, e);
+            }
+            if (startingSpHandles == null) {
+                reader = null;
+            }
+        }
+        m_reader = reader;
+        m_startingSpHandles = startingSpHandles;
+
+        if (m_reader != null) {
+            LOG.info("Found " + m_reader.getSegmentCount() + " command log segments to replay in " + m_logDir);
+            try {
+                ZKUtil.addIfMissing(m_messenger.getZK(), VoltZK.commandlog_replay_segments, CreateMode.PERSISTENT, null);
+                ZKUtil.addIfMissing(m_messenger.getZK(), ZKUtil.joinZKPath(VoltZK.commandlog_replay_segments,
+                                                                           Integer.toString(m_hostId)),
+                                    CreateMode.PERSISTENT, null);
+            } catch (Exception e) {
+                VoltDB.crashLocalVoltDB("Unable to publish command log segments in ZooKeeper", true, e);
+            }
+        }
+    }
+
     @Override
     public void setCallback(Callback callback) {
         m_callback = callback;
@@ -39,34 +126,169 @@ public class DefaultCommandLogReinitiator implements CommandLogReinitiator
         new Thread(new Runnable() {
             @Override
             public void run() {
+                if (m_reader != null) {
+                    try {
+                        replayLog();
+                    } catch (Exception e) {
+                        VoltDB.crashGlobalVoltDB("Command log replay failed", true, e);
+                    }
+                }
+                if (m_logDir != null) {
+                    waitForAllHosts();
+                }
                 if (m_callback != null) {
                     m_callback.onReplayCompletion();
                 }
             }
-        }).start();
+        }, "Command log replay").start();
+    }
+
+    private void replayLog() throws IOException, InterruptedException {
+        final SimpleClientResponseAdapter adapter =
+                new SimpleClientResponseAdapter(ClientInterface.CL_REPLAY_BASE_CID, "CommandLogReplayAdapter");
+        m_initiator.bindAdapter(adapter);
+        final SimpleClientResponseAdapter.Callback callback = new SimpleClientResponseAdapter.Callback() {
+            @Override
+            public void handleResponse(ClientResponse response) {
+                if (response.getStatus() != ClientResponse.SUCCESS && LOG.isDebugEnabled()) {
+                    LOG.debug("Replayed transaction finished with status " + response.getStatus() +
+                              ": " + response.getStatusString());
+                }
+                synchronized (m_outstandingTxns) {
+                    if (m_outstandingTxns.decrementAndGet() == 0) {
+                        m_outstandingTxns.notifyAll();
+                    }
+                }
+            }
+        };
+
+        final Cartographer cartographer = VoltDB.instance().getCartographer();
+        final boolean isMpiHost =
+                CoreUtils.getHostIdFromHSId(cartographer.getHSIdForMultiPartitionInitiator()) == m_hostId;
+        final Set<Long> initiatedMps = new HashSet<>();
+
+        GroupCommitLogReader.Entry entry;
+        while ((entry = m_reader.next()) != null) {
+            if (!entry.isInvocation()) {
+                continue;
+            }
+            final Iv2InitiateTaskMessage msg = entry.m_invocation;
+            final int partition = entry.m_partitionId;
+            final boolean isLeader =
+                    CoreUtils.getHostIdFromHSId(cartographer.getHSIdForMaster(partition)) == m_hostId;
+
+            if (msg.isSinglePartition()) {
+                if (!isLeader || isCoveredBySnapshot(partition, entry.m_spHandle)) {
+                    continue;
+                }
+                initiate(adapter, callback, msg, true, new int[] { partition });
+            } else {
+                if (isCoveredBySnapshot(MpInitiator.MP_INIT_PID, msg.getTxnId())) {
+                    continue;
+                }
+                if (isLeader) {
+                    m_initiator.sendSentinel(msg.getUniqueId(), partition);
+                }
+                if (isMpiHost && initiatedMps.add(msg.getTxnId())) {
+                    int[] partitions = msg.getNParitionIds();
+                    initiate(adapter, callback, msg, false,
+                             partitions != null ? partitions : new int[] { MpInitiator.MP_INIT_PID });
+                }
+            }
+        }
+        if (isMpiHost) {
+            m_initiator.sendEOLMessage(MpInitiator.MP_INIT_PID);
+        }
+
+        synchronized (m_outstandingTxns) {
+            while (m_outstandingTxns.get() > 0) {
+                m_outstandingTxns.wait();
+            }
+        }
+        LOG.info("Replayed " + m_replayedTxns.get() + " transactions from the command log");
+    }
+
+    private void initiate(SimpleClientResponseAdapter adapter, SimpleClientResponseAdapter.Callback callback,
+                          Iv2InitiateTaskMessage msg, boolean isSinglePartition, int[] partitions) {
+        StoredProcedureInvocation invocation = msg.getStoredProcedureInvocation();
+        invocation.setClientHandle(adapter.registerCallback(callback));
+        m_outstandingTxns.incrementAndGet();
+        boolean created = m_initiator.createTransaction(adapter.connectionId(), msg.getTxnId(), msg.getUniqueId(),
+                invocation, msg.isReadOnly(), isSinglePartition, false, partitions[0],
+                invocation.getSerializedSize(), System.nanoTime());
+        if (!created) {
+            VoltDB.crashLocalVoltDB("Unable to reinitiate " + invocation.getProcName() + " from the command log",
+                                    false, null);
+        }
+        m_replayedTxns.incrementAndGet();
+    }
+
+    private boolean isCoveredBySnapshot(int partition, long txnId) {
+        if (m_snapshotInfo == null) {
+            return false;
+        }
+        Long snapshotTxnId = partition == MpInitiator.MP_INIT_PID ?
+                m_snapshotInfo.txnId : m_snapshotInfo.partitionToTxnId.get(partition);
+        return snapshotTxnId != null && txnId <= snapshotTxnId;
+    }
+
+    private void waitForAllHosts() {
+        try {
+            ZKCountdownLatch latch = new ZKCountdownLatch(m_messenger.getZK(), VoltZK.commandlog_replay_barrier,
+                                                          m_liveHosts.size());
+            latch.countDown();
+            latch.await();
+        } catch (Exception e) {
+            VoltDB.crashLocalVoltDB("Failed waiting for command log replay on all hosts", true, e);
+        }
     }
 
     @Override
     public boolean hasReplayedSegments() {
+        if (m_reader != null) {
+            return true;
+        }
+        if (m_messenger == null) {
+            return false;
+        }
+        try {
+            return m_messenger.getZK().exists(VoltZK.commandlog_replay_segments, false) != null &&
+                   !m_messenger.getZK().getChildren(VoltZK.commandlog_replay_segments, false).isEmpty();
+        } catch (KeeperException | InterruptedException e) {
+            VoltDB.crashLocalVoltDB("Unable to check for command log segments in ZooKeeper", true, e);
+        }
         return false;
     }
 
     @Override
     public Long getMaxLastSeenTxn() {
-        return null;
+        if (m_startingSpHandles == null || m_startingSpHandles.isEmpty()) {
+            return null;
+        }
+        Long max = null;
+        for (Long spHandle : m_startingSpHandles.values()) {
+            if (max == null || max < spHandle) {
+                max = spHandle;
+            }
+        }
+        return max;
     }
 
     @Override
     public Map<Integer, Long> getMaxLastSeenTxnByPartition() {
-        return null;
+        return m_startingSpHandles;
     }
 
     @Override
     public void setSnapshotTxnId(RestoreAgent.SnapshotInfo info) {
+        m_snapshotInfo = info;
     }
 
     @Override
     public void returnAllSegments() {
+        if (m_reader != null) {
+            GroupCommitLogReader.deleteSegments(m_logDir);
+        }
     }
 
     @Override
@@ -77,7 +299,7 @@ public class DefaultCommandLogReinitiator implements CommandLogReinitiator
 
     @Override
     public boolean hasReplayedTxns() {
-        return false;
+        return m_replayedTxns.get() > 0;
     }
 
     @Override
@@ -87,12 +309,13 @@ public class DefaultCommandLogReinitiator implements CommandLogReinitiator
 
     @Override
     public void setInitiator(TransactionCreator initiator) {
+        m_initiator = initiator;
     }
 
     @Override
     public InstanceId getInstanceId() {
-        // When we don't have a command log, return null to cause the instance ID
-        // check to get skipped entirely in RestoreAgent.generatePlans()
+        // The group commit log doesn't record the cluster instance, return null to cause the
+        // instance ID check to get skipped entirely in RestoreAgent.generatePlans()
         return null;
     }
 
@@ -22,8 +22,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
@@ -46,16 +48,17 @@ import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
 
 import com.google_voltpatches.common.util.concurrent.Callables;
 import com.google_voltpatches.common.util.concurrent.Futures;
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
-import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 import com.google_voltpatches.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google_voltpatches.common.util.concurrent.MoreExecutors;
-import com.google_voltpatches.common.util.concurrent.UnsynchronizedRateLimiter;
+import com.google_voltpatches.common.util.concurrent.RateLimiter;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
 
 
 public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
@@ -99,18 +102,40 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
 
     @SuppressWarnings("unused")
     private final String m_tableName;
+    private final CompressionCodec m_codec;
 
     private final AtomicInteger m_outstandingWriteTasks = new AtomicInteger(0);
     private final ReentrantLock m_outstandingWriteTasksLock = new ReentrantLock();
     private final Condition m_noMoreOutstandingWriteTasksCondition =
             m_outstandingWriteTasksLock.newCondition();
 
-    private static final ListeningExecutorService m_es = CoreUtils.getListeningSingleThreadExecutor("Snapshot write service ");
+    /*
+     * Writer thread this file is written by, and the writes waiting for it in submission order
+     */
+    private final SnapshotWriterPool.Writer m_writer;
+    private final ConcurrentLinkedQueue<PendingWrite> m_pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
+
     static final ListeningScheduledExecutorService m_syncService = MoreExecutors.listeningDecorator(
             Executors.newSingleThreadScheduledExecutor(CoreUtils.getThreadFactory("Snapshot sync service")));
 
+    /*
+     * Header key of a table file whose chunks are in another file, see writeBaseFileReference()
+     */
+    public static final String BASE_FILE_KEY = "baseFile";
+
+    /*
+     * Header key of the codec the chunks are compressed with, files without it are Snappy
+     */
+    public static final String COMPRESSION_KEY = "compression";
+
     public static final int SNAPSHOT_SYNC_FREQUENCY = Integer.getInteger("SNAPSHOT_SYNC_FREQUENCY", 500);
     public static final int SNAPSHOT_FADVISE_BYTES = Integer.getInteger("SNAPSHOT_FADVISE_BYTES", 1024 * 1024 * 2);
+    /*
+     * Writes that are queued back to back are written with a single gathering write
+     * as long as they add up to less than this
+     */
+    public static final int SNAPSHOT_COALESCE_BYTES = Integer.getInteger("SNAPSHOT_COALESCE_BYTES", 1024 * 1024);
+    private static final int MAX_COALESCED_WRITES = 64;
     public static final int SNAPSHOT_RATELIMIT_MEGABYTES;
     public static final boolean USE_SNAPSHOT_RATELIMIT;
 
@@ -130,8 +155,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         }
     }
 
-    public static final UnsynchronizedRateLimiter SNAPSHOT_RATELIMITER =
-            UnsynchronizedRateLimiter.create(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0, 1, TimeUnit.SECONDS);
+    // Shared by all the writer threads, each one only waits for the permits it reserved
+    public static final RateLimiter SNAPSHOT_RATELIMITER =
+            RateLimiter.create(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0, 1, TimeUnit.SECONDS);
 
     public static void enforceSnapshotRateLimit(int permits) {
         if (USE_SNAPSHOT_RATELIMIT) {
@@ -139,6 +165,22 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         }
     }
 
+    private static class PendingWrite {
+        final BBContainer m_tupleData;
+        final Future<BBContainer> m_compressionTask;
+        final boolean m_prependLength;
+        final int m_queuedBytes;
+        final SettableFuture<Object> m_done = SettableFuture.create();
+
+        PendingWrite(BBContainer tupleData, Future<BBContainer> compressionTask, boolean prependLength,
+                     int queuedBytes) {
+            m_tupleData = tupleData;
+            m_compressionTask = compressionTask;
+            m_prependLength = prependLength;
+            m_queuedBytes = queuedBytes;
+        }
+    }
+
     public DefaultSnapshotDataTarget(
             final File file,
             final int hostId,
@@ -180,77 +222,15 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             final long timestamp,
             int version[]
             ) throws IOException {
-        String hostname = CoreUtils.getHostnameOrAddress();
         m_file = file;
         m_tableName = tableName;
+        m_codec = CompressionCodec.forSnapshots();
+        final ByteBuffer aggregateBuffer = serializeHeader(hostId, clusterName, databaseName, tableName,
+                numPartitions, isReplicated, partitionIds, schemaTable, txnId, timestamp, version, m_codec, null);
+        aggregateBuffer.put(8, (byte)0);//Haven't actually finished writing file
         m_fos = new FileOutputStream(file);
         m_channel = m_fos.getChannel();
         m_needsFinalClose = !isReplicated;
-        final FastSerializer fs = new FastSerializer();
-        fs.writeInt(0);//CRC
-        fs.writeInt(0);//Header length placeholder
-        fs.writeByte(1);//Indicate the snapshot was not completed, set to true for the CRC calculation, false later
-        for (int ii = 0; ii < 4; ii++) {
-            fs.writeInt(version[ii]);//version
-        }
-        JSONStringer stringer = new JSONStringer();
-        byte jsonBytes[] = null;
-        try {
-            stringer.object();
-            stringer.keySymbolValuePair("txnId", txnId);
-            stringer.keySymbolValuePair("hostId", hostId);
-            stringer.keySymbolValuePair("hostname", hostname);
-            stringer.keySymbolValuePair("clusterName", clusterName);
-            stringer.keySymbolValuePair("databaseName", databaseName);
-            stringer.keySymbolValuePair("tableName", tableName.toUpperCase());
-            stringer.keySymbolValuePair("isReplicated", isReplicated);
-            stringer.keySymbolValuePair("isCompressed", true);
-            stringer.keySymbolValuePair("checksumType", "CRC32C");
-            stringer.keySymbolValuePair("timestamp", timestamp);
-            /*
-             * The timestamp string is for human consumption, automated stuff should use
-             * the actual timestamp
-             */
-            stringer.keySymbolValuePair("timestampString", SnapshotUtil.formatHumanReadableDate(timestamp));
-            if (!isReplicated) {
-                stringer.key("partitionIds").array();
-                for (int partitionId : partitionIds) {
-                    stringer.value(partitionId);
-                }
-                stringer.endArray();
-
-                stringer.keySymbolValuePair("numPartitions", numPartitions);
-            }
-            stringer.endObject();
-            String jsonString = stringer.toString();
-            JSONObject jsonObj = new JSONObject(jsonString);
-            jsonString = jsonObj.toString(4);
-            jsonBytes = jsonString.getBytes("UTF-8");
-        } catch (Exception e) {
-            throw new IOException(e);
-        }
-        fs.writeInt(jsonBytes.length);
-        fs.write(jsonBytes);
-
-        final BBContainer container = fs.getBBContainer();
-        container.b().position(4);
-        container.b().putInt(container.b().remaining() - 4);
-        container.b().position(0);
-
-        final byte schemaBytes[];
-        schemaBytes = PrivateVoltTableFactory.getSchemaBytes(schemaTable);
-
-        final PureJavaCrc32 crc = new PureJavaCrc32();
-        ByteBuffer aggregateBuffer = ByteBuffer.allocate(container.b().remaining() + schemaBytes.length);
-        aggregateBuffer.put(container.b());
-        container.discard();
-        aggregateBuffer.put(schemaBytes);
-        aggregateBuffer.flip();
-        crc.update(aggregateBuffer.array(), 4, aggregateBuffer.capacity() - 4);
-
-        final int crcValue = (int) crc.getValue();
-        aggregateBuffer.putInt(crcValue).position(8);
-        aggregateBuffer.put((byte)0).position(0);//Haven't actually finished writing file
 
         if (m_simulateFullDiskWritingHeader) {
             m_writeException = new IOException("Disk full");
@@ -263,19 +243,23 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
          * Be completely sure the write succeeded. If it didn't
          * the disk is probably full or the path is bunk etc.
          */
+        m_writer = SnapshotWriterPool.instance().assign();
         m_acceptOneWrite = true;
         ListenableFuture<?> writeFuture =
                 write(Callables.returning(DBBPool.wrapBB(aggregateBuffer)), false);
         try {
             writeFuture.get();
         } catch (InterruptedException e) {
+            SnapshotWriterPool.instance().release(m_writer);
             m_fos.close();
             throw new java.io.InterruptedIOException();
         } catch (ExecutionException e) {
+            SnapshotWriterPool.instance().release(m_writer);
             m_fos.close();
             throw m_writeException;
         }
         if (m_writeFailed) {
+            SnapshotWriterPool.instance().release(m_writer);
             m_fos.close();
             throw m_writeException;
         }
@@ -341,6 +325,131 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         m_reportedSerializationFailure = ex;
     }
 
+    /**
+     * Serialize the header of a table file: the CRC, the JSON metadata and the schema. The completed
+     * byte is set to 1 which is what the CRC is calculated with.
+     *
+     * @param baseFileName name of the file in the same directory that holds the chunks of the table,
+     * null for a regular file that is followed by its own chunks
+     */
+    private static ByteBuffer serializeHeader(
+            final int hostId,
+            final String clusterName,
+            final String databaseName,
+            final String tableName,
+            final int numPartitions,
+            final boolean isReplicated,
+            final List<Integer> partitionIds,
+            final VoltTable schemaTable,
+            final long txnId,
+            final long timestamp,
+            int version[],
+            final CompressionCodec codec,
+            final String baseFileName) throws IOException {
+        String hostname = CoreUtils.getHostnameOrAddress();
+        final FastSerializer fs = new FastSerializer();
+        fs.writeInt(0);//CRC
+        fs.writeInt(0);//Header length placeholder
+        fs.writeByte(1);//Indicate the snapshot was not completed, set to true for the CRC calculation, false later
+        for (int ii = 0; ii < 4; ii++) {
+            fs.writeInt(version[ii]);//version
+        }
+        JSONStringer stringer = new JSONStringer();
+        byte jsonBytes[] = null;
+        try {
+            stringer.object();
+            stringer.keySymbolValuePair("txnId", txnId);
+            stringer.keySymbolValuePair("hostId", hostId);
+            stringer.keySymbolValuePair("hostname", hostname);
+            stringer.keySymbolValuePair("clusterName", clusterName);
+            stringer.keySymbolValuePair("databaseName", databaseName);
+            stringer.keySymbolValuePair("tableName", tableName.toUpperCase());
+            stringer.keySymbolValuePair("isReplicated", isReplicated);
+            stringer.keySymbolValuePair("isCompressed", true);
+            stringer.keySymbolValuePair("checksumType", "CRC32C");
+            // Left out for Snappy so the files stay readable by versions that only know Snappy
+            if (codec != CompressionCodec.SNAPPY) {
+                stringer.keySymbolValuePair(COMPRESSION_KEY, codec.name());
+            }
+            stringer.keySymbolValuePair("timestamp", timestamp);
+            /*
+             * The timestamp string is for human consumption, automated stuff should use
+             * the actual timestamp
+             */
+            stringer.keySymbolValuePair("timestampString", SnapshotUtil.formatHumanReadableDate(timestamp));
+            if (!isReplicated) {
+                stringer.key("partitionIds").array();
+                for (int partitionId : partitionIds) {
+                    stringer.value(partitionId);
+                }
+                stringer.endArray();
+
+                stringer.keySymbolValuePair("numPartitions", numPartitions);
+            }
+            if (baseFileName != null) {
+                stringer.keySymbolValuePair(BASE_FILE_KEY, baseFileName);
+            }
+            stringer.endObject();
+            String jsonString = stringer.toString();
+            JSONObject jsonObj = new JSONObject(jsonString);
+            jsonString = jsonObj.toString(4);
+            jsonBytes = jsonString.getBytes("UTF-8");
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        fs.writeInt(jsonBytes.length);
+        fs.write(jsonBytes);
+
+        final BBContainer container = fs.getBBContainer();
+        container.b().position(4);
+        container.b().putInt(container.b().remaining() - 4);
+        container.b().position(0);
+
+        final byte schemaBytes[];
+        schemaBytes = PrivateVoltTableFactory.getSchemaBytes(schemaTable);
+
+        final PureJavaCrc32 crc = new PureJavaCrc32();
+        ByteBuffer aggregateBuffer = ByteBuffer.allocate(container.b().remaining() + schemaBytes.length);
+        aggregateBuffer.put(container.b());
+        container.discard();
+        aggregateBuffer.put(schemaBytes);
+        aggregateBuffer.flip();
+        crc.update(aggregateBuffer.array(), 4, aggregateBuffer.capacity() - 4);
+
+        final int crcValue = (int) crc.getValue();
+        aggregateBuffer.putInt(0, crcValue);
+        return aggregateBuffer;
+    }
+
+    /**
+     * Write a completed table file that has no chunks of its own. Readers get the chunks from the
+     * base file, which has to be in the same directory and hold the same table, partitions and schema.
+     */
+    public static void writeBaseFileReference(
+            final File file,
+            final String baseFileName,
+            final int hostId,
+            final String clusterName,
+            final String databaseName,
+            final String tableName,
+            final int numPartitions,
+            final boolean isReplicated,
+            final List<Integer> partitionIds,
+            final VoltTable schemaTable,
+            final long txnId,
+            final long timestamp) throws IOException {
+        final ByteBuffer header = serializeHeader(hostId, clusterName, databaseName, tableName,
+                numPartitions, isReplicated, partitionIds, schemaTable, txnId, timestamp,
+                new int[] { 0, 0, 0, 2 }, CompressionCodec.SNAPPY, baseFileName);
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            final FileChannel channel = fos.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(false);
+        }
+    }
+
     @Override
     public boolean needsFinalClose()
     {
@@ -374,6 +483,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             m_channel.force(false);
         } finally {
             m_bytesAllowedBeforeSync.release(m_bytesWrittenSinceLastSync.getAndSet(0));
+            SnapshotWriterPool.instance().release(m_writer);
         }
         m_channel.position(8);
         ByteBuffer completed = ByteBuffer.allocate(1);
@@ -429,6 +539,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         }
 
         ByteBuffer tupleData = tupleDataCont.b();
+        final int queuedBytes = tupleData.remaining();
 
         m_outstandingWriteTasks.incrementAndGet();
 
@@ -445,86 +556,121 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
              * that is 16 bytes, but 4 of those are done by CompressionService
              */
             cont.b().position(12);
-            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            compressionTask = CompressionService.compressAndCRC32cBufferAsync(m_codec, tupleData, cont);
         }
-        final Future<BBContainer> compressionTaskFinal = compressionTask;
+        final PendingWrite pending = new PendingWrite(tupleDataCont, compressionTask, prependLength, queuedBytes);
+        m_writer.queued(queuedBytes);
+        m_pendingWrites.offer(pending);
+        m_writer.m_es.execute(m_writePending);
+        return pending.m_done;
+    }
 
-        ListenableFuture<?> writeTask = m_es.submit(new Callable<Object>() {
-            @Override
-            public Object call() throws Exception {
-                int permitAcquired = 0;
-                try {
-                    if (m_acceptOneWrite) {
-                        m_acceptOneWrite = false;
-                    } else {
-                        if (m_simulateBlockedWrite != null) {
-                            m_simulateBlockedWrite.await();
-                        }
-                        if (m_simulateFullDiskWritingChunk) {
-                            //Make sure to consume the result of the compression
-                            compressionTaskFinal.get().discard();
-                            throw new IOException("Disk full");
-                        }
-                    }
+    /*
+     * Every write queues one of these on the writer thread, each run writes the next batch
+     * of pending writes. Runs that find the queue already drained do nothing.
+     */
+    private final Runnable m_writePending = new Runnable() {
+        @Override
+        public void run() {
+            PendingWrite first = m_pendingWrites.poll();
+            if (first == null) {
+                return;
+            }
+            List<PendingWrite> batch = new ArrayList<PendingWrite>();
+            batch.add(first);
+            int batchBytes = first.m_queuedBytes;
+            PendingWrite next;
+            while (batch.size() < MAX_COALESCED_WRITES &&
+                    (next = m_pendingWrites.peek()) != null &&
+                    batchBytes + next.m_queuedBytes <= SNAPSHOT_COALESCE_BYTES) {
+                batch.add(m_pendingWrites.poll());
+                batchBytes += next.m_queuedBytes;
+            }
+            writeBatch(batch, batchBytes);
+        }
+    };
 
-                    final ByteBuffer tupleData = tupleDataCont.b();
-                    int totalWritten = 0;
-                    if (prependLength) {
-                        BBContainer payloadContainer = compressionTaskFinal.get();
-                        try {
-                            final ByteBuffer payloadBuffer = payloadContainer.b();
-                            payloadBuffer.position(0);
-
-                            ByteBuffer lengthPrefix = ByteBuffer.allocate(12);
-                            permitAcquired = payloadBuffer.remaining();
-                            m_bytesAllowedBeforeSync.acquire(permitAcquired);
-                            //Length prefix does not include 4 header items, just compressd payload
-                            //that follows
-                            lengthPrefix.putInt(payloadBuffer.remaining() - 16);//length prefix
-                            lengthPrefix.putInt(tupleData.getInt(0)); // partitionId
-
-                            /*
-                             * Checksum the header and put it in the payload buffer
-                             */
-                            PureJavaCrc32C crc = new PureJavaCrc32C();
-                            crc.update(lengthPrefix.array(), 0, 8);
-                            lengthPrefix.putInt((int)crc.getValue());
-                            lengthPrefix.flip();
-                            payloadBuffer.put(lengthPrefix);
-                            payloadBuffer.position(0);
-
-                            enforceSnapshotRateLimit(payloadBuffer.remaining());
-
-                            /*
-                             * Write payload to file
-                             */
-                            while (payloadBuffer.hasRemaining()) {
-                                totalWritten += m_channel.write(payloadBuffer);
-                            }
-                        } finally {
-                            payloadContainer.discard();
-                        }
-                    } else {
-                        permitAcquired = tupleData.remaining();
-                        m_bytesAllowedBeforeSync.acquire(permitAcquired);
-                        while (tupleData.hasRemaining()) {
-                            totalWritten += m_channel.write(tupleData);
-                        }
-                    }
-                    m_bytesWritten += totalWritten;
-                    m_bytesWrittenSinceLastSync.addAndGet(totalWritten);
-                } catch (IOException e) {
-                    if (permitAcquired > 0) {
-                        m_bytesAllowedBeforeSync.release(permitAcquired);
+    private void writeBatch(List<PendingWrite> batch, int queuedBytes) {
+        int permitAcquired = 0;
+        int totalWritten = 0;
+        final BBContainer payloads[] = new BBContainer[batch.size()];
+        Throwable failure = null;
+        try {
+            if (m_acceptOneWrite) {
+                m_acceptOneWrite = false;
+            } else {
+                if (m_simulateBlockedWrite != null) {
+                    m_simulateBlockedWrite.await();
+                }
+                if (m_simulateFullDiskWritingChunk) {
+                    throw new IOException("Disk full");
+                }
+            }
+
+            final ByteBuffer buffers[] = new ByteBuffer[batch.size()];
+            int permits = 0;
+            int chunkBytes = 0;
+            for (int i = 0; i < buffers.length; i++) {
+                final PendingWrite write = batch.get(i);
+                if (write.m_prependLength) {
+                    payloads[i] = write.m_compressionTask.get();
+                    buffers[i] = prefixCompressedChunk(payloads[i].b(), write.m_tupleData.b());
+                    chunkBytes += buffers[i].remaining();
+                } else {
+                    buffers[i] = write.m_tupleData.b();
+                }
+                permits += buffers[i].remaining();
+            }
+            m_bytesAllowedBeforeSync.acquire(permits);
+            permitAcquired = permits;
+            if (chunkBytes > 0) {
+                enforceSnapshotRateLimit(chunkBytes);
+            }
+
+            /*
+             * Write the whole batch to the file with as few gathering writes as possible
+             */
+            int firstUnwritten = 0;
+            while (firstUnwritten < buffers.length) {
+                totalWritten += (int)m_channel.write(buffers, firstUnwritten, buffers.length - firstUnwritten);
+                while (firstUnwritten < buffers.length && !buffers[firstUnwritten].hasRemaining()) {
+                    firstUnwritten++;
+                }
+            }
+            m_bytesWritten += totalWritten;
+            m_bytesWrittenSinceLastSync.addAndGet(totalWritten);
+        } catch (Throwable t) {
+            failure = t;
+            if (permitAcquired > 0) {
+                m_bytesAllowedBeforeSync.release(permitAcquired);
+            }
+            if (t instanceof IOException) {
+                m_writeException = (IOException)t;
+                SNAP_LOG.error("Error while attempting to write snapshot data to file " + m_file, t);
+                m_writeFailed = true;
+            }
+        } finally {
+            m_writer.written(queuedBytes, totalWritten);
+            for (int i = 0; i < payloads.length; i++) {
+                final PendingWrite write = batch.get(i);
+                try {
+                    if (payloads[i] != null) {
+                        payloads[i].discard();
+                    } else if (write.m_compressionTask != null) {
+                        //Make sure to consume the result of the compression
+                        write.m_compressionTask.get().discard();
                     }
-                    m_writeException = e;
-                    SNAP_LOG.error("Error while attempting to write snapshot data to file " + m_file, e);
-                    m_writeFailed = true;
-                    throw e;
+                } catch (Exception e) {
+                    SNAP_LOG.debug("Failed to compress snapshot data that wasn't written", e);
                 } finally {
                     try {
-                        tupleDataCont.discard();
+                        write.m_tupleData.discard();
                     } finally {
+                        if (failure == null) {
+                            write.m_done.set(null);
+                        } else {
+                            write.m_done.setException(failure);
+                        }
                         m_outstandingWriteTasksLock.lock();
                         try {
                             if (m_outstandingWriteTasks.decrementAndGet() == 0) {
@@ -535,10 +681,32 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                         }
                     }
                 }
-                return null;
             }
-        });
-        return writeTask;
+        }
+    }
+
+    /*
+     * Fill in the 12 byte header that was left at the front of a compressed chunk
+     */
+    private static ByteBuffer prefixCompressedChunk(ByteBuffer payloadBuffer, ByteBuffer tupleData) {
+        payloadBuffer.position(0);
+
+        ByteBuffer lengthPrefix = ByteBuffer.allocate(12);
+        //Length prefix does not include 4 header items, just compressd payload
+        //that follows
+        lengthPrefix.putInt(payloadBuffer.remaining() - 16);//length prefix
+        lengthPrefix.putInt(tupleData.getInt(0)); // partitionId
+
+        /*
+         * Checksum the header and put it in the payload buffer
+         */
+        PureJavaCrc32C crc = new PureJavaCrc32C();
+        crc.update(lengthPrefix.array(), 0, 8);
+        lengthPrefix.putInt((int)crc.getValue());
+        lengthPrefix.flip();
+        payloadBuffer.put(lengthPrefix);
+        payloadBuffer.position(0);
+        return payloadBuffer;
     }
 
     @Override
@@ -582,15 +750,17 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     }
 
     public static void setRate(final Integer megabytesPerSecond) {
-        m_es.execute(new Runnable() {
-            @Override
-            public void run() {
-                if (megabytesPerSecond == null) {
-                    SNAPSHOT_RATELIMITER.setRate(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0);
-                } else {
-                    SNAPSHOT_RATELIMITER.setRate(megabytesPerSecond * 1024.0 * 1024.0);
-                }
-            }
-        });
+        if (megabytesPerSecond == null) {
+            SNAPSHOT_RATELIMITER.setRate(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0);
+        } else {
+            SNAPSHOT_RATELIMITER.setRate(megabytesPerSecond * 1024.0 * 1024.0);
+        }
+    }
+
+    /**
+     * @return the index of the writer thread this file is written by
+     */
+    public int getWriterIndex() {
+        return m_writer.getIndex();
     }
 }
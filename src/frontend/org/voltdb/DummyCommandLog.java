@@ -86,6 +86,13 @@ public class DummyCommandLog implements CommandLog {
         rowValues[columnNameToIndex.get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name())] = 0;
         rowValues[columnNameToIndex.get(CommandLogStats.StatName.SEGMENT_COUNT.name())] = 0;
         rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_INTERVAL.name())] = 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.TXNS_LOGGED.name())] = 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.BYTES_LOGGED.name())] = 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.TXNS_PER_SECOND.name())] = 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_COUNT.name())] = 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.AVG_FSYNC_LATENCY.name())] = 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.MAX_FSYNC_LATENCY.name())] = 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.AVG_BATCH_SIZE.name())] = 0;
     }
 
     public boolean isSynchronous() {
@@ -39,10 +39,18 @@ public class ExportStatsBase extends StatsSource {
         public final long m_maxLatency;
         public final long m_queueGap;
         public final String m_status;
+        public final long m_buffersPushed;
+        public final long m_blocksQueued;
+        public final long m_averageBlockBytes;
+        public final long m_maxBlockBytes;
+        public final long m_blocksUnder64K;
+        public final long m_blocksUnder1M;
 
         public ExportStatsRow(int partitionId, int siteId, String sourceName, String exportTarget, String exportingRole,
                 long tupleCount, long tuplesPending, long lastQueuedTimestamp, long lastAckedTimestamp,
-                long averageLatency, long maxLatency, long queueGap, String status) {
+                long averageLatency, long maxLatency, long queueGap, String status,
+                long buffersPushed, long blocksQueued, long averageBlockBytes, long maxBlockBytes,
+                long blocksUnder64K, long blocksUnder1M) {
             m_partitionId = partitionId;
             m_siteId = siteId;
             m_sourceName = sourceName;
@@ -56,6 +64,12 @@ public class ExportStatsBase extends StatsSource {
             m_maxLatency = maxLatency;
             m_queueGap = queueGap;
             m_status = status;
+            m_buffersPushed = buffersPushed;
+            m_blocksQueued = blocksQueued;
+            m_averageBlockBytes = averageBlockBytes;
+            m_maxBlockBytes = maxBlockBytes;
+            m_blocksUnder64K = blocksUnder64K;
+            m_blocksUnder1M = blocksUnder1M;
         }
     }
 
@@ -79,6 +93,13 @@ public class ExportStatsBase extends StatsSource {
         public static final String MAX_LATENCY = "MAX_LATENCY";
         public static final String QUEUE_GAP = "QUEUE_GAP";
         public static final String STATUS = "STATUS";
+        // buffers pushed by the EE and the stream blocks they were queued as
+        public static final String BUFFERS_PUSHED = "BUFFERS_PUSHED";
+        public static final String BLOCKS_QUEUED = "BLOCKS_QUEUED";
+        public static final String AVERAGE_BLOCK_SIZE = "AVERAGE_BLOCK_SIZE";
+        public static final String MAX_BLOCK_SIZE = "MAX_BLOCK_SIZE";
+        public static final String BLOCKS_UNDER_64K = "BLOCKS_UNDER_64K";
+        public static final String BLOCKS_UNDER_1M = "BLOCKS_UNDER_1M";
     }
 
     /* Constructor */
@@ -103,6 +124,12 @@ public class ExportStatsBase extends StatsSource {
         columns.add(new ColumnInfo(Columns.MAX_LATENCY, VoltType.BIGINT));
         columns.add(new ColumnInfo(Columns.QUEUE_GAP, VoltType.BIGINT));
         columns.add(new ColumnInfo(Columns.STATUS, VoltType.STRING));
+        columns.add(new ColumnInfo(Columns.BUFFERS_PUSHED, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Columns.BLOCKS_QUEUED, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Columns.AVERAGE_BLOCK_SIZE, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Columns.MAX_BLOCK_SIZE, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Columns.BLOCKS_UNDER_64K, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Columns.BLOCKS_UNDER_1M, VoltType.BIGINT));
     }
 
     @Override
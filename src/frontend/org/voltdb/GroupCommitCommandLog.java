@@ -0,0 +1,576 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.KeeperException;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.Pair;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * Command log for the community edition that batches invocations into group commits.
+ *
+ * Invocations are serialized on the caller's thread and appended to the pending batch. A single
+ * writer thread swaps the batch out every fsync interval (or as soon as the configured number of
+ * transactions is pending), writes it to the active segment with one gathering write and a single
+ * fsync, and then hands the completion checks of every registered {@link DurabilityListener} back
+ * to their schedulers.
+ *
+ * With synchronous logging tasks are only released for execution by those completion checks. With
+ * asynchronous logging tasks are offered immediately and the returned future only applies back
+ * pressure when the amount of unwritten data grows past {@link #MAX_OUTSTANDING_BYTES}.
+ *
+ * Segments are plain append-only files in the command log directory. See {@link GroupCommitLogReader}
+ * for the on-disk format. Sealed segments are removed once a truncation snapshot covers every
+ * transaction they contain.
+ */
+public class GroupCommitCommandLog implements CommandLog, SnapshotCompletionInterest {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    // Bound on serialized but unwritten invocations before async logging pushes back on the sites
+    static final long MAX_OUTSTANDING_BYTES = Long.getLong("COMMANDLOG_MAX_OUTSTANDING_BYTES", 64L * 1024 * 1024);
+    // Request a truncation snapshot once sealed segments use this fraction of the configured log size
+    private static final double TRUNCATION_THRESHOLD = 0.5;
+    // Number of segments the configured log size is split into
+    private static final int SEGMENTS_PER_LOG = 8;
+    private static final long MIN_SEGMENT_BYTES = 1024 * 1024;
+
+    private static final ListenableFuture<Object> DURABLE_FUTURE = Futures.immediateFuture(null);
+
+    private final boolean m_synchronous;
+    private final int m_fsyncInterval;
+    private final int m_maxTxns;
+    private final File m_logDir;
+
+    /*
+     * m_lock guards the pending batch, the outstanding counters and the durability listeners.
+     * Listener completion checks are swapped under the same lock that adds transactions to them
+     * so that every transaction lands in exactly one group commit.
+     */
+    private final Object m_lock = new Object();
+    private final ArrayList<DurabilityListener> m_listeners = new ArrayList<>();
+    private PendingBatch m_pending = new PendingBatch();
+    private long m_outstandingBytes = 0;
+    private long m_outstandingTxns = 0;
+    private boolean m_initialized = false;
+    private boolean m_shutdown = false;
+
+    // Segments are only modified by the writer thread and the snapshot completion callback
+    private final ArrayDeque<LogSegment> m_sealedSegments = new ArrayDeque<>();
+    private LogSegment m_activeSegment = null;
+    private long m_segmentSize;
+    private long m_logSize;
+    private long m_nextSegmentId;
+    // Last spHandle logged for each partition, recorded in each new segment's header
+    private final Map<Integer, Long> m_loggedSpHandles = new HashMap<>();
+    private boolean m_truncationRequested = false;
+
+    private Thread m_writer = null;
+
+    // Statistics, written by the writer thread only
+    private volatile long m_txnsLogged = 0;
+    private volatile long m_bytesLogged = 0;
+    private volatile long m_fsyncCount = 0;
+    private volatile long m_totalFsyncNanos = 0;
+    private volatile long m_maxFsyncNanos = 0;
+    private volatile long m_lastFsyncIntervalMs = 0;
+    private volatile long m_txnsPerSecond = 0;
+    private long m_lastCommitTime = 0;
+    private long m_lastFsyncTime = 0;
+    private long m_throughputWindowStart = 0;
+    private long m_throughputWindowTxns = 0;
+
+    /**
+     * A batch of serialized entries waiting for the next group commit
+     */
+    private static class PendingBatch {
+        final ArrayList<ByteBuffer> m_entries = new ArrayList<>();
+        final Map<Integer, Long> m_maxSpHandles = new HashMap<>();
+        final List<SettableFuture<Boolean>> m_faultFutures = new ArrayList<>();
+        SettableFuture<Object> m_backpressureFuture = null;
+        long m_bytes = 0;
+        long m_txns = 0;
+
+        boolean isEmpty() {
+            return m_txns == 0 && m_entries.isEmpty();
+        }
+    }
+
+    /**
+     * A segment file together with the highest spHandle it contains for each partition
+     */
+    private static class LogSegment {
+        final long m_id;
+        final File m_file;
+        final Map<Integer, Long> m_maxSpHandles = new HashMap<>();
+        // Written by a previous incarnation and only needed until replay is truncated
+        boolean m_previousIncarnation = false;
+        RandomAccessFile m_raf = null;
+        FileChannel m_fc = null;
+        long m_size;
+
+        LogSegment(long id, File file) {
+            m_id = id;
+            m_file = file;
+            m_size = file.length();
+        }
+
+        void open(Map<Integer, Long> startingSpHandles) throws IOException {
+            m_raf = new RandomAccessFile(m_file, "rw");
+            m_fc = m_raf.getChannel();
+            ByteBuffer header = GroupCommitLogReader.createSegmentHeader(m_id, startingSpHandles);
+            while (header.hasRemaining()) {
+                m_fc.write(header);
+            }
+            m_size = m_fc.position();
+        }
+
+        void close() throws IOException {
+            if (m_fc != null) {
+                m_fc.force(true);
+                m_raf.close();
+                m_fc = null;
+                m_raf = null;
+            }
+        }
+
+        boolean coveredBy(Map<Integer, Long> partitionTxnIds) {
+            for (Map.Entry<Integer, Long> e : m_maxSpHandles.entrySet()) {
+                Long snapshotTxnId = partitionTxnIds.get(e.getKey());
+                if (snapshotTxnId == null || snapshotTxnId < e.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Constructor signature matches the one used by {@link Inits} to load the enterprise command log
+     * @param synchronous        true to release transactions only after they are fsynced
+     * @param fsyncInterval      maximum time in milliseconds between group commits
+     * @param maxTxns            number of pending transactions that forces an early group commit
+     * @param logPath            command log directory
+     * @param snapshotPath       command log snapshot directory, unused by this implementation
+     */
+    public GroupCommitCommandLog(boolean synchronous, int fsyncInterval, int maxTxns,
+                                 String logPath, String snapshotPath) {
+        m_synchronous = synchronous;
+        m_fsyncInterval = Math.max(1, fsyncInterval);
+        m_maxTxns = Math.max(1, maxTxns);
+        m_logDir = new File(logPath);
+    }
+
+    @Override
+    public void init(int logSize, long txnId, int partitionCount, String coreBinding,
+                     Map<Integer, Long> perPartitionTxnId) {
+        start(logSize, perPartitionTxnId);
+    }
+
+    @Override
+    public void initForRejoin(int logSize, long txnId, int partitionCount, boolean isRejoin,
+                              String coreBinding, Map<Integer, Long> perPartitionTxnId) {
+        start(logSize, perPartitionTxnId);
+    }
+
+    private void start(int logSizeMB, Map<Integer, Long> perPartitionTxnId) {
+        m_logSize = logSizeMB * 1024L * 1024L;
+        m_segmentSize = Math.max(MIN_SEGMENT_BYTES, m_logSize / SEGMENTS_PER_LOG);
+
+        if (!m_logDir.exists() && !m_logDir.mkdirs()) {
+            VoltDB.crashLocalVoltDB("Unable to create command log directory " + m_logDir, false, null);
+        }
+        // Segments left by a previous incarnation stay on disk until the first truncation snapshot
+        // after replay covers them. New segments are numbered after them to keep the replay order.
+        long maxId = -1;
+        for (Pair<Long, File> segment : GroupCommitLogReader.listSegments(m_logDir)) {
+            LogSegment previous = new LogSegment(segment.getFirst(), segment.getSecond());
+            previous.m_previousIncarnation = true;
+            m_sealedSegments.add(previous);
+            maxId = Math.max(maxId, segment.getFirst());
+        }
+        m_nextSegmentId = maxId + 1;
+        if (perPartitionTxnId != null) {
+            m_loggedSpHandles.putAll(perPartitionTxnId);
+        }
+        try {
+            rollSegment();
+        } catch (IOException e) {
+            VoltDB.crashLocalVoltDB("Unable to create command log segment in " + m_logDir, true, e);
+        }
+
+        VoltDB.instance().getSnapshotCompletionMonitor().addInterest(this);
+
+        m_lastCommitTime = System.currentTimeMillis();
+        m_lastFsyncTime = m_lastCommitTime;
+        m_throughputWindowStart = m_lastCommitTime;
+        m_writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writerLoop();
+            }
+        }, "Command log group commit");
+        m_writer.setDaemon(true);
+        synchronized (m_lock) {
+            m_initialized = true;
+        }
+        m_writer.start();
+        LOG.info(String.format("Group commit command log started in %s: %s, fsync interval %d ms, " +
+                               "max txns %d, segment size %d MB",
+                               m_logDir, m_synchronous ? "synchronous" : "asynchronous", m_fsyncInterval,
+                               m_maxTxns, m_segmentSize / (1024 * 1024)));
+    }
+
+    @Override
+    public boolean needsInitialization() {
+        synchronized (m_lock) {
+            return !m_initialized;
+        }
+    }
+
+    @Override
+    public ListenableFuture<Object> log(Iv2InitiateTaskMessage message, long spHandle, int[] involvedPartitions,
+                                        DurabilityListener listener, TransactionTask durabilityHandle) {
+        ByteBuffer entry = null;
+        if (message != null) {
+            try {
+                entry = GroupCommitLogReader.serializeInvocation(message, spHandle, involvedPartitions);
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to serialize invocation for the command log", true, e);
+            }
+        }
+
+        synchronized (m_lock) {
+            if (!m_initialized) {
+                // Transactions before initialization are command log replay, already durable in
+                // the previous incarnation's segments. Release them right away.
+                listener.addTransaction(durabilityHandle);
+                listener.processDurabilityChecks(listener.startNewTaskList(listener.getNumberOfTasks()));
+                return m_synchronous ? null : DURABLE_FUTURE;
+            }
+            listener.addTransaction(durabilityHandle);
+            m_pending.m_txns++;
+            m_outstandingTxns++;
+            if (entry != null) {
+                m_pending.m_entries.add(entry);
+                m_pending.m_bytes += entry.remaining();
+                m_outstandingBytes += entry.remaining();
+                Integer partition = TxnEgo.getPartitionId(spHandle);
+                Long max = m_pending.m_maxSpHandles.get(partition);
+                if (max == null || max < spHandle) {
+                    m_pending.m_maxSpHandles.put(partition, spHandle);
+                }
+            }
+            if (m_pending.m_txns >= m_maxTxns) {
+                m_lock.notifyAll();
+            }
+
+            if (m_synchronous) {
+                return null;
+            }
+            if (m_outstandingBytes < MAX_OUTSTANDING_BYTES) {
+                return DURABLE_FUTURE;
+            }
+            if (m_pending.m_backpressureFuture == null) {
+                m_pending.m_backpressureFuture = SettableFuture.create();
+            }
+            return m_pending.m_backpressureFuture;
+        }
+    }
+
+    @Override
+    public SettableFuture<Boolean> logIv2Fault(long writerHSId, Set<Long> survivorHSId, int partitionId,
+                                               long spHandle) {
+        SettableFuture<Boolean> written = SettableFuture.create();
+        ByteBuffer entry = GroupCommitLogReader.serializeFault(writerHSId, survivorHSId, partitionId, spHandle);
+        synchronized (m_lock) {
+            if (!m_initialized || m_shutdown) {
+                written.set(false);
+                return written;
+            }
+            m_pending.m_entries.add(entry);
+            m_pending.m_bytes += entry.remaining();
+            m_outstandingBytes += entry.remaining();
+            m_pending.m_faultFutures.add(written);
+            m_lock.notifyAll();
+        }
+        return written;
+    }
+
+    @Override
+    public void initializeLastDurableUniqueId(DurabilityListener listener, long uniqueId) {
+        synchronized (m_lock) {
+            listener.initializeLastDurableUniqueId(uniqueId);
+        }
+    }
+
+    @Override
+    public void registerDurabilityListener(DurabilityListener durabilityListener) {
+        synchronized (m_lock) {
+            m_listeners.add(durabilityListener);
+        }
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        Thread writer;
+        synchronized (m_lock) {
+            if (m_shutdown) {
+                return;
+            }
+            m_shutdown = true;
+            writer = m_writer;
+            m_lock.notifyAll();
+        }
+        if (writer != null) {
+            writer.join();
+            VoltDB.instance().getSnapshotCompletionMonitor().removeInterest(this);
+        }
+        synchronized (m_sealedSegments) {
+            try {
+                if (m_activeSegment != null) {
+                    m_activeSegment.close();
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to close command log segment " + m_activeSegment.m_file, e);
+            }
+        }
+    }
+
+    private void writerLoop() {
+        while (true) {
+            PendingBatch batch;
+            List<Pair<DurabilityListener, CompletionChecks>> checks = new ArrayList<>();
+            synchronized (m_lock) {
+                long deadline = m_lastCommitTime + m_fsyncInterval;
+                long now = System.currentTimeMillis();
+                while (!m_shutdown && now < deadline && m_pending.m_txns < m_maxTxns
+                        && m_pending.m_faultFutures.isEmpty()) {
+                    try {
+                        m_lock.wait(deadline - now);
+                    } catch (InterruptedException e) {
+                        // Only shutdown stops the writer
+                    }
+                    now = System.currentTimeMillis();
+                }
+                batch = m_pending;
+                m_pending = new PendingBatch();
+                for (DurabilityListener listener : m_listeners) {
+                    checks.add(Pair.of(listener, listener.startNewTaskList(listener.getNumberOfTasks())));
+                }
+                if (batch.isEmpty() && m_shutdown) {
+                    return;
+                }
+            }
+
+            groupCommit(batch);
+
+            synchronized (m_lock) {
+                m_outstandingBytes -= batch.m_bytes;
+                m_outstandingTxns -= batch.m_txns;
+            }
+            for (Pair<DurabilityListener, CompletionChecks> check : checks) {
+                check.getFirst().processDurabilityChecks(check.getSecond());
+            }
+            if (batch.m_backpressureFuture != null) {
+                batch.m_backpressureFuture.set(null);
+            }
+            for (SettableFuture<Boolean> written : batch.m_faultFutures) {
+                written.set(true);
+            }
+        }
+    }
+
+    private void groupCommit(PendingBatch batch) {
+        long now = System.currentTimeMillis();
+        m_lastCommitTime = now;
+        if (!batch.m_entries.isEmpty()) {
+            m_lastFsyncIntervalMs = now - m_lastFsyncTime;
+            m_lastFsyncTime = now;
+            try {
+                ByteBuffer[] buffers = batch.m_entries.toArray(new ByteBuffer[batch.m_entries.size()]);
+                long remaining = batch.m_bytes;
+                while (remaining > 0) {
+                    remaining -= m_activeSegment.m_fc.write(buffers);
+                }
+                long start = System.nanoTime();
+                m_activeSegment.m_fc.force(false);
+                long fsyncNanos = System.nanoTime() - start;
+
+                m_activeSegment.m_size += batch.m_bytes;
+                for (Map.Entry<Integer, Long> e : batch.m_maxSpHandles.entrySet()) {
+                    Long max = m_activeSegment.m_maxSpHandles.get(e.getKey());
+                    if (max == null || max < e.getValue()) {
+                        m_activeSegment.m_maxSpHandles.put(e.getKey(), e.getValue());
+                        m_loggedSpHandles.put(e.getKey(), e.getValue());
+                    }
+                }
+                m_fsyncCount++;
+                m_totalFsyncNanos += fsyncNanos;
+                m_maxFsyncNanos = Math.max(m_maxFsyncNanos, fsyncNanos);
+                m_bytesLogged += batch.m_bytes;
+
+                if (m_activeSegment.m_size >= m_segmentSize) {
+                    rollSegment();
+                }
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to write to command log segment " + m_activeSegment.m_file, true, e);
+            }
+        }
+        m_txnsLogged += batch.m_txns;
+        m_throughputWindowTxns += batch.m_txns;
+        if (now - m_throughputWindowStart >= 1000) {
+            m_txnsPerSecond = m_throughputWindowTxns * 1000 / (now - m_throughputWindowStart);
+            m_throughputWindowStart = now;
+            m_throughputWindowTxns = 0;
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        boolean requestTruncation = false;
+        synchronized (m_sealedSegments) {
+            if (m_activeSegment != null) {
+                m_activeSegment.close();
+                m_sealedSegments.add(m_activeSegment);
+            }
+            long id = m_nextSegmentId++;
+            m_activeSegment = new LogSegment(id, GroupCommitLogReader.segmentFile(m_logDir, id));
+            m_activeSegment.open(m_loggedSpHandles);
+
+            long sealedBytes = 0;
+            for (LogSegment segment : m_sealedSegments) {
+                sealedBytes += segment.m_size;
+            }
+            requestTruncation = sealedBytes >= m_logSize * TRUNCATION_THRESHOLD;
+        }
+        if (requestTruncation && m_initialized) {
+            requestTruncationSnapshot(false);
+        }
+    }
+
+    @Override
+    public CountDownLatch snapshotCompleted(SnapshotCompletionEvent event) {
+        if (event.truncationSnapshot && event.didSucceed) {
+            synchronized (m_sealedSegments) {
+                Iterator<LogSegment> iter = m_sealedSegments.iterator();
+                while (iter.hasNext()) {
+                    LogSegment segment = iter.next();
+                    if (segment.m_previousIncarnation || segment.coveredBy(event.partitionTxnIds)) {
+                        if (!segment.m_file.delete() && segment.m_file.exists()) {
+                            LOG.warn("Failed to delete truncated command log segment " + segment.m_file);
+                        }
+                        iter.remove();
+                    }
+                }
+                m_truncationRequested = false;
+            }
+        }
+        return new CountDownLatch(0);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void requestTruncationSnapshot(final boolean queueIfPending) {
+        synchronized (m_sealedSegments) {
+            if (m_truncationRequested && !queueIfPending) {
+                return;
+            }
+            m_truncationRequested = true;
+        }
+        try {
+            VoltDB.instance().getHostMessenger().getZK().create(VoltZK.request_truncation_snapshot_node, null,
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
+        } catch (KeeperException.NodeExistsException e) {
+            // A request is already outstanding
+        } catch (Exception e) {
+            LOG.warn("Failed to request a command log truncation snapshot", e);
+            synchronized (m_sealedSegments) {
+                m_truncationRequested = false;
+            }
+        }
+    }
+
+    @Override
+    public void populateCommandLogStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        long outstandingBytes;
+        long outstandingTxns;
+        synchronized (m_lock) {
+            outstandingBytes = m_outstandingBytes;
+            outstandingTxns = m_outstandingTxns;
+        }
+        int sealedSegments;
+        synchronized (m_sealedSegments) {
+            sealedSegments = m_sealedSegments.size();
+        }
+        long fsyncCount = m_fsyncCount;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_BYTES.name())] = outstandingBytes;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_TXNS.name())] = outstandingTxns;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name())] = sealedSegments + 1;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.SEGMENT_COUNT.name())] =
+                (int) Math.max(sealedSegments + 1, m_logSize / Math.max(1, m_segmentSize));
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_INTERVAL.name())] = (int) m_lastFsyncIntervalMs;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.TXNS_LOGGED.name())] = m_txnsLogged;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.BYTES_LOGGED.name())] = m_bytesLogged;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.TXNS_PER_SECOND.name())] = m_txnsPerSecond;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_COUNT.name())] = fsyncCount;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.AVG_FSYNC_LATENCY.name())] =
+                fsyncCount == 0 ? 0 : (int) TimeUnit.NANOSECONDS.toMicros(m_totalFsyncNanos / fsyncCount);
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.MAX_FSYNC_LATENCY.name())] =
+                (int) TimeUnit.NANOSECONDS.toMicros(m_maxFsyncNanos);
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.AVG_BATCH_SIZE.name())] =
+                fsyncCount == 0 ? 0 : (int) (m_txnsLogged / fsyncCount);
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return m_synchronous;
+    }
+
+    @Override
+    public boolean canOfferTask() {
+        // Synchronous logging offers the task from the completion checks once it is durable
+        return !m_synchronous;
+    }
+}
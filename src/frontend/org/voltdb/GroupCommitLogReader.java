@@ -0,0 +1,340 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.Pair;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+
+/**
+ * Reads the segments written by {@link GroupCommitCommandLog} and owns the on-disk format.
+ *
+ * A segment starts with a header:
+ * <pre>
+ *   int magic | int version | long segment id | long creation time |
+ *   int partition count | (int partition id | long spHandle) * partition count
+ * </pre>
+ * followed by entries:
+ * <pre>
+ *   int length | int crc32c | byte type | payload
+ * </pre>
+ * The partition map in the header records, for each partition, the last spHandle that was logged
+ * (or covered by a snapshot) before the segment was opened, i.e. where the segment's part of the
+ * log begins. An entry's length covers the type byte and the payload, and the CRC is computed over
+ * the same bytes.
+ * A short or corrupt entry at the end of a segment is treated as a torn group commit and ends the
+ * segment; nothing after it was acknowledged as durable.
+ */
+public class GroupCommitLogReader {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    static final int SEGMENT_MAGIC = 0x56434c47;
+    static final int SEGMENT_VERSION = 1;
+    static final int SEGMENT_HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+    static final int ENTRY_HEADER_BYTES = 4 + 4;
+
+    static final byte ENTRY_INVOCATION = 1;
+    static final byte ENTRY_FAULT = 2;
+
+    private static final String SEGMENT_PREFIX = "group_commit_";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * A single decoded log entry
+     */
+    public static class Entry {
+        public final byte m_type;
+        public final long m_spHandle;
+        public final int m_partitionId;
+        // Only set for invocations, null for single partition transactions
+        public final int[] m_involvedPartitions;
+        public final Iv2InitiateTaskMessage m_invocation;
+
+        Entry(byte type, long spHandle, int partitionId, int[] involvedPartitions,
+              Iv2InitiateTaskMessage invocation) {
+            m_type = type;
+            m_spHandle = spHandle;
+            m_partitionId = partitionId;
+            m_involvedPartitions = involvedPartitions;
+            m_invocation = invocation;
+        }
+
+        public boolean isInvocation() {
+            return m_type == ENTRY_INVOCATION;
+        }
+    }
+
+    private final VoltDbMessageFactory m_factory = new VoltDbMessageFactory();
+    private final List<Pair<Long, File>> m_segments;
+    private int m_nextSegment = 0;
+    private ByteBuffer m_current = null;
+    private File m_currentFile = null;
+
+    public GroupCommitLogReader(File logDir) {
+        m_segments = listSegments(logDir);
+    }
+
+    public boolean hasSegments() {
+        return !m_segments.isEmpty();
+    }
+
+    public int getSegmentCount() {
+        return m_segments.size();
+    }
+
+    /**
+     * @return the last spHandle per partition before the first readable segment, which is where
+     * the log begins, or null if there are no readable segments
+     */
+    public Map<Integer, Long> getStartingSpHandles() throws IOException {
+        for (Pair<Long, File> segment : m_segments) {
+            Map<Integer, Long> startingSpHandles = new TreeMap<>();
+            if (openSegment(segment.getSecond(), startingSpHandles) != null) {
+                return startingSpHandles;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the next entry across all segments in log order, or null at the end of the log
+     */
+    public Entry next() throws IOException {
+        while (true) {
+            if (m_current == null) {
+                if (m_nextSegment >= m_segments.size()) {
+                    return null;
+                }
+                m_currentFile = m_segments.get(m_nextSegment++).getSecond();
+                m_current = openSegment(m_currentFile, null);
+                if (m_current == null) {
+                    continue;
+                }
+            }
+            Entry entry = readEntry(m_current, m_currentFile);
+            if (entry != null) {
+                return entry;
+            }
+            m_current = null;
+        }
+    }
+
+    private static ByteBuffer openSegment(File file, Map<Integer, Long> startingSpHandles) throws IOException {
+        ByteBuffer buf;
+        try (FileInputStream fis = new FileInputStream(file)) {
+            FileChannel fc = fis.getChannel();
+            buf = ByteBuffer.allocate((int) fc.size());
+            while (buf.hasRemaining() && fc.read(buf) >= 0) {}
+            buf.flip();
+        }
+        if (buf.remaining() < SEGMENT_HEADER_BYTES || buf.getInt() != SEGMENT_MAGIC) {
+            LOG.warn("Skipping command log segment " + file + " with a missing or invalid header");
+            return null;
+        }
+        int version = buf.getInt();
+        if (version != SEGMENT_VERSION) {
+            throw new IOException("Unsupported command log segment version " + version + " in " + file);
+        }
+        buf.getLong(); // segment id
+        buf.getLong(); // creation time
+        int partitionCount = buf.getInt();
+        if (partitionCount < 0 || buf.remaining() < partitionCount * (4 + 8L)) {
+            LOG.warn("Skipping command log segment " + file + " with a truncated header");
+            return null;
+        }
+        for (int i = 0; i < partitionCount; i++) {
+            int partition = buf.getInt();
+            long spHandle = buf.getLong();
+            if (startingSpHandles != null) {
+                startingSpHandles.put(partition, spHandle);
+            }
+        }
+        return buf;
+    }
+
+    private Entry readEntry(ByteBuffer buf, File file) throws IOException {
+        if (buf.remaining() < ENTRY_HEADER_BYTES) {
+            return null;
+        }
+        int length = buf.getInt();
+        int crc = buf.getInt();
+        if (length < 1 || length > buf.remaining()) {
+            LOG.warn("Command log segment " + file + " ends with a partial entry, ignoring " +
+                     (buf.remaining() + ENTRY_HEADER_BYTES) + " trailing bytes");
+            return null;
+        }
+        PureJavaCrc32C crc32c = new PureJavaCrc32C();
+        crc32c.update(buf.array(), buf.arrayOffset() + buf.position(), length);
+        if ((int) crc32c.getValue() != crc) {
+            LOG.warn("Command log segment " + file + " has a corrupt entry at offset " +
+                     (buf.position() - ENTRY_HEADER_BYTES) + ", ignoring the rest of the segment");
+            return null;
+        }
+        ByteBuffer entry = buf.slice();
+        entry.limit(length);
+        buf.position(buf.position() + length);
+
+        byte type = entry.get();
+        if (type == ENTRY_INVOCATION) {
+            long spHandle = entry.getLong();
+            int involvedCount = entry.getShort();
+            int[] involved = null;
+            if (involvedCount >= 0) {
+                involved = new int[involvedCount];
+                for (int i = 0; i < involvedCount; i++) {
+                    involved[i] = entry.getInt();
+                }
+            }
+            Iv2InitiateTaskMessage msg = (Iv2InitiateTaskMessage) m_factory.createMessageFromBuffer(entry.slice(), -1);
+            return new Entry(type, spHandle, TxnEgo.getPartitionId(spHandle), involved, msg);
+        } else if (type == ENTRY_FAULT) {
+            entry.getLong(); // writer HSId
+            int partitionId = entry.getInt();
+            long spHandle = entry.getLong();
+            return new Entry(type, spHandle, partitionId, null, null);
+        }
+        throw new IOException("Unknown command log entry type " + type + " in " + file);
+    }
+
+    /**
+     * Delete every segment in the log directory
+     */
+    public static void deleteSegments(File logDir) {
+        for (Pair<Long, File> segment : listSegments(logDir)) {
+            if (!segment.getSecond().delete() && segment.getSecond().exists()) {
+                LOG.warn("Failed to delete command log segment " + segment.getSecond());
+            }
+        }
+    }
+
+    static File segmentFile(File logDir, long id) {
+        return new File(logDir, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @return the segments in the log directory as (segment id, file) pairs in log order
+     */
+    static List<Pair<Long, File>> listSegments(File logDir) {
+        List<Pair<Long, File>> segments = new ArrayList<>();
+        File[] files = logDir.listFiles();
+        if (files == null) {
+            return segments;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            if (!f.isFile() || !name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+                continue;
+            }
+            try {
+                long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                                        name.length() - SEGMENT_SUFFIX.length()));
+                segments.add(Pair.of(id, f));
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring unrecognized file " + f + " in the command log directory");
+            }
+        }
+        Collections.sort(segments, new Comparator<Pair<Long, File>>() {
+            @Override
+            public int compare(Pair<Long, File> o1, Pair<Long, File> o2) {
+                return Long.compare(o1.getFirst(), o2.getFirst());
+            }
+        });
+        return segments;
+    }
+
+    static ByteBuffer createSegmentHeader(long id, Map<Integer, Long> startingSpHandles) {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES + startingSpHandles.size() * (4 + 8));
+        header.putInt(SEGMENT_MAGIC);
+        header.putInt(SEGMENT_VERSION);
+        header.putLong(id);
+        header.putLong(System.currentTimeMillis());
+        header.putInt(startingSpHandles.size());
+        for (Map.Entry<Integer, Long> e : startingSpHandles.entrySet()) {
+            header.putInt(e.getKey());
+            header.putLong(e.getValue());
+        }
+        header.flip();
+        return header;
+    }
+
+    static ByteBuffer serializeInvocation(Iv2InitiateTaskMessage message, long spHandle, int[] involvedPartitions)
+            throws IOException {
+        int length = 1 + 8 + 2 + (involvedPartitions == null ? 0 : involvedPartitions.length * 4)
+                + message.getSerializedSize();
+        ByteBuffer buf = allocateEntry(length, ENTRY_INVOCATION);
+        buf.putLong(spHandle);
+        if (involvedPartitions == null) {
+            buf.putShort((short) -1);
+        } else {
+            buf.putShort((short) involvedPartitions.length);
+            for (int partition : involvedPartitions) {
+                buf.putInt(partition);
+            }
+        }
+        ByteBuffer msgBuf = buf.slice();
+        message.flattenToBuffer(msgBuf);
+        buf.position(buf.position() + msgBuf.position());
+        return finishEntry(buf, length);
+    }
+
+    static ByteBuffer serializeFault(long writerHSId, Set<Long> survivorHSIds, int partitionId, long spHandle) {
+        int length = 1 + 8 + 4 + 8 + 4 + survivorHSIds.size() * 8;
+        ByteBuffer buf = allocateEntry(length, ENTRY_FAULT);
+        buf.putLong(writerHSId);
+        buf.putInt(partitionId);
+        buf.putLong(spHandle);
+        buf.putInt(survivorHSIds.size());
+        for (long hsId : survivorHSIds) {
+            buf.putLong(hsId);
+        }
+        return finishEntry(buf, length);
+    }
+
+    private static ByteBuffer allocateEntry(int length, byte type) {
+        ByteBuffer buf = ByteBuffer.allocate(ENTRY_HEADER_BYTES + length);
+        buf.putInt(length);
+        buf.putInt(0); // crc placeholder
+        buf.put(type);
+        return buf;
+    }
+
+    private static ByteBuffer finishEntry(ByteBuffer buf, int length) {
+        assert(buf.position() == buf.capacity());
+        PureJavaCrc32C crc = new PureJavaCrc32C();
+        crc.update(buf.array(), ENTRY_HEADER_BYTES, length);
+        buf.putInt(4, (int) crc.getValue());
+        buf.flip();
+        return buf;
+    }
+}
@@ -95,6 +95,21 @@ public class PlannerStatsCollector extends StatsSource {
     long m_cacheMisses = 0;
     long m_lastCacheMisses = 0;
 
+    /**
+     * Cache 1 evictions, summed over the caches of every catalog
+     */
+    long m_cache1Evictions = 0;
+    long m_lastCache1Evictions = 0;
+    // Eviction count last reported by the current cache
+    long m_reportedCache1Evictions = 0;
+
+    /**
+     * Cache 2 evictions, summed over the caches of every catalog
+     */
+    long m_cache2Evictions = 0;
+    long m_lastCache2Evictions = 0;
+    long m_reportedCache2Evictions = 0;
+
     /**
      * Time of last planning start
      */
@@ -195,6 +210,23 @@ public class PlannerStatsCollector extends StatsSource {
      * @param partitionId  partition id
      */
     public void endStatsCollection(long cache1Size, long cache2Size, CacheUse cacheUse, long partitionId) {
+        endStatsCollection(cache1Size, cache2Size, m_reportedCache1Evictions, m_reportedCache2Evictions,
+                cacheUse, partitionId);
+    }
+
+    /**
+     * Called after planning or failing to plan. Records timer and cache stats.
+     *
+     * @param cache1Size       number of entries in level 1 cache
+     * @param cache2Size       number of entries in level 2 cache
+     * @param cache1Evictions  number of entries evicted from level 1 cache so far, starts over
+     *                         when the planner switches to the cache of another catalog
+     * @param cache2Evictions  number of entries evicted from level 2 cache so far, likewise
+     * @param cacheUse         where the planned statement came from
+     * @param partitionId      partition id
+     */
+    public void endStatsCollection(long cache1Size, long cache2Size, long cache1Evictions, long cache2Evictions,
+            CacheUse cacheUse, long partitionId) {
         if (m_currentStartTime != null) {
             long delta = System.nanoTime() - m_currentStartTime;
             if (delta < 0) {
@@ -215,6 +247,10 @@ public class PlannerStatsCollector extends StatsSource {
 
         m_cache1Level = cache1Size;
         m_cache2Level = cache2Size;
+        m_cache1Evictions += evictionsSince(cache1Evictions, m_reportedCache1Evictions);
+        m_reportedCache1Evictions = cache1Evictions;
+        m_cache2Evictions += evictionsSince(cache2Evictions, m_reportedCache2Evictions);
+        m_reportedCache2Evictions = cache2Evictions;
 
         switch(cacheUse) {
           case HIT1:
@@ -235,6 +271,13 @@ public class PlannerStatsCollector extends StatsSource {
         m_partitionId = partitionId;
     }
 
+    /**
+     * A count lower than the last one comes from a new cache, which started at zero
+     */
+    private static long evictionsSince(long evictions, long lastEvictions) {
+        return evictions < lastEvictions ? evictions : evictions - lastEvictions;
+    }
+
     /**
      * Update the rowValues array with the latest statistical information.
      * This method is overrides the super class version
@@ -254,6 +297,8 @@ public class PlannerStatsCollector extends StatsSource {
         long cache1Hits  = m_cache1Hits;
         long cache2Hits  = m_cache2Hits;
         long cacheMisses = m_cacheMisses;
+        long cache1Evictions = m_cache1Evictions;
+        long cache2Evictions = m_cache2Evictions;
         long failureCount = m_failures;
 
         if (m_interval) {
@@ -280,6 +325,12 @@ public class PlannerStatsCollector extends StatsSource {
             cacheMisses = m_cacheMisses - m_lastCacheMisses;
             m_lastCacheMisses = m_cacheMisses;
 
+            cache1Evictions = m_cache1Evictions - m_lastCache1Evictions;
+            m_lastCache1Evictions = m_cache1Evictions;
+
+            cache2Evictions = m_cache2Evictions - m_lastCache2Evictions;
+            m_lastCache2Evictions = m_cache2Evictions;
+
             failureCount = m_failures - m_lastFailures;
             m_lastFailures = m_failures;
 
@@ -302,6 +353,8 @@ public class PlannerStatsCollector extends StatsSource {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] = 0L;
         }
         rowValues[columnNameToIndex.get("FAILURES")] = failureCount;
+        rowValues[columnNameToIndex.get("CACHE1_EVICTIONS")] = cache1Evictions;
+        rowValues[columnNameToIndex.get("CACHE2_EVICTIONS")] = cache2Evictions;
     }
 
     /**
@@ -322,6 +375,8 @@ public class PlannerStatsCollector extends StatsSource {
         columns.add(new ColumnInfo("PLAN_TIME_MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("PLAN_TIME_AVG", VoltType.BIGINT));
         columns.add(new ColumnInfo("FAILURES",      VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE1_EVICTIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE2_EVICTIONS", VoltType.BIGINT));
     }
 
     @Override
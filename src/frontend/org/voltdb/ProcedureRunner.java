@@ -83,6 +83,12 @@ public class ProcedureRunner {
         HOST_TRACE_ENABLED = log.isTraceEnabled();
     }
 
+    // Hand single partition read results to the client interface in pooled direct buffers, off by default
+    static final boolean POOLED_RESULTS_ENABLED = Boolean.getBoolean("POOLED_RESULTS");
+    // Smallest single statement read result that is handed to the client interface in a pooled direct
+    // buffer, smaller results are cheaper to copy along with the rest of the response.
+    static final int POOLED_RESULT_MIN_SIZE = Integer.getInteger("POOLED_RESULT_MIN_SIZE", 4096);
+
     // SQL statement queue info
     //
     // This must be less than or equal to MAX_BATCH_COUNT in src/ee/execution/VoltDBEngine.h
@@ -443,7 +449,10 @@ public class ProcedureRunner {
                     if (getNonVoltDBBackendIfExists() == null) {
                         m_batch.addAll(m_sqlStmts);
                         results = voltExecuteSQL(true);
-                        results = convertTablesToHeapBuffers(results);
+                        if (!canSendResultFromPool(results) ||
+                                !ResultBufferPool.convertToPooledBuffer(results[0])) {
+                            results = convertTablesToHeapBuffers(results);
+                        }
                     }
                 } catch (SerializableException ex) {
                     retval = getErrorResponse(m_procedureName,
@@ -1339,6 +1348,19 @@ public class ProcedureRunner {
         return results;
     }
 
+    /**
+     * The result of a single partition read goes back to a client interface on this host without being
+     * serialized, so instead of a heap copy that the client interface copies again into network buffers,
+     * it can be copied out of the EE into a pooled buffer that is written to the client socket as is.
+     */
+    private boolean canSendResultFromPool(VoltTable[] results) {
+        return POOLED_RESULTS_ENABLED && m_isReadOnly && m_isSinglePartition &&
+                results.length == 1 &&
+                results[0].getSerializedSize() >= POOLED_RESULT_MIN_SIZE &&
+                CoreUtils.getHostIdFromHSId(m_txnState.initiatorHSId) ==
+                        CoreUtils.getHostIdFromHSId(m_site.getCorrespondingSiteId());
+    }
+
     VoltTable[] executeQueriesInIndividualBatches(List<QueuedSQL> batch, boolean finalTask) {
         assert (batch.size() > 0);
 
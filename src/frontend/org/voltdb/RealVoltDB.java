@@ -189,6 +189,7 @@ import org.voltdb.sysprocs.saverestore.SnapshotUtil.Snapshot;
 import org.voltdb.utils.CLibrary;
 import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.CatalogUtil.CatalogAndDeployment;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.FailedLoginCounter;
 import org.voltdb.utils.HTTPAdminListener;
 import org.voltdb.utils.InMemoryJarfile;
@@ -1584,8 +1585,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             if (m_configuredReplicationFactor == 0) {
                 consoleLog.warn("This is not a highly available cluster. K-Safety is set to 0.");
             }
-            boolean usingCommandLog = m_config.m_isEnterprise
-                    && (m_catalogContext.cluster.getLogconfig() != null)
+            boolean usingCommandLog = (m_catalogContext.cluster.getLogconfig() != null)
                     && (m_catalogContext.cluster.getLogconfig().get("log") != null)
                     && m_catalogContext.cluster.getLogconfig().get("log").getEnabled();
             if (!usingCommandLog) {
@@ -2587,15 +2587,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
              * after the first one is found.
              */
             if (!m_config.m_isEnterprise) {
-                boolean shutdownDeployment = false;
                 boolean shutdownAction = false;
 
                 // check license features for community version
-                if ((deployment.getCommandlog() != null) && (deployment.getCommandlog().isEnabled())) {
-                    consoleLog.error("Command logging is not supported " +
-                            "in the community edition of VoltDB.");
-                    shutdownDeployment = true;
-                }
                 if (deployment.getDr() != null && deployment.getDr().getRole() != DrRoleType.NONE) {
                     consoleLog.warn("Database Replication is not supported " +
                             "in the community edition of VoltDB.");
@@ -2608,21 +2602,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                 }
 
                 // if the process needs to stop, try to be helpful
-                if (shutdownAction || shutdownDeployment) {
-                    String msg = "This process will exit. Please run VoltDB with ";
-                    if (shutdownDeployment) {
-                        msg += "a deployment file compatible with the community edition";
-                    }
-                    if (shutdownDeployment && shutdownAction) {
-                        msg += " and ";
-                    }
-
-                    if (shutdownAction && !shutdownDeployment) {
-                        msg += "the CREATE start action";
-                    }
-                    msg += ".";
-
-                    VoltDB.crashLocalVoltDB(msg, false, null);
+                if (shutdownAction) {
+                    VoltDB.crashLocalVoltDB("This process will exit. Please run VoltDB with the CREATE start action.",
+                            false, null);
                 }
             }
 
@@ -2664,6 +2646,15 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                         m_config.m_queryTimeout = 0;
                     }
                 }
+                if (sysType.getCompression() != null) {
+                    SystemSettingsType.Compression compression = sysType.getCompression();
+                    CompressionCodec.configure(CompressionCodec.valueOf(compression.getSnapshot().name()),
+                                               CompressionCodec.valueOf(compression.getPbd().name()),
+                                               CompressionCodec.valueOf(compression.getRejoin().name()));
+                    hostLog.info("Compression set to " + CompressionCodec.forSnapshots() + " for snapshots, " +
+                                 CompressionCodec.forPBD() + " for persistent binary deques and " +
+                                 CompressionCodec.forRejoin() + " for rejoin");
+                }
             }
 
             // log a warning on console log if security setting is turned off, like durability warning.
@@ -2814,15 +2805,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
              * after the first one is found.
              */
             if (!config.m_isEnterprise) {
-                boolean shutdownDeployment = false;
                 boolean shutdownAction = false;
 
                 // check license features for community version
-                if ((deployment.getCommandlog() != null) && (deployment.getCommandlog().isEnabled())) {
-                    consoleLog.error("Command logging is not supported " +
-                            "in the community edition of VoltDB.");
-                    shutdownDeployment = true;
-                }
                 if (m_config.m_startAction == StartAction.JOIN) {
                     consoleLog.error("Start action \"" + m_config.m_startAction.getClass().getSimpleName() +
                             "\" is not supported in the community edition of VoltDB.");
@@ -2830,21 +2815,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                 }
 
                 // if the process needs to stop, try to be helpful
-                if (shutdownAction || shutdownDeployment) {
-                    String msg = "This process will exit. Please run VoltDB with ";
-                    if (shutdownDeployment) {
-                        msg += "a deployment file compatible with the community edition";
-                    }
-                    if (shutdownDeployment && shutdownAction) {
-                        msg += " and ";
-                    }
-
-                    if (shutdownAction && !shutdownDeployment) {
-                        msg += "the CREATE start action";
-                    }
-                    msg += ".";
-
-                    VoltDB.crashLocalVoltDB(msg, false, null);
+                if (shutdownAction) {
+                    VoltDB.crashLocalVoltDB("This process will exit. Please run VoltDB with the CREATE start action.",
+                            false, null);
                 }
             }
             return new ReadDeploymentResults(deploymentBytes, deployment);
@@ -3587,6 +3560,10 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
 
                 shutdownInitiators();
 
+                if (m_commandLog != null) {
+                    m_commandLog.shutdown();
+                }
+
                 try {
                     LargeBlockManager.shutdown();
                 }
@@ -4272,7 +4249,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         try {
             final ZooKeeper zk = m_messenger.getZK();
             boolean logRecoveryCompleted = false;
-            if (getCommandLog().getClass().getName().equals("org.voltdb.CommandLogImpl")) {
+            if (getCommandLog().isEnabled()) {
                 String requestNode = zk.create(VoltZK.request_truncation_snapshot_node, null,
                         Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
                 if (m_rejoinTruncationReqId == null) {
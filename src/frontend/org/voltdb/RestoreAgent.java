@@ -486,7 +486,7 @@ SnapshotCompletionInterest, Promotable
         m_action = action;
         m_hostMessenger = hostMessenger;
         m_zk = hostMessenger.getZK();
-        m_clEnabled = VoltDB.instance().getConfig().m_isEnterprise ? clEnabled : false;
+        m_clEnabled = clEnabled;
         m_clPath = clPath;
         m_clSnapshotPath = clSnapshotPath;
         m_snapshotPath = snapshotPath;
@@ -516,6 +516,14 @@ SnapshotCompletionInterest, Promotable
                                                                     m_hostMessenger,
                                                                     m_clPath,
                                                                     m_liveHosts);
+            } else if (m_clEnabled) {
+                m_replayAgent = new DefaultCommandLogReinitiator(m_hostId,
+                                                                 startAction,
+                                                                 m_hostMessenger,
+                                                                 m_clPath,
+                                                                 m_liveHosts);
+            } else {
+                m_replayAgent = new DefaultCommandLogReinitiator();
             }
         } catch (Exception e) {
             VoltDB.crashGlobalVoltDB("Unable to instantiate command log reinitiator",
@@ -1392,10 +1400,8 @@ SnapshotCompletionInterest, Promotable
          * they can be set individually
          */
         Map<String, SnapshotPathType> paths = new HashMap<String, SnapshotPathType>();
-        if (VoltDB.instance().getConfig().m_isEnterprise) {
-            if (m_clSnapshotPath != null) {
-                paths.put(m_clSnapshotPath, SnapshotPathType.SNAP_CL);
-            }
+        if (m_clSnapshotPath != null) {
+            paths.put(m_clSnapshotPath, SnapshotPathType.SNAP_CL);
         }
         if (m_snapshotPath != null) {
             paths.put(m_snapshotPath, SnapshotPathType.SNAP_AUTO);
@@ -0,0 +1,155 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+
+import sun.misc.Cleaner;
+
+/**
+ * Direct buffers that carry single partition read results from the EE to the client socket.
+ *
+ * The EE result buffer is reused by the next transaction so the result has to be copied out of it,
+ * but the copy is made in one of these buffers instead of the heap. The client interface then queues
+ * the buffer on the client's write stream as is, rather than copying the table a second time into
+ * network buffers. The buffer is only wrapped in a container once the write stream takes it over,
+ * a response that is dropped before that (hangup, failover) leaves its buffer to the GC.
+ *
+ * Every buffer the pool allocates is counted until the GC frees it, whether it is idle in the pool
+ * or held by a response. Once the count reaches the limit, results are copied to the heap instead.
+ */
+final class ResultBufferPool {
+    // Buffers kept per power of 2 size, the rest are left to the GC when they are released
+    private static final int BUFFERS_PER_SIZE = Integer.getInteger("RESULT_BUFFERS_PER_SIZE", 32);
+    // Limit on the direct memory held by pooled and in flight result buffers
+    static final long MAX_ALLOCATED_BYTES = Long.getLong("RESULT_BUFFERS_MAX_BYTES", 64L * 1024 * 1024);
+
+    private static final AtomicLong s_allocatedBytes = new AtomicLong();
+
+    private static final ConcurrentHashMap<Integer, ArrayBlockingQueue<ByteBuffer>> s_buffers =
+            new ConcurrentHashMap<>();
+
+    private ResultBufferPool() {}
+
+    /**
+     * Copy a table that is backed by a direct buffer cached from the EE into a pooled buffer.
+     * @return true if the table is backed by a pooled buffer, false if no buffer was free and
+     * allocating one would exceed {@link #MAX_ALLOCATED_BYTES}
+     */
+    static boolean convertToPooledBuffer(VoltTable table) {
+        final ByteBuffer cached = table.m_buffer;
+        if (table.m_pooledBuffer) {
+            return true;
+        }
+        if (!cached.isDirect()) {
+            return false;
+        }
+        final int size = cached.limit();
+        ByteBuffer pooled = buffersFor(size).poll();
+        if (pooled == null) {
+            final int capacity = roundToPowerOf2(size);
+            if (s_allocatedBytes.addAndGet(capacity) > MAX_ALLOCATED_BYTES) {
+                s_allocatedBytes.addAndGet(-capacity);
+                return false;
+            }
+            pooled = ByteBuffer.allocateDirect(capacity);
+            Cleaner.create(pooled, new Deallocator(capacity));
+        }
+        pooled.clear();
+        pooled.limit(size);
+        cached.position(0);
+        pooled.put(cached);
+        table.m_buffer = pooled;
+        table.m_pooledBuffer = true;
+        return true;
+    }
+
+    /**
+     * @return bytes of direct memory held by buffers the pool allocated and the GC hasn't freed yet
+     */
+    static long getAllocatedBytes() {
+        return s_allocatedBytes.get();
+    }
+
+    /**
+     * Hand over the pooled buffer of the last result table of a response. The table must not be
+     * used anymore once the returned container has been discarded.
+     * @return container with the serialized table from position 0 to the limit, or null if the
+     * last result table isn't backed by a pooled buffer
+     */
+    static BBContainer takeResult(ClientResponseImpl response) {
+        final VoltTable[] results = response.getResults();
+        if (results == null || results.length == 0) {
+            return null;
+        }
+        final VoltTable table = results[results.length - 1];
+        if (!table.m_pooledBuffer) {
+            return null;
+        }
+        table.m_pooledBuffer = false;
+        final ByteBuffer pooled = table.m_buffer;
+        if (!pooled.isDirect()) {
+            // The table has been rewritten into another buffer since
+            return null;
+        }
+        pooled.position(0);
+        return new BBContainer(pooled) {
+            @Override
+            public void discard() {
+                checkDoubleFree();
+                buffersFor(pooled.capacity()).offer(pooled);
+            }
+        };
+    }
+
+    private static ArrayBlockingQueue<ByteBuffer> buffersFor(int size) {
+        final Integer bucket = roundToPowerOf2(size);
+        ArrayBlockingQueue<ByteBuffer> buffers = s_buffers.get(bucket);
+        if (buffers == null) {
+            buffers = new ArrayBlockingQueue<>(BUFFERS_PER_SIZE);
+            final ArrayBlockingQueue<ByteBuffer> existing = s_buffers.putIfAbsent(bucket, buffers);
+            if (existing != null) {
+                buffers = existing;
+            }
+        }
+        return buffers;
+    }
+
+    private static class Deallocator implements Runnable {
+        private final int m_size;
+
+        Deallocator(int size) {
+            m_size = size;
+        }
+
+        @Override
+        public void run() {
+            s_allocatedBytes.addAndGet(-m_size);
+        }
+    }
+
+    private static int roundToPowerOf2(int size) {
+        final int rounded = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        return rounded < 0 ? size : rounded;
+    }
+}
@@ -42,6 +42,7 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
     private final File m_file;
     private final FileChannel m_fc;
     private final RandomAccessFile m_ras;
+    private final SnapshotFormat m_format;
     private long m_bytesWritten = 0;
     private Runnable m_onCloseTask;
     private boolean m_needsFinalClose;
@@ -77,11 +78,31 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
 
     public SimpleFileSnapshotDataTarget(
             File file, boolean needsFinalClose) throws IOException {
+        this(file, needsFinalClose, SnapshotFormat.CSV, null);
+    }
+
+    /**
+     * @param header bytes written at the start of the file before any data, or null
+     */
+    public SimpleFileSnapshotDataTarget(
+            File file, boolean needsFinalClose, SnapshotFormat format, byte[] header) throws IOException {
         m_file = file;
         m_tempFile = new File(m_file.getParentFile(), m_file.getName() + ".incomplete");
         m_ras = new RandomAccessFile(m_tempFile, "rw");
         m_fc = m_ras.getChannel();
         m_needsFinalClose = needsFinalClose;
+        m_format = format;
+        if (header != null) {
+            final ByteBuffer headerBuf = ByteBuffer.wrap(header);
+            try {
+                while (headerBuf.hasRemaining()) {
+                    m_bytesWritten += m_fc.write(headerBuf);
+                }
+            } catch (IOException e) {
+                m_ras.close();
+                throw e;
+            }
+        }
 
         m_es = CoreUtils.getListeningSingleThreadExecutor("Snapshot write thread for " + m_file);
         ScheduledFuture<?> syncTask = null;
@@ -211,7 +232,7 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
 
     @Override
     public SnapshotFormat getFormat() {
-        return SnapshotFormat.CSV;
+        return m_format;
     }
 
     @Override
@@ -276,6 +276,9 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
     }
 
     private static final long INITIATION_RESPONSE_TIMEOUT_MS = 20 * 60 * 1000;
+    // Truncation snapshots only write the tables modified since the previous truncation snapshot
+    private static final boolean INCREMENTAL_TRUNCATION_SNAPSHOTS =
+            Boolean.getBoolean("INCREMENTAL_TRUNCATION_SNAPSHOTS");
     // Tracks when the last @SnapshotSave call was issued.
     // Prevents two @SnapshotSave calls being issued back to back.
     // This is reset when a response is received for the initiation.
@@ -692,6 +695,9 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
             String sData = "";
             JSONObject jsData = new JSONObject();
             jsData.put("truncReqId", truncReqId);
+            if (INCREMENTAL_TRUNCATION_SNAPSHOTS) {
+                jsData.put(SnapshotUtil.JSON_INCREMENTAL, true);
+            }
             sData = jsData.toString();
             jsObj.put(SnapshotUtil.JSON_PATH, VoltDB.instance().getCommandLogSnapshotPath() );
             jsObj.put(SnapshotUtil.JSON_NONCE, nonce);
@@ -254,7 +254,8 @@ public class SnapshotDeleteAgent extends OpsAgent
                     !pathname.getName().endsWith(".digest") &&
                     !pathname.getName().endsWith(".jar") &&
                     !pathname.getName().endsWith(SnapshotUtil.HASH_EXTENSION) &&
-                    !pathname.getName().endsWith(SnapshotUtil.COMPLETION_EXTENSION)) {
+                    !pathname.getName().endsWith(SnapshotUtil.COMPLETION_EXTENSION) &&
+                    !pathname.getName().endsWith(SnapshotUtil.BASE_EXTENSION)) {
                     return false;
                 }
 
@@ -45,7 +45,9 @@ import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.exceptions.InterruptException;
 import org.voltdb.iv2.TxnEgo;
 import org.voltdb.sysprocs.saverestore.CSVSnapshotWritePlan;
+import org.voltdb.sysprocs.saverestore.ColumnarSnapshotWritePlan;
 import org.voltdb.sysprocs.saverestore.HashinatorSnapshotData;
+import org.voltdb.sysprocs.saverestore.IncrementalSnapshotTracker;
 import org.voltdb.sysprocs.saverestore.IndexSnapshotWritePlan;
 import org.voltdb.sysprocs.saverestore.NativeSnapshotWritePlan;
 import org.voltdb.sysprocs.saverestore.SnapshotPathType;
@@ -211,6 +213,9 @@ public class SnapshotSaveAPI
             }
             m_partitionLastSeenTransactionIds.put(partitionId, partitionTxnId);
             m_remoteDataCenterLastIds.put(partitionId, perSiteRemoteDataCenterDrIds);
+            if (format == SnapshotFormat.NATIVE) {
+                IncrementalSnapshotTracker.recordGenerations(context);
+            }
             m_isTruncation = finalJsData != null && finalJsData.has("truncReqId");
         }
 
@@ -500,6 +505,9 @@ public class SnapshotSaveAPI
         else if (format == SnapshotFormat.CSV) {
             plan = new CSVSnapshotWritePlan();
         }
+        else if (format == SnapshotFormat.COLUMNAR) {
+            plan = new ColumnarSnapshotWritePlan();
+        }
         else if (format == SnapshotFormat.STREAM) {
             plan = new StreamSnapshotWritePlan();
         }
@@ -17,7 +17,6 @@
 package org.voltdb;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
@@ -258,13 +257,12 @@ public class SnapshotScanAgent extends OpsAgent
                 }
                 if (f.canRead()) {
                     try {
-                        FileInputStream savefile_input = new FileInputStream(f);
+                        TableSaveFile savefile =
+                            new TableSaveFile(
+                                    f,
+                                    1,
+                                    null);
                         try {
-                            TableSaveFile savefile =
-                                new TableSaveFile(
-                                        savefile_input,
-                                        1,
-                                        null);
                             String partitions = "";
 
                             for (int partition : savefile.getPartitionIds()) {
@@ -298,10 +296,8 @@ public class SnapshotScanAgent extends OpsAgent
                                     "SUCCESS",
                                     ""
                                     ));
-                        } catch (IOException e) {
-                            SNAP_LOG.warn(e);
                         } finally {
-                            savefile_input.close();
+                            savefile.close();
                         }
                     } catch (IOException e) {
                         SNAP_LOG.warn(e);
@@ -56,7 +56,7 @@ import org.voltdb.iv2.SnapshotTask;
 import org.voltdb.rejoin.StreamSnapshotDataTarget.StreamSnapshotTimeoutException;
 import org.voltdb.sysprocs.saverestore.SnapshotPredicates;
 import org.voltdb.utils.CatalogUtil;
-import org.voltdb.utils.CompressionService;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.MiscUtils;
 
 import com.google_voltpatches.common.collect.ImmutableMap;
@@ -148,7 +148,7 @@ public class SnapshotSiteProcessor {
      */
     public static final int m_snapshotBufferLength = (1024 * 1024 * 2) + Short.MAX_VALUE;
     public static final int m_snapshotBufferCompressedLen =
-        CompressionService.maxCompressedLength(m_snapshotBufferLength);
+        CompressionCodec.maxCompressedLengthOfAny(m_snapshotBufferLength);
 
     /**
      * Limit the number of buffers that are outstanding at any given time
@@ -116,6 +116,7 @@ public class SnapshotStatus extends StatsSource {
         columns.add(new ColumnInfo("THROUGHPUT", VoltType.FLOAT));
         columns.add(new ColumnInfo("RESULT", VoltType.STRING));
         columns.add(new ColumnInfo("TYPE", VoltType.STRING));
+        columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
     }
 
     @SuppressWarnings("unchecked")
@@ -145,6 +146,7 @@ public class SnapshotStatus extends StatsSource {
         rowValues[columnNameToIndex.get("THROUGHPUT")] = throughput;
         rowValues[columnNameToIndex.get("RESULT")] = t.error == null ? "SUCCESS" : "FAILURE";
         rowValues[columnNameToIndex.get("TYPE")] = getSnapshotType(s.path);
+        rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = t.bytesWritten();
         super.updateStatsRow(rowKey, rowValues);
     }
 
@@ -0,0 +1,122 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltcore.utils.CoreUtils;
+
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Threads that write snapshot data to files. Each {@link DefaultSnapshotDataTarget} is assigned to a
+ * single writer for its lifetime so the writes to a file stay in order, and the files of a snapshot
+ * are spread across the writers so that fast storage isn't limited by a single writing thread.
+ *
+ * A new target goes to the writer with the fewest bytes waiting to be written, then the fewest open
+ * targets, so a writer stuck behind a large table doesn't get the next ones.
+ */
+public class SnapshotWriterPool {
+    public static final int SNAPSHOT_WRITER_THREADS = Integer.getInteger("SNAPSHOT_WRITER_THREADS",
+            Math.max(1, Math.min(4, CoreUtils.availableProcessors() / 4)));
+
+    private static final SnapshotWriterPool s_instance = new SnapshotWriterPool(SNAPSHOT_WRITER_THREADS);
+
+    public static SnapshotWriterPool instance() {
+        return s_instance;
+    }
+
+    public static class Writer {
+        final int m_index;
+        final ListeningExecutorService m_es;
+        // Bytes submitted to this writer that haven't been written yet
+        private final AtomicLong m_pendingBytes = new AtomicLong();
+        private final AtomicInteger m_openTargets = new AtomicInteger();
+        private final AtomicLong m_bytesWritten = new AtomicLong();
+
+        private Writer(int index, ListeningExecutorService es) {
+            m_index = index;
+            m_es = es;
+        }
+
+        void queued(long bytes) {
+            m_pendingBytes.addAndGet(bytes);
+        }
+
+        void written(long queuedBytes, long writtenBytes) {
+            m_pendingBytes.addAndGet(-queuedBytes);
+            m_bytesWritten.addAndGet(writtenBytes);
+        }
+
+        public int getIndex() {
+            return m_index;
+        }
+
+        public long getPendingBytes() {
+            return m_pendingBytes.get();
+        }
+
+        public int getOpenTargets() {
+            return m_openTargets.get();
+        }
+
+        public long getBytesWritten() {
+            return m_bytesWritten.get();
+        }
+    }
+
+    private final Writer[] m_writers;
+
+    SnapshotWriterPool(int threads) {
+        m_writers = new Writer[Math.max(1, threads)];
+        for (int i = 0; i < m_writers.length; i++) {
+            m_writers[i] = new Writer(i, CoreUtils.getListeningSingleThreadExecutor("Snapshot write service " + i));
+        }
+    }
+
+    /**
+     * Pick the writer for a new target. The target must give it back with {@link #release(Writer)}
+     * once it is closed.
+     */
+    public synchronized Writer assign() {
+        Writer best = m_writers[0];
+        for (int i = 1; i < m_writers.length; i++) {
+            final Writer w = m_writers[i];
+            final long pending = w.getPendingBytes();
+            if (pending < best.getPendingBytes() ||
+                    (pending == best.getPendingBytes() && w.getOpenTargets() < best.getOpenTargets())) {
+                best = w;
+            }
+        }
+        best.m_openTargets.incrementAndGet();
+        return best;
+    }
+
+    public void release(Writer writer) {
+        writer.m_openTargets.decrementAndGet();
+    }
+
+    public int getWriterCount() {
+        return m_writers.length;
+    }
+
+    Writer getWriter(int index) {
+        return m_writers[index];
+    }
+}
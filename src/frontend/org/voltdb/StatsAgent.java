@@ -549,6 +549,9 @@ public class StatsAgent extends OpsAgent
         case REBALANCE:
             stats = collectStats(StatsSelector.REBALANCE, interval);
             break;
+        case REJOIN:
+            stats = collectStats(StatsSelector.REJOIN, interval);
+            break;
         case KSAFETY:
             stats = collectStats(StatsSelector.KSAFETY, interval);
             break;
@@ -56,6 +56,7 @@ public enum StatsSelector {
     TOPO,           // return leader and site info for iv2
     TTL,            // return time to live info
     REBALANCE,      // return elastic rebalance progress
+    REJOIN,         // return the backlog and replay progress of the rejoin task logs
     KSAFETY,        // return ksafety coverage information
     CPU,            // return CPU Stats
     GC,             // return GC Stats
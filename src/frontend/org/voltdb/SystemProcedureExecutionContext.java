@@ -120,5 +120,11 @@ public interface SystemProcedureExecutionContext {
     Pair<Long, int[]> tableStreamSerializeMore(int tableId, TableStreamType type,
                                                List<DBBPool.BBContainer> outputBuffers);
 
+    /**
+     * @return generation of a persistent table, equal generations mean the table was not modified
+     * in between. -1 if the table doesn't exist.
+     */
+    public long getTableGeneration(int tableId);
+
     public InitiatorMailbox getInitiatorMailbox();
 }
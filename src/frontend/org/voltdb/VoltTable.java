@@ -146,6 +146,9 @@ public final class VoltTable extends VoltTableRow implements JSONString {
     // cache column indexes for column names used for lookup
     private HashMap<String,Integer> m_columnNameIndexMap;
 
+    // set when m_buffer was taken from the server's ResultBufferPool
+    boolean m_pooledBuffer = false;
+
     // JSON KEYS FOR SERIALIZATION
     static final String JSON_NAME_KEY = "name";
     static final String JSON_TYPE_KEY = "type";
@@ -28,6 +28,8 @@ import org.voltdb.client.VoltBulkLoader.BulkLoaderFailureCallBack;
 import org.voltdb.client.VoltBulkLoader.BulkLoaderSuccessCallback;
 import org.voltdb.client.VoltBulkLoader.VoltBulkLoader;
 
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
 /**
  *  <p>
  *  A <code>Client</code> that connects to one or more nodes in a volt cluster
@@ -153,6 +155,34 @@ public interface Client {
     public boolean callProcedureWithTimeout(ProcedureCallback callback, int queryTimeout, String procName, Object... parameters)
     throws IOException, NoConnectionsException;
 
+    /**
+     * <p>Asynchronously invoke a procedure and get a future for its response instead of providing a
+     * {@link ProcedureCallback}. The future is completed on the executor set with
+     * {@link ClientConfig#setResponseExecutor(java.util.concurrent.Executor)}, not on the network
+     * thread, so the work done when it completes doesn't hold up other responses.</p>
+     *
+     * <p>This call never blocks. When the call can't be sent right away, because the rate limits
+     * or max outstanding transactions of the client are reached or because of backpressure from the
+     * cluster (see {@link ClientStatusListenerExt#backpressure(boolean)}), it is held by the client
+     * and sent as soon as that clears. A call that is held longer than the procedure call timeout
+     * completes with a {@link ClientResponse#CONNECTION_TIMEOUT} response.</p>
+     *
+     * @param procName class name (not qualified by package) of the procedure to execute.
+     * @param parameters vararg list of procedure's parameter values.
+     * @return future that will be set to the response of the call, whatever its status. It fails
+     * with {@link NoConnectionsException} if the client is not connected to any servers.
+     */
+    public ListenableFuture<ClientResponse> callProcedureAsync(String procName, Object... parameters);
+
+    /**
+     * <p>Create a {@link ProcedureBatch} to send many procedure calls at once. The calls of a batch that
+     * are routed to the same server are written to it together, which is cheaper than invoking them one
+     * by one when an application issues many small calls.</p>
+     *
+     * @return an empty batch that sends its calls through this client.
+     */
+    public ProcedureBatch createBatch();
+
     /**
      * <p>Asynchronously invoke a replicated procedure. If there is backpressure
      * this call will block until the invocation is queued. If configureBlocking(false) is invoked
@@ -25,6 +25,7 @@ import java.math.RoundingMode;
 import java.security.Principal;
 import java.util.Iterator;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import javax.security.auth.Subject;
@@ -70,6 +71,7 @@ public class ClientConfig {
     boolean m_topologyChangeAware = false;
     boolean m_enableSSL = false;
     String m_sslPropsFile = null;
+    Executor m_responseExecutor = null;
 
     //For unit testing. This should really be in Environment class we should assemble all such there.
     public static final boolean ENABLE_SSL_FOR_TEST = Boolean.valueOf(
@@ -285,6 +287,22 @@ public class ClientConfig {
         m_heavyweight = heavyweight;
     }
 
+    /**
+     * <p>Set the executor that completes the futures returned by
+     * {@link Client#callProcedureAsync(String, Object...)}. Listeners that are added to those
+     * futures with a direct executor run on it, which keeps the work they do off the network
+     * thread that reads the responses.</p>
+     *
+     * <p>By default the client creates its own pool of daemon threads the first time an
+     * asynchronous call is made. An executor provided here is not shut down when the client
+     * is closed.</p>
+     *
+     * @param executor Executor to complete the futures of asynchronous procedure calls.
+     */
+    public void setResponseExecutor(Executor executor) {
+        m_responseExecutor = executor;
+    }
+
     /**
      * <p>Provide a hint indicating how large messages will be once serialized. Ensures
      * efficient message buffer allocation.</p>
@@ -22,16 +22,22 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
@@ -49,6 +55,8 @@ import org.voltdb.common.Constants;
 import org.voltdb.utils.Encoder;
 
 import com.google_voltpatches.common.collect.ImmutableSet;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
 
 import io.netty.handler.ssl.SslContext;
 
@@ -103,6 +111,19 @@ public final class ClientImpl implements Client {
 
     private BulkLoaderState m_vblGlobals = new BulkLoaderState(this);
 
+    /*
+     * Asynchronous calls that couldn't be sent right away because of backpressure or
+     * the rate limiter, in the order they were made. They are resent from m_asyncScheduler
+     * which is started, along with the default response executor, by the first
+     * asynchronous call.
+     */
+    private final ConcurrentLinkedQueue<AsyncCall> m_heldAsyncCalls = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean m_asyncResendScheduled = new AtomicBoolean(false);
+    private final Executor m_configuredResponseExecutor;
+    private volatile Executor m_responseExecutor = null;
+    private ExecutorService m_defaultResponseExecutor = null;
+    private volatile ScheduledExecutorService m_asyncScheduler = null;
+
     // global instance of null callback for performance (you only need one)
     private static final ProcedureCallback NULL_CALLBACK = new NullCallback();
 
@@ -168,6 +189,8 @@ public final class ClientImpl implements Client {
             m_clientStatusListener = config.m_listener;
         }
 
+        m_configuredResponseExecutor = config.m_responseExecutor;
+
         assert(config.m_maxOutstandingTxns > 0);
         m_blessedThreadIds.addAll(m_distributer.getThreadIds());
         if (config.m_autoTune) {
@@ -534,6 +557,183 @@ public final class ClientImpl implements Client {
         return true;
     }
 
+    @Override
+    public ProcedureBatch createBatch() {
+        return new ProcedureBatch(this);
+    }
+
+    /**
+     * Queue the calls of a {@link ProcedureBatch}, waiting on backpressure the same way
+     * {@link #internalAsyncCallProcedure} does for the calls that can't be queued right away.
+     */
+    void executeBatch(List<String> procNames, List<Object[]> parameters, List<ProcedureCallback> callbacks)
+            throws IOException, NoConnectionsException {
+        List<ProcedureInvocation> invocations = new ArrayList<>(procNames.size());
+        for (int i = 0; i < procNames.size(); i++) {
+            invocations.add(new ProcedureInvocation(m_handle.getAndIncrement(), procNames.get(i), parameters.get(i)));
+        }
+        if (m_isShutdown) {
+            failBatch(invocations.size(), callbacks, new ClientResponseImpl(ClientResponse.GRACEFUL_FAILURE,
+                    new VoltTable[0], "Client instance is shutdown"));
+            return;
+        }
+
+        final long nowNanos = System.nanoTime();
+        final long timeoutNanos = m_distributer.getProcedureTimeoutNanos();
+        //Blessed threads (the ones that invoke callbacks) are not subject to backpressure
+        boolean isBlessed = m_blessedThreadIds.contains(Thread.currentThread().getId());
+        while (!invocations.isEmpty()) {
+            List<Integer> notQueued = m_distributer.queueBatch(invocations, callbacks, isBlessed, nowNanos,
+                    Distributer.USE_DEFAULT_CLIENT_TIMEOUT);
+            if (notQueued.isEmpty()) {
+                return;
+            }
+            List<ProcedureInvocation> remainingInvocations = new ArrayList<>(notQueued.size());
+            List<ProcedureCallback> remainingCallbacks = new ArrayList<>(notQueued.size());
+            for (int i : notQueued) {
+                remainingInvocations.add(invocations.get(i));
+                remainingCallbacks.add(callbacks.get(i));
+            }
+            invocations = remainingInvocations;
+            callbacks = remainingCallbacks;
+
+            if ( ! m_blockingQueue) {
+                failBatch(invocations.size(), callbacks, new ClientResponseImpl(ClientResponse.GRACEFUL_FAILURE,
+                        new VoltTable[0], "Unable to queue client request."));
+                return;
+            }
+            final long delta = Math.max(1, System.nanoTime() - nowNanos);
+            try {
+                if (backpressureBarrier(nowNanos, timeoutNanos - delta)) {
+                    failBatch(invocations.size(), callbacks, new ClientResponseImpl(
+                            ClientResponse.CONNECTION_TIMEOUT,
+                            ClientResponse.UNINITIALIZED_APP_STATUS_CODE,
+                            "",
+                            new VoltTable[0],
+                            String.format("No response received in the allotted time (set to %d ms).",
+                                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos))));
+                    return;
+                }
+            }
+            catch (InterruptedException e) {
+                throw new java.io.InterruptedIOException("Interrupted while invoking procedure batch");
+            }
+        }
+    }
+
+    private void failBatch(int count, List<ProcedureCallback> callbacks, ClientResponse response) {
+        for (int i = 0; i < count; i++) {
+            try {
+                callbacks.get(i).clientCallback(response);
+            }
+            catch (Throwable thrown) {
+                m_distributer.uncaughtException(callbacks.get(i), response, thrown);
+            }
+        }
+    }
+
+    @Override
+    public ListenableFuture<ClientResponse> callProcedureAsync(String procName, Object... parameters) {
+        AsyncCall call = new AsyncCall(
+                new ProcedureInvocation(m_handle.getAndIncrement(), procName, parameters), System.nanoTime());
+        if (m_isShutdown) {
+            call.m_future.setException(new NoConnectionsException("Client instance is shutdown"));
+            return call.m_future;
+        }
+        startAsyncServices();
+
+        // Calls that are already held go first
+        if (!m_heldAsyncCalls.isEmpty() ||
+                !trySendAsync(call, call.m_startNanos, Distributer.USE_DEFAULT_CLIENT_TIMEOUT)) {
+            m_heldAsyncCalls.offer(call);
+            scheduleAsyncResend(0);
+        }
+        return call.m_future;
+    }
+
+    private synchronized void startAsyncServices() {
+        if (m_asyncScheduler != null) {
+            return;
+        }
+        if (m_configuredResponseExecutor != null) {
+            m_responseExecutor = m_configuredResponseExecutor;
+        }
+        else {
+            m_defaultResponseExecutor = Executors.newFixedThreadPool(
+                    Math.max(1, CoreUtils.availableProcessors() / 2),
+                    CoreUtils.getThreadFactory(null, "Async response", CoreUtils.MEDIUM_STACK_SIZE, true, null));
+            m_responseExecutor = m_defaultResponseExecutor;
+        }
+        m_asyncScheduler = Executors.newSingleThreadScheduledExecutor(
+                CoreUtils.getThreadFactory("Async resend"));
+    }
+
+    /*
+     * Returns false if the call has to be held, the call is complete or
+     * on its way otherwise.
+     */
+    private boolean trySendAsync(AsyncCall call, long nowNanos, long timeoutNanos) {
+        try {
+            return m_distributer.tryQueue(call.m_invocation, call, nowNanos, timeoutNanos);
+        }
+        catch (NoConnectionsException e) {
+            call.m_future.setException(e);
+            return true;
+        }
+    }
+
+    private void scheduleAsyncResend(long delayNanos) {
+        ScheduledExecutorService scheduler = m_asyncScheduler;
+        if (scheduler == null || !m_asyncResendScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    m_asyncResendScheduled.set(false);
+                    resendHeldAsyncCalls();
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            // the client is closing, close() fails the held calls
+            m_asyncResendScheduled.set(false);
+        }
+    }
+
+    /*
+     * Send held calls in order until one has to be held again. Only runs on the
+     * resend thread. The rate limiter doesn't signal when it has permits again, so
+     * while calls are held this polls every millisecond, which is also what a
+     * blocking call does while it waits for the rate limiter.
+     */
+    private void resendHeldAsyncCalls() {
+        final long timeoutNanos = m_distributer.getProcedureTimeoutNanos();
+        AsyncCall call;
+        while (!m_isShutdown && (call = m_heldAsyncCalls.peek()) != null) {
+            final long nowNanos = System.nanoTime();
+            final long heldNanos = nowNanos - call.m_startNanos;
+            if (heldNanos >= timeoutNanos) {
+                m_heldAsyncCalls.poll();
+                call.complete(new ClientResponseImpl(
+                        ClientResponse.CONNECTION_TIMEOUT,
+                        ClientResponse.UNINITIALIZED_APP_STATUS_CODE,
+                        "",
+                        new VoltTable[0],
+                        String.format("No response received in the allotted time (set to %d ms).",
+                                TimeUnit.NANOSECONDS.toMillis(timeoutNanos))));
+                continue;
+            }
+            // the time spent held counts against the timeout
+            if (!trySendAsync(call, nowNanos, timeoutNanos - heldNanos)) {
+                scheduleAsyncResend(TimeUnit.MILLISECONDS.toNanos(1));
+                return;
+            }
+            m_heldAsyncCalls.poll();
+        }
+    }
+
     /**
      * Serializes catalog and deployment file for UpdateApplicationCatalog.
      * Catalog is serialized into byte array, deployment file is serialized into
@@ -644,6 +844,18 @@ public final class ClientImpl implements Client {
             }
         }
         m_distributer.shutdown();
+
+        if (m_asyncScheduler != null) {
+            m_asyncScheduler.shutdownNow();
+            m_asyncScheduler.awaitTermination(1, TimeUnit.SECONDS);
+            AsyncCall call;
+            while ((call = m_heldAsyncCalls.poll()) != null) {
+                call.m_future.setException(new NoConnectionsException("Client instance is shutdown"));
+            }
+            if (m_defaultResponseExecutor != null) {
+                m_defaultResponseExecutor.shutdown();
+            }
+        }
         ClientFactory.decreaseClientNum();
     }
 
@@ -740,6 +952,9 @@ public final class ClientImpl implements Client {
                     m_backpressureLock.notifyAll();
                 }
             }
+            if (!status && !m_heldAsyncCalls.isEmpty()) {
+                scheduleAsyncResend(0);
+            }
         }
 
         @Override
@@ -1016,6 +1231,11 @@ public final class ClientImpl implements Client {
 
     }
 
+    //Hidden method for getPartitionForParameter of a non-null integer value
+    public long getPartitionForLong(long value) {
+        return m_distributer.getPartitionForLong(value);
+    }
+
     @Override
     public VoltBulkLoader getNewBulkLoader(String tableName, int maxBatchSize, boolean upsertMode, BulkLoaderFailureCallBack failureCallback) throws Exception
     {
@@ -1143,6 +1363,44 @@ public final class ClientImpl implements Client {
         }
     }
 
+    /**
+     * Callback of a call made with {@link ClientImpl#callProcedureAsync}. The response is handed
+     * over to the response executor, and since a response also frees a rate limiter permit any
+     * held calls are resent.
+     */
+    private final class AsyncCall implements ProcedureCallback {
+        final ProcedureInvocation m_invocation;
+        final long m_startNanos;
+        final SettableFuture<ClientResponse> m_future = SettableFuture.create();
+
+        AsyncCall(ProcedureInvocation invocation, long startNanos) {
+            m_invocation = invocation;
+            m_startNanos = startNanos;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse clientResponse) {
+            complete(clientResponse);
+            if (!m_heldAsyncCalls.isEmpty()) {
+                scheduleAsyncResend(0);
+            }
+        }
+
+        void complete(final ClientResponse clientResponse) {
+            try {
+                m_responseExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        m_future.set(clientResponse);
+                    }
+                });
+            }
+            catch (RejectedExecutionException e) {
+                m_future.set(clientResponse);
+            }
+        }
+    }
+
     /**
      * Procedure call back for async callAllPartitionProcedure
      */
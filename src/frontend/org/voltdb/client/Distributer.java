@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -72,6 +73,7 @@ import org.voltdb.common.Constants;
 
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableList;
+import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.collect.ImmutableSet;
 import com.google_voltpatches.common.collect.ImmutableSortedMap;
 import com.google_voltpatches.common.collect.Maps;
@@ -86,6 +88,10 @@ import jsr166y.ThreadLocalRandom;
  *
  *   It is safe to synchronized on an individual connection and then the distributer, but it is always unsafe
  *   to synchronized on the distributer and then an individual connection.
+ *
+ *   The distributer lock is only taken to change the connection set or the topology. Routing in queue(),
+ *   response dispatch and callback expiration read immutable snapshots of that state published through
+ *   volatile fields, and track outstanding calls in a concurrent handle map per connection.
  */
 class Distributer {
 
@@ -102,8 +108,10 @@ class Distributer {
     // collection of connections to the cluster
     private final CopyOnWriteArrayList<NodeConnection> m_connections =
             new CopyOnWriteArrayList<>();
+    // m_connections as an array for routing, replaced under the distributer lock whenever m_connections changes
+    private volatile NodeConnection[] m_connectionArray = new NodeConnection[0];
 
-    private final ArrayList<ClientStatusListenerExt> m_listeners = new ArrayList<>();
+    private final CopyOnWriteArrayList<ClientStatusListenerExt> m_listeners = new CopyOnWriteArrayList<>();
 
     //Selector and connection handling, does all work in blocking selection thread
     private final VoltNetworkPool m_network;
@@ -111,7 +119,7 @@ class Distributer {
     private final SslContext m_sslContext;
 
     // Temporary until a distribution/affinity algorithm is written
-    private int m_nextConnection = 0;
+    private final AtomicInteger m_nextConnection = new AtomicInteger(0);
 
     private final boolean m_useMultipleThreads;
     private final boolean m_useClientAffinity;
@@ -134,9 +142,31 @@ class Distributer {
         }
     }
 
+    /**
+     * Client affinity routing state. The maps are only ever read by queue() so a new
+     * instance is published whenever the topology or the connection set changes.
+     */
+    private static final class AffinityTopology {
+        static final AffinityTopology EMPTY = new AffinityTopology(null,
+                ImmutableMap.<Integer, NodeConnection>of(), ImmutableMap.<Integer, NodeConnection[]>of());
+
+        final HashinatorLite m_hashinator;
+        final ImmutableMap<Integer, NodeConnection> m_partitionMasters;
+        final ImmutableMap<Integer, NodeConnection[]> m_partitionReplicas;
+
+        AffinityTopology(HashinatorLite hashinator,
+                         ImmutableMap<Integer, NodeConnection> partitionMasters,
+                         ImmutableMap<Integer, NodeConnection[]> partitionReplicas) {
+            m_hashinator = hashinator;
+            m_partitionMasters = partitionMasters;
+            m_partitionReplicas = partitionReplicas;
+        }
+    }
+
+    // Only modified while holding the distributer lock, see publishTopology()
     private final Map<Integer, NodeConnection> m_partitionMasters = new HashMap<>();
     private final Map<Integer, NodeConnection[]> m_partitionReplicas = new HashMap<>();
-    private final Map<Integer, NodeConnection> m_hostIdToConnection = new HashMap<>();
+    private final Map<Integer, NodeConnection> m_hostIdToConnection = new ConcurrentHashMap<>();
     private final AtomicReference<ImmutableSortedMap<String, Procedure>> m_procedureInfo =
                                 new AtomicReference<ImmutableSortedMap<String, Procedure>>();
     private final AtomicReference<ImmutableSet<Integer>> m_partitionKeys = new AtomicReference<ImmutableSet<Integer>>();
@@ -145,12 +175,13 @@ class Distributer {
 
     //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
     private HashinatorLite m_hashinator = null;
+    private volatile AffinityTopology m_topology = AffinityTopology.EMPTY;
     //This is a global timeout that will be used if a per-procedure timeout is not provided with the procedure call.
     private final long m_procedureCallTimeoutNanos;
     private static final long MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
     private final long m_connectionResponseTimeoutNanos;
-    private final Map<Integer, ClientAffinityStats> m_clientAffinityStats =
-        new HashMap<>();
+    private final ConcurrentMap<Integer, ClientAffinityStats> m_clientAffinityStats =
+        new ConcurrentHashMap<>();
 
     public final RateLimiter m_rateLimiter = new RateLimiter();
 
@@ -180,7 +211,7 @@ class Distributer {
     private boolean m_subscriptionRequestPending = false;
 
     //Until catalog subscription is implemented, only fetch it once
-    private boolean m_fetchedCatalog = false;
+    private volatile boolean m_fetchedCatalog = false;
 
     /**
      * JAAS Authentication Subject
@@ -320,12 +351,7 @@ class Distributer {
         @Override
         public void run() {
             try {
-                // make a threadsafe copy of all connections
-                ArrayList<NodeConnection> connections = new ArrayList<>();
-                synchronized (Distributer.this) {
-                    connections.addAll(m_connections);
-                }
-
+                final NodeConnection[] connections = m_connectionArray;
                 final long nowNanos = System.nanoTime();
 
                 // for each connection
@@ -427,6 +453,84 @@ class Distributer {
          */
         public void createWork(final long nowNanos, long handle, String name, ByteBuffer c,
                 ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos) {
+            if (registerWork(nowNanos, handle, name, callback, ignoreBackpressure, false, timeoutNanos)) {
+                m_connection.writeStream().enqueue(c);
+            }
+        }
+
+        /*
+         * Same as createWork for an invocation that already holds a rate limiter permit,
+         * the permit is returned when the response arrives.
+         */
+        void createWorkWithPermit(final long nowNanos, long handle, String name, ByteBuffer c,
+                ProcedureCallback callback, long timeoutNanos) {
+            if (registerWork(nowNanos, handle, name, callback, false, true, timeoutNanos)) {
+                m_connection.writeStream().enqueue(c);
+            }
+        }
+
+        /*
+         * Queue several invocations as a single write. The batch is serialized first so
+         * that a failure leaves no callbacks behind. Each invocation then gets its callback
+         * and timeout as if it had been queued by itself, only those still outstanding
+         * after that are written.
+         */
+        void createWork(final long nowNanos, List<ProcedureInvocation> invocations,
+                List<ProcedureCallback> callbacks, boolean ignoreBackpressure, long timeoutNanos) {
+            int size = 0;
+            for (ProcedureInvocation invocation : invocations) {
+                size += 4 + invocation.getSerializedSize();
+            }
+            ByteBuffer buf = ByteBuffer.allocate(size);
+            try {
+                for (ProcedureInvocation invocation : invocations) {
+                    buf.putInt(invocation.getSerializedSize());
+                    invocation.flattenToBuffer(buf);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            buf.flip();
+
+            boolean[] send = new boolean[invocations.size()];
+            int sendSize = 0;
+            for (int i = 0; i < invocations.size(); i++) {
+                ProcedureInvocation invocation = invocations.get(i);
+                if (registerWork(nowNanos, invocation.getHandle(), invocation.getProcName(), callbacks.get(i),
+                                 ignoreBackpressure, false, timeoutNanos)) {
+                    send[i] = true;
+                    sendSize += 4 + invocation.getSerializedSize();
+                }
+            }
+            if (sendSize == 0) {
+                return;
+            }
+            if (sendSize < size) {
+                // some callbacks were already invoked, leave their invocations out of the write
+                ByteBuffer toSend = ByteBuffer.allocate(sendSize);
+                for (int i = 0; i < invocations.size(); i++) {
+                    int length = 4 + invocations.get(i).getSerializedSize();
+                    if (send[i]) {
+                        ByteBuffer slice = buf.duplicate();
+                        slice.limit(slice.position() + length);
+                        toSend.put(slice);
+                    }
+                    buf.position(buf.position() + length);
+                }
+                toSend.flip();
+                buf = toSend;
+            }
+            m_connection.writeStream().enqueue(buf);
+        }
+
+        /*
+         * Do the rate limiting and callback bookkeeping for an invocation about to be written.
+         * Returns false if the callback has already been invoked with a timeout or lost connection
+         * response and the invocation must not be written. The rate limiter is skipped if the
+         * caller already has a permit.
+         */
+        private boolean registerWork(final long nowNanos, long handle, String name,
+                ProcedureCallback callback, boolean ignoreBackpressure, boolean havePermit, long timeoutNanos) {
             assert(callback != null);
 
             //How long from the starting point in time to wait to get this stuff done
@@ -445,8 +549,9 @@ class Distributer {
              * exception to give prompt timeouts
              */
             try {
-                afterRateLimitNanos = m_rateLimiter.sendTxnWithOptionalBlockAndReturnCurrentTime(
-                        nowNanos, timeoutNanos, ignoreBackpressure);
+                afterRateLimitNanos = havePermit ? nowNanos :
+                        m_rateLimiter.sendTxnWithOptionalBlockAndReturnCurrentTime(
+                                nowNanos, timeoutNanos, ignoreBackpressure);
             } catch (TimeoutException e) {
                 /*
                  * It's possible we need to timeout because it took too long to get
@@ -454,7 +559,7 @@ class Distributer {
                  */
                 final long deltaNanos = Math.max(1, System.nanoTime() - nowNanos);
                 invokeCallbackWithTimeout(name, callback, deltaNanos, afterRateLimitNanos, timeoutNanos, handle, ignoreBackpressure);
-                return;
+                return false;
             }
 
             assert(m_callbacks.containsKey(handle) == false);
@@ -481,7 +586,7 @@ class Distributer {
             if (!m_isConnected) {
                 //Check if the disconnect or expiration already handled the callback
                 if (m_callbacks.remove(handle) == null) {
-                    return;
+                    return false;
                 }
                 final ClientResponse r = new ClientResponseImpl(
                         ClientResponse.CONNECTION_LOST, new VoltTable[0],
@@ -499,10 +604,9 @@ class Distributer {
 
                 //for bookkeeping, but it feels dishonest to call this here
                 m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
-                return;
-            } else {
-                m_connection.writeStream().enqueue(c);
+                return false;
             }
+            return true;
         }
 
         /*
@@ -795,6 +899,8 @@ class Distributer {
                 }
 
                 m_connections.remove(this);
+                publishConnections();
+                publishTopology();
                 //Notify listeners that a connection has been lost
                 for (ClientStatusListenerExt s : m_listeners) {
                     s.connectionLost(
@@ -866,7 +972,8 @@ class Distributer {
                     /*
                      * Synchronization on Distributer.this is critical to ensure that queue
                      * does not report backpressure AFTER the write stream reports that backpressure
-                     * has ended thus resulting in a lost wakeup.
+                     * has ended thus resulting in a lost wakeup. queue() reports backpressure
+                     * while holding the same lock.
                      */
                     synchronized (Distributer.this) {
                         for (final ClientStatusListenerExt csl : m_listeners) {
@@ -909,7 +1016,7 @@ class Distributer {
         long sleep = 500;
         do {
             more = false;
-            for (NodeConnection cxn : m_connections) {
+            for (NodeConnection cxn : m_connectionArray) {
                 more = more || cxn.m_callbacksToInvoke.get() > 0;
             }
             /*
@@ -1046,12 +1153,11 @@ class Distributer {
             m_buildString = (String)socketChannelAndInstanceIdAndBuildString[2];
 
             m_connections.add(cxn);
+            publishConnections();
         }
 
         if (m_useClientAffinity) {
-            synchronized (this) {
-                m_hostIdToConnection.put(hostId, cxn);
-            }
+            m_hostIdToConnection.put(hostId, cxn);
 
             if (m_subscribedConnection == null) {
                 subscribeToNewNode();
@@ -1124,102 +1230,93 @@ class Distributer {
     }
 
     /**
-     * Queue invocation on first node connection without backpressure. If there is none with without backpressure
-     * then return false and don't queue the invocation
-     * @param invocation
-     * @param cb
-     * @param ignoreBackpressure If true the invocation will be queued even if there is backpressure
-     * @param nowNanos Current time in nanoseconds using System.nanoTime
-     * @param timeoutNanos nanoseconds from nowNanos where timeout should fire
-     * @return True if the message was queued and false if the message was not queued due to backpressure
-     * @throws NoConnectionsException
+     * Pick the connection to send an invocation to, using the partition master or a replica
+     * if client affinity knows it and round robin otherwise.
+     * @param recordStats true to count the routing decision in the client affinity stats
+     * @return the connection to use or null if all candidates have backpressure
+     * @throws NoConnectionsException if there are no connections at all
      */
-    boolean queue(
-            ProcedureInvocation invocation,
-            ProcedureCallback cb,
-            final boolean ignoreBackpressure, final long nowNanos, final long timeoutNanos)
+    private NodeConnection route(ProcedureInvocation invocation, boolean ignoreBackpressure, boolean recordStats)
             throws NoConnectionsException {
-        assert(invocation != null);
-        assert(cb != null);
+        final NodeConnection[] connections = m_connectionArray;
+        final int totalConnections = connections.length;
+
+        if (totalConnections == 0) {
+            throw new NoConnectionsException("No connections.");
+        }
 
         NodeConnection cxn = null;
         boolean backpressure = true;
 
         /*
-         * Synchronization is necessary to ensure that m_connections is not modified
-         * as well as to ensure that backpressure is reported correctly
+         * Check if the master for the partition is known. No back pressure check to ensure correct
+         * routing, but backpressure will be managed anyways. This is where we guess partition based on client
+         * affinity and known topology (hashinator initialized).
          */
-        synchronized (this) {
-            final int totalConnections = m_connections.size();
-
-            if (totalConnections == 0) {
-                throw new NoConnectionsException("No connections.");
+        final AffinityTopology topology = m_topology;
+        if (m_useClientAffinity && (topology.m_hashinator != null)) {
+            final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
+            Procedure procedureInfo = null;
+            if (procedures != null) {
+                procedureInfo = procedures.get(invocation.getProcName());
             }
-
-            /*
-             * Check if the master for the partition is known. No back pressure check to ensure correct
-             * routing, but backpressure will be managed anyways. This is where we guess partition based on client
-             * affinity and known topology (hashinator initialized).
-             */
-            if (m_useClientAffinity && (m_hashinator != null)) {
-                final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
-                Procedure procedureInfo = null;
-                if (procedures != null) {
-                    procedureInfo = procedures.get(invocation.getProcName());
+            Integer hashedPartition = -1;
+
+            if (procedureInfo != null) {
+                hashedPartition = Constants.MP_INIT_PID;
+                if (( ! procedureInfo.multiPart) &&
+                    // User may have passed too few parameters to allow dispatching.
+                    // Avoid an indexing error here to fall through to the proper ProcCallException.
+                        (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
+                    hashedPartition = topology.m_hashinator.getHashedPartitionForParameter(
+                            procedureInfo.partitionParameterType,
+                            invocation.getPartitionParamValue(procedureInfo.partitionParameter));
                 }
-                Integer hashedPartition = -1;
-
-                if (procedureInfo != null) {
-                    hashedPartition = Constants.MP_INIT_PID;
-                    if (( ! procedureInfo.multiPart) &&
-                        // User may have passed too few parameters to allow dispatching.
-                        // Avoid an indexing error here to fall through to the proper ProcCallException.
-                            (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
-                        hashedPartition = m_hashinator.getHashedPartitionForParameter(
-                                procedureInfo.partitionParameterType,
-                                invocation.getPartitionParamValue(procedureInfo.partitionParameter));
-                    }
-                    /*
-                     * If the procedure is read only and single part and the user wants it, load balance across replicas
-                     * This is probably slower for SAFE consistency.
-                     */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
-                        NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
-                        if (partitionReplicas != null && partitionReplicas.length > 0) {
-                            cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
-                            if (cxn.hadBackPressure()) {
-                                //See if there is one without backpressure, make sure it's still connected
-                                for (NodeConnection nc : partitionReplicas) {
-                                    if (!nc.hadBackPressure() && nc.m_isConnected) {
-                                        cxn = nc;
-                                        break;
-                                    }
+                /*
+                 * If the procedure is read only and single part and the user wants it, load balance across replicas
+                 * This is probably slower for SAFE consistency.
+                 */
+                if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
+                    NodeConnection partitionReplicas[] = topology.m_partitionReplicas.get(hashedPartition);
+                    if (partitionReplicas != null && partitionReplicas.length > 0) {
+                        cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
+                        if (cxn.hadBackPressure()) {
+                            //See if there is one without backpressure, make sure it's still connected
+                            for (NodeConnection nc : partitionReplicas) {
+                                if (!nc.hadBackPressure() && nc.m_isConnected) {
+                                    cxn = nc;
+                                    break;
                                 }
                             }
-                            if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                                backpressure = false;
-                            }
                         }
-                    } else {
-                        /*
-                         * For writes or SAFE reads, this is the best way to go
-                         */
-                        cxn = m_partitionMasters.get(hashedPartition);
-                        if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        if (!cxn.hadBackPressure() || ignoreBackpressure) {
                             backpressure = false;
                         }
                     }
+                } else {
+                    /*
+                     * For writes or SAFE reads, this is the best way to go
+                     */
+                    cxn = topology.m_partitionMasters.get(hashedPartition);
+                    if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        backpressure = false;
+                    }
                 }
-                if (cxn != null && !cxn.m_isConnected) {
-                    // Would be nice to log something here
-                    // Client affinity picked a connection that was actually disconnected.  Reset to null
-                    // and let the round-robin choice pick a connection
-                    cxn = null;
-                }
+            }
+            if (cxn != null && !cxn.m_isConnected) {
+                // Would be nice to log something here
+                // Client affinity picked a connection that was actually disconnected.  Reset to null
+                // and let the round-robin choice pick a connection
+                cxn = null;
+            }
+            if (recordStats) {
                 ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
                 if (stats == null) {
                     stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
-                    m_clientAffinityStats.put(hashedPartition, stats);
+                    ClientAffinityStats existing = m_clientAffinityStats.putIfAbsent(hashedPartition, stats);
+                    if (existing != null) {
+                        stats = existing;
+                    }
                 }
                 if (cxn != null) {
                     if (procedureInfo != null && procedureInfo.readOnly) {
@@ -1240,28 +1337,46 @@ class Distributer {
                     }
                 }
             }
-            if (cxn == null) {
-                for (int i=0; i < totalConnections; ++i) {
-                    cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
-                    if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                        // serialize and queue the invocation
-                        backpressure = false;
-                        break;
-                    }
-                }
-            }
-
-            if (backpressure) {
-                cxn = null;
-                for (ClientStatusListenerExt s : m_listeners) {
-                    s.backpressure(true);
+        }
+        if (cxn == null) {
+            for (int i=0; i < totalConnections; ++i) {
+                cxn = connections[Math.abs(m_nextConnection.incrementAndGet() % totalConnections)];
+                if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                    // serialize and queue the invocation
+                    backpressure = false;
+                    break;
                 }
             }
         }
 
+        return backpressure ? null : cxn;
+    }
+
+    /**
+     * Queue invocation on first node connection without backpressure. If there is none with without backpressure
+     * then return false and don't queue the invocation
+     * @param invocation
+     * @param cb
+     * @param ignoreBackpressure If true the invocation will be queued even if there is backpressure
+     * @param nowNanos Current time in nanoseconds using System.nanoTime
+     * @param timeoutNanos nanoseconds from nowNanos where timeout should fire
+     * @return True if the message was queued and false if the message was not queued due to backpressure
+     * @throws NoConnectionsException
+     */
+    boolean queue(
+            ProcedureInvocation invocation,
+            ProcedureCallback cb,
+            final boolean ignoreBackpressure, final long nowNanos, final long timeoutNanos)
+            throws NoConnectionsException {
+        assert(invocation != null);
+        assert(cb != null);
+
+        NodeConnection cxn = routeOrSignalBackpressure(invocation, ignoreBackpressure);
+        final boolean backpressure = cxn == null;
+
         /*
-         * Do the heavy weight serialization outside the synchronized block.
-         * createWork synchronizes on an individual connection which allows for more concurrency
+         * Do the heavy weight serialization after routing.
+         * createWork only touches the chosen connection which allows for more concurrency
          */
         if (cxn != null) {
             ByteBuffer buf = null;
@@ -1278,6 +1393,158 @@ class Distributer {
         return !backpressure;
     }
 
+    /**
+     * Queue an invocation only if that can be done without waiting: the rate limiter has to grant
+     * a permit right away and there has to be a connection without backpressure to route it to.
+     * Unlike {@link #queue} this never blocks the caller, an invocation that isn't queued can be
+     * retried once backpressure ends or outstanding invocations complete.
+     * @param invocation the invocation to queue
+     * @param cb callback for the invocation
+     * @param nowNanos Current time in nanoseconds using System.nanoTime
+     * @param timeoutNanos nanoseconds from nowNanos where timeout should fire
+     * @return true if the invocation was queued, false if it has to be retried
+     * @throws NoConnectionsException
+     */
+    boolean tryQueue(
+            ProcedureInvocation invocation,
+            ProcedureCallback cb,
+            final long nowNanos, final long timeoutNanos)
+            throws NoConnectionsException {
+        assert(invocation != null);
+        assert(cb != null);
+
+        // serialize before taking a permit so that a failure can't leak it
+        ByteBuffer buf = null;
+        try {
+            buf = serializeSPI(invocation);
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+
+        if (!m_rateLimiter.trySendTxn(nowNanos)) {
+            return false;
+        }
+        NodeConnection cxn = null;
+        try {
+            cxn = routeOrSignalBackpressure(invocation, false);
+        }
+        finally {
+            if (cxn == null) {
+                // give back the permit, the invocation was never sent
+                m_rateLimiter.transactionResponseReceived(nowNanos, -1, false);
+            }
+        }
+        if (cxn == null) {
+            return false;
+        }
+
+        cxn.createWorkWithPermit(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, timeoutNanos);
+        if (m_topologyChangeAware) {
+            createConnectionsUponTopologyChange();
+        }
+        return true;
+    }
+
+    /*
+     * Route without the distributer lock. Only if every candidate connection has
+     * backpressure is the choice repeated under the lock, so that reporting
+     * backpressure can't race with a connection reporting that it has ended.
+     * Returns null if there is backpressure, after telling the listeners.
+     */
+    private NodeConnection routeOrSignalBackpressure(ProcedureInvocation invocation, boolean ignoreBackpressure)
+            throws NoConnectionsException {
+        NodeConnection cxn = route(invocation, ignoreBackpressure, true);
+        if (cxn == null) {
+            synchronized (this) {
+                cxn = route(invocation, ignoreBackpressure, false);
+                if (cxn == null) {
+                    for (ClientStatusListenerExt s : m_listeners) {
+                        s.backpressure(true);
+                    }
+                }
+            }
+        }
+        return cxn;
+    }
+
+    /**
+     * Queue a batch of invocations, grouping them by the connection each one is routed to so that
+     * every connection gets a single write for its share of the batch. Routing is the same as for
+     * {@link #queue}.
+     * @param invocations invocations to queue
+     * @param callbacks callback for each invocation, in the same order
+     * @param ignoreBackpressure If true the invocations will be queued even if there is backpressure
+     * @param nowNanos Current time in nanoseconds using System.nanoTime
+     * @param timeoutNanos nanoseconds from nowNanos where timeout should fire
+     * @return indexes of the invocations that were not queued due to backpressure, in order
+     * @throws NoConnectionsException
+     */
+    List<Integer> queueBatch(
+            List<ProcedureInvocation> invocations,
+            List<ProcedureCallback> callbacks,
+            final boolean ignoreBackpressure, final long nowNanos, final long timeoutNanos)
+            throws NoConnectionsException {
+        assert(invocations.size() == callbacks.size());
+
+        Map<NodeConnection, Pair<List<ProcedureInvocation>, List<ProcedureCallback>>> byConnection =
+                new LinkedHashMap<>();
+        List<Integer> notQueued = new ArrayList<>();
+        for (int i = 0; i < invocations.size(); i++) {
+            NodeConnection cxn = route(invocations.get(i), ignoreBackpressure, true);
+            if (cxn == null) {
+                notQueued.add(i);
+            }
+            else {
+                addBatchWork(byConnection, cxn, invocations.get(i), callbacks.get(i));
+            }
+        }
+
+        if (!notQueued.isEmpty()) {
+            // Same as queue(), report backpressure under the lock only if it's still there
+            synchronized (this) {
+                Iterator<Integer> it = notQueued.iterator();
+                while (it.hasNext()) {
+                    int i = it.next();
+                    NodeConnection cxn = route(invocations.get(i), ignoreBackpressure, false);
+                    if (cxn != null) {
+                        addBatchWork(byConnection, cxn, invocations.get(i), callbacks.get(i));
+                        it.remove();
+                    }
+                }
+                if (!notQueued.isEmpty()) {
+                    for (ClientStatusListenerExt s : m_listeners) {
+                        s.backpressure(true);
+                    }
+                }
+            }
+        }
+
+        // Write outside of the distributer lock, it must not be held while a connection is locked
+        for (Map.Entry<NodeConnection, Pair<List<ProcedureInvocation>, List<ProcedureCallback>>> e :
+                byConnection.entrySet()) {
+            e.getKey().createWork(nowNanos, e.getValue().getFirst(), e.getValue().getSecond(),
+                    ignoreBackpressure, timeoutNanos);
+        }
+        if (m_topologyChangeAware) {
+            createConnectionsUponTopologyChange();
+        }
+        return notQueued;
+    }
+
+    private static void addBatchWork(
+            Map<NodeConnection, Pair<List<ProcedureInvocation>, List<ProcedureCallback>>> byConnection,
+            NodeConnection cxn, ProcedureInvocation invocation, ProcedureCallback callback) {
+        Pair<List<ProcedureInvocation>, List<ProcedureCallback>> work = byConnection.get(cxn);
+        if (work == null) {
+            work = Pair.<List<ProcedureInvocation>, List<ProcedureCallback>>of(
+                    new ArrayList<ProcedureInvocation>(), new ArrayList<ProcedureCallback>());
+            byConnection.put(cxn, work);
+        }
+        work.getFirst().add(invocation);
+        work.getSecond().add(callback);
+    }
+
     /**
      * Shutdown the VoltNetwork allowing the Ports to close and free resources
      * like memory pools
@@ -1318,13 +1585,11 @@ class Distributer {
         }
     }
 
-    synchronized void addClientStatusListener(ClientStatusListenerExt listener) {
-        if (!m_listeners.contains(listener)) {
-            m_listeners.add(listener);
-        }
+    void addClientStatusListener(ClientStatusListenerExt listener) {
+        m_listeners.addIfAbsent(listener);
     }
 
-    synchronized boolean removeClientStatusListener(ClientStatusListenerExt listener) {
+    boolean removeClientStatusListener(ClientStatusListenerExt listener) {
         return m_listeners.remove(listener);
     }
 
@@ -1378,11 +1643,8 @@ class Distributer {
     Map<Integer, ClientAffinityStats> getAffinityStatsSnapshot()
     {
         Map<Integer, ClientAffinityStats> retval = new HashMap<>();
-        // these get modified under this lock in queue()
-        synchronized(this) {
-            for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
-                retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
-            }
+        for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
+            retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
         }
         return retval;
     }
@@ -1422,6 +1684,21 @@ class Distributer {
         return Collections.unmodifiableMap(connectedHostIPAndPortMap);
     }
 
+    /*
+     * Publish the connection set and the affinity maps for the lock free readers.
+     * Must be called while holding the distributer lock after changing them.
+     */
+    private void publishConnections() {
+        assert(Thread.holdsLock(this));
+        m_connectionArray = m_connections.toArray(new NodeConnection[0]);
+    }
+
+    private void publishTopology() {
+        assert(Thread.holdsLock(this));
+        m_topology = new AffinityTopology(m_hashinator,
+                ImmutableMap.copyOf(m_partitionMasters), ImmutableMap.copyOf(m_partitionReplicas));
+    }
+
     private void updateAffinityTopology(VoltTable tables[]) {
         //First table contains the description of partition ids master/slave relationships
         VoltTable vt = tables[0];
@@ -1471,6 +1748,7 @@ class Distributer {
                 m_partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
             }
         }
+        publishTopology();
         if (m_topologyChangeAware) {
             m_unconnectedHosts.set(ImmutableSet.copyOf(unconnected));
         }
@@ -1525,7 +1803,7 @@ class Distributer {
      * @return
      */
     public boolean isHashinatorInitialized() {
-        return (m_hashinator != null);
+        return (m_topology.m_hashinator != null);
     }
 
     /**
@@ -1536,10 +1814,23 @@ class Distributer {
      * @return
      */
     public long getPartitionForParameter(byte typeValue, Object value) {
-        if (m_hashinator == null) {
+        final HashinatorLite hashinator = m_topology.m_hashinator;
+        if (hashinator == null) {
+            return -1;
+        }
+        return hashinator.getHashedPartitionForParameter(typeValue, value);
+    }
+
+    /**
+     * Same as {@link #getPartitionForParameter(byte, Object)} for a non-null value of an integer
+     * type, without boxing it.
+     */
+    public long getPartitionForLong(long value) {
+        final HashinatorLite hashinator = m_topology.m_hashinator;
+        if (hashinator == null) {
             return -1;
         }
-        return m_hashinator.getHashedPartitionForParameter(typeValue, value);
+        return hashinator.hashinateLong(value);
     }
 
     private ByteBuffer serializeSPI(ProcedureInvocation pi) throws IOException {
@@ -0,0 +1,113 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * <p>A group of procedure calls that are sent to the cluster together. Calls are added with
+ * {@link #add(String, Object...)} and nothing is sent until {@link #execute()} is called. The calls
+ * are then routed like any other asynchronous call, including client affinity, and the calls that go
+ * to the same server are written to its connection as a single network write.</p>
+ *
+ * <p>This is meant for applications that issue many small calls at a time: it saves a write, and the
+ * work that goes with it, per call. Each call is still a separate transaction, there is no atomicity
+ * or ordering across the calls of a batch.</p>
+ *
+ * <p>A batch is not thread safe and can only be executed once.</p>
+ */
+public final class ProcedureBatch {
+
+    private final ClientImpl m_client;
+    private final List<String> m_procNames = new ArrayList<>();
+    private final List<Object[]> m_parameters = new ArrayList<>();
+    private final List<SettableFuture<ClientResponse>> m_responses = new ArrayList<>();
+    private boolean m_executed = false;
+
+    ProcedureBatch(ClientImpl client) {
+        m_client = client;
+    }
+
+    /**
+     * Add a procedure call to the batch.
+     *
+     * @param procName class name (not qualified by package) of the procedure to execute.
+     * @param parameters vararg list of procedure's parameter values.
+     * @return future that will be set to the response of the call once the batch has been executed.
+     * A call that fails, times out or can't be queued gets a response with the corresponding status,
+     * the future never fails with an exception.
+     */
+    public ListenableFuture<ClientResponse> add(String procName, Object... parameters) {
+        if (m_executed) {
+            throw new IllegalStateException("Can't add to a batch that has already been executed");
+        }
+        SettableFuture<ClientResponse> response = SettableFuture.create();
+        m_procNames.add(procName);
+        m_parameters.add(parameters);
+        m_responses.add(response);
+        return response;
+    }
+
+    /**
+     * @return number of calls in the batch
+     */
+    public int size() {
+        return m_procNames.size();
+    }
+
+    /**
+     * Send all the calls of the batch. If the client is configured to block on backpressure this
+     * blocks until all the calls have been queued, otherwise the calls that can't be queued get a
+     * response with the {@link ClientResponse#GRACEFUL_FAILURE} status.
+     *
+     * @return future that will be set to the responses of all the calls, in the order they were added,
+     * once every call has completed.
+     * @throws NoConnectionsException if this {@link Client} instance is not connected to any servers.
+     * @throws IOException if there is a Java network or connection problem.
+     */
+    public ListenableFuture<List<ClientResponse>> execute() throws NoConnectionsException, IOException {
+        if (m_executed) {
+            throw new IllegalStateException("A batch can only be executed once");
+        }
+        m_executed = true;
+
+        List<ProcedureCallback> callbacks = new ArrayList<>(m_responses.size());
+        for (final SettableFuture<ClientResponse> response : m_responses) {
+            callbacks.add(new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse clientResponse) {
+                    response.set(clientResponse);
+                }
+            });
+        }
+        m_client.executeBatch(m_procNames, m_parameters, callbacks);
+        return Futures.allAsList(m_responses);
+    }
+}
@@ -187,52 +187,70 @@ class RateLimiter {
         }
     }
 
-    /**
-     *
-     *
-     * @param timestamp The time as measured when the call is made.
-     * @param ignoreBackpressure If true, never block.
-     * @return The time as measured when the call returns.
+    /*
+     * Take a send from the current block if the rate and the number of
+     * outstanding transactions allow it (or ignoreBackpressure is set).
      */
-    long sendTxnWithOptionalBlockAndReturnCurrentTime(long timestampNanos, long timeoutNanos, boolean ignoreBackpressure) throws TimeoutException {
-        if (m_doesAnyTuning) {
-            long timestamp = TimeUnit.NANOSECONDS.toMillis(timestampNanos);
-            while (true) {
-                synchronized(this) {
-                    // switch to a new block if 100ms has passed
-                    // possibly compute a new target rate
-                    ensureCurrentBlockIsKosher(timestamp);
+    private synchronized boolean trySend(long timestamp, boolean ignoreBackpressure) {
+        // switch to a new block if 100ms has passed
+        // possibly compute a new target rate
+        ensureCurrentBlockIsKosher(timestamp);
 
-                    assert((timestamp - m_currentBlockTimestamp) <= BLOCK_SIZE);
+        assert((timestamp - m_currentBlockTimestamp) <= BLOCK_SIZE);
 
-                    // don't let the time be before the start of the current block
-                    // also ensure faketime - m_currentBlockTimestamp is positive
-                    long faketime = timestamp < m_currentBlockTimestamp ? m_currentBlockTimestamp : timestamp;
+        // don't let the time be before the start of the current block
+        // also ensure faketime - m_currentBlockTimestamp is positive
+        long faketime = timestamp < m_currentBlockTimestamp ? m_currentBlockTimestamp : timestamp;
 
-                    long targetTxnsPerBlock = m_targetTxnsPerSecond / (1000 / BLOCK_SIZE);
+        long targetTxnsPerBlock = m_targetTxnsPerSecond / (1000 / BLOCK_SIZE);
 
-                    // compute the percentage of the current 100ms block that has passed
-                    double expectedTxnsSent =
-                            targetTxnsPerBlock * (faketime - m_currentBlockTimestamp + 1.0) / BLOCK_SIZE;
-                    expectedTxnsSent = Math.ceil(expectedTxnsSent);
+        // compute the percentage of the current 100ms block that has passed
+        double expectedTxnsSent =
+                targetTxnsPerBlock * (faketime - m_currentBlockTimestamp + 1.0) / BLOCK_SIZE;
+        expectedTxnsSent = Math.ceil(expectedTxnsSent);
 
-                    assert(expectedTxnsSent <= targetTxnsPerBlock); // stupid fp math
-                    assert((expectedTxnsSent >= 1.0) || (targetTxnsPerBlock == 0));
+        assert(expectedTxnsSent <= targetTxnsPerBlock); // stupid fp math
+        assert((expectedTxnsSent >= 1.0) || (targetTxnsPerBlock == 0));
 
-                    // if the rate is under target, no problems
-                    if (((m_currentBlockSendCount < expectedTxnsSent) &&
-                         (m_outstandingTxns < m_maxOutstandingTxns)) ||
-                        (ignoreBackpressure == true)) {
+        // if the rate is under target, no problems
+        if (((m_currentBlockSendCount < expectedTxnsSent) &&
+             (m_outstandingTxns < m_maxOutstandingTxns)) ||
+            (ignoreBackpressure == true)) {
 
-                        // bookkeeping
-                        ++m_currentBlockSendCount;
-                        ++m_outstandingTxns;
+            // bookkeeping
+            ++m_currentBlockSendCount;
+            ++m_outstandingTxns;
+            return true;
+        }
+        return false;
+    }
 
-                        // exit the while loop
-                        break;
-                    }
-                }
+    /**
+     * Non blocking version of {@link #sendTxnWithOptionalBlockAndReturnCurrentTime}. Takes a
+     * permit for one transaction only if the rate limit and max outstanding allow it right now.
+     * A permit that is taken is returned by {@link #transactionResponseReceived}.
+     *
+     * @param timestampNanos The time as measured when the call is made.
+     * @return true if the transaction can be sent, false if it has to wait.
+     */
+    boolean trySendTxn(long timestampNanos) {
+        if (m_doesAnyTuning) {
+            return trySend(TimeUnit.NANOSECONDS.toMillis(timestampNanos), false);
+        }
+        return m_outstandingTxnsSemaphore.tryAcquire();
+    }
 
+    /**
+     *
+     *
+     * @param timestamp The time as measured when the call is made.
+     * @param ignoreBackpressure If true, never block.
+     * @return The time as measured when the call returns.
+     */
+    long sendTxnWithOptionalBlockAndReturnCurrentTime(long timestampNanos, long timeoutNanos, boolean ignoreBackpressure) throws TimeoutException {
+        if (m_doesAnyTuning) {
+            long timestamp = TimeUnit.NANOSECONDS.toMillis(timestampNanos);
+            while (!trySend(timestamp, ignoreBackpressure)) {
                 // if the rate is above target, pause for the smallest time possible
                 try { Thread.sleep(1); } catch (InterruptedException e) {}
                 timestampNanos = System.nanoTime();
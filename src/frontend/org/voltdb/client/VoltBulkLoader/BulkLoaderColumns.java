@@ -0,0 +1,387 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client.VoltBulkLoader;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import org.voltdb.VoltOverflowException;
+import org.voltdb.VoltType;
+import org.voltdb.VoltTypeException;
+import org.voltdb.client.ClientImpl;
+import org.voltdb.common.Constants;
+import org.voltdb.types.TimestampType;
+import org.voltdb.types.VoltDecimalHelper;
+
+/**
+ * A batch of rows given column by column for {@link VoltBulkLoader#insertColumns(BulkLoaderColumns)}.
+ * Every column of the table is set with one array holding the values of all the rows, the rows are
+ * serialized from the arrays straight into the tables sent to the partitions without an Object per
+ * value or row.
+ *
+ * The array types accepted for a column depend on the type of the column:
+ * <ul>
+ * <li>TINYINT, SMALLINT, INTEGER and BIGINT: <code>byte[]</code>, <code>short[]</code>,
+ * <code>int[]</code> or <code>long[]</code>, values out of the range of the column fail the row</li>
+ * <li>TIMESTAMP: <code>long[]</code> of microseconds since the epoch</li>
+ * <li>FLOAT: <code>double[]</code></li>
+ * <li>DECIMAL: <code>BigDecimal[]</code></li>
+ * <li>VARCHAR: <code>String[]</code> or <code>byte[][]</code> of UTF-8 encoded strings</li>
+ * <li>VARBINARY: <code>byte[][]</code></li>
+ * </ul>
+ * Tables with columns of other types have to be loaded with {@link VoltBulkLoader#insertRow(Object, Object...)}.
+ *
+ * A value of a primitive array is NULL if it is the VoltDB null value of the Java type, as for
+ * {@link VoltBulkLoader#insertRow(Object, Object...)}, or if it is flagged with {@link #setNulls(int, boolean[])}.
+ * A value of an object array is NULL if it is null.
+ *
+ * The arrays are read while {@link VoltBulkLoader#insertColumns(BulkLoaderColumns)} runs only, they can
+ * be refilled for the next batch once it returned.
+ */
+public class BulkLoaderColumns {
+    final int m_rowCount;
+    final Object[] m_columns;
+    final boolean[][] m_nulls;
+    Object[] m_rowHandles;
+
+    /**
+     * @param columnCount Number of columns of the table
+     * @param rowCount Number of rows in the batch, the arrays of the columns can be longer
+     */
+    public BulkLoaderColumns(int columnCount, int rowCount) {
+        if (columnCount <= 0 || rowCount < 0) {
+            throw new IllegalArgumentException("Invalid number of columns " + columnCount + " or rows " + rowCount);
+        }
+        m_rowCount = rowCount;
+        m_columns = new Object[columnCount];
+        m_nulls = new boolean[columnCount][];
+    }
+
+    public int getRowCount() {
+        return m_rowCount;
+    }
+
+    public void setColumn(int index, byte[] values) {
+        set(index, values, values.length);
+    }
+
+    public void setColumn(int index, short[] values) {
+        set(index, values, values.length);
+    }
+
+    public void setColumn(int index, int[] values) {
+        set(index, values, values.length);
+    }
+
+    public void setColumn(int index, long[] values) {
+        set(index, values, values.length);
+    }
+
+    public void setColumn(int index, double[] values) {
+        set(index, values, values.length);
+    }
+
+    public void setColumn(int index, BigDecimal[] values) {
+        set(index, values, values.length);
+    }
+
+    public void setColumn(int index, String[] values) {
+        set(index, values, values.length);
+    }
+
+    public void setColumn(int index, byte[][] values) {
+        set(index, values, values.length);
+    }
+
+    /**
+     * Flag the rows with a NULL value in a column of primitive values
+     *
+     * @param index Index of the column
+     * @param nulls true for the rows with a NULL value, null to clear the flags
+     */
+    public void setNulls(int index, boolean[] nulls) {
+        if (nulls != null && nulls.length < m_rowCount) {
+            throw new IllegalArgumentException("Null flags of column " + index + " have " + nulls.length +
+                    " values for " + m_rowCount + " rows");
+        }
+        m_nulls[index] = nulls;
+    }
+
+    /**
+     * Set the handles passed to the callbacks of the loader for the rows. Without handles the
+     * callbacks get the index of the row in the batch as an Integer.
+     */
+    public void setRowHandles(Object[] rowHandles) {
+        if (rowHandles != null && rowHandles.length < m_rowCount) {
+            throw new IllegalArgumentException(rowHandles.length + " row handles for " + m_rowCount + " rows");
+        }
+        m_rowHandles = rowHandles;
+    }
+
+    private void set(int index, Object values, int length) {
+        if (length < m_rowCount) {
+            throw new IllegalArgumentException("Column " + index + " has " + length + " values for " +
+                    m_rowCount + " rows");
+        }
+        m_columns[index] = values;
+    }
+
+    Object getRowHandle(int row) {
+        return m_rowHandles == null ? Integer.valueOf(row) : m_rowHandles[row];
+    }
+
+    /**
+     * Check that every column is set with an array that can be loaded into a column of its type
+     */
+    void validate(VoltType[] types) {
+        if (types.length != m_columns.length) {
+            throw new IllegalArgumentException("Batch has " + m_columns.length + " columns, " +
+                    types.length + " expected");
+        }
+        for (int i = 0; i < types.length; i++) {
+            Object column = m_columns[i];
+            if (column == null) {
+                throw new IllegalArgumentException("Column " + i + " is not set");
+            }
+            boolean accepted;
+            switch (types[i]) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                accepted = isIntegral(column);
+                break;
+            case TIMESTAMP:
+                accepted = column instanceof long[];
+                break;
+            case FLOAT:
+                accepted = column instanceof double[];
+                break;
+            case DECIMAL:
+                accepted = column instanceof BigDecimal[];
+                break;
+            case STRING:
+                accepted = column instanceof String[] || column instanceof byte[][];
+                break;
+            case VARBINARY:
+                accepted = column instanceof byte[][];
+                break;
+            default:
+                throw new IllegalArgumentException("Column " + i + " of type " + types[i] +
+                        " can't be loaded by column, use insertRow()");
+            }
+            if (!accepted) {
+                throw new IllegalArgumentException("Column " + i + " is " + column.getClass().getSimpleName() +
+                        " which can't be loaded into type " + types[i]);
+            }
+            if (m_nulls[i] != null && !isPrimitive(column)) {
+                throw new IllegalArgumentException("Null flags are set for column " + i +
+                        " which holds objects, use null values instead");
+            }
+        }
+    }
+
+    private static boolean isIntegral(Object column) {
+        return column instanceof byte[] || column instanceof short[] ||
+                column instanceof int[] || column instanceof long[];
+    }
+
+    private static boolean isPrimitive(Object column) {
+        return isIntegral(column) || column instanceof double[];
+    }
+
+    boolean isNull(int col, int row) {
+        if (m_nulls[col] != null && m_nulls[col][row]) {
+            return true;
+        }
+        Object column = m_columns[col];
+        if (column instanceof long[]) {
+            return ((long[]) column)[row] == VoltType.NULL_BIGINT;
+        } else if (column instanceof int[]) {
+            return ((int[]) column)[row] == VoltType.NULL_INTEGER;
+        } else if (column instanceof short[]) {
+            return ((short[]) column)[row] == VoltType.NULL_SMALLINT;
+        } else if (column instanceof byte[]) {
+            return ((byte[]) column)[row] == VoltType.NULL_TINYINT;
+        } else if (column instanceof double[]) {
+            return ((double[]) column)[row] == VoltType.NULL_FLOAT;
+        } else {
+            return ((Object[]) column)[row] == null;
+        }
+    }
+
+    private long getLong(int col, int row) {
+        Object column = m_columns[col];
+        if (column instanceof long[]) {
+            return ((long[]) column)[row];
+        } else if (column instanceof int[]) {
+            return ((int[]) column)[row];
+        } else if (column instanceof short[]) {
+            return ((short[]) column)[row];
+        } else {
+            return ((byte[]) column)[row];
+        }
+    }
+
+    /**
+     * @return the partition of a row of a partitioned table, the same
+     * {@link ClientImpl#getPartitionForParameter(byte, Object)} gives for the boxed value
+     */
+    int getPartition(ClientImpl client, VoltType partitionType, int partitionColumn, int row) {
+        if (isNull(partitionColumn, row)) {
+            return (int) client.getPartitionForParameter(partitionType.getValue(), null);
+        }
+        Object column = m_columns[partitionColumn];
+        if (isIntegral(column)) {
+            return (int) client.getPartitionForLong(getLong(partitionColumn, row));
+        }
+        Object value = ((Object[]) column)[row];
+        if (value instanceof String) {
+            value = ((String) value).getBytes(Constants.UTF8ENCODING);
+        }
+        return (int) client.getPartitionForParameter(partitionType.getValue(), value);
+    }
+
+    /**
+     * @return an upper bound of the serialized size of a row without the row length
+     */
+    int getMaxRowSize(VoltType[] types, int row) {
+        int size = 0;
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+            case STRING:
+            case VARBINARY:
+                Object value = ((Object[]) m_columns[i])[row];
+                if (value instanceof String) {
+                    // At most 3 bytes per UTF-16 char in UTF-8
+                    size += 4 + ((String) value).length() * 3;
+                } else if (value != null) {
+                    size += 4 + ((byte[]) value).length;
+                } else {
+                    size += 4;
+                }
+                break;
+            default:
+                size += types[i].getLengthInBytesForFixedTypesWithoutCheck();
+                break;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Serialize the values of a row as VoltTable row data without the row length. On failure the
+     * buffer is left partially written for the caller to roll back.
+     *
+     * @throws RuntimeException if a value doesn't fit its column
+     */
+    void writeRow(ByteBuffer buf, VoltType[] types, int row) {
+        for (int i = 0; i < types.length; i++) {
+            final VoltType type = types[i];
+            final boolean isNull = isNull(i, row);
+            switch (type) {
+            case TINYINT:
+                buf.put(isNull ? VoltType.NULL_TINYINT : (byte) checkRange(i, row, type));
+                break;
+            case SMALLINT:
+                buf.putShort(isNull ? VoltType.NULL_SMALLINT : (short) checkRange(i, row, type));
+                break;
+            case INTEGER:
+                buf.putInt(isNull ? VoltType.NULL_INTEGER : (int) checkRange(i, row, type));
+                break;
+            case BIGINT:
+            case TIMESTAMP:
+                buf.putLong(isNull ? VoltType.NULL_BIGINT : getLong(i, row));
+                break;
+            case FLOAT:
+                buf.putDouble(isNull ? VoltType.NULL_FLOAT : ((double[]) m_columns[i])[row]);
+                break;
+            case DECIMAL:
+                VoltDecimalHelper.serializeBigDecimal(((BigDecimal[]) m_columns[i])[row], buf);
+                break;
+            case STRING:
+            case VARBINARY: {
+                Object value = ((Object[]) m_columns[i])[row];
+                byte[] bytes = value instanceof String ? ((String) value).getBytes(Constants.UTF8ENCODING) :
+                    (byte[]) value;
+                if (bytes == null) {
+                    buf.putInt(-1);
+                } else {
+                    if (bytes.length > VoltType.MAX_VALUE_LENGTH) {
+                        throw new VoltOverflowException("Value in column " + i + " larger than allowed max " +
+                                VoltType.humanReadableSize(VoltType.MAX_VALUE_LENGTH));
+                    }
+                    buf.putInt(bytes.length);
+                    buf.put(bytes);
+                }
+                break;
+            }
+            default:
+                throw new VoltTypeException("Unsupported type: " + type);
+            }
+        }
+    }
+
+    private long checkRange(int col, int row, VoltType type) {
+        final long value = getLong(col, row);
+        final long min, max;
+        switch (type) {
+        case TINYINT:
+            min = Byte.MIN_VALUE;
+            max = Byte.MAX_VALUE;
+            break;
+        case SMALLINT:
+            min = Short.MIN_VALUE;
+            max = Short.MAX_VALUE;
+            break;
+        default:
+            min = Integer.MIN_VALUE;
+            max = Integer.MAX_VALUE;
+            break;
+        }
+        // The minimum is the NULL value of the type
+        if (value <= min || value > max) {
+            throw new VoltTypeException("Cast of " + value + " to " + type + " would overflow");
+        }
+        return value;
+    }
+
+    /**
+     * @return the values of a row as they would be passed to {@link VoltBulkLoader#insertRow(Object, Object...)},
+     * for reporting and retrying failed rows
+     */
+    Object[] getRow(VoltType[] types, int row) {
+        Object[] values = new Object[m_columns.length];
+        for (int i = 0; i < values.length; i++) {
+            if (isNull(i, row)) {
+                continue;
+            }
+            Object column = m_columns[i];
+            if (types[i] == VoltType.TIMESTAMP) {
+                values[i] = new TimestampType(((long[]) column)[row]);
+            } else if (isIntegral(column)) {
+                values[i] = getLong(i, row);
+            } else if (column instanceof double[]) {
+                values[i] = ((double[]) column)[row];
+            } else {
+                values[i] = ((Object[]) column)[row];
+            }
+        }
+        return values;
+    }
+}
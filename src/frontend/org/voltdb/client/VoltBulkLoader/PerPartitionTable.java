@@ -18,6 +18,7 @@
 package org.voltdb.client.VoltBulkLoader;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -35,7 +36,9 @@ import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.ParameterConverter;
+import org.voltdb.PrivateVoltTableFactory;
 import org.voltdb.VoltTable;
+import org.voltdb.VoltTableRow;
 import org.voltdb.VoltType;
 import org.voltdb.VoltTypeException;
 import org.voltdb.client.ClientImpl;
@@ -69,6 +72,8 @@ public class PerPartitionTable {
     final VoltTable.ColumnInfo m_columnInfo[];
     //Column types
     final VoltType[] m_columnTypes;
+    //Serialized header of the table, for building tables from columnar batches
+    final byte[] m_schema;
     //Size of the batches this table submits (minimum of all values provided by VoltBulkLoaders)
     volatile int m_minBatchTriggerSize;
     //Insert procedure name
@@ -131,6 +136,67 @@ public class PerPartitionTable {
         }
     }
 
+    // Callback for a table built from a columnar batch. The rows are only turned into objects
+    // when the batch fails and they have to be retried one by one.
+    class ColumnarProcedureCallback implements ProcedureCallback {
+        final VoltBulkLoader m_loader;
+        final VoltTable m_batchTable;
+        final Object[] m_rowHandles;
+        final int[] m_rows;
+
+        ColumnarProcedureCallback(VoltBulkLoader loader, VoltTable batchTable, Object[] rowHandles, int[] rows) {
+            m_loader = loader;
+            m_batchTable = batchTable;
+            m_rowHandles = rowHandles;
+            m_rows = rows;
+        }
+
+        Object getRowHandle(int index) {
+            return m_rowHandles == null ? Integer.valueOf(m_rows[index]) : m_rowHandles[index];
+        }
+
+        @Override
+        public void clientCallback(final ClientResponse response) throws InterruptedException {
+            final int rowCount = m_batchTable.getRowCount();
+            if (response.getStatus() != ClientResponse.SUCCESS) {
+                m_es.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            List<VoltBulkLoaderRow> rows = new ArrayList<VoltBulkLoaderRow>(rowCount);
+                            for (int i = 0; i < rowCount; i++) {
+                                VoltTableRow row = m_batchTable.fetchRow(i);
+                                Object[] values = new Object[m_columnTypes.length];
+                                for (int c = 0; c < values.length; c++) {
+                                    Object value = row.get(c, m_columnTypes[c]);
+                                    values[c] = row.wasNull() ? null : value;
+                                }
+                                rows.add(new VoltBulkLoaderRow(m_loader, getRowHandle(i), values));
+                            }
+                            reinsertFailed(rows);
+                        } catch (Exception e) {
+                            loaderLog.error("Failed to re-insert failed batch", e);
+                        }
+                    }
+                });
+            }
+            else {
+                if (m_successCallback != null) {
+                    m_es.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int i = 0; i < rowCount; i++) {
+                                m_successCallback.success(getRowHandle(i), response);
+                            }
+                        }
+                    });
+                }
+                m_loader.m_loaderCompletedCnt.addAndGet(rowCount);
+                m_loader.m_outstandingRowCount.addAndGet(-rowCount);
+            }
+        }
+    }
+
     PerPartitionTable(ClientImpl clientImpl, String tableName, int partitionId, boolean isMP,
             VoltBulkLoader firstLoader, int minBatchTriggerSize, BulkLoaderSuccessCallback successCallback) {
         m_clientImpl = clientImpl;
@@ -147,6 +213,7 @@ public class PerPartitionTable {
         m_tableName = tableName;
         m_successCallback = successCallback;
         m_table = new VoltTable(m_columnInfo);
+        m_schema = PrivateVoltTableFactory.getSchemaBytes(m_table);
         m_autoReconnect = m_clientImpl.isAutoReconnectEnabled();
 
         m_es = CoreUtils.getSingleThreadExecutor(tableName + "-" + partitionId);
@@ -200,6 +267,76 @@ public class PerPartitionTable {
         });
     }
 
+    /**
+     * Serialize rows of a columnar batch that belong to this partition into tables of at most the
+     * batch size and submit them. Rows with values that don't fit their columns are reported to the
+     * loader's failure callback and left out.
+     *
+     * @param rows Indexes of the rows of the batch, the ones from <code>from</code> to <code>to</code>
+     * belong to this partition
+     * @return the submissions of the tables, done once the tables were handed to the client
+     */
+    List<Future<?>> insertColumns(VoltBulkLoader loader, BulkLoaderColumns columns, int[] rows, int from, int to) {
+        List<Future<?>> submissions = new ArrayList<Future<?>>();
+        final int batchSize = m_minBatchTriggerSize;
+        for (int start = from; start < to; start += batchSize) {
+            final int end = Math.min(to, start + batchSize);
+            ByteBuffer buf = ByteBuffer.allocate(m_schema.length + 4 + (end - start) * 64);
+            buf.put(m_schema);
+            buf.putInt(0);
+            int[] tableRows = new int[end - start];
+            Object[] rowHandles = columns.m_rowHandles == null ? null : new Object[end - start];
+            int rowCount = 0;
+            for (int i = start; i < end; i++) {
+                final int row = rows[i];
+                final int maxSize = 4 + columns.getMaxRowSize(m_columnTypes, row);
+                if (buf.remaining() < maxSize) {
+                    ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + maxSize));
+                    buf.flip();
+                    bigger.put(buf);
+                    buf = bigger;
+                }
+                final int pos = buf.position();
+                try {
+                    buf.position(pos + 4);
+                    columns.writeRow(buf, m_columnTypes, row);
+                    final int rowSize = buf.position() - pos - 4;
+                    if (rowSize > VoltTableRow.MAX_TUPLE_LENGTH) {
+                        throw new VoltTypeException("Table row total length larger than allowed max " +
+                                VoltTableRow.MAX_TUPLE_LENGTH_STR);
+                    }
+                    buf.putInt(pos, rowSize);
+                } catch (RuntimeException e) {
+                    buf.position(pos);
+                    loader.generateError(columns.getRowHandle(row), columns.getRow(m_columnTypes, row), e.getMessage());
+                    continue;
+                }
+                tableRows[rowCount] = row;
+                if (rowHandles != null) {
+                    rowHandles[rowCount] = columns.m_rowHandles[row];
+                }
+                rowCount++;
+            }
+            if (rowCount == 0) {
+                continue;
+            }
+            buf.putInt(m_schema.length, rowCount);
+            buf.flip();
+            final VoltTable table = PrivateVoltTableFactory.createVoltTableFromBuffer(buf, true);
+            final ColumnarProcedureCallback callback = new ColumnarProcedureCallback(loader, table, rowHandles,
+                    Arrays.copyOf(tableRows, rowCount));
+            loader.m_outstandingRowCount.addAndGet(rowCount);
+            submissions.add(m_es.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    sendTable(callback, table);
+                    return true;
+                }
+            }));
+        }
+        return submissions;
+    }
+
     void shutdown() throws Exception {
         try {
             flushAllTableQueues().get();
@@ -298,6 +435,11 @@ public class PerPartitionTable {
         if (toSend.getRowCount() <= 0) {
             return;
         }
+        sendTable(callback, toSend);
+        toSend.clearRowData();
+    }
+
+    private void sendTable(ProcedureCallback callback, VoltTable toSend) throws Exception {
 
         if (m_autoReconnect) {
             while (true) {
@@ -322,7 +464,6 @@ public class PerPartitionTable {
                 callback.clientCallback(r);
             }
         }
-        toSend.clearRowData();
     }
 
     private void load(ProcedureCallback callback, VoltTable toSend) throws Exception {
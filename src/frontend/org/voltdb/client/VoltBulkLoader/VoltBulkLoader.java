@@ -18,10 +18,12 @@
 package org.voltdb.client.VoltBulkLoader;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -59,6 +61,9 @@ import com.google_voltpatches.common.collect.ImmutableSortedMap;
  */
 public class VoltBulkLoader {
     private static final VoltLogger loaderLog = new VoltLogger("LOADER");
+    // Reported for rows of a partitioned table loaded before the Client received the hashinator
+    private static final String NO_HASHINATOR_ERROR =
+            "Error: the partitioning of the cluster is not known to the Client yet, the row was not inserted";
 
     final BulkLoaderState m_vblGlobals;
     final ClientImpl m_clientImpl;
@@ -338,6 +343,10 @@ public class VoltBulkLoader {
             try {
                 partitionId = (int)m_clientImpl.getPartitionForParameter(
                         m_partitionColumnType.getValue(), fieldList[m_partitionedColumnIndex]);
+                if (partitionId < 0) {
+                    generateError(rowHandle, fieldList, NO_HASHINATOR_ERROR);
+                    return;
+                }
                 m_partitionTable[partitionId].insertRowInTable(newRow);
             } catch (VoltTypeException e) {
                 generateError(rowHandle, fieldList, e.getMessage());
@@ -347,6 +356,77 @@ public class VoltBulkLoader {
         m_outstandingRowCount.incrementAndGet();
     }
 
+    /**
+     * <p>Add a batch of rows given column by column to the VoltBulkLoader table.</p>
+     *
+     * The rows are split by partition and serialized from the arrays of the columns straight into
+     * the tables sent to the partitions, in batches of at most the batch size of the loader. Unlike
+     * {@link #insertRow(Object, Object...)} no Object is created per value or row, unless a row fails
+     * and is passed to the failure callback. Returns once all the rows were handed to the Client,
+     * the arrays of the columns can be reused then.
+     *
+     * @param columns The rows to insert
+     * @throws IllegalArgumentException if the columns don't match the table
+     * @throws java.lang.InterruptedException
+     */
+    public void insertColumns(BulkLoaderColumns columns) throws InterruptedException {
+        columns.validate(m_columnTypes);
+        final int rowCount = columns.getRowCount();
+        if (rowCount == 0) {
+            return;
+        }
+
+        // Find the partition of every row and group the rows by partition
+        int[] partitions = new int[rowCount];
+        int[] starts = new int[m_partitionTable.length + 1];
+        for (int row = 0; row < rowCount; row++) {
+            int partitionId = m_firstPartitionTable;
+            if (!m_isMP) {
+                try {
+                    partitionId = columns.getPartition(m_clientImpl, m_partitionColumnType,
+                            m_partitionedColumnIndex, row);
+                    if (partitionId < 0) {
+                        generateError(columns.getRowHandle(row), columns.getRow(m_columnTypes, row),
+                                NO_HASHINATOR_ERROR);
+                    }
+                } catch (VoltTypeException e) {
+                    generateError(columns.getRowHandle(row), columns.getRow(m_columnTypes, row), e.getMessage());
+                    partitionId = -1;
+                }
+            }
+            partitions[row] = partitionId;
+            if (partitionId >= 0) {
+                starts[partitionId + 1]++;
+            }
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] rows = new int[starts[starts.length - 1]];
+        int[] next = Arrays.copyOf(starts, m_partitionTable.length);
+        for (int row = 0; row < rowCount; row++) {
+            if (partitions[row] >= 0) {
+                rows[next[partitions[row]]++] = row;
+            }
+        }
+
+        List<Future<?>> submissions = new ArrayList<Future<?>>();
+        for (int i = m_firstPartitionTable; i <= m_lastPartitionTable; i++) {
+            if (starts[i] < starts[i + 1]) {
+                submissions.addAll(m_partitionTable[i].insertColumns(this, columns, rows, starts[i], starts[i + 1]));
+            }
+        }
+        // Wait for the tables to be handed to the Client, this keeps the caller from running
+        // ahead of the Client's backpressure
+        for (Future<?> submission : submissions) {
+            try {
+                submission.get();
+            } catch (ExecutionException e) {
+                loaderLog.error("Failed to load batch", e.getCause());
+            }
+        }
+    }
+
     /**
      * Called to asynchronously force the VoltBulkLoader to submit all the partially full batches
      * in all partitions of the table to the Client for insert. To wait for all rows to be processed,
@@ -17,13 +17,12 @@
 
 package org.voltdb.compiler;
 
-import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.voltdb.common.Constants;
 import org.voltdb.planner.BoundPlan;
@@ -31,6 +30,7 @@ import org.voltdb.utils.Encoder;
 
 import com.google_voltpatches.common.cache.Cache;
 import com.google_voltpatches.common.cache.CacheBuilder;
+import com.google_voltpatches.common.cache.Weigher;
 
 /**
  * Keep a cache two level cache of plans generated by the Ad Hoc
@@ -43,9 +43,11 @@ import com.google_voltpatches.common.cache.CacheBuilder;
  * statement mapped to core parameterized plans. These parameterized
  * plans need parameter values and sql literals in order to be
  * actually used.
+ *
+ * Both levels are TinyLfuCaches, so planner threads look plans up without
+ * locking and only contend on inserts that land in the same shard.
  */
-public class AdHocCompilerCache implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class AdHocCompilerCache {
 
     //////////////////////////////////////////////////////////////////////////
     // STATIC CODE TO MANAGE CACHE LIFETIMES / GLOBALNESS
@@ -83,22 +85,20 @@ public class AdHocCompilerCache implements Serializable {
     final long MAX_LITERAL_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
     final int MAX_CORE_ENTRIES;
 
-    /** cache of literals to full plans */
-    final Map<String, AdHocPlannedStatement> m_literalCache;
+    /** cache of literals to full plans, bounded by count and by serialized plan size */
+    final TinyLfuCache<String, AdHocPlannedStatement> m_literalCache;
     /** cache of parameterized plan descriptions to one or more core parameterized plans,
      *  each plan optionally has its own requirements for which parameters need to be bound
      *  to what values to enable its specialized (expression-indexed) plan. */
-    final Map<String, List<BoundPlan> > m_coreCache;
+    final TinyLfuCache<String, CopyOnWriteArrayList<BoundPlan> > m_coreCache;
 
     // placeholder stats used during development that may/may not survive
-    long m_literalHits = 0;
-    long m_literalQueries = 0;
-    long m_literalInsertions = 0;
-    long m_literalEvictions = 0;
-    long m_planHits = 0;
-    long m_planQueries = 0;
-    long m_planInsertions = 0;
-    long m_planEvictions = 0;
+    final LongAdder m_literalHits = new LongAdder();
+    final LongAdder m_literalQueries = new LongAdder();
+    final LongAdder m_literalInsertions = new LongAdder();
+    final LongAdder m_planHits = new LongAdder();
+    final LongAdder m_planQueries = new LongAdder();
+    final LongAdder m_planInsertions = new LongAdder();
 
     /** {@see this#startPeriodicStatsPrinting() } */
     Timer m_statsTimer = null;
@@ -120,121 +120,48 @@ public class AdHocCompilerCache implements Serializable {
         MAX_LITERAL_ENTRIES = maxLiteralEntries;
         MAX_CORE_ENTRIES = maxCoreEntries;
 
-        // an LRU cache map
-        m_literalCache = new AdHocStatementCache(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM);
-
-        // an LRU cache map
-        m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
-            private static final long serialVersionUID = 1L;
-
-            // This method is called just after a new entry has been added
-            @Override
-            public boolean removeEldestEntry(Map.Entry<String, List<BoundPlan> > eldest) {
-                if (size() > MAX_CORE_ENTRIES) {
-                    ++m_planEvictions;
-                    return true;
-                }
-                return false;
-            }
-
-        };
-    }
-
-    // define a LinkedHashMap based LRU cache bounds by both entry number and entry value on-heap size
-    // without changing Map.Entry, only works for value of type AdHocPlannedStatement
-    // only extend put, remove,clear and removeEldestEntry methods to account weight
-    public class AdHocStatementCache extends LinkedHashMap<String, AdHocPlannedStatement>{
-       private static final long serialVersionUID = 2988383448026641836L;
-        private final int maxEntries;
-        private final long maxMemory; // in bytes
-        private long currentMemory;   // in bytes
-
-        public AdHocStatementCache() {
-            // default max entry of 1000
-            // default max value size of 32MB
-            this(1000, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries) {
-            this(maxEntries, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries, final long maxMemory) {
-            // set accessOrder to true for LRU
-            super(maxEntries * 2, .75f, true);
-            this.maxEntries = maxEntries;
-            this.maxMemory = maxMemory;
-            this.currentMemory = 0;
-        }
-
-        // This method is called just after a new entry has been added
-        @Override
-        public boolean removeEldestEntry(final Map.Entry<String, AdHocPlannedStatement> eldest) {
-            if ((size() > maxEntries) || (this.currentMemory > this.maxMemory))  {
-                ++m_literalEvictions;
-                this.currentMemory -= eldest.getValue().getSerializedSize();
-                return true;
-            }
-            return false;
-        }
-
-        @Override
-        public AdHocPlannedStatement put(String key, AdHocPlannedStatement value) {
-            this.currentMemory += value.getSerializedSize();
-            return super.put(key,value);
-        }
-
-        @Override
-        public AdHocPlannedStatement remove(Object key) {
-            AdHocPlannedStatement value = super.remove(key);
-            if (value != null) {
-                this.currentMemory -= value.getSerializedSize();
-            }
-            return value;
-        }
+        // a literal plan weighs what it takes to serialize it
+        m_literalCache = new TinyLfuCache<>(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM,
+                new Weigher<String, AdHocPlannedStatement>() {
+                    @Override
+                    public int weigh(String sql, AdHocPlannedStatement plan) {
+                        return plan.getSerializedSize();
+                    }
+                });
 
-        @Override
-        public void clear() {
-            super.clear();
-            this.currentMemory = 0;
-        }
+        // core plans are only bounded by count
+        m_coreCache = new TinyLfuCache<>(MAX_CORE_ENTRIES, 0, null);
     }
 
     /**
      * Stats printing method used during development.
      * Probably shouldn't live past real stats integration.
      */
-    synchronized void printStats() {
+    void printStats() {
+        final long literalHits = m_literalHits.sumThenReset();
+        final long literalQueries = m_literalQueries.sumThenReset();
+        final long planHits = m_planHits.sumThenReset();
+        final long planQueries = m_planQueries.sumThenReset();
         String line1 = String.format("CACHE STATS - Literals: Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_literalHits, m_literalQueries, (m_literalHits * 100.0) / m_literalQueries,
-                m_literalInsertions, m_literalEvictions);
+                literalHits, literalQueries, (literalHits * 100.0) / literalQueries,
+                m_literalInsertions.sumThenReset(), m_literalCache.evictionCount());
         String line2 = String.format("CACHE STATS - Plans:    Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_planHits, m_planQueries, (m_planHits * 100.0) /m_planQueries,
-                m_planInsertions, m_planEvictions);
+                planHits, planQueries, (planHits * 100.0) / planQueries,
+                m_planInsertions.sumThenReset(), m_coreCache.evictionCount());
 
         System.out.print(line1 + line2);
         System.out.flush();
-
-        // reset these
-        m_literalHits = 0;
-        m_literalQueries = 0;
-        m_literalInsertions = 0;
-        m_literalEvictions = 0;
-        m_planHits = 0;
-        m_planQueries = 0;
-        m_planInsertions = 0;
-        m_planEvictions = 0;
     }
 
     /**
      * @param sql SQL literal
      * @return full, ready-to-go plan
      */
-    public synchronized AdHocPlannedStatement getWithSQL(String sql) {
-        ++m_literalQueries;
+    public AdHocPlannedStatement getWithSQL(String sql) {
+        m_literalQueries.increment();
         AdHocPlannedStatement retval = m_literalCache.get(sql);
         if (retval != null) {
-            ++m_literalHits;
+            m_literalHits.increment();
         }
         return retval;
     }
@@ -244,11 +171,11 @@ public class AdHocCompilerCache implements Serializable {
      * SQL statement
      * @return A CorePlan that needs parameter values to run.
      */
-    public synchronized List<BoundPlan> getWithParsedToken(String parsedToken) {
-        ++m_planQueries;
+    public List<BoundPlan> getWithParsedToken(String parsedToken) {
+        m_planQueries.increment();
         List<BoundPlan> retval = m_coreCache.get(parsedToken);
         if (retval != null) {
-            ++m_planHits;
+            m_planHits.increment();
         }
         return retval;
     }
@@ -271,12 +198,12 @@ public class AdHocCompilerCache implements Serializable {
      * @param hasUserQuestionMarkParameters is user provided parameterized query
      * @param hasAutoParameterizedException is the auto parameterized query has parameter exception
      */
-    public synchronized void put(String sql,
-                                 String parsedToken,
-                                 AdHocPlannedStatement planIn,
-                                 String[] extractedLiterals,
-                                 boolean hasUserQuestionMarkParameters,
-                                 boolean hasAutoParameterizedException)
+    public void put(String sql,
+                    String parsedToken,
+                    AdHocPlannedStatement planIn,
+                    String[] extractedLiterals,
+                    boolean hasUserQuestionMarkParameters,
+                    boolean hasAutoParameterizedException)
     {
         assert(sql != null);
         assert(parsedToken != null);
@@ -295,48 +222,52 @@ public class AdHocCompilerCache implements Serializable {
         if (! hasAutoParameterizedException) {
             BoundPlan matched = null;
             BoundPlan unmatched = new BoundPlan(planIn.core, planIn.parameterBindings(extractedLiterals));
-            // deal with the parameterized plan cache first
-            List<BoundPlan> boundVariants = m_coreCache.get(parsedToken);
+            // deal with the parameterized plan cache first, getWithParsedToken already counted this use
+            CopyOnWriteArrayList<BoundPlan> boundVariants = m_coreCache.peek(parsedToken);
             if (boundVariants == null) {
-                boundVariants = new ArrayList<BoundPlan>();
-                m_coreCache.put(parsedToken, boundVariants);
-                // Note that there is an edge case in which more than one plan is getting counted as one
-                // "plan insertion". This only happens when two different plans arose from the same parameterized
-                // query (token) because one invocation used the correct constants to trigger an expression index and
-                // another invocation did not.  These are not counted separately (which would have to happen below
-                // after each call to boundVariants.add) because they are not evicted separately.
-                // It seems saner to use consistent units when counting insertions vs. evictions.
-                ++m_planInsertions;
-            } else {
-                for (BoundPlan boundPlan : boundVariants) {
-                    if (boundPlan.equals(unmatched)) {
-                        matched = boundPlan;
-                        break;
-                    }
+                boundVariants = new CopyOnWriteArrayList<BoundPlan>();
+                CopyOnWriteArrayList<BoundPlan> raced = m_coreCache.putIfAbsent(parsedToken, boundVariants);
+                if (raced == null) {
+                    // Note that there is an edge case in which more than one plan is getting counted as one
+                    // "plan insertion". This only happens when two different plans arose from the same parameterized
+                    // query (token) because one invocation used the correct constants to trigger an expression index and
+                    // another invocation did not.  These are not counted separately (which would have to happen below
+                    // after each call to boundVariants.add) because they are not evicted separately.
+                    // It seems saner to use consistent units when counting insertions vs. evictions.
+                    m_planInsertions.increment();
                 }
-                if (matched != null) {
-                    // if a different core is found, reuse it
-                    // this is useful when updating the literal cache
-                    if (unmatched.m_core != matched.m_core) {
-                        plan = new AdHocPlannedStatement(planIn, matched.m_core);
-                        plan.setBoundConstants(matched.m_constants);
-                    }
+                else {
+                    // another planner thread cached this token first, share its variants
+                    boundVariants = raced;
+                }
+            }
+            for (BoundPlan boundPlan : boundVariants) {
+                if (boundPlan.equals(unmatched)) {
+                    matched = boundPlan;
+                    break;
+                }
+            }
+            if (matched != null) {
+                // if a different core is found, reuse it
+                // this is useful when updating the literal cache
+                if (unmatched.m_core != matched.m_core) {
+                    plan = new AdHocPlannedStatement(planIn, matched.m_core);
+                    plan.setBoundConstants(matched.m_constants);
                 }
             }
             if (matched == null) {
                 // Don't count insertions (of possibly repeated tokens) here
                 //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
-                boundVariants.add(unmatched);
+                boundVariants.addIfAbsent(unmatched);
             }
         }
 
         // then deal with the L1 cache
         if (! hasUserQuestionMarkParameters) {
-            AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
+            AdHocPlannedStatement cachedPlan = m_literalCache.putIfAbsent(sql, plan);
             if (cachedPlan == null) {
                 //* enable to debug */ System.out.println("DEBUG: Caching literal '" + sql + "'");
-                m_literalCache.put(sql, plan);
-                ++m_literalInsertions;
+                m_literalInsertions.increment();
             }
             else {
                 assert(cachedPlan.equals(plan));
@@ -344,6 +275,27 @@ public class AdHocCompilerCache implements Serializable {
         }
     }
 
+    /**
+     * @param max  maximum number of parameterized statements to return
+     * @return parameterized statements and their plans, the most frequently used first
+     */
+    List<Map.Entry<String, CopyOnWriteArrayList<BoundPlan> > > getHottestCorePlans(int max) {
+        return m_coreCache.hottest(max);
+    }
+
+    /**
+     * Seed the core cache with plans that were not planned here, when carrying plans over a
+     * catalog change or loading them at startup. The plans must already be bound to the
+     * catalog of this cache. Not counted as insertions.
+     */
+    void warmCorePlans(String parsedToken, List<BoundPlan> plans) {
+        CopyOnWriteArrayList<BoundPlan> boundVariants = new CopyOnWriteArrayList<BoundPlan>(plans);
+        CopyOnWriteArrayList<BoundPlan> existing = m_coreCache.putIfAbsent(parsedToken, boundVariants);
+        if (existing != null) {
+            existing.addAllAbsent(plans);
+        }
+    }
+
     /**
      * Start a timer that prints cache stats to the console every 5s.
      * Used for development until we get better stats integration.
@@ -375,4 +327,20 @@ public class AdHocCompilerCache implements Serializable {
     public int getCoreCacheSize() {
         return m_coreCache.size();
     }
+
+    /**
+     * Return the number of entries evicted from the literal cache, or never admitted to it.
+     * @return  literal cache evictions since the cache was created
+     */
+    public long getLiteralCacheEvictions() {
+        return m_literalCache.evictionCount();
+    }
+
+    /**
+     * Return the number of entries evicted from the core (parameterized) cache, or never admitted to it.
+     * @return  core cache evictions since the cache was created
+     */
+    public long getCoreCacheEvictions() {
+        return m_coreCache.evictionCount();
+    }
 }
@@ -0,0 +1,389 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.ShutdownHooks;
+import org.voltdb.CatalogContext;
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltDB;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.CatalogDiffEngine;
+import org.voltdb.common.Constants;
+import org.voltdb.planner.BoundPlan;
+import org.voltdb.planner.CorePlan;
+import org.voltdb.utils.CompressionService;
+
+/**
+ * Keeps parameterized ad hoc plans alive across catalog updates and, optionally, restarts.
+ *
+ * A plan is only carried over to a new catalog if none of the tables it reads or writes, as
+ * recorded by the planner, were touched by the catalog diff. A plan without that record is
+ * dropped by any change to a table. A change to user defined functions drops every plan
+ * since fragments refer to functions by id.
+ *
+ * With -DADHOC_PLAN_CACHE_WARM_START=true the hottest plans are also written to the voltdbroot
+ * when the server shuts down, together with the catalog they were planned against, and loaded
+ * again at startup after being checked against the catalog the server comes up with.
+ */
+final class AdHocPlanCacheWarmer {
+    private static final VoltLogger hostLog = new VoltLogger("HOST");
+
+    static final boolean WARM_START_ENABLED = Boolean.getBoolean("ADHOC_PLAN_CACHE_WARM_START");
+    static final int MAX_PERSISTED_STATEMENTS = Integer.getInteger("ADHOC_PLAN_CACHE_WARM_START_MAX_STATEMENTS", 1000);
+    static final String FILE_NAME = "adhoc_plan_cache";
+
+    private static final int FORMAT_VERSION = 2;
+    private static final String TABLES_PATH = "/tables#";
+    private static final String FUNCTIONS_PATH = "/functions#";
+
+    private static final AtomicBoolean s_warmStarted = new AtomicBoolean(false);
+
+    private AdHocPlanCacheWarmer() {
+    }
+
+    /**
+     * @param diffCommands catalog diff commands as generated by CatalogDiffEngine
+     * @return upper case names of the tables the diff adds, drops or modifies, or null
+     * if the diff changes something that could affect any plan
+     */
+    static Set<String> changedTables(String diffCommands) {
+        Set<String> changed = new HashSet<>();
+        String lastPath = "";
+        for (String command : diffCommands.split("\n")) {
+            String[] tokens = command.split(" ", 4);
+            String path;
+            if (tokens.length >= 2 && tokens[0].equals("set")) {
+                path = tokens[1].equals("$PREV") ? lastPath : tokens[1];
+            }
+            else if (tokens.length >= 4 && (tokens[0].equals("add") || tokens[0].equals("delete"))) {
+                path = tokens[1] + "/" + tokens[2] + Catalog.MAP_SEPARATOR + tokens[3];
+            }
+            else {
+                continue;
+            }
+            lastPath = path;
+
+            if (path.contains(FUNCTIONS_PATH)) {
+                return null;
+            }
+            int start = path.indexOf(TABLES_PATH);
+            if (start >= 0) {
+                start += TABLES_PATH.length();
+                int end = path.indexOf('/', start);
+                changed.add(path.substring(start, end < 0 ? path.length() : end).toUpperCase(Locale.ROOT));
+            }
+        }
+        return changed;
+    }
+
+    private static boolean dependsOnAny(CorePlan core, Set<String> changedTables) {
+        if (changedTables.isEmpty()) {
+            return false;
+        }
+        Set<String> tables = core.getTables();
+        if (tables == null) {
+            return true;
+        }
+        for (String table : tables) {
+            if (changedTables.contains(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rebind the plans that don't use a changed table to the new catalog and add them to the cache.
+     * @return number of statements whose plans were carried over
+     */
+    private static int warm(List<? extends Map.Entry<String, ? extends List<BoundPlan>>> statements,
+                            Set<String> changedTables,
+                            AdHocCompilerCache to,
+                            byte[] catalogHash) {
+        int warmed = 0;
+        for (Map.Entry<String, ? extends List<BoundPlan>> statement : statements) {
+            List<BoundPlan> plans = new ArrayList<>(statement.getValue().size());
+            for (BoundPlan plan : statement.getValue()) {
+                CorePlan core = plan.m_core;
+                if (dependsOnAny(core, changedTables)) {
+                    continue;
+                }
+                plans.add(new BoundPlan(core.forCatalogHash(catalogHash), plan.m_constants));
+            }
+            if (!plans.isEmpty()) {
+                to.warmCorePlans(statement.getKey(), plans);
+                warmed++;
+            }
+        }
+        return warmed;
+    }
+
+    /**
+     * Carry the parameterized plans of the previous catalog that are unaffected by a catalog update over
+     * to the cache of the new catalog.
+     */
+    static void carryOver(AdHocCompilerCache from, AdHocCompilerCache to, String diffCommands, byte[] catalogHash) {
+        Set<String> changedTables = changedTables(diffCommands);
+        if (changedTables == null) {
+            return;
+        }
+        int carried = warm(from.getHottestCorePlans(Integer.MAX_VALUE), changedTables, to, catalogHash);
+        if (hostLog.isDebugEnabled()) {
+            hostLog.debug("Carried " + carried + " ad hoc statement plans over the catalog update");
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        }
+        else {
+            byte[] bytes = value.getBytes(Constants.UTF8ENCODING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, Constants.UTF8ENCODING);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Write the hottest parameterized plans of a cache, with the catalog they were planned against.
+     * The file is replaced atomically so a crash mid write leaves the previous one in place.
+     */
+    static void save(File file, Catalog catalog, byte[] catalogHash, AdHocCompilerCache cache) throws IOException {
+        List<Map.Entry<String, CopyOnWriteArrayList<BoundPlan>>> statements =
+                cache.getHottestCorePlans(MAX_PERSISTED_STATEMENTS);
+        File tmp = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(
+                     new CheckedOutputStream(new BufferedOutputStream(fos), crc))) {
+            out.writeInt(FORMAT_VERSION);
+            writeBytes(out, catalogHash);
+            writeBytes(out, CompressionService.compressBytes(catalog.serialize().getBytes(Constants.UTF8ENCODING)));
+            out.writeInt(statements.size());
+            for (Map.Entry<String, ? extends List<BoundPlan>> statement : statements) {
+                writeString(out, statement.getKey());
+                List<BoundPlan> plans = new ArrayList<>(statement.getValue());
+                out.writeInt(plans.size());
+                for (BoundPlan plan : plans) {
+                    ByteBuffer core = ByteBuffer.allocate(plan.m_core.getSerializedSize());
+                    plan.m_core.flattenToBuffer(core);
+                    writeBytes(out, core.array());
+                    out.writeInt(plan.m_core.getPartitioningParamIndex());
+                    Object partitioningValue = plan.m_core.getPartitioningParamValue();
+                    if (partitioningValue == null) {
+                        out.writeBoolean(false);
+                    }
+                    else {
+                        out.writeBoolean(true);
+                        ParameterSet value = ParameterSet.fromArrayNoCopy(partitioningValue);
+                        ByteBuffer valueBuf = ByteBuffer.allocate(value.getSerializedSize());
+                        value.flattenToBuffer(valueBuf);
+                        writeBytes(out, valueBuf.array());
+                    }
+                    if (plan.m_constants == null) {
+                        out.writeInt(-1);
+                    }
+                    else {
+                        out.writeInt(plan.m_constants.length);
+                        for (String constant : plan.m_constants) {
+                            writeString(out, constant);
+                        }
+                    }
+                    Set<String> tables = plan.m_core.getTables();
+                    if (tables == null) {
+                        out.writeInt(-1);
+                    }
+                    else {
+                        out.writeInt(tables.size());
+                        for (String table : tables) {
+                            writeString(out, table);
+                        }
+                    }
+                }
+            }
+            out.flush();
+            // The checksum covers everything before it
+            new DataOutputStream(fos).writeLong(crc.getValue());
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        hostLog.info("Saved the plans of " + statements.size() + " ad hoc statements to " + file);
+    }
+
+    /**
+     * Load plans saved by {@link #save}, keeping those that are still valid for the given catalog.
+     * @return number of statements whose plans were loaded
+     */
+    static int load(File file, Catalog catalog, byte[] catalogHash, AdHocCompilerCache cache) throws IOException {
+        byte[] contents = Files.readAllBytes(file.toPath());
+        if (contents.length < 8) {
+            throw new IOException("Truncated plan cache file");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, contents.length - 8);
+        ByteBuffer buf = ByteBuffer.wrap(contents);
+        if (buf.getLong(contents.length - 8) != crc.getValue()) {
+            throw new IOException("Plan cache file checksum mismatch");
+        }
+        buf.limit(contents.length - 8);
+
+        int version = buf.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported plan cache file version " + version);
+        }
+        byte[] savedHash = readBytes(buf);
+        byte[] savedCatalog = readBytes(buf);
+
+        Set<String> changedTables = new HashSet<>();
+        if (!Arrays.equals(savedHash, catalogHash)) {
+            Catalog previous = new Catalog();
+            previous.execute(new String(CompressionService.decompressBytes(savedCatalog), Constants.UTF8ENCODING));
+            changedTables = changedTables(new CatalogDiffEngine(previous, catalog).commands());
+            if (changedTables == null) {
+                return 0;
+            }
+        }
+
+        List<Map.Entry<String, List<BoundPlan>>> statements = new ArrayList<>();
+        int count = buf.getInt();
+        for (int i = 0; i < count; i++) {
+            String parsedToken = readString(buf);
+            int planCount = buf.getInt();
+            List<BoundPlan> plans = new ArrayList<>(planCount);
+            for (int j = 0; j < planCount; j++) {
+                CorePlan core = CorePlan.fromBuffer(ByteBuffer.wrap(readBytes(buf)));
+                core.setPartitioningParamIndex(buf.getInt());
+                if (buf.get() != 0) {
+                    core.setPartitioningParamValue(ParameterSet.fromByteBuffer(ByteBuffer.wrap(readBytes(buf))).toArray()[0]);
+                }
+                String[] constants = null;
+                int constantCount = buf.getInt();
+                if (constantCount >= 0) {
+                    constants = new String[constantCount];
+                    for (int k = 0; k < constantCount; k++) {
+                        constants[k] = readString(buf);
+                    }
+                }
+                int tableCount = buf.getInt();
+                if (tableCount >= 0) {
+                    Set<String> tables = new TreeSet<>();
+                    for (int k = 0; k < tableCount; k++) {
+                        tables.add(readString(buf));
+                    }
+                    core.setTables(Collections.unmodifiableSet(tables));
+                }
+                plans.add(new BoundPlan(core, constants));
+            }
+            statements.add(new SimpleImmutableEntry<>(parsedToken, plans));
+        }
+        return warm(statements, changedTables, cache, catalogHash);
+    }
+
+    /**
+     * Load the plans saved by the previous run of this process into the cache of the first catalog, and
+     * arrange for the cache to be saved again at shutdown. Only the first call in a process does anything.
+     */
+    static void warmStart(final Catalog catalog, final byte[] catalogHash, final AdHocCompilerCache cache) {
+        if (!WARM_START_ENABLED || VoltDB.instance().getVoltDBRootPath() == null
+                || !s_warmStarted.compareAndSet(false, true)) {
+            return;
+        }
+        final File file = new File(VoltDB.instance().getVoltDBRootPath(), FILE_NAME);
+        ShutdownHooks.registerShutdownHook(ShutdownHooks.MIDDLE, false, new Runnable() {
+            @Override
+            public void run() {
+                CatalogContext context = VoltDB.instance().getCatalogContext();
+                if (context == null) {
+                    return;
+                }
+                try {
+                    save(file, context.catalog, context.getCatalogHash(), context.m_ptool.getAdHocCache());
+                }
+                catch (Exception e) {
+                    hostLog.warn("Unable to save the ad hoc plan cache to " + file, e);
+                }
+            }
+        });
+        if (!file.exists()) {
+            return;
+        }
+        Runnable loader = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int loaded = load(file, catalog, catalogHash, cache);
+                    hostLog.info("Loaded the plans of " + loaded + " ad hoc statements from " + file);
+                }
+                catch (Exception e) {
+                    hostLog.warn("Unable to load the ad hoc plan cache from " + file + ", starting with an empty cache", e);
+                }
+            }
+        };
+        if (VoltDB.instance().getComputationService() != null) {
+            VoltDB.instance().getComputationService().submit(loader);
+        }
+        else {
+            loader.run();
+        }
+    }
+}
@@ -97,6 +97,10 @@ public class PlannerTool {
         }
         hostLog.debug("hsql loaded");
 
+        if (!m_database.getTables().isEmpty()) {
+            AdHocPlanCacheWarmer.warmStart(m_database.getCatalog(), m_catalogHash, m_cache);
+        }
+
         // Create and register a singleton planner stats collector, if this is the first time.
         if (m_plannerStats == null) {
             synchronized (this.getClass()) {
@@ -120,6 +124,42 @@ public class PlannerTool {
         return this;
     }
 
+    /**
+     * Seed the ad hoc cache of this planner with the plans of the previous catalog that the
+     * catalog update did not invalidate. This runs off the update path since the plans
+     * are only an optimization, statements will be planned as usual until it's done.
+     * @param previous the ad hoc cache of the catalog before the update
+     * @param diffCommands the diff from the previous catalog to the current one
+     */
+    public void carryOverPlans(final AdHocCompilerCache previous, final String diffCommands) {
+        final AdHocCompilerCache current = m_cache;
+        final byte[] catalogHash = m_catalogHash;
+        if (previous == null || previous == current || diffCommands == null) {
+            return;
+        }
+        Runnable carryOver = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    AdHocPlanCacheWarmer.carryOver(previous, current, diffCommands, catalogHash);
+                }
+                catch (Exception e) {
+                    hostLog.warn("Unable to carry ad hoc plans over the catalog update", e);
+                }
+            }
+        };
+        if (VoltDB.instance().getComputationService() != null) {
+            VoltDB.instance().getComputationService().submit(carryOver);
+        }
+        else {
+            carryOver.run();
+        }
+    }
+
+    public AdHocCompilerCache getAdHocCache() {
+        return m_cache;
+    }
+
     public HSQLInterface getHSQLInterface() {
         return m_hsql;
     }
@@ -376,7 +416,8 @@ public class PlannerTool {
         }
         finally {
             if (m_plannerStats != null) {
-                m_plannerStats.endStatsCollection(m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
+                m_plannerStats.endStatsCollection(m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(),
+                        m_cache.getLiteralCacheEvictions(), m_cache.getCoreCacheEvictions(), cacheUse, -1);
             }
         }
     }
@@ -0,0 +1,495 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google_voltpatches.common.cache.Weigher;
+
+/**
+ * A bounded concurrent cache for the ad hoc planner, bounded by both entry count and total weight.
+ *
+ * Keys are spread over a power of two number of shards. Lookups never lock: they read a
+ * ConcurrentHashMap, mark the entry as referenced and bump an approximate frequency counter.
+ * Inserts and evictions lock only the shard they touch.
+ *
+ * The weight budget is shared by all shards. A shard that holds more than its even share
+ * makes room among its own entries first, whatever is still over the budget is then taken
+ * from the other shards one at a time. So any entry up to the whole budget can be cached.
+ *
+ * Each shard follows the W-TinyLFU scheme: new entries land in a small admission window, and
+ * an entry pushed out of the window only replaces an entry of the main region if it has been
+ * requested more often, according to a count-min sketch of recent key frequencies. Both regions
+ * pick victims with a CLOCK sweep so that lookups don't have to reorder anything. This keeps a
+ * burst of one off statements from flushing plans that are reused all the time.
+ */
+final class TinyLfuCache<K, V> {
+    // Smallest shard worth having, below that admission decisions get too coarse
+    private static final int MIN_ENTRIES_PER_SHARD = 64;
+    private static final int MAX_SHARDS = 16;
+    // Share of each shard given to the admission window
+    private static final int WINDOW_PERCENT = 1;
+
+    private static final class Node<K, V> {
+        final K m_key;
+        final V m_value;
+        final long m_weight;
+        volatile boolean m_referenced = false;
+        // Only touched with the shard locked
+        boolean m_inMain = false;
+        boolean m_removed = false;
+
+        Node(K key, V value, long weight) {
+            m_key = key;
+            m_value = value;
+            m_weight = weight;
+        }
+    }
+
+    private final Shard<K, V>[] m_shards;
+    private final int m_shardMask;
+    private final Weigher<K, V> m_weigher;
+    private final long m_maxWeight;
+    // Total weight of all the shards, updated with the lock of the shard that changed
+    private final AtomicLong m_weight = new AtomicLong();
+    private final LongAdder m_evictions = new LongAdder();
+
+    /**
+     * @param maxEntries  maximum number of entries
+     * @param maxWeight   maximum total weight of the entries, ignored if there is no weigher
+     * @param weigher     weight of an entry, computed once when it is inserted, or null to bound by count only
+     */
+    TinyLfuCache(int maxEntries, long maxWeight, Weigher<K, V> weigher) {
+        this(maxEntries, maxWeight, weigher, defaultShardCount(maxEntries));
+    }
+
+    @SuppressWarnings("unchecked")
+    TinyLfuCache(int maxEntries, long maxWeight, Weigher<K, V> weigher, int shardCount) {
+        assert(maxEntries > 0);
+        assert(Integer.bitCount(shardCount) == 1);
+        m_weigher = weigher;
+        m_maxWeight = weigher == null ? Long.MAX_VALUE : maxWeight;
+        m_shards = (Shard<K, V>[]) new Shard<?, ?>[shardCount];
+        m_shardMask = shardCount - 1;
+        final int entriesPerShard = Math.max(1, maxEntries / shardCount);
+        final long weightPerShard = weigher == null ? Long.MAX_VALUE : maxWeight / shardCount;
+        for (int i = 0; i < shardCount; i++) {
+            m_shards[i] = new Shard<>(entriesPerShard, weightPerShard, m_maxWeight, m_weight, m_evictions);
+        }
+    }
+
+    private static int defaultShardCount(int maxEntries) {
+        int shards = Integer.highestOneBit(Math.min(MAX_SHARDS, Math.max(1, Runtime.getRuntime().availableProcessors())));
+        while (shards > 1 && maxEntries / shards < MIN_ENTRIES_PER_SHARD) {
+            shards >>>= 1;
+        }
+        return shards;
+    }
+
+    private static int spread(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int shardIndex(int hash) {
+        return (hash * 0x9E3779B9 >>> 16) & m_shardMask;
+    }
+
+    private Shard<K, V> shardFor(int hash) {
+        return m_shards[shardIndex(hash)];
+    }
+
+    /**
+     * @return the cached value or null. Counts as a use of the key whether or not it is cached.
+     */
+    V get(K key) {
+        final int hash = spread(key);
+        final Shard<K, V> shard = shardFor(hash);
+        shard.m_sketch.increment(hash);
+        final Node<K, V> node = shard.m_map.get(key);
+        if (node == null) {
+            return null;
+        }
+        node.m_referenced = true;
+        return node.m_value;
+    }
+
+    /**
+     * @return the cached value or null, without counting as a use of the key
+     */
+    V peek(K key) {
+        final Node<K, V> node = shardFor(spread(key)).m_map.get(key);
+        return node == null ? null : node.m_value;
+    }
+
+    /**
+     * Cache a value unless the key already has one. The new entry may be evicted again right
+     * away if it isn't used often enough to displace anything. Not counted as a use of the key,
+     * the lookup that missed before the value was made has counted it already.
+     * @return the value already cached for the key, or null if value was inserted
+     */
+    V putIfAbsent(K key, V value) {
+        final int hash = spread(key);
+        final int index = shardIndex(hash);
+        final Shard<K, V> shard = m_shards[index];
+        final Node<K, V> existing = shard.m_map.get(key);
+        if (existing != null) {
+            existing.m_referenced = true;
+            return existing.m_value;
+        }
+        final long weight = m_weigher == null ? 0 : m_weigher.weigh(key, value);
+        final V cached = shard.insert(new Node<>(key, value, weight));
+        if (cached == null && m_weight.get() > m_maxWeight) {
+            // The shard kept the new entry within its share, the others give up the difference
+            for (int i = 1; i <= m_shards.length && m_weight.get() > m_maxWeight; i++) {
+                m_shards[(index + i) & m_shardMask].shed();
+            }
+        }
+        return cached;
+    }
+
+    V remove(K key) {
+        return shardFor(spread(key)).remove(key);
+    }
+
+    void clear() {
+        for (Shard<K, V> shard : m_shards) {
+            shard.clear();
+        }
+    }
+
+    /**
+     * @return number of cached entries
+     */
+    int size() {
+        int size = 0;
+        for (Shard<K, V> shard : m_shards) {
+            size += shard.m_size;
+        }
+        return size;
+    }
+
+    /**
+     * @return total weight of the cached entries
+     */
+    long weightedSize() {
+        return m_weight.get();
+    }
+
+    /**
+     * @return up to limit cached entries, the most frequently requested first
+     */
+    List<Map.Entry<K, V>> hottest(int limit) {
+        final List<SimpleImmutableEntry<Integer, Map.Entry<K, V>>> ranked = new ArrayList<>();
+        for (Shard<K, V> shard : m_shards) {
+            for (Node<K, V> node : shard.m_map.values()) {
+                ranked.add(new SimpleImmutableEntry<Integer, Map.Entry<K, V>>(
+                        shard.m_sketch.frequency(spread(node.m_key)),
+                        new SimpleImmutableEntry<>(node.m_key, node.m_value)));
+            }
+        }
+        Collections.sort(ranked, new Comparator<SimpleImmutableEntry<Integer, Map.Entry<K, V>>>() {
+            @Override
+            public int compare(SimpleImmutableEntry<Integer, Map.Entry<K, V>> o1,
+                               SimpleImmutableEntry<Integer, Map.Entry<K, V>> o2) {
+                return o2.getKey().compareTo(o1.getKey());
+            }
+        });
+        final List<Map.Entry<K, V>> hottest = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < limit && i < ranked.size(); i++) {
+            hottest.add(ranked.get(i).getValue());
+        }
+        return hottest;
+    }
+
+    /**
+     * @return number of entries evicted, or refused admission, since the cache was created
+     */
+    long evictionCount() {
+        return m_evictions.sum();
+    }
+
+    private static final class Shard<K, V> {
+        final ConcurrentHashMap<K, Node<K, V>> m_map = new ConcurrentHashMap<>();
+        final FrequencySketch m_sketch;
+        final ReentrantLock m_lock = new ReentrantLock();
+        final LongAdder m_evictions;
+        // Weight of all the shards and its bound
+        final AtomicLong m_totalWeight;
+        final long m_maxTotalWeight;
+
+        final int m_maxEntries;
+        // Even share of the total weight, the shard only evicts to stay within it
+        final long m_maxWeight;
+        final int m_maxWindowEntries;
+        final long m_maxWindowWeight;
+
+        // Guarded by m_lock, the queues may still hold removed nodes which are skipped lazily
+        final ArrayDeque<Node<K, V>> m_window = new ArrayDeque<>();
+        final ArrayDeque<Node<K, V>> m_main = new ArrayDeque<>();
+        int m_windowSize = 0;
+        long m_windowWeight = 0;
+        long m_weight = 0;
+        // Written with m_lock held, read without it for stats
+        volatile int m_size = 0;
+
+        Shard(int maxEntries, long maxWeight, long maxTotalWeight, AtomicLong totalWeight, LongAdder evictions) {
+            m_maxEntries = maxEntries;
+            m_maxWeight = maxWeight;
+            m_maxTotalWeight = maxTotalWeight;
+            m_totalWeight = totalWeight;
+            m_maxWindowEntries = Math.max(1, maxEntries * WINDOW_PERCENT / 100);
+            m_maxWindowWeight = maxWeight == Long.MAX_VALUE ? Long.MAX_VALUE : maxWeight * WINDOW_PERCENT / 100;
+            m_sketch = new FrequencySketch(maxEntries);
+            m_evictions = evictions;
+        }
+
+        V insert(Node<K, V> node) {
+            m_lock.lock();
+            try {
+                final Node<K, V> existing = m_map.putIfAbsent(node.m_key, node);
+                if (existing != null) {
+                    existing.m_referenced = true;
+                    return existing.m_value;
+                }
+                m_window.addLast(node);
+                m_windowSize++;
+                m_windowWeight += node.m_weight;
+                m_size++;
+                m_weight += node.m_weight;
+                m_totalWeight.addAndGet(node.m_weight);
+                evict();
+                return null;
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        V remove(K key) {
+            m_lock.lock();
+            try {
+                final Node<K, V> node = m_map.remove(key);
+                if (node == null) {
+                    return null;
+                }
+                unlink(node);
+                return node.m_value;
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        void clear() {
+            m_lock.lock();
+            try {
+                m_map.clear();
+                m_window.clear();
+                m_main.clear();
+                m_windowSize = 0;
+                m_windowWeight = 0;
+                m_size = 0;
+                m_totalWeight.addAndGet(-m_weight);
+                m_weight = 0;
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        // Account for a node leaving the map, its queue drops it when a sweep gets there
+        private void unlink(Node<K, V> node) {
+            node.m_removed = true;
+            if (!node.m_inMain) {
+                m_windowSize--;
+                m_windowWeight -= node.m_weight;
+            }
+            m_size--;
+            m_weight -= node.m_weight;
+            m_totalWeight.addAndGet(-node.m_weight);
+        }
+
+        private void evictNode(Node<K, V> node) {
+            m_map.remove(node.m_key, node);
+            unlink(node);
+            m_evictions.increment();
+        }
+
+        private boolean overBudget() {
+            return m_size > m_maxEntries || (m_weight > m_maxWeight && m_totalWeight.get() > m_maxTotalWeight);
+        }
+
+        private void evict() {
+            // Graduate entries out of the admission window, and make room in the main region for them
+            while (m_windowSize > 0
+                    && (m_windowSize > m_maxWindowEntries || m_windowWeight > m_maxWindowWeight || overBudget())) {
+                final Node<K, V> candidate = sweep(m_window);
+                m_window.pollFirst();
+                m_windowSize--;
+                m_windowWeight -= candidate.m_weight;
+                candidate.m_inMain = true;
+                m_main.addLast(candidate);
+
+                // The candidate has to earn its place against the main region's victim
+                while (overBudget() && !candidate.m_removed) {
+                    final Node<K, V> victim = sweepExcluding(m_main, candidate);
+                    if (victim == null) {
+                        // Alone over the share, the other shards make room unless it is over the whole budget
+                        if (m_size > m_maxEntries || candidate.m_weight > m_maxTotalWeight) {
+                            evictNode(candidate);
+                        }
+                        break;
+                    }
+                    if (m_sketch.frequency(spread(candidate.m_key)) <= m_sketch.frequency(spread(victim.m_key))) {
+                        evictNode(candidate);
+                    } else {
+                        // Left in the queue, the sweep drops it once it gets there
+                        evictNode(victim);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Evict entries, from the main region first, until the cache is back within its total weight.
+         */
+        void shed() {
+            m_lock.lock();
+            try {
+                while (m_totalWeight.get() > m_maxTotalWeight) {
+                    ArrayDeque<Node<K, V>> queue = m_main;
+                    Node<K, V> victim = sweep(queue);
+                    if (victim == null) {
+                        queue = m_window;
+                        victim = sweep(queue);
+                    }
+                    if (victim == null) {
+                        return;
+                    }
+                    queue.pollFirst();
+                    evictNode(victim);
+                }
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * CLOCK sweep: referenced entries get a second chance at the back of the queue.
+         * @return the head of the queue once it is an unreferenced, live entry, or null if the queue is empty
+         */
+        private Node<K, V> sweep(ArrayDeque<Node<K, V>> queue) {
+            // Bounded so that constant concurrent lookups can't keep us here
+            int secondChances = queue.size();
+            Node<K, V> node;
+            while ((node = queue.peekFirst()) != null) {
+                if (node.m_removed) {
+                    queue.pollFirst();
+                } else if (node.m_referenced && secondChances-- > 0) {
+                    node.m_referenced = false;
+                    queue.addLast(queue.pollFirst());
+                } else {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private Node<K, V> sweepExcluding(ArrayDeque<Node<K, V>> queue, Node<K, V> excluded) {
+            Node<K, V> victim = sweep(queue);
+            if (victim == excluded) {
+                // The candidate was rotated to the front, look at what follows it
+                queue.pollFirst();
+                victim = sweep(queue);
+                queue.addFirst(excluded);
+            }
+            return victim;
+        }
+    }
+
+    /**
+     * Count-min sketch of how often keys are requested, with four rows of counters saturating at 15.
+     * Counters are halved periodically so that the sketch follows changes in the workload. Updates
+     * are not atomic, an increment lost to a race only makes the estimate a little lower.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] m_rows = new byte[SEEDS.length][];
+        private final int m_mask;
+        private final int m_sampleSize;
+        private int m_additions = 0;
+
+        FrequencySketch(int maxEntries) {
+            final int width = Integer.highestOneBit(Math.max(16, maxEntries * 2 - 1));
+            for (int i = 0; i < m_rows.length; i++) {
+                m_rows[i] = new byte[width];
+            }
+            m_mask = width - 1;
+            m_sampleSize = 10 * Math.max(16, maxEntries);
+        }
+
+        private int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & m_mask;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < m_rows.length; row++) {
+                final int index = indexOf(hash, row);
+                final byte count = m_rows[row][index];
+                if (count < MAX_COUNT) {
+                    m_rows[row][index] = (byte) (count + 1);
+                    added = true;
+                }
+            }
+            if (added && ++m_additions >= m_sampleSize) {
+                age();
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < m_rows.length; row++) {
+                frequency = Math.min(frequency, m_rows[row][indexOf(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private void age() {
+            m_additions = 0;
+            for (byte[] row : m_rows) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+        }
+    }
+}
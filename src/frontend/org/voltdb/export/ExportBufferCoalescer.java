@@ -0,0 +1,232 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool;
+
+/**
+ * Coalesces the small buffers the EE flushes for low rate streams into larger stream blocks,
+ * so that they cost one PBD entry, one poll and one ack instead of one each.
+ *
+ * Buffers smaller than the target size are held until the held rows reach the target size,
+ * until the oldest held buffer is older than the maximum delay, or until a buffer that can't
+ * be appended to them arrives. Buffers can be appended if their sequence numbers follow the
+ * held ones and they have the same generation and schema. Buffers at least as large as the
+ * target size are never held, so busy streams are not delayed.
+ *
+ * Buffers are laid out as described in {@link StreamBlockQueue}, starting with the
+ * {@link StreamBlock#HEADER_SIZE} bytes reserved for the block header. Only used by the
+ * executor of an {@link ExportDataSource}.
+ */
+class ExportBufferCoalescer {
+    // Coalescing is enabled by setting the maximum delay of the held buffers
+    static final int MAX_DELAY_MS = Integer.getInteger("EXPORT_COALESCE_MAX_DELAY_MS", 0);
+    static final int TARGET_BYTES = Integer.getInteger("EXPORT_COALESCE_TARGET_BYTES", 512 * 1024);
+
+    // version(1) + generation(8) + schemaLen(4)
+    private static final int SCHEMA_PREFIX_SIZE = 13;
+
+    private static ScheduledExecutorService s_timer;
+
+    private final int m_targetBytes;
+    private final int m_maxDelayMs;
+
+    private final ArrayList<ByteBuffer> m_buffers = new ArrayList<>();
+    private long m_startSequenceNumber;
+    private int m_tupleCount;
+    private long m_uniqueId;
+    private int m_rowBytes;
+    private long m_firstHeldTime;
+    // Incremented every time buffers start being held, to ignore the timers of flushed buffers
+    private long m_epoch = 0;
+
+    ExportBufferCoalescer(int targetBytes, int maxDelayMs) {
+        m_targetBytes = targetBytes;
+        m_maxDelayMs = maxDelayMs;
+    }
+
+    static synchronized ScheduledExecutorService getTimer() {
+        if (s_timer == null) {
+            s_timer = CoreUtils.getScheduledThreadPoolExecutor("Export coalescing timer", 1, CoreUtils.SMALL_STACK_SIZE);
+        }
+        return s_timer;
+    }
+
+    boolean isEnabled() {
+        return m_maxDelayMs > 0 && m_targetBytes > 0;
+    }
+
+    int getMaxDelayMs() {
+        return m_maxDelayMs;
+    }
+
+    /**
+     * @return true if the buffer is small enough to be held
+     */
+    boolean canHold(ByteBuffer buffer) {
+        return isEnabled() && buffer.limit() - StreamBlock.HEADER_SIZE < m_targetBytes && rowsStart(buffer) > 0;
+    }
+
+    /**
+     * @return true if the buffer can be appended to the held buffers, always true if none are held
+     */
+    boolean canAppend(long startSequenceNumber, ByteBuffer buffer) {
+        if (m_buffers.isEmpty()) {
+            return true;
+        }
+        if (startSequenceNumber != m_startSequenceNumber + m_tupleCount) {
+            return false;
+        }
+        final ByteBuffer first = m_buffers.get(0);
+        final int rowsStart = rowsStart(first);
+        if (rowsStart != rowsStart(buffer)) {
+            return false;
+        }
+        for (int i = StreamBlock.HEADER_SIZE; i < rowsStart; i++) {
+            if (first.get(i) != buffer.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hold a buffer, which must be one {@link #canHold(ByteBuffer)} and {@link #canAppend(long, ByteBuffer)}
+     *
+     * @return true if it is the first buffer held since the last drain, the caller schedules the
+     * flush of the held buffers after the maximum delay
+     */
+    boolean hold(long startSequenceNumber, int tupleCount, long uniqueId, ByteBuffer buffer) {
+        assert(canAppend(startSequenceNumber, buffer));
+        final boolean first = m_buffers.isEmpty();
+        if (first) {
+            m_startSequenceNumber = startSequenceNumber;
+            m_firstHeldTime = System.currentTimeMillis();
+            m_epoch++;
+        }
+        m_buffers.add(buffer);
+        m_tupleCount += tupleCount;
+        m_uniqueId = uniqueId;
+        m_rowBytes += buffer.limit() - rowsStart(buffer);
+        return first;
+    }
+
+    boolean isEmpty() {
+        return m_buffers.isEmpty();
+    }
+
+    /**
+     * @return true if the held buffers reached the target size
+     */
+    boolean isFull() {
+        return !m_buffers.isEmpty() && m_rowBytes >= m_targetBytes;
+    }
+
+    long getEpoch() {
+        return m_epoch;
+    }
+
+    long getFirstHeldTime() {
+        return m_firstHeldTime;
+    }
+
+    long getStartSequenceNumber() {
+        return m_startSequenceNumber;
+    }
+
+    int getTupleCount() {
+        return m_tupleCount;
+    }
+
+    long getUniqueId() {
+        return m_uniqueId;
+    }
+
+    /**
+     * Merge the held buffers into one buffer and stop holding them. The merged buffer has the
+     * header space, generation and schema of the first buffer followed by the rows of all the
+     * buffers. The sequence number, tuple count and unique id of the merged buffer must be read
+     * before.
+     *
+     * @return the merged buffer, or null if no buffers are held
+     */
+    ByteBuffer drain() {
+        if (m_buffers.isEmpty()) {
+            return null;
+        }
+        ByteBuffer merged;
+        if (m_buffers.size() == 1) {
+            merged = m_buffers.get(0);
+        } else {
+            final ByteBuffer first = m_buffers.get(0);
+            final int rowsStart = rowsStart(first);
+            merged = ByteBuffer.allocateDirect(rowsStart + m_rowBytes);
+            ByteBuffer src = first.duplicate();
+            src.position(0).limit(rowsStart);
+            merged.put(src);
+            for (ByteBuffer buffer : m_buffers) {
+                src = buffer.duplicate();
+                src.position(rowsStart).limit(buffer.limit());
+                merged.put(src);
+                DBBPool.wrapBB(buffer).discard();
+            }
+            merged.flip();
+        }
+        clear();
+        return merged;
+    }
+
+    /**
+     * Free the held buffers without queuing them
+     */
+    void discard() {
+        for (ByteBuffer buffer : m_buffers) {
+            DBBPool.wrapBB(buffer).discard();
+        }
+        clear();
+    }
+
+    private void clear() {
+        m_buffers.clear();
+        m_tupleCount = 0;
+        m_rowBytes = 0;
+    }
+
+    /**
+     * @return the offset of the first row of a buffer, or -1 if its header doesn't parse
+     */
+    private static int rowsStart(ByteBuffer buffer) {
+        final int schemaLenOffset = StreamBlock.HEADER_SIZE + SCHEMA_PREFIX_SIZE - 4;
+        if (buffer.limit() < StreamBlock.HEADER_SIZE + SCHEMA_PREFIX_SIZE
+                || buffer.get(StreamBlock.HEADER_SIZE) != StreamBlockQueue.EXPORT_BUFFER_VERSION) {
+            return -1;
+        }
+        final int schemaLen = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(schemaLenOffset);
+        final int rowsStart = StreamBlock.HEADER_SIZE + SCHEMA_PREFIX_SIZE + schemaLen;
+        if (schemaLen < 0 || rowsStart > buffer.limit()) {
+            return -1;
+        }
+        return rowsStart;
+    }
+}
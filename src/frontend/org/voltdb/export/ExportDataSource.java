@@ -36,6 +36,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -108,6 +109,13 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     private long m_overallMaxLatency = 0;
     private long m_queueGap = 0;
     private StreamStatus m_status = StreamStatus.ACTIVE;
+    // Block size distribution, the EE buffers pushed and the stream blocks queued once coalesced
+    private long m_buffersPushed = 0;
+    private long m_blocksQueued = 0;
+    private long m_blockBytesQueued = 0;
+    private long m_maxBlockBytes = 0;
+    private long m_blocksUnder64K = 0;
+    private long m_blocksUnder1M = 0;
 
     private final ExportFormat m_format;
 
@@ -154,6 +162,9 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     private long m_currentRequestId = 0L;
 
     private ExportSequenceNumberTracker m_gapTracker = new ExportSequenceNumberTracker();
+    // Holds the small buffers of a low rate stream until they make a larger block
+    private final ExportBufferCoalescer m_coalescer =
+            new ExportBufferCoalescer(ExportBufferCoalescer.TARGET_BYTES, ExportBufferCoalescer.MAX_DELAY_MS);
 
     public final ArrayList<String> m_columnNames = new ArrayList<>();
     public final ArrayList<Integer> m_columnTypes = new ArrayList<>();
@@ -616,9 +627,12 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                     exportingRole = (m_mastershipAccepted.get() ? "TRUE" : "FALSE");
                 }
                 return new ExportStatsRow(m_partitionId, m_siteId, m_tableName, m_exportTargetName,
-                        exportingRole, m_tupleCount, m_tuplesPending.get(),
+                        exportingRole, m_tupleCount, m_tuplesPending.get() + m_coalescer.getTupleCount(),
                         m_lastQueuedTimestamp, m_lastAckedTimestamp,
-                        avgLatency, maxLatency, m_queueGap, m_status.toString());
+                        avgLatency, maxLatency, m_queueGap, m_status.toString(),
+                        m_buffersPushed, m_blocksQueued,
+                        m_blocksQueued > 0 ? m_blockBytesQueued / m_blocksQueued : 0,
+                        m_maxBlockBytes, m_blocksUnder64K, m_blocksUnder1M);
             }
         });
     }
@@ -691,6 +705,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 m_tupleCount += newTuples;
                 m_tuplesPending.addAndGet((int)newTuples);
                 m_committedBuffers.offer(sb);
+                updateBlockStats(sb.totalSize());
             } catch (IOException e) {
                 VoltDB.crashLocalVoltDB("Unable to write to export overflow.", true, e);
             }
@@ -713,6 +728,86 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         }
     }
 
+    private void updateBlockStats(long blockBytes) {
+        m_blocksQueued++;
+        m_blockBytesQueued += blockBytes;
+        m_maxBlockBytes = Math.max(m_maxBlockBytes, blockBytes);
+        if (blockBytes < 64 * 1024) {
+            m_blocksUnder64K++;
+        } else if (blockBytes < 1024 * 1024) {
+            m_blocksUnder1M++;
+        }
+    }
+
+    /**
+     * Queue a buffer pushed by the EE, or hold it to be coalesced with the following buffers
+     * if the stream is coalescing its small buffers.
+     */
+    private void coalesceExportBuffer(
+            long startSequenceNumber,
+            int tupleCount,
+            long uniqueId,
+            ByteBuffer buffer,
+            boolean sync,
+            boolean poll) throws Exception {
+        if (buffer != null) {
+            m_buffersPushed++;
+            if (!sync && m_coalescer.canHold(buffer)) {
+                if (!m_coalescer.canAppend(startSequenceNumber, buffer)) {
+                    flushCoalescedBuffers(false);
+                }
+                if (m_coalescer.hold(startSequenceNumber, tupleCount, uniqueId, buffer)) {
+                    scheduleCoalescedFlush(m_coalescer.getEpoch());
+                }
+                if (m_coalescer.isFull()) {
+                    flushCoalescedBuffers(poll);
+                }
+                return;
+            }
+        }
+        flushCoalescedBuffers(false);
+        pushExportBufferImpl(startSequenceNumber, tupleCount, uniqueId, buffer, sync, poll);
+    }
+
+    /**
+     * Queue the buffers held for coalescing as one block
+     */
+    private void flushCoalescedBuffers(boolean poll) throws Exception {
+        if (m_coalescer.isEmpty()) {
+            return;
+        }
+        final long startSequenceNumber = m_coalescer.getStartSequenceNumber();
+        final int tupleCount = m_coalescer.getTupleCount();
+        final long uniqueId = m_coalescer.getUniqueId();
+        pushExportBufferImpl(startSequenceNumber, tupleCount, uniqueId, m_coalescer.drain(), false, poll);
+    }
+
+    private void scheduleCoalescedFlush(final long epoch) {
+        ExportBufferCoalescer.getTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    m_es.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            // Ignore the timer if its buffers were already flushed
+                            if (m_es.isShutdown() || m_coalescer.getEpoch() != epoch) {
+                                return;
+                            }
+                            try {
+                                flushCoalescedBuffers(m_readyForPolling);
+                            } catch (Throwable t) {
+                                VoltDB.crashLocalVoltDB("Error pushing export  buffer", true, t);
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // The source is closing, close() queued the held buffers
+                }
+            }
+        }, m_coalescer.getMaxDelayMs(), TimeUnit.MILLISECONDS);
+    }
+
     public void pushExportBuffer(
             final long startSequenceNumber,
             final int tupleCount,
@@ -742,7 +837,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 public void run() {
                     try {
                         if (!m_es.isShutdown()) {
-                            pushExportBufferImpl(startSequenceNumber, tupleCount, uniqueId, buffer, sync, m_readyForPolling);
+                            coalesceExportBuffer(startSequenceNumber, tupleCount, uniqueId, buffer, sync, m_readyForPolling);
                         }
                     } catch (Throwable t) {
                         VoltDB.crashLocalVoltDB("Error pushing export  buffer", true, t);
@@ -763,6 +858,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             @Override
             public void run() {
                 try {
+                    flushCoalescedBuffers(false);
                     m_tupleCount = sequenceNumber;
                     if (isRecover) {
                         if (sequenceNumber < 0) {
@@ -797,8 +893,9 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         @Override
         public void run() {
             try {
+                flushCoalescedBuffers(false);
                 m_committedBuffers.sync(m_nofsync);
-            } catch (IOException e) {
+            } catch (Exception e) {
                 exportLog.error("failed to sync export overflow", e);
             }
         }
@@ -818,6 +915,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             @Override
             public void run() {
                 try {
+                    m_coalescer.discard();
                     m_committedBuffers.closeAndDelete();
                     m_adFile.delete();
                     m_ackMailboxRefs.set(null);
@@ -838,9 +936,10 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             @Override
             public void run() {
                 try {
+                    flushCoalescedBuffers(false);
                     m_committedBuffers.close();
                     m_ackMailboxRefs.set(null);
-                } catch (IOException e) {
+                } catch (Exception e) {
                     exportLog.error(e.getMessage(), e);
                 } finally {
                     m_es.shutdown();
@@ -1222,6 +1321,12 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         m_es.submit(new Runnable() {
             @Override
             public void run() {
+                // Held buffers are part of what is drained
+                try {
+                    flushCoalescedBuffers(false);
+                } catch (Exception e) {
+                    VoltDB.crashLocalVoltDB("Error pushing export  buffer", true, e);
+                }
                 // memorize end sequence number of the most recently pushed buffer from EE
                 // but if we already wait to switch mastership, don't update the drain-to
                 // sequence number to a greater number
@@ -1494,6 +1599,11 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             m_es.execute(new Runnable() {
                 @Override
                 public void run() {
+                    try {
+                        flushCoalescedBuffers(false);
+                    } catch (Exception e) {
+                        VoltDB.crashLocalVoltDB("Error pushing export  buffer", true, e);
+                    }
                     long lastSeq = Long.MIN_VALUE;
                     Pair<Long, Long> range = m_gapTracker.getRangeContaining(gapStart);
                     if (range != null) {
@@ -1561,6 +1671,11 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             @Override
             public void run() {
                 if (m_mastershipAccepted.get()) {
+                    try {
+                        flushCoalescedBuffers(false);
+                    } catch (Exception e) {
+                        VoltDB.crashLocalVoltDB("Error pushing export  buffer", true, e);
+                    }
                     m_newLeaderHostId = CoreUtils.getHostIdFromHSId(senderHsId);
                     // mark the trigger
                     m_seqNoToDrain = Math.min(m_seqNoToDrain, m_lastPushedSeqNo);
@@ -225,6 +225,12 @@ public class ExportManager
             rowValues[columnNameToIndex.get(Columns.MAX_LATENCY)] = stat.m_maxLatency;
             rowValues[columnNameToIndex.get(Columns.QUEUE_GAP)] = stat.m_queueGap;
             rowValues[columnNameToIndex.get(Columns.STATUS)] = stat.m_status;
+            rowValues[columnNameToIndex.get(Columns.BUFFERS_PUSHED)] = stat.m_buffersPushed;
+            rowValues[columnNameToIndex.get(Columns.BLOCKS_QUEUED)] = stat.m_blocksQueued;
+            rowValues[columnNameToIndex.get(Columns.AVERAGE_BLOCK_SIZE)] = stat.m_averageBlockBytes;
+            rowValues[columnNameToIndex.get(Columns.MAX_BLOCK_SIZE)] = stat.m_maxBlockBytes;
+            rowValues[columnNameToIndex.get(Columns.BLOCKS_UNDER_64K)] = stat.m_blocksUnder64K;
+            rowValues[columnNameToIndex.get(Columns.BLOCKS_UNDER_1M)] = stat.m_blocksUnder1M;
         }
 
         public ExportStatsRow getStatsRow(Object rowKey) {
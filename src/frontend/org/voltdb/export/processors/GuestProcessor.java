@@ -46,6 +46,7 @@ import org.voltdb.exportclient.ExportClientBase;
 import org.voltdb.exportclient.ExportDecoderBase;
 import org.voltdb.exportclient.ExportDecoderBase.RestartBlockException;
 import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowCursor;
 
 import com.google_voltpatches.common.base.Preconditions;
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
@@ -64,7 +65,6 @@ public class GuestProcessor implements ExportDataProcessor {
 
     private final List<Pair<ExportDecoderBase, AdvertisedDataSource>> m_decoders = new ArrayList<Pair<ExportDecoderBase, AdvertisedDataSource>>();
 
-    private final long m_startTS = System.currentTimeMillis();
     private volatile boolean m_startPolling = false;
 
     // Instantiated at ExportManager
@@ -225,7 +225,7 @@ public class GuestProcessor implements ExportDataProcessor {
             Pair<ExportDecoderBase, AdvertisedDataSource> pair = Pair.of(edb, ads);
             m_decoders.add(pair);
             final ListenableFuture<AckingContainer> fut = m_source.poll();
-            addBlockListener(m_source, fut, edb);
+            addBlockListener(m_source, fut, edb, ParallelRowEncoder.forDecoder(edb));
             m_source.forwardAckToOtherReplicas();
         }
 
@@ -310,12 +310,17 @@ public class GuestProcessor implements ExportDataProcessor {
     private void addBlockListener(
             final ExportDataSource source,
             final ListenableFuture<AckingContainer> fut,
-            final ExportDecoderBase edb) {
+            final ExportDecoderBase edb,
+            final ParallelRowEncoder encoder) {
         /*
          * The listener runs in the thread specified by the EDB.
          *
          * For JDBC we want a dedicated thread to block on calls to the remote database
          * so the data source thread can overflow data to disk.
+         *
+         * If the rows of the EDB are encoded in parallel, the listener waits for the
+         * encoding of the whole block before processing its rows in order, the next
+         * block is only polled once this one is acknowledged.
          */
 
         if (fut == null) {
@@ -362,44 +367,72 @@ public class GuestProcessor implements ExportDataProcessor {
                                     // Skip past the schema header because it has not changed.
                                     buf.position(buf.position() + schemaSize);
                                 }
-                                ExportRow row = null;
-                                boolean firstRowOfBlock = true;
-                                while (buf.hasRemaining() && !m_shutdown) {
-                                    int length = buf.getInt();
-                                    byte[] rowdata = new byte[length];
-                                    buf.get(rowdata, 0, length);
-                                    if (edb.isLegacy()) {
+                                if (edb.isLegacy()) {
+                                    boolean firstRowOfBlock = true;
+                                    while (buf.hasRemaining() && !m_shutdown) {
+                                        int length = buf.getInt();
+                                        byte[] rowdata = new byte[length];
+                                        buf.get(rowdata, 0, length);
                                         cont.updateStartTime(System.currentTimeMillis());
                                         if (firstRowOfBlock) {
-                                            edb.onBlockStart(row);
+                                            edb.onBlockStart((ExportRow) null);
                                             firstRowOfBlock = false;
                                         }
                                         edb.processRow(length, rowdata);
-                                    } else {
-                                        //New style connector.
-                                        try {
-                                            cont.updateStartTime(System.currentTimeMillis());
-                                            row = ExportRow.decodeRow(edb.getPreviousRow(), source.getPartitionId(), m_startTS, rowdata);
-                                            edb.setPreviousRow(row);
-                                        } catch (IOException ioe) {
-                                            m_logger.warn("Failed decoding row for partition" + source.getPartitionId() + ". " + ioe.getMessage());
+                                    }
+                                    edb.onBlockCompletion();
+                                } else {
+                                    //New style connector, the rows are read in place through the decoder's cursor.
+                                    final ExportRowCursor cursor = edb.getRowCursor();
+                                    cursor.reset(buf, edb.getPreviousRow(), source.getPartitionId());
+                                    int lastRowPosition = -1;
+                                    boolean decodeFailed = false;
+                                    try {
+                                        if (encoder != null) {
+                                            // A restarted block keeps the rows encoded the first time
+                                            if (!encoder.isEncoded()) {
+                                                encoder.encode(buf, edb.getPreviousRow(), source.getPartitionId());
+                                            }
+                                            for (int i = 0; i < encoder.getRowCount() && !m_shutdown; i++) {
+                                                cursor.seekRow(encoder.getRowPosition(i));
+                                                cont.updateStartTime(System.currentTimeMillis());
+                                                if (lastRowPosition < 0) {
+                                                    edb.onBlockStart(cursor);
+                                                }
+                                                lastRowPosition = cursor.getRowPosition();
+                                                edb.processEncodedRow(cursor, encoder.getEncodedRow(i));
+                                            }
+                                            if (encoder.getFailure() != null && !m_shutdown) {
+                                                throw encoder.getFailure();
+                                            }
+                                        } else {
+                                            while (!m_shutdown && cursor.advanceRow()) {
+                                                cont.updateStartTime(System.currentTimeMillis());
+                                                if (lastRowPosition < 0) {
+                                                    edb.onBlockStart(cursor);
+                                                }
+                                                lastRowPosition = cursor.getRowPosition();
+                                                edb.processRow(cursor);
+                                            }
+                                        }
+                                    } catch (IOException ioe) {
+                                        m_logger.warn("Failed decoding row for partition" + source.getPartitionId() + ". " + ioe.getMessage());
+                                        decodeFailed = true;
+                                    }
+                                    try {
+                                        if (lastRowPosition >= 0) {
+                                            // Decoders complete the block on its last row
+                                            cursor.seekRow(lastRowPosition);
+                                            edb.onBlockCompletion(cursor);
+                                        }
+                                    } finally {
+                                        // The rest of a block that can't be decoded is dropped
+                                        if (decodeFailed) {
                                             cont.discard();
                                             cont = null;
-                                            break;
                                         }
-                                        if (firstRowOfBlock) {
-                                            edb.onBlockStart(row);
-                                            firstRowOfBlock = false;
-                                        }
-                                        edb.processRow(row);
                                     }
                                 }
-                                if (edb.isLegacy()) {
-                                    edb.onBlockCompletion();
-                                }
-                                if (row != null) {
-                                    edb.onBlockCompletion(row);
-                                }
                                 // Make sure to discard after onBlockCompletion so that if completion
                                 // wants to retry we don't lose block.
                                 // Please note that if export manager is shutting down it's possible
@@ -440,6 +473,9 @@ public class GuestProcessor implements ExportDataProcessor {
                             cont = null;
                         }
                     } finally {
+                        if (encoder != null) {
+                            encoder.clear();
+                        }
                         if (cont != null) {
                             cont.discard();
                         }
@@ -454,7 +490,7 @@ public class GuestProcessor implements ExportDataProcessor {
                     }
                 }
                 if (!m_shutdown) {
-                    addBlockListener(source, source.poll(), edb);
+                    addBlockListener(source, source.poll(), edb, encoder);
                 }
             }
         }, edb.getExecutor());
@@ -0,0 +1,264 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export.processors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.exportclient.ExportDecoderBase;
+import org.voltdb.exportclient.ExportDecoderBase.RowEncoder;
+import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowCursor;
+
+import com.google_voltpatches.common.base.Throwables;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Encodes the rows of the export blocks of a decoder in parallel, on a pool shared by all the
+ * export decoders.
+ *
+ * A block is split in ranges of rows. The thread of the decoder encodes the first range while
+ * the threads of the pool encode the others with the {@link RowEncoder}s of the decoder. The
+ * decoder then processes the encoded rows in order on its own thread, so the blocks of a
+ * partition are still sent and acknowledged one after the other.
+ *
+ * The pool is enabled by setting the EXPORT_ENCODER_THREADS system property to its number of
+ * threads.
+ */
+class ParallelRowEncoder {
+    static final int THREADS = Integer.getInteger("EXPORT_ENCODER_THREADS", 0);
+    // Blocks are split in ranges of at least this many rows
+    static final int MIN_ROWS_PER_RANGE = Integer.getInteger("EXPORT_ENCODER_MIN_ROWS", 128);
+
+    private static ListeningExecutorService s_pool;
+
+    private final ExportDecoderBase m_decoder;
+    private final ListeningExecutorService m_pool;
+    private final int m_threads;
+    private int[] m_rowPositions = new int[256];
+    private Object[] m_encodedRows = new Object[256];
+    private int m_rowCount = 0;
+    private boolean m_encoded = false;
+    private IOException m_failure;
+    private ExportRowCursor[] m_cursors = new ExportRowCursor[0];
+
+    ParallelRowEncoder(ExportDecoderBase decoder, ListeningExecutorService pool, int threads) {
+        m_decoder = decoder;
+        m_pool = pool;
+        m_threads = threads;
+    }
+
+    /**
+     * @return the encoder of the blocks of a decoder, or null if its rows are not encoded in parallel
+     */
+    static ParallelRowEncoder forDecoder(ExportDecoderBase decoder) {
+        if (THREADS <= 0 || decoder.isLegacy()) {
+            return null;
+        }
+        // The encoders of all the ranges of a block are created up front by the thread of the
+        // decoder, the threads of the pool only reuse them
+        RowEncoder[] encoders = new RowEncoder[THREADS + 1];
+        for (int i = 0; i < encoders.length; i++) {
+            encoders[i] = decoder.acquireRowEncoder();
+            if (encoders[i] == null) {
+                return null;
+            }
+        }
+        for (RowEncoder encoder : encoders) {
+            decoder.releaseRowEncoder(encoder);
+        }
+        return new ParallelRowEncoder(decoder, getPool(), THREADS);
+    }
+
+    private static synchronized ListeningExecutorService getPool() {
+        if (s_pool == null) {
+            s_pool = CoreUtils.getListeningExecutorService("Export encoder", THREADS);
+        }
+        return s_pool;
+    }
+
+    /**
+     * Encode the rows of a block, from the position of buf to its limit. If a row can't be
+     * decoded, only the rows before it are encoded and the error is kept for {@link #getFailure()}.
+     *
+     * @param buf the rows of the block
+     * @param schema row decoded from the schema of the block
+     * @param partition partition of the block
+     */
+    void encode(ByteBuffer buf, ExportRow schema, int partition) {
+        clear();
+        locateRows(buf);
+        final int ranges = Math.max(1, Math.min(m_threads + 1, m_rowCount / Math.max(1, MIN_ROWS_PER_RANGE)));
+        if (m_cursors.length < ranges) {
+            m_cursors = Arrays.copyOf(m_cursors, ranges);
+        }
+        final int[] ends = new int[ranges];
+        final IOException[] failures = new IOException[ranges];
+        final List<ListenableFuture<Integer>> futures = new ArrayList<>(ranges - 1);
+        for (int r = 1; r < ranges; r++) {
+            final int range = r;
+            final int from = (int) ((long) m_rowCount * r / ranges);
+            final int to = (int) ((long) m_rowCount * (r + 1) / ranges);
+            final ExportRowCursor cursor = cursor(range, buf, schema, partition);
+            futures.add(m_pool.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return encodeRange(cursor, from, to, failures, range);
+                }
+            }));
+        }
+
+        // The thread of the decoder encodes the first range, then waits for the others. All the
+        // ranges are waited for even after an error, so none of them still reads the block.
+        Throwable error = null;
+        try {
+            ends[0] = encodeRange(cursor(0, buf, schema, partition), 0, m_rowCount / ranges, failures, 0);
+        } catch (Throwable t) {
+            error = t;
+        }
+        boolean interrupted = false;
+        for (int r = 1; r < ranges; r++) {
+            while (true) {
+                try {
+                    ends[r] = futures.get(r - 1).get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            clear();
+            Throwables.throwIfUnchecked(error);
+            throw new RuntimeException(error);
+        }
+
+        // Only the rows before the first one that couldn't be decoded are processed
+        for (int r = 0; r < ranges; r++) {
+            if (failures[r] != null) {
+                m_rowCount = ends[r];
+                m_failure = failures[r];
+                break;
+            }
+        }
+        m_encoded = true;
+    }
+
+    private ExportRowCursor cursor(int range, ByteBuffer buf, ExportRow schema, int partition) {
+        if (m_cursors[range] == null) {
+            m_cursors[range] = new ExportRowCursor();
+        }
+        // Each range reads the block through its own view of the buffer
+        m_cursors[range].reset(buf.duplicate(), schema, partition);
+        return m_cursors[range];
+    }
+
+    /**
+     * @return the index of the row after the last one encoded
+     */
+    private int encodeRange(ExportRowCursor cursor, int from, int to, IOException[] failures, int range) {
+        final RowEncoder encoder = m_decoder.acquireRowEncoder();
+        try {
+            for (int i = from; i < to; i++) {
+                try {
+                    cursor.seekRow(m_rowPositions[i]);
+                    m_encodedRows[i] = encoder.encode(cursor);
+                } catch (IOException e) {
+                    failures[range] = e;
+                    return i;
+                }
+            }
+            return to;
+        } finally {
+            m_decoder.releaseRowEncoder(encoder);
+        }
+    }
+
+    private void locateRows(ByteBuffer buf) {
+        final int limit = buf.limit();
+        int position = buf.position();
+        while (position < limit) {
+            if (position + 4 > limit) {
+                m_failure = new IOException("Export row length overruns the block");
+                break;
+            }
+            final int length = buf.getInt(position);
+            if (length < 0 || position + 4 + length > limit) {
+                m_failure = new IOException("Export row of " + length + " bytes overruns the block");
+                break;
+            }
+            if (m_rowCount == m_rowPositions.length) {
+                m_rowPositions = Arrays.copyOf(m_rowPositions, m_rowCount * 2);
+                m_encodedRows = Arrays.copyOf(m_encodedRows, m_rowCount * 2);
+            }
+            m_rowPositions[m_rowCount++] = position;
+            position += 4 + length;
+        }
+    }
+
+    /**
+     * @return true if the rows of the current block are encoded, they are kept if the block is restarted
+     */
+    boolean isEncoded() {
+        return m_encoded;
+    }
+
+    int getRowCount() {
+        return m_rowCount;
+    }
+
+    int getRowPosition(int row) {
+        return m_rowPositions[row];
+    }
+
+    Object getEncodedRow(int row) {
+        return m_encodedRows[row];
+    }
+
+    /**
+     * @return the error decoding the row after the last encoded row, or null if all the rows are encoded
+     */
+    IOException getFailure() {
+        return m_failure;
+    }
+
+    /**
+     * Drop the encoded rows once the block is done with
+     */
+    void clear() {
+        Arrays.fill(m_encodedRows, 0, m_rowCount, null);
+        m_rowCount = 0;
+        m_failure = null;
+        m_encoded = false;
+    }
+}
@@ -30,6 +30,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import org.voltdb.VoltType;
 import static org.voltdb.exportclient.ExportRow.getFirstField;
 import org.voltdb.messaging.FastDeserializer;
@@ -64,6 +65,20 @@ public abstract class ExportDecoderBase {
         }
     }
 
+    /**
+     * Encodes rows for {@link ExportDecoderBase#processEncodedRow(ExportRowCursor, Object)}. Encoders are
+     * used by the threads of the shared export encoder pool, one thread at a time, so they must not share
+     * mutable state with each other or with the decoder that created them.
+     */
+    public interface RowEncoder {
+        /**
+         * @param cursor Cursor on the row to encode, only valid until this call returns
+         * @return the encoded row
+         * @throws IOException if the row can't be decoded
+         */
+        Object encode(ExportRowCursor cursor) throws IOException;
+    }
+
     public static enum BinaryEncoding {
         BASE64,
         HEX
@@ -83,6 +98,10 @@ public abstract class ExportDecoderBase {
 
     //Used by new style connector to pickup schema information from previous record.
     ExportRow m_previousRow;
+    //Reused for every block of a new style connector.
+    private final ExportRowCursor m_rowCursor = new ExportRowCursor();
+    //Idle encoders of the rows of this decoder, when it encodes rows in parallel.
+    private final ConcurrentLinkedQueue<RowEncoder> m_rowEncoders = new ConcurrentLinkedQueue<>();
     public ExportDecoderBase(AdvertisedDataSource ads) {
         m_source = ads;
         m_startTS = System.currentTimeMillis();
@@ -219,6 +238,57 @@ public abstract class ExportDecoderBase {
         throw new UnsupportedOperationException("processRow must be implemented.");
     }
 
+    /**
+     * Process the row the cursor is on. Overridden by decoders that read the
+     * values straight from the block, by default the row is decoded into an
+     * {@link ExportRow} for {@link #processRow(ExportRow)}
+     *
+     * @param cursor Cursor on the row, only valid until this call returns
+     * @return whether or not the row processing was successful
+     * @throws org.voltdb.exportclient.ExportDecoderBase.RestartBlockException
+     */
+    public boolean processRow(ExportRowCursor cursor) throws RestartBlockException {
+        return processRow(cursor.toExportRow());
+    }
+
+    /**
+     * Process the row the cursor is on with its value encoded on the shared export encoder pool,
+     * called in order for the rows of a block by the thread of this decoder. Only used by decoders
+     * that return an encoder from {@link #createRowEncoder()}
+     *
+     * @param cursor Cursor on the row, only valid until this call returns
+     * @param encoded value returned for the row by a {@link RowEncoder} of this decoder
+     * @return whether or not the row processing was successful
+     * @throws org.voltdb.exportclient.ExportDecoderBase.RestartBlockException
+     */
+    public boolean processEncodedRow(ExportRowCursor cursor, Object encoded) throws RestartBlockException {
+        return processRow(cursor);
+    }
+
+    /**
+     * Decoders whose rows are expensive to encode (CSV, JSON, Avro...) can return a new encoder here
+     * to have the rows of a block encoded in parallel on the shared export encoder pool, before they
+     * are handed in order to {@link #processEncodedRow(ExportRowCursor, Object)}. Rows are only
+     * encoded in parallel when the pool is enabled.
+     *
+     * @return a new encoder, or null if the rows of this decoder are encoded by its own thread
+     */
+    public RowEncoder createRowEncoder() {
+        return null;
+    }
+
+    /**
+     * @return an idle encoder of the rows of this decoder, or null if it doesn't encode in parallel
+     */
+    public final RowEncoder acquireRowEncoder() {
+        RowEncoder encoder = m_rowEncoders.poll();
+        return encoder == null ? createRowEncoder() : encoder;
+    }
+
+    public final void releaseRowEncoder(RowEncoder encoder) {
+        m_rowEncoders.offer(encoder);
+    }
+
     public boolean processRow(int rowSize, byte[] rowData) throws RestartBlockException {
         throw new UnsupportedOperationException("processRow must be implemented.");
     }
@@ -243,6 +313,26 @@ public abstract class ExportDecoderBase {
 
     }
 
+    /**
+     * Block completion for decoders that process rows through a cursor, by
+     * default calls {@link #onBlockCompletion(ExportRow)} with the last row
+     * @param cursor Cursor on the last row of the block
+     * @throws org.voltdb.exportclient.ExportDecoderBase.RestartBlockException
+     */
+    public void onBlockCompletion(ExportRowCursor cursor) throws RestartBlockException {
+        onBlockCompletion(cursor.toExportRow());
+    }
+
+    /**
+     * Block start for decoders that process rows through a cursor, by
+     * default calls {@link #onBlockStart(ExportRow)} with the first row
+     * @param cursor Cursor on the first row of the block
+     * @throws org.voltdb.exportclient.ExportDecoderBase.RestartBlockException
+     */
+    public void onBlockStart(ExportRowCursor cursor) throws RestartBlockException {
+        onBlockStart(cursor.toExportRow());
+    }
+
     /**
      * Finalize operation upon block completion - provides a means for a
      * specific decoder to flush data to disk - virtual method
@@ -259,6 +349,13 @@ public abstract class ExportDecoderBase {
 
     }
 
+    /**
+     * @return the cursor the rows of the blocks of this decoder are processed with
+     */
+    public ExportRowCursor getRowCursor() {
+        return m_rowCursor;
+    }
+
     public ListeningExecutorService getExecutor() {
         return CoreUtils.LISTENINGSAMETHREADEXECUTOR;
     }
@@ -127,39 +127,24 @@ public class ExportEncoder {
     static byte[] encodeTable(VoltTable table, String tableName, int partitionColumnIndex, long generation)
     throws IOException {
 
-        FastSerializer fs = new FastSerializer(false, true);
+        // A FastSerializer that grows its buffer turns big endian, so allocate the whole block up front
+        final int startRow = table.getActiveRowIndex();
+        int blockSize;
+        FastSerializer sizer = new FastSerializer();
         try {
-            writeSchema(fs, table, tableName);
-            while (table.advanceRow()) {
-                SizeWriter rowSize = new SizeWriter(fs);
-                fs.writeInt(partitionColumnIndex);
-                int colCount = table.getColumnCount();
-                // column count
-                fs.writeInt(colCount);
-                // pack the null flags
-                int nullArrayLen = ((colCount + 7) & -8) >> 3;
-                boolean[] nullArray = new boolean[colCount];
-                byte[] nullBits = new byte[nullArrayLen];
-                for (int i = 0; i < colCount; i++) {
-                    nullArray[i] = isColumnNull(i, table);
-                    if (nullArray[i]) {
-                        int index = i >> 3;
-                        int bit = i % 8;
-                        byte mask = (byte) (0x80 >>> bit);
-                        nullBits[index] = (byte) (nullBits[index] | mask);
-                    }
-                }
-                fs.write(nullBits);
+            writeTable(sizer, table, tableName, partitionColumnIndex);
+            blockSize = sizer.size();
+        } finally {
+            sizer.discard();
+        }
+        table.resetRowPosition();
+        if (startRow >= 0) {
+            table.advanceToRow(startRow);
+        }
 
-                // write the non-null columns
-                for (int i = 0; i < colCount; i++) {
-                    if (!nullArray[i]) {
-                        encodeColumn(fs, i, table);
-                    }
-                }
-                rowSize.finishWrite();
-                System.out.println("Row done.");
-            }
+        FastSerializer fs = new FastSerializer(false, true, null, Math.max(1, blockSize));
+        try {
+            writeTable(fs, table, tableName, partitionColumnIndex);
             final byte[] bytes = fs.getBytes();
             return bytes;
         } finally {
@@ -167,6 +152,40 @@ public class ExportEncoder {
         }
     }
 
+    private static void writeTable(FastSerializer fs, VoltTable table, String tableName, int partitionColumnIndex)
+    throws IOException {
+        writeSchema(fs, table, tableName);
+        while (table.advanceRow()) {
+            SizeWriter rowSize = new SizeWriter(fs);
+            fs.writeInt(partitionColumnIndex);
+            int colCount = table.getColumnCount();
+            // column count
+            fs.writeInt(colCount);
+            // pack the null flags
+            int nullArrayLen = ((colCount + 7) & -8) >> 3;
+            boolean[] nullArray = new boolean[colCount];
+            byte[] nullBits = new byte[nullArrayLen];
+            for (int i = 0; i < colCount; i++) {
+                nullArray[i] = isColumnNull(i, table);
+                if (nullArray[i]) {
+                    int index = i >> 3;
+                    int bit = i % 8;
+                    byte mask = (byte) (0x80 >>> bit);
+                    nullBits[index] = (byte) (nullBits[index] | mask);
+                }
+            }
+            fs.write(nullBits);
+
+            // write the non-null columns
+            for (int i = 0; i < colCount; i++) {
+                if (!nullArray[i]) {
+                    encodeColumn(fs, i, table);
+                }
+            }
+            rowSize.finishWrite();
+        }
+    }
+
     static boolean isColumnNull(int index, VoltTable table) {
         table.get(index, table.getColumnType(index));
         return table.wasNull();
@@ -0,0 +1,388 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+import com.google_voltpatches.common.base.Charsets;
+
+/**
+ * Reusable cursor over the rows of an export block, the allocation free alternative to decoding
+ * every row into an {@link ExportRow}.
+ *
+ * {@link #advanceRow()} only locates the columns of the next row, values are read from the block
+ * when they are asked for. The primitive accessors don't allocate, {@link #getValues()} boxes the
+ * values of the row into an array that is reused from row to row. The values of a row are only
+ * valid until the cursor moves.
+ */
+public class ExportRowCursor {
+    private static final int NULL_OFFSET = -1;
+
+    private ByteBuffer m_buf;
+    private ExportRow m_schema;
+    private VoltType[] m_types = new VoltType[0];
+    private int m_partition;
+
+    private int m_rowStart = -1;
+    private int m_rowEnd = -1;
+    private int m_partitionColIndex;
+    private int[] m_offsets = new int[0];
+    private Object[] m_values = new Object[0];
+    private boolean m_valuesDecoded = false;
+    private byte[] m_stringScratch = new byte[256];
+
+    /**
+     * Position the cursor before the first row of a block
+     *
+     * @param buf the rows of the block, from its position to its limit
+     * @param schema row decoded from the schema of the block, only its metadata is used
+     * @param partition partition of the block
+     */
+    public void reset(ByteBuffer buf, ExportRow schema, int partition) {
+        m_buf = buf;
+        m_buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (m_schema != schema) {
+            m_schema = schema;
+            m_types = schema.types.toArray(new VoltType[schema.types.size()]);
+            if (m_offsets.length != m_types.length) {
+                m_offsets = new int[m_types.length];
+                m_values = new Object[m_types.length];
+            }
+        }
+        m_partition = partition;
+        m_rowStart = -1;
+        m_rowEnd = buf.position();
+        m_valuesDecoded = false;
+    }
+
+    /**
+     * @return a new cursor over the same block, for another thread to read rows of the block
+     * through {@link #seekRow(int)} while this cursor is in use
+     */
+    public ExportRowCursor duplicate() {
+        final ExportRowCursor cursor = new ExportRowCursor();
+        cursor.reset(m_buf.duplicate(), m_schema, m_partition);
+        return cursor;
+    }
+
+    /**
+     * Move to the next row of the block
+     *
+     * @return false if there are no more rows
+     * @throws IOException if the row is malformed
+     */
+    public boolean advanceRow() throws IOException {
+        m_valuesDecoded = false;
+        if (m_rowEnd >= m_buf.limit()) {
+            m_rowStart = -1;
+            return false;
+        }
+        locateRow(m_rowEnd);
+        return true;
+    }
+
+    /**
+     * @return the position of the current row in the block, to come back to it with {@link #seekRow(int)}
+     */
+    public int getRowPosition() {
+        return m_rowStart;
+    }
+
+    /**
+     * Move back to a row of the block the cursor went through
+     */
+    public void seekRow(int rowPosition) throws IOException {
+        m_valuesDecoded = false;
+        locateRow(rowPosition);
+    }
+
+    private void locateRow(int rowStart) throws IOException {
+        final ByteBuffer buf = m_buf;
+        m_rowStart = rowStart;
+        final int length = buf.getInt(rowStart);
+        m_rowEnd = rowStart + 4 + length;
+        if (length < 8 || m_rowEnd > buf.limit()) {
+            throw new IOException("Export row of " + length + " bytes overruns the block");
+        }
+        m_partitionColIndex = buf.getInt(rowStart + 4);
+        final int columnCount = buf.getInt(rowStart + 8);
+        if (columnCount != m_types.length) {
+            throw new IOException("Export row has " + columnCount + " columns, the schema has " + m_types.length);
+        }
+
+        // Null flags are one bit per column, 0x80 >> (index % 8) in byte index / 8
+        final int nullsStart = rowStart + 12;
+        int offset = nullsStart + ((columnCount + 7) >> 3);
+        for (int i = 0; i < columnCount; i++) {
+            if ((buf.get(nullsStart + (i >> 3)) & (0x80 >>> (i & 7))) != 0) {
+                m_offsets[i] = NULL_OFFSET;
+                continue;
+            }
+            m_offsets[i] = offset;
+            switch (m_types[i]) {
+            case TINYINT:
+                offset += 1;
+                break;
+            case SMALLINT:
+                offset += 2;
+                break;
+            case INTEGER:
+                offset += 4;
+                break;
+            case BIGINT:
+            case FLOAT:
+            case TIMESTAMP:
+                offset += 8;
+                break;
+            case GEOGRAPHY_POINT:
+                offset += 16;
+                break;
+            case DECIMAL:
+                offset += 2 + buf.get(offset + 1);
+                break;
+            case STRING:
+            case VARBINARY:
+            case GEOGRAPHY:
+                offset += 4 + buf.getInt(offset);
+                break;
+            default:
+                throw new IOException("Invalid column type: " + m_types[i]);
+            }
+        }
+        if (offset > m_rowEnd) {
+            throw new IOException("Export row columns overrun the row");
+        }
+    }
+
+    public ExportRow getSchema() {
+        return m_schema;
+    }
+
+    public String getTableName() {
+        return m_schema.tableName;
+    }
+
+    public long getGeneration() {
+        return m_schema.generation;
+    }
+
+    public List<String> getColumnNames() {
+        return m_schema.names;
+    }
+
+    public List<VoltType> getColumnTypes() {
+        return m_schema.types;
+    }
+
+    public List<Integer> getColumnLengths() {
+        return m_schema.lengths;
+    }
+
+    public int getColumnCount() {
+        return m_types.length;
+    }
+
+    public VoltType getColumnType(int column) {
+        return m_types[column];
+    }
+
+    public int getPartitionId() {
+        return m_partition;
+    }
+
+    public int getPartitionColumnIndex() {
+        return m_partitionColIndex;
+    }
+
+    /**
+     * @return the value of the partition column, or the partition id if there is none or it is null
+     */
+    public Object getPartitionValue() {
+        if (m_partitionColIndex >= 0 && m_partitionColIndex < m_types.length && !isNull(m_partitionColIndex)) {
+            return get(m_partitionColIndex);
+        }
+        return m_partition;
+    }
+
+    public boolean isNull(int column) {
+        return m_offsets[column] == NULL_OFFSET;
+    }
+
+    private int offset(int column) {
+        final int offset = m_offsets[column];
+        if (offset == NULL_OFFSET) {
+            throw new IllegalStateException("Column " + column + " is null");
+        }
+        return offset;
+    }
+
+    /**
+     * @return the value of a TINYINT, SMALLINT, INTEGER or BIGINT column, or the microseconds since
+     * the epoch of a TIMESTAMP column
+     */
+    public long getLong(int column) {
+        final int offset = offset(column);
+        switch (m_types[column]) {
+        case TINYINT:
+            return m_buf.get(offset);
+        case SMALLINT:
+            return m_buf.getShort(offset);
+        case INTEGER:
+            return m_buf.getInt(offset);
+        case BIGINT:
+        case TIMESTAMP:
+            return m_buf.getLong(offset);
+        default:
+            throw new IllegalArgumentException("getLong() called on non-integral column " + column);
+        }
+    }
+
+    public double getDouble(int column) {
+        if (m_types[column] != VoltType.FLOAT) {
+            throw new IllegalArgumentException("getDouble() called on non-float column " + column);
+        }
+        return m_buf.getDouble(offset(column));
+    }
+
+    public BigDecimal getDecimal(int column) {
+        final int offset = offset(column);
+        final int scale = m_buf.get(offset);
+        final byte[] bytes = new byte[m_buf.get(offset + 1)];
+        copyBytes(offset + 2, bytes, bytes.length);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    public String getString(int column) {
+        final int offset = offset(column);
+        final int length = m_buf.getInt(offset);
+        if (m_buf.hasArray()) {
+            return new String(m_buf.array(), m_buf.arrayOffset() + offset + 4, length, Charsets.UTF_8);
+        }
+        if (m_stringScratch.length < length) {
+            m_stringScratch = new byte[Math.max(length, m_stringScratch.length * 2)];
+        }
+        copyBytes(offset + 4, m_stringScratch, length);
+        return new String(m_stringScratch, 0, length, Charsets.UTF_8);
+    }
+
+    /**
+     * @return the length in bytes of a STRING, VARBINARY or GEOGRAPHY column
+     */
+    public int getLength(int column) {
+        return m_buf.getInt(offset(column));
+    }
+
+    /**
+     * Copy the bytes of a STRING, VARBINARY or GEOGRAPHY column into dest, which must have room for
+     * {@link #getLength(int)} bytes
+     */
+    public void getBytes(int column, byte[] dest) {
+        final int offset = offset(column);
+        copyBytes(offset + 4, dest, m_buf.getInt(offset));
+    }
+
+    public byte[] getVarbinary(int column) {
+        final byte[] bytes = new byte[getLength(column)];
+        getBytes(column, bytes);
+        return bytes;
+    }
+
+    public GeographyPointValue getGeographyPoint(int column) {
+        return GeographyPointValue.unflattenFromBuffer(m_buf, offset(column));
+    }
+
+    public GeographyValue getGeography(int column) {
+        return GeographyValue.unflattenFromBuffer(m_buf, offset(column) + 4);
+    }
+
+    private void copyBytes(int offset, byte[] dest, int length) {
+        final ByteBuffer dup = m_buf.duplicate();
+        dup.position(offset);
+        dup.get(dest, 0, length);
+    }
+
+    /**
+     * @return the value of a column boxed the way {@link ExportRow} boxes it, or null
+     */
+    public Object get(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        switch (m_types[column]) {
+        case TINYINT:
+            return (byte) getLong(column);
+        case SMALLINT:
+            return (short) getLong(column);
+        case INTEGER:
+            return (int) getLong(column);
+        case BIGINT:
+            return getLong(column);
+        case TIMESTAMP:
+            return new TimestampType(getLong(column));
+        case FLOAT:
+            return getDouble(column);
+        case DECIMAL:
+            return getDecimal(column);
+        case STRING:
+            return getString(column);
+        case VARBINARY:
+            return getVarbinary(column);
+        case GEOGRAPHY_POINT:
+            return getGeographyPoint(column);
+        case GEOGRAPHY:
+            return getGeography(column);
+        default:
+            throw new IllegalArgumentException("Invalid column type: " + m_types[column]);
+        }
+    }
+
+    /**
+     * @return the boxed values of the row in an array that is reused for the following rows
+     */
+    public Object[] getValues() {
+        if (!m_valuesDecoded) {
+            for (int i = 0; i < m_types.length; i++) {
+                m_values[i] = get(i);
+            }
+            m_valuesDecoded = true;
+        }
+        return m_values;
+    }
+
+    /**
+     * @return the current row as a standalone {@link ExportRow}, for decoders that work row by row
+     */
+    public ExportRow toExportRow() {
+        final Object[] values = getValues().clone();
+        final Object pval = m_partitionColIndex >= 0 && m_partitionColIndex < values.length ?
+                values[m_partitionColIndex] : null;
+        return new ExportRow(m_schema.tableName, m_schema.names, m_schema.types, m_schema.lengths,
+                values, (pval == null ? m_partition : pval), m_partitionColIndex, m_partition,
+                m_schema.generation);
+    }
+}
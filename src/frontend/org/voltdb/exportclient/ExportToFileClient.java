@@ -671,6 +671,19 @@ public class ExportToFileClient extends ExportClientBase {
             return true;
         }
 
+        @Override
+        public boolean processRow(ExportRowCursor cursor) throws RestartBlockException {
+            // reader lock is acquired in on-block start
+            try {
+                m_csvWriterDecoder.decode(m_writer, cursor);
+            }
+            catch (IOException io) {
+                rateLimitedLogError(m_logger, "failed to to process export row %s", Throwables.getStackTraceAsString(io));
+                return false;
+            }
+            return true;
+        }
+
         /**
          * Release the current batch folder.
          * @throws RestartBlockException
@@ -920,6 +920,21 @@ public class HttpExportClient extends ExportClientBase {
 
         @Override
         public boolean processRow(ExportRow row) throws RestartBlockException
+        {
+            return processRow(row, null);
+        }
+
+        /**
+         * Decodes the values straight from the block, without decoding the row into an {@link ExportRow}
+         */
+        @Override
+        public boolean processRow(ExportRowCursor cursor) throws RestartBlockException
+        {
+            return processRow(null, cursor);
+        }
+
+        // Exactly one of row and cursor is given
+        private boolean processRow(ExportRow row, ExportRowCursor cursor) throws RestartBlockException
         {
             URI exportPath = m_exportPath;
             if (m_client == null || !m_client.isRunning()) {
@@ -931,6 +946,9 @@ public class HttpExportClient extends ExportClientBase {
                 }
             }
             if (!m_startedProcessingRows) try {
+                if (row == null) {
+                    row = cursor.toExportRow();
+                }
                 if (m_isHdfs) {
                     DecodedStatus status = makePath(exportPath, getHeaderEntity(row));
                     if (status != DecodedStatus.OK) {
@@ -948,7 +966,9 @@ public class HttpExportClient extends ExportClientBase {
 
             if (m_decodeType == DecodeType.FORM) {
                 try {
-                    rqst = makeRequest(exportPath, m_nvpairDecoder.decode(row.generation, row.tableName, row.types, row.names, null, row.values));
+                    rqst = makeRequest(exportPath, cursor != null ?
+                            m_nvpairDecoder.decode(null, cursor) :
+                            m_nvpairDecoder.decode(row.generation, row.tableName, row.types, row.names, null, row.values));
                 } catch (RuntimeException e) {
                     // non restartable structural failure
                     rateLimitedLogError(m_logger, "unable to build an HTTP request from an exported row %s", Throwables.getStackTraceAsString(e));
@@ -956,7 +976,11 @@ public class HttpExportClient extends ExportClientBase {
                 }
             } else if (m_batchMode) {
                 try {
-                    m_entityDecoder.add(row.generation, row.tableName, row.types, row.names, row.values);
+                    if (cursor != null) {
+                        m_entityDecoder.add(cursor);
+                    } else {
+                        m_entityDecoder.add(row.generation, row.tableName, row.types, row.names, row.values);
+                    }
                     return true;
                 } catch (RuntimeException e) {
                     // non restartable structural failure
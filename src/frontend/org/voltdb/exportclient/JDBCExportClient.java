@@ -18,6 +18,10 @@
 package org.voltdb.exportclient;
 
 import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
@@ -27,10 +31,13 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -47,12 +54,14 @@ import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
 import org.voltdb.types.TimestampType;
 import org.voltdb.types.VoltDecimalHelper;
+import org.voltdb.utils.Encoder;
 
 import com.google_voltpatches.common.base.Predicates;
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.collect.ImmutableSet;
 import com.google_voltpatches.common.collect.Maps;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 import static org.voltdb.exportclient.ExportClientBase.rateLimitedLogError;
 
@@ -65,6 +74,14 @@ public class JDBCExportClient extends ExportClientBase {
     boolean m_createTable = true;
     private int firstField = 0;
     private boolean m_lowercaseNames = false;
+    // Rows per multi-row INSERT ... VALUES statement, only for targets known to support it,
+    // the others and unrecognized databases insert one row at a time
+    int m_batchRows = 1;
+    // Load blocks with COPY ... FROM STDIN on PostgreSQL
+    boolean m_useCopy = false;
+    // Connections the rows of a block are split across
+    int m_parallelConnections = 1;
+    private ListeningExecutorService m_writerPool;
     PoolProperties m_poolProperties = new PoolProperties();
     URI m_urlId;
     static AtomicReference<Map<URI,RefCountedDS>> m_cpds =
@@ -72,6 +89,11 @@ public class JDBCExportClient extends ExportClientBase {
 
     private static final String SQLSTATE_UNIQUE_VIOLATION = "23505";
 
+    // Blocks are only split across connections in slices of at least this many rows
+    static final int MIN_ROWS_PER_CONNECTION = 500;
+    // Index of VOLT_EXPORT_SEQUENCE_NUMBER among the internal fields of a row
+    private static final int EXPORT_SEQUENCE_COLUMN = 2;
+
     private static enum DatabaseType {
         POSTGRES
         ,MYSQL
@@ -80,11 +102,16 @@ public class JDBCExportClient extends ExportClientBase {
         ,SQLSERVER
         ,TERADATA
         ,VERTICA
+        ,HSQLDB
         ,UNRECOGNIZED;
     }
     private final Set<DatabaseType> supportsIfNotExists =
             ImmutableSet.<DatabaseType>builder().add(
                     DatabaseType.POSTGRES).add(DatabaseType.MYSQL).add(DatabaseType.VERTICA).build();
+    private final Set<DatabaseType> supportsMultiRowValues =
+            ImmutableSet.<DatabaseType>builder().add(
+                    DatabaseType.POSTGRES).add(DatabaseType.MYSQL).add(DatabaseType.SQLSERVER)
+                    .add(DatabaseType.HSQLDB).build();
 
     static final class RefCountedDS {
         private final DataSource ds;
@@ -164,6 +191,20 @@ public class JDBCExportClient extends ExportClientBase {
                 m_row = r;
             }
         }
+        // Rows added through the cursor are only decoded again to log batch errors
+        private ExportRowCursor m_batchCursor;
+        private int[] m_batchRowPositions = new int[256];
+        private int m_batchRowCount = 0;
+
+        // Rows are staged until the block completes, then written with multi-row statements or
+        // COPY, possibly over several connections
+        private final boolean m_staged = m_batchRows > 1 || m_useCopy || m_parallelConnections > 1;
+        private int m_multiRowCount = 1;
+        private String m_valuesTuple = null;
+        private String m_copyString = null;
+        // Slices of the block committed before it was restarted, keyed by its first sequence number
+        private long m_stagedBlockKey = -1;
+        private boolean[] m_committedSlices = new boolean[0];
 
         @Override
         public ListeningExecutorService getExecutor() {
@@ -208,6 +249,9 @@ public class JDBCExportClient extends ExportClientBase {
             } else if (dbName.equals("Teradata")) {
                 dbType = DatabaseType.TERADATA;
                 identifierQuoteTemp = "\"";
+            } else if (dbName.equals("HSQL Database Engine")) {
+                dbType = DatabaseType.HSQLDB;
+                identifierQuoteTemp = "\"";
             } else if (dbType == null) {
                 dbType = DatabaseType.UNRECOGNIZED;
                 identifierQuoteTemp = "\"";
@@ -227,28 +271,51 @@ public class JDBCExportClient extends ExportClientBase {
                 createTable(dbType, schemaAndTable, identifierQuote, columnNames, columnLengths, columnTypes);
             }
 
-            String pstmtStringTmp = "INSERT INTO " + schemaAndTable + " (";
+            String columnList = "";
             for (int i = firstField; i < columnNames.size(); i++) {
                 if (i != firstField) {
-                    pstmtStringTmp += ", ";
+                    columnList += ", ";
                 }
 
                 String columnName = m_lowercaseNames ? columnNames.get(i).toLowerCase() : columnNames.get(i);
-                pstmtStringTmp += identifierQuote + columnName + identifierQuote;
+                columnList += identifierQuote + columnName + identifierQuote;
             }
-            pstmtStringTmp += ") VALUES (";
+            String pstmtStringTmp = "INSERT INTO " + schemaAndTable + " (" + columnList;
+            String valuesTupleTmp = "(";
             for (int i = firstField; i < columnNames.size(); i++) {
                 if (i != firstField) {
-                    pstmtStringTmp += ", ";
+                    valuesTupleTmp += ", ";
                 }
 
-                pstmtStringTmp += "?";
+                valuesTupleTmp += "?";
             }
-            pstmtStringTmp += ")";
+            valuesTupleTmp += ")";
+            pstmtStringTmp += ") VALUES " + valuesTupleTmp;
             pstmtString = pstmtStringTmp;
             if (m_logger.isDebugEnabled()) {
                 m_logger.debug(pstmtString);
             }
+
+            m_multiRowCount = 1;
+            if (m_batchRows > 1) {
+                if (supportsMultiRowValues.contains(dbType)) {
+                    // Stay within the bind parameter limit of the target
+                    final int maxParameters = dbType == DatabaseType.SQLSERVER ? 2000 : 32767;
+                    m_multiRowCount = Math.max(1, Math.min(m_batchRows,
+                            maxParameters / Math.max(1, columnNames.size() - firstField)));
+                    m_valuesTuple = valuesTupleTmp;
+                } else {
+                    m_logger.warn("JDBC export to " + dbName + " does not support multi-row inserts, inserting rows one at a time");
+                }
+            }
+            m_copyString = null;
+            if (m_useCopy) {
+                if (dbType == DatabaseType.POSTGRES) {
+                    m_copyString = "COPY " + schemaAndTable + " (" + columnList + ") FROM STDIN WITH (FORMAT csv)";
+                } else {
+                    m_logger.warn("JDBC export COPY is only supported by PostgreSQL, inserting rows instead");
+                }
+            }
         }
 
         private void createTable(DatabaseType dbType, String schemaAndTable, String identifierQuote, List<String> columnNames, List<Integer> columnLengths, List<VoltType> columnTypes){
@@ -488,7 +555,17 @@ public class JDBCExportClient extends ExportClientBase {
 
         @Override
         public void onBlockStart(ExportRow row) throws RestartBlockException {
+            startBlock();
+        }
+
+        @Override
+        public void onBlockStart(ExportRowCursor cursor) throws RestartBlockException {
+            startBlock();
+        }
+
+        private void startBlock() throws RestartBlockException {
             m_dataRows.clear();
+            m_batchRowCount = 0;
             if (conn == null) {
                 if (pstmt != null) {
                     try {
@@ -509,6 +586,15 @@ public class JDBCExportClient extends ExportClientBase {
             }
         }
 
+        @Override
+        public void onBlockCompletion(ExportRowCursor cursor) throws RestartBlockException {
+            if (m_staged) {
+                completeStagedBlock();
+            } else {
+                onBlockCompletion((ExportRow) null);
+            }
+        }
+
         @Override
         public void onBlockCompletion(ExportRow row) throws RestartBlockException {
             try {
@@ -527,6 +613,7 @@ public class JDBCExportClient extends ExportClientBase {
                 throw new RestartBlockException(true);
             } finally{
                 m_dataRows.clear();
+                m_batchRowCount = 0;
                 closeConnection();
             }
         }
@@ -537,11 +624,26 @@ public class JDBCExportClient extends ExportClientBase {
            StringBuilder builder = new StringBuilder();
            for(int i = 0; i < results.length; i++){
                 if(results[i] == Statement.EXECUTE_FAILED){
-                    ExportRow rowi = m_dataRows.get(i).m_row;
-                    Object row[] = rowi.values;
-                    for (int j = firstField; j < rowi.types.size(); j++) {
+                    Object row[];
+                    List<VoltType> types;
+                    if (i < m_dataRows.size()) {
+                        ExportRow rowi = m_dataRows.get(i).m_row;
+                        row = rowi.values;
+                        types = rowi.types;
+                    } else if (i < m_batchRowCount) {
+                        try {
+                            m_batchCursor.seekRow(m_batchRowPositions[i]);
+                        } catch (IOException ioe) {
+                            continue;
+                        }
+                        row = m_batchCursor.getValues();
+                        types = m_batchCursor.getColumnTypes();
+                    } else {
+                        continue;
+                    }
+                    for (int j = firstField; j < types.size(); j++) {
                         builder.append((j == firstField) ? "":", ");
-                        formatValue(row[j], rowi.types.get(j), builder);
+                        formatValue(row[j], types.get(j), builder);
                     }
                     builder.append("\n");
                 }
@@ -577,11 +679,10 @@ public class JDBCExportClient extends ExportClientBase {
             }
         }
 
-        @Override
-        public boolean processRow(ExportRow rowinst) throws RestartBlockException {
+        private void initializeTarget(ExportRow schema) throws RestartBlockException {
             if (pstmtString == null) {
                 try {
-                    initialize(rowinst.generation, rowinst.tableName, rowinst.names, rowinst.types, rowinst.lengths);
+                    initialize(schema.generation, schema.tableName, schema.names, schema.types, schema.lengths);
                 } catch (Exception e) {
                     m_logger.warn("JDBC export unable to initialize jdbc target database", e);
                     closeConnection();
@@ -591,6 +692,10 @@ public class JDBCExportClient extends ExportClientBase {
             if (pstmtString == null) {
                 throw new RestartBlockException(true);
             }
+        }
+
+        private void prepareStatement(ExportRow schema) throws RestartBlockException {
+            initializeTarget(schema);
             if (pstmt == null) {
                 try {
                     if (m_logger.isDebugEnabled()) {
@@ -603,6 +708,275 @@ public class JDBCExportClient extends ExportClientBase {
                     throw new RestartBlockException(true);
                 }
             }
+        }
+
+        /**
+         * Binds the values straight from the block, without decoding the row into an {@link ExportRow}
+         */
+        @Override
+        public boolean processRow(ExportRowCursor cursor) throws RestartBlockException {
+            if (m_staged) {
+                // Only the position of the row is kept, it is written when the block completes
+                initializeTarget(cursor.getSchema());
+                addBatchRowPosition(cursor);
+                return true;
+            }
+            prepareStatement(cursor.getSchema());
+
+            boolean restartBlock = false;
+            try {
+                bindRow(pstmt, cursor, 0);
+
+                try {
+                    if (supportsBatchUpdates) {
+                        pstmt.addBatch();
+                        addBatchRowPosition(cursor);
+                    } else {
+                        pstmt.executeUpdate();
+                    }
+                } catch (SQLException e) {
+                    rateLimitedLogError(m_logger, "executeUpdate() failed in processRow() for table %s %s", cursor.getTableName(), Throwables.getStackTraceAsString(e));
+                    restartBlock = true;
+                }
+            } catch (Exception e) {
+                rateLimitedLogError(m_logger, "processRow() failed in table %s, %s", cursor.getTableName(), Throwables.getStackTraceAsString(e));
+                restartBlock = true;
+            }
+
+            if (restartBlock) {
+                closeConnection();
+                throw new RestartBlockException(true);
+            }
+
+            return true;
+        }
+
+        private void addBatchRowPosition(ExportRowCursor cursor) {
+            if (m_batchRowCount == m_batchRowPositions.length) {
+                m_batchRowPositions = Arrays.copyOf(m_batchRowPositions, m_batchRowCount * 2);
+            }
+            m_batchRowPositions[m_batchRowCount++] = cursor.getRowPosition();
+            m_batchCursor = cursor;
+        }
+
+        /**
+         * Bind the columns of the row a cursor is on, from parameter parameterOffset + 1
+         */
+        private void bindRow(PreparedStatement ps, ExportRowCursor cursor, int parameterOffset) throws SQLException {
+            for (int i = firstField; i < cursor.getColumnCount(); i++) {
+                final int pstmtIndex = parameterOffset + i + 1 - firstField;
+                if (cursor.isNull(i)) {
+                    ps.setNull(pstmtIndex, Types.NULL);
+                    continue;
+                }
+                switch (cursor.getColumnType(i)) {
+                case DECIMAL:
+                    ps.setBigDecimal(pstmtIndex, cursor.getDecimal(i));
+                    break;
+                case TINYINT:
+                    ps.setByte(pstmtIndex, (byte) cursor.getLong(i));
+                    break;
+                case SMALLINT:
+                    ps.setShort(pstmtIndex, (short) cursor.getLong(i));
+                    break;
+                case INTEGER:
+                    ps.setInt(pstmtIndex, (int) cursor.getLong(i));
+                    break;
+                case BIGINT:
+                    ps.setLong(pstmtIndex, cursor.getLong(i));
+                    break;
+                case FLOAT:
+                    ps.setDouble(pstmtIndex, cursor.getDouble(i));
+                    break;
+                case STRING:
+                    ps.setString(pstmtIndex, cursor.getString(i));
+                    break;
+                case TIMESTAMP:
+                    ps.setTimestamp(pstmtIndex, toJavaTimestamp(cursor.getLong(i)));
+                    break;
+                case GEOGRAPHY_POINT:
+                    ps.setString(pstmtIndex, cursor.getGeographyPoint(i).toWKT());
+                    break;
+                case GEOGRAPHY:
+                    ps.setString(pstmtIndex, cursor.getGeography(i).toWKT());
+                    break;
+                case VARBINARY:
+                    ps.setBytes(pstmtIndex, cursor.getVarbinary(i));
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Write the staged rows of the block. The block is split in slices of rows, the decoder
+         * writes the first one on its connection while the writer pool writes the others on
+         * connections of their own, each slice in its own transaction. The block is acknowledged
+         * once every slice is committed, and if it is restarted the slices already committed are
+         * not written again.
+         */
+        private void completeStagedBlock() throws RestartBlockException {
+            try {
+                final int rows = m_batchRowCount;
+                final int slices = Math.max(1, Math.min(m_parallelConnections, rows / MIN_ROWS_PER_CONNECTION));
+                m_batchCursor.seekRow(m_batchRowPositions[0]);
+                final long blockKey = m_batchCursor.getLong(EXPORT_SEQUENCE_COLUMN);
+                if (blockKey != m_stagedBlockKey || m_committedSlices.length != slices) {
+                    m_stagedBlockKey = blockKey;
+                    m_committedSlices = new boolean[slices];
+                }
+
+                final List<ListenableFuture<Void>> futures = new ArrayList<>();
+                for (int slice = 1; slice < slices; slice++) {
+                    if (m_committedSlices[slice]) {
+                        continue;
+                    }
+                    final int index = slice;
+                    final int from = (int) ((long) rows * slice / slices);
+                    final int to = (int) ((long) rows * (slice + 1) / slices);
+                    final ExportRowCursor cursor = m_batchCursor.duplicate();
+                    futures.add(getWriterPool().submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            Connection sliceConn = m_ds.getDataSource().getConnection();
+                            try {
+                                sliceConn.setAutoCommit(false);
+                                writeRows(sliceConn, cursor, from, to);
+                                sliceConn.commit();
+                                m_committedSlices[index] = true;
+                            } catch (Exception e) {
+                                try {
+                                    sliceConn.rollback();
+                                } catch (SQLException ignoreIt) {}
+                                throw e;
+                            } finally {
+                                sliceConn.close();
+                            }
+                            return null;
+                        }
+                    }));
+                }
+
+                Throwable failure = null;
+                if (!m_committedSlices[0]) {
+                    try {
+                        writeRows(conn, m_batchCursor, 0, rows / slices);
+                        conn.commit();
+                        m_committedSlices[0] = true;
+                    } catch (Exception e) {
+                        failure = e;
+                    }
+                }
+                // Wait for every slice so none of them still reads the block once it is released
+                boolean interrupted = false;
+                for (ListenableFuture<Void> future : futures) {
+                    while (true) {
+                        try {
+                            future.get();
+                            break;
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        } catch (ExecutionException e) {
+                            if (failure == null) {
+                                failure = e.getCause();
+                            }
+                            break;
+                        }
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if (failure != null) {
+                    try {
+                        conn.rollback();
+                    } catch (Exception ignoreIt) {}
+                    Throwable rootCause = ExceptionUtils.getRootCause(failure);
+                    rateLimitedLogError(m_logger, "Writing block failed in table %s %s", m_batchCursor.getTableName(),
+                            Throwables.getStackTraceAsString(rootCause != null ? rootCause : failure));
+                    throw new RestartBlockException(true);
+                }
+                m_stagedBlockKey = -1;
+            } catch (IOException e) {
+                rateLimitedLogError(m_logger, "Reading block failed in table %s %s", m_batchCursor.getTableName(),
+                        Throwables.getStackTraceAsString(e));
+                throw new RestartBlockException(true);
+            } finally {
+                m_batchRowCount = 0;
+                closeConnection();
+            }
+        }
+
+        /**
+         * Write rows from..to of the staged rows on a connection, without committing
+         */
+        private void writeRows(Connection c, ExportRowCursor cursor, int from, int to) throws SQLException, IOException {
+            if (m_copyString != null) {
+                StringBuilder sb = new StringBuilder(256 * (to - from));
+                for (int row = from; row < to; row++) {
+                    cursor.seekRow(m_batchRowPositions[row]);
+                    appendCopyRow(sb, cursor, firstField);
+                }
+                copyIn(c, m_copyString, new StringReader(sb.toString()));
+                return;
+            }
+
+            final int columns = cursor.getColumnCount() - firstField;
+            int row = from;
+            if (m_multiRowCount > 1 && to - from >= m_multiRowCount) {
+                final PreparedStatement ps = c.prepareStatement(multiRowInsert(pstmtString, m_valuesTuple, m_multiRowCount));
+                try {
+                    while (to - row >= m_multiRowCount) {
+                        for (int i = 0; i < m_multiRowCount; i++) {
+                            cursor.seekRow(m_batchRowPositions[row++]);
+                            bindRow(ps, cursor, i * columns);
+                        }
+                        if (supportsBatchUpdates) {
+                            ps.addBatch();
+                        } else {
+                            ps.executeUpdate();
+                        }
+                    }
+                    if (supportsBatchUpdates) {
+                        ps.executeBatch();
+                    }
+                } finally {
+                    ps.close();
+                }
+            }
+            if (row < to) {
+                final PreparedStatement ps = c.prepareStatement(pstmtString);
+                try {
+                    for (; row < to; row++) {
+                        cursor.seekRow(m_batchRowPositions[row]);
+                        bindRow(ps, cursor, 0);
+                        if (supportsBatchUpdates) {
+                            ps.addBatch();
+                        } else {
+                            ps.executeUpdate();
+                        }
+                    }
+                    if (supportsBatchUpdates) {
+                        ps.executeBatch();
+                    }
+                } finally {
+                    ps.close();
+                }
+            }
+        }
+
+        // Same conversion as TimestampType.asJavaTimestamp()
+        private java.sql.Timestamp toJavaTimestamp(long micros) {
+            final int usecs = (int) (micros % 1000);
+            java.sql.Timestamp result = new java.sql.Timestamp((micros - usecs) / 1000);
+            result.setNanos(result.getNanos() + usecs * 1000);
+            return result;
+        }
+
+        @Override
+        public boolean processRow(ExportRow rowinst) throws RestartBlockException {
+            prepareStatement(rowinst);
 
             Object[] row = rowinst.values;
             List<VoltType> columnTypes = rowinst.types;
@@ -708,6 +1082,107 @@ public class JDBCExportClient extends ExportClientBase {
         return new JDBCDecoder(source, m_cpds.get().get(m_urlId));
     }
 
+    private synchronized ListeningExecutorService getWriterPool() {
+        if (m_writerPool == null) {
+            m_writerPool = CoreUtils.getListeningExecutorService("JDBC export writer", m_parallelConnections - 1);
+        }
+        return m_writerPool;
+    }
+
+    /**
+     * @return an INSERT statement for rows rows, from the statement for one row
+     */
+    static String multiRowInsert(String insert, String valuesTuple, int rows) {
+        StringBuilder sb = new StringBuilder(insert.length() + (valuesTuple.length() + 2) * (rows - 1));
+        sb.append(insert);
+        for (int i = 1; i < rows; i++) {
+            sb.append(", ").append(valuesTuple);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Append the row a cursor is on as a line of the CSV format of PostgreSQL's COPY. Nulls are
+     * empty unquoted fields, so strings are always quoted to keep empty strings apart.
+     */
+    static void appendCopyRow(StringBuilder sb, ExportRowCursor cursor, int firstField) {
+        for (int i = firstField; i < cursor.getColumnCount(); i++) {
+            if (i != firstField) {
+                sb.append(',');
+            }
+            if (cursor.isNull(i)) {
+                continue;
+            }
+            switch (cursor.getColumnType(i)) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                sb.append(cursor.getLong(i));
+                break;
+            case FLOAT:
+                sb.append(cursor.getDouble(i));
+                break;
+            case DECIMAL:
+                sb.append(cursor.getDecimal(i).toPlainString());
+                break;
+            case TIMESTAMP:
+                final long micros = cursor.getLong(i);
+                sb.append(java.time.Instant.ofEpochSecond(Math.floorDiv(micros, 1000000L),
+                        Math.floorMod(micros, 1000000L) * 1000L));
+                break;
+            case VARBINARY:
+                sb.append("\\x").append(Encoder.hexEncode(cursor.getVarbinary(i)));
+                break;
+            case STRING:
+                appendQuoted(sb, cursor.getString(i));
+                break;
+            case GEOGRAPHY_POINT:
+                appendQuoted(sb, cursor.getGeographyPoint(i).toWKT());
+                break;
+            case GEOGRAPHY:
+                appendQuoted(sb, cursor.getGeography(i).toWKT());
+                break;
+            default:
+                break;
+            }
+        }
+        sb.append('\n');
+    }
+
+    private static void appendQuoted(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    /**
+     * COPY rows through the CopyManager of the PostgreSQL driver, which is only on the classpath
+     * of the servers that export to PostgreSQL
+     */
+    private static long copyIn(Connection conn, String sql, Reader reader) throws SQLException, IOException {
+        try {
+            Class<?> pgConnection = Class.forName("org.postgresql.PGConnection");
+            Object copyManager = pgConnection.getMethod("getCopyAPI").invoke(conn.unwrap(pgConnection));
+            return (Long) copyManager.getClass().getMethod("copyIn", String.class, Reader.class)
+                    .invoke(copyManager, sql, reader);
+        } catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            Throwables.throwIfInstanceOf(cause, SQLException.class);
+            Throwables.throwIfInstanceOf(cause, IOException.class);
+            Throwables.throwIfUnchecked(cause);
+            throw new SQLException("PostgreSQL COPY failed", cause);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("PostgreSQL COPY is not available", e);
+        }
+    }
+
     @Override
     public void configure(Properties config) throws Exception {
         String url = config.getProperty("jdbcurl", "").trim();
@@ -737,6 +1212,29 @@ public class JDBCExportClient extends ExportClientBase {
         if(!m_createTable){
             ignoreGenerations = true;
         }
+        String batchRows = config.getProperty("batchrows", "").trim();
+        if (!batchRows.isEmpty()) {
+            try {
+                m_batchRows = Integer.parseInt(batchRows);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("\"batchrows\" must be integer");
+            }
+            if (m_batchRows < 1) {
+                throw new IllegalArgumentException("\"batchrows\" must be greater than 0");
+            }
+        }
+        m_useCopy = Boolean.valueOf(config.getProperty("copy", "false").trim());
+        String parallelConnections = config.getProperty("parallelconnections", "").trim();
+        if (!parallelConnections.isEmpty()) {
+            try {
+                m_parallelConnections = Integer.parseInt(parallelConnections);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("\"parallelconnections\" must be integer");
+            }
+            if (m_parallelConnections < 1) {
+                throw new IllegalArgumentException("\"parallelconnections\" must be greater than 0");
+            }
+        }
         String minPoolSize = config.getProperty("minpoolsize", "").trim();
         if (!minPoolSize.isEmpty()) {
             try {
@@ -861,6 +1359,11 @@ public class JDBCExportClient extends ExportClientBase {
 
     @Override
     public void shutdown() {
+        synchronized (this) {
+            if (m_writerPool != null) {
+                m_writerPool.shutdown();
+            }
+        }
         ImmutableMap.Builder<URI,RefCountedDS> builder;
         Map<URI,RefCountedDS> cpds;
         RefCountedDS p;
@@ -23,12 +23,15 @@ import java.io.StringWriter;
 import au.com.bytecode.opencsv_voltpatches.CSVWriter;
 import java.util.List;
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRowCursor;
 
 public class CSVStringDecoder extends RowDecoder<String, RuntimeException> {
 
     protected final StringArrayDecoder m_stringArrayDecoder;
     protected final CSVWriter m_writer;
     protected final StringBuffer m_writerDestination;
+    // Reused from row to row, writeNext() doesn't hold on to it
+    private String[] m_fields;
 
     protected CSVStringDecoder(StringArrayDecoder stringArrayDecoder) {
         super(stringArrayDecoder);
@@ -48,6 +51,15 @@ public class CSVStringDecoder extends RowDecoder<String, RuntimeException> {
         return csvLine;
     }
 
+    @Override
+    public String decode(String ignoreIt, ExportRowCursor cursor) throws RuntimeException {
+        m_fields = m_stringArrayDecoder.decode(m_fields, cursor);
+        m_writer.writeNext(m_fields);
+        String csvLine = m_writerDestination.toString();
+        m_writerDestination.setLength(0);
+        return csvLine;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
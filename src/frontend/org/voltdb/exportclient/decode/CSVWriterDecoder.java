@@ -21,12 +21,15 @@ import java.io.IOException;
 import java.util.List;
 
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRowCursor;
 
 import au.com.bytecode.opencsv_voltpatches.CSVWriter;
 
 public class CSVWriterDecoder extends RowDecoder<CSVWriter, IOException> {
 
     protected final StringArrayDecoder m_stringArrayDecoder;
+    // Reused from row to row, writeNext() doesn't hold on to it
+    private String[] m_fields;
 
     protected CSVWriterDecoder(StringArrayDecoder stringArrayDecoder) {
         super(stringArrayDecoder);
@@ -39,6 +42,13 @@ public class CSVWriterDecoder extends RowDecoder<CSVWriter, IOException> {
         return to;
     }
 
+    @Override
+    public CSVWriter decode(CSVWriter to, ExportRowCursor cursor) throws IOException {
+        m_fields = m_stringArrayDecoder.decode(m_fields, cursor);
+        to.writeNext(m_fields);
+        return to;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
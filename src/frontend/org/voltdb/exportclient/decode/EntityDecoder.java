@@ -22,11 +22,20 @@ import java.util.List;
 
 import org.apache.http.entity.AbstractHttpEntity;
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRowCursor;
 
 public abstract class EntityDecoder implements BatchDecoder<AbstractHttpEntity, RuntimeException>{
 
     static final protected URI UNCHANGED_URI =
             URI.create("http://unchanged.sentinel/__UNCHANGED_SENTINEL__");
 
+    /**
+     * Add the row a cursor is on, by default from the boxed values of the row
+     */
+    public void add(ExportRowCursor cursor) throws RuntimeException {
+        add(cursor.getGeneration(), cursor.getTableName(), cursor.getColumnTypes(), cursor.getColumnNames(),
+                cursor.getValues());
+    }
+
     abstract public AbstractHttpEntity getHeaderEntity(long generation, String tableName, List<VoltType> types, List<String> names);
 }
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRowCursor;
 
 import com.google_voltpatches.common.base.Function;
 import com.google_voltpatches.common.collect.ImmutableMap;
@@ -137,6 +138,21 @@ public abstract class RowDecoder<T, E extends Exception> {
      */
     public abstract T decode(long generation, String tableName, List<VoltType> types, List<String> names, T to, Object[] fields) throws E;
 
+    /**
+     * It converts the exported volt row a cursor is on into a target type. By default
+     * the values of the row are boxed, decoders that can read them straight from the
+     * cursor override it.
+     *
+     * @param to may be used as an accumulator (byte buffers, lists, maps)
+     * @param cursor cursor on the row, only valid until this call returns
+     * @return the conversion target type
+     * @throws E the exception that this conversion may incur
+     */
+    public T decode(T to, ExportRowCursor cursor) throws E {
+        return decode(cursor.getGeneration(), cursor.getTableName(), cursor.getColumnTypes(),
+                cursor.getColumnNames(), to, cursor.getValues());
+    }
+
     /**
      * Responsible to build and instantiate row decoders.
      */
@@ -18,6 +18,7 @@
 package org.voltdb.exportclient.decode;
 
 import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +27,7 @@ import java.util.TimeZone;
 import org.voltdb.VoltType;
 import org.voltdb.common.Constants;
 import org.voltdb.exportclient.ExportDecoderBase.BinaryEncoding;
+import org.voltdb.exportclient.ExportRowCursor;
 import org.voltdb.exportclient.decode.DecodeType.SimpleVisitor;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
@@ -72,24 +74,7 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
                 fields != null && fields.length > m_firstFieldOffset,
                 "null or inapropriately sized export row array"
         );
-        /*
-         * Builds a list of string formatters that reflects the row
-         * column types.
-         */
-        StringFieldDecoder [] fieldDecoders;
-        if (!m_fieldDecoders.containsKey(generation)) {
-            int fieldCount = 0;
-            Map<String, DecodeType> typeMap = getTypeMap(generation, types, names);
-            ImmutableList.Builder<StringFieldDecoder> lb = ImmutableList.builder();
-            for (org.voltdb.exportclient.decode.DecodeType dt: typeMap.values()) {
-                lb.add(dt.accept(decodingVisitor, fieldCount++, null));
-            }
-
-            fieldDecoders = lb.build().toArray(new StringFieldDecoder[0]);
-            m_fieldDecoders.put(generation, fieldDecoders);
-        } else {
-            fieldDecoders = m_fieldDecoders.get(generation);
-        }
+        StringFieldDecoder [] fieldDecoders = getFieldDecoders(generation, types, names);
         if (to == null || to.length < fieldDecoders.length) {
             to = new String[fieldDecoders.length];
         }
@@ -104,54 +89,98 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
         return to;
     }
 
+    /**
+     * Converts the row a cursor is on into an array of the string representations of its values,
+     * without boxing them. to is reused if it has exactly one entry per decoded column.
+     */
+    @Override
+    public String[] decode(String[] to, ExportRowCursor cursor) throws RuntimeException {
+        StringFieldDecoder [] fieldDecoders =
+                getFieldDecoders(cursor.getGeneration(), cursor.getColumnTypes(), cursor.getColumnNames());
+        if (to == null || to.length != fieldDecoders.length) {
+            to = new String[fieldDecoders.length];
+        }
+        for (int j = 0; j < fieldDecoders.length; ++j) {
+            fieldDecoders[j].decode(to, cursor, m_firstFieldOffset + j);
+        }
+        return to;
+    }
+
+    /*
+     * Builds a list of string formatters that reflects the row
+     * column types.
+     */
+    private StringFieldDecoder[] getFieldDecoders(long generation, List<VoltType> types, List<String> names) {
+        StringFieldDecoder [] fieldDecoders = m_fieldDecoders.get(generation);
+        if (fieldDecoders == null) {
+            int fieldCount = 0;
+            Map<String, DecodeType> typeMap = getTypeMap(generation, types, names);
+            ImmutableList.Builder<StringFieldDecoder> lb = ImmutableList.builder();
+            for (org.voltdb.exportclient.decode.DecodeType dt: typeMap.values()) {
+                lb.add(dt.accept(decodingVisitor, fieldCount++, null));
+            }
+
+            fieldDecoders = lb.build().toArray(new StringFieldDecoder[0]);
+            m_fieldDecoders.put(generation, fieldDecoders);
+        }
+        return fieldDecoders;
+    }
+
     static abstract class StringFieldDecoder implements FieldDecoder<String[], RuntimeException> {
         protected final int m_fieldIndex;
 
         StringFieldDecoder(int fieldIndex) {
             m_fieldIndex = fieldIndex;
         }
+
+        /**
+         * Decode a column of the row a cursor is on, overridden by the types that can be
+         * formatted without boxing the value
+         */
+        void decode(String[] to, ExportRowCursor cursor, int column) throws RuntimeException {
+            decode(to, cursor.get(column));
+        }
+    }
+
+    /**
+     * String formatter of the integer types, formats the primitive value of a cursor
+     */
+    abstract class IntegralFieldDecoder extends StringFieldDecoder {
+        IntegralFieldDecoder(int fieldIndex) {
+            super(fieldIndex);
+        }
+
+        @Override
+        public final void decode(String[] to, Object field) throws RuntimeException {
+            to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
+        }
+
+        @Override
+        final void decode(String[] to, ExportRowCursor cursor, int column) throws RuntimeException {
+            to[m_fieldIndex] = cursor.isNull(column) ? m_nullRepresentation : Long.toString(cursor.getLong(column));
+        }
     }
 
     final SimpleVisitor<StringFieldDecoder,Integer> decodingVisitor = new SimpleVisitor<StringFieldDecoder,Integer>() {
 
         @Override
         public StringFieldDecoder visitTinyInt(Integer p, Object v) throws RuntimeException {
-            return new StringFieldDecoder(p) {
-                @Override
-                public final void decode(String[] to, Object field) throws RuntimeException {
-                    to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
-                }
-            };
+            return new IntegralFieldDecoder(p) {};
         }
 
         @Override
         public StringFieldDecoder visitSmallInt(Integer p, Object v) throws RuntimeException {
-            return new StringFieldDecoder(p) {
-                @Override
-                public final void decode(String[] to, Object field) throws RuntimeException {
-                    to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
-                }
-            };
+            return new IntegralFieldDecoder(p) {};
         }
 
         @Override
         public StringFieldDecoder visitInteger(Integer p, Object v) throws RuntimeException {
-            return new StringFieldDecoder(p) {
-                @Override
-                public final void decode(String[] to, Object field) throws RuntimeException {
-                    to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
-                }
-            };
+            return new IntegralFieldDecoder(p) {};
         }
 
         @Override
         public StringFieldDecoder visitBigInt(Integer p, Object v) throws RuntimeException {
-            return new StringFieldDecoder(p) {
-                @Override
-                public final void decode(String[] to, Object field) throws RuntimeException {
-                    to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
-                }
-            };
+            return new IntegralFieldDecoder(p) {};
         }
 
         @Override
@@ -161,6 +190,11 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
                 public final void decode(String[] to, Object field) throws RuntimeException {
                     to[m_fieldIndex] = field != null ? field.toString() : m_nullRepresentation;
                 }
+
+                @Override
+                final void decode(String[] to, ExportRowCursor cursor, int column) throws RuntimeException {
+                    to[m_fieldIndex] = cursor.isNull(column) ? m_nullRepresentation : Double.toString(cursor.getDouble(column));
+                }
             };
         }
 
@@ -177,6 +211,18 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
                     TimestampType ts = (TimestampType)field;
                     to[m_fieldIndex] = m_df.format(ts.asApproximateJavaDate());
                 }
+
+                final Date m_date = new Date();
+                @Override
+                final void decode(String[] to, ExportRowCursor cursor, int column) throws RuntimeException {
+                    if (cursor.isNull(column)) {
+                        to[m_fieldIndex] = m_nullRepresentation;
+                        return;
+                    }
+                    // Same truncation to milliseconds as TimestampType
+                    m_date.setTime(cursor.getLong(column) / 1000);
+                    to[m_fieldIndex] = m_df.format(m_date);
+                }
             };
         }
 
@@ -187,6 +233,11 @@ public class StringArrayDecoder extends RowDecoder<String[], RuntimeException> {
                 public final void decode(String[] to, Object field) throws RuntimeException {
                     to[m_fieldIndex] = field != null ? (String)field : m_nullRepresentation;
                 }
+
+                @Override
+                final void decode(String[] to, ExportRowCursor cursor, int column) throws RuntimeException {
+                    to[m_fieldIndex] = cursor.isNull(column) ? m_nullRepresentation : cursor.getString(column);
+                }
             };
         }
 
@@ -17,28 +17,30 @@
 
 package org.voltdb.exportclient.kafka;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TimeZone;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.VoltDB;
-import org.voltdb.common.Constants;
 import org.voltdb.export.AdvertisedDataSource;
 import org.voltdb.export.ExportDataProcessor;
 import org.voltdb.exportclient.ExportClientBase;
@@ -46,10 +48,10 @@ import org.voltdb.exportclient.ExportClientLogger;
 import org.voltdb.exportclient.ExportDecoderBase;
 import org.voltdb.exportclient.ExportDecoderBase.BinaryEncoding;
 import org.voltdb.exportclient.ExportRow;
-import org.voltdb.exportclient.decode.CSVStringDecoder;
+import org.voltdb.exportclient.ExportRowCursor;
+import org.voltdb.exportclient.kafka.KafkaValueEncoder.ValueFormat;
 
 import com.google_voltpatches.common.base.Splitter;
-import com.google_voltpatches.common.collect.ImmutableList;
 import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 
@@ -67,6 +69,11 @@ public class KafkaExportClient extends ExportClientBase {
     private final static String OLD_PARTITIONER = "partitioner.class";
     private final static String ACKS_TIMEOUT = "acks.retry.timeout";
     private final static String LEGACY_ACKS = "request.required.acks";
+    private final static String VALUE_FORMAT_PN = "value.format";
+    private final static String SKIP_RESENT_ROWS_PN = "skip.resent.rows";
+
+    // Index of VOLT_EXPORT_SEQUENCE_NUMBER among the internal fields of a row
+    private final static int EXPORT_SEQUENCE_COLUMN = 2;
 
     private final static Splitter COMMA_SPLITTER = Splitter.on(",").omitEmptyStrings().trimResults();
     private final static Splitter PERIOD_SPLITTER = Splitter.on(".").omitEmptyStrings().trimResults();
@@ -84,6 +91,13 @@ public class KafkaExportClient extends ExportClientBase {
     Map<String, String> m_tablePartitionColumns;
     boolean m_pollFutures = false;
     int m_acksTimeout = 5_000;
+    ValueFormat m_valueFormat = ValueFormat.CSV;
+    // Delivery stays at least once, skip.resent.rows only keeps a decoder from sending a row Kafka
+    // acknowledged again when a block is restarted or the source rewinds. The sequence numbers of
+    // those rows are kept in the memory of the decoder, so rows are still sent again after a server
+    // restart or when the source is advertised again, as on an export mastership failover, and when
+    // Kafka accepted a send whose acknowledgement timed out.
+    boolean m_skipResentRows = false;
 
     @Override
     public void configure(Properties config) throws Exception {
@@ -114,6 +128,19 @@ public class KafkaExportClient extends ExportClientBase {
         }
         m_producerConfig.remove(BINARY_ENCODING_PN);
 
+        String formatVal = config.getProperty(VALUE_FORMAT_PN, "").trim().toUpperCase();
+        if (!formatVal.isEmpty()) try {
+            m_valueFormat = ValueFormat.valueOf(formatVal);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "\"" + VALUE_FORMAT_PN + "\" may only be 'csv', 'json' or 'avro'", e
+                    );
+        }
+        m_producerConfig.remove(VALUE_FORMAT_PN);
+
+        m_skipResentRows = Boolean.parseBoolean(config.getProperty(SKIP_RESENT_ROWS_PN, "false").trim());
+        m_producerConfig.remove(SKIP_RESENT_ROWS_PN);
+
         ImmutableMap.Builder<String, String> mbld = ImmutableMap.builder();
         String topicVal = config.getProperty(TOPIC_KEY_PN, "");
         for (String stanza: COMMA_SPLITTER.split(topicVal)) {
@@ -170,7 +197,17 @@ public class KafkaExportClient extends ExportClientBase {
         }
 
         String acksVal = config.getProperty(ProducerConfig.ACKS_CONFIG, "").trim();
-        if (acksVal.isEmpty()) {
+        if (m_skipResentRows) {
+            // Rows are only known to be sent once every replica has them, and one request in
+            // flight keeps the producer retries from reordering them
+            if (!acksVal.isEmpty() && !"all".equals(acksVal) && !"-1".equals(acksVal)) {
+                throw new IllegalArgumentException(
+                        "\"" + SKIP_RESENT_ROWS_PN + "\" requires \"" + ProducerConfig.ACKS_CONFIG + "\" to be all"
+                        );
+            }
+            m_producerConfig.setProperty(ProducerConfig.ACKS_CONFIG, "all");
+            m_producerConfig.setProperty(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, "1");
+        } else if (acksVal.isEmpty()) {
             m_producerConfig.setProperty(ProducerConfig.ACKS_CONFIG, "0");
         }
         m_pollFutures = !"0".equals(m_producerConfig.get(ProducerConfig.ACKS_CONFIG));
@@ -251,7 +288,8 @@ public class KafkaExportClient extends ExportClientBase {
 
         String vSerializer = config.getProperty(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "").trim();
         if (vSerializer.isEmpty()) {
-            m_producerConfig.setProperty(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+            m_producerConfig.setProperty(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+                    m_valueFormat == ValueFormat.CSV ? StringSerializer.class.getName() : ByteArraySerializer.class.getName());
         } else try {
             Class.forName(vSerializer);
         } catch (UnknownError|ExceptionInInitializerError|ClassNotFoundException e) {
@@ -282,36 +320,65 @@ public class KafkaExportClient extends ExportClientBase {
         return new KafkaExportDecoder(source);
     }
 
+    /**
+     * @return a new producer for a decoder, tests override it to send to a mock producer
+     */
+    Producer<String, Object> createProducer() {
+        return new KafkaProducer<>(m_producerConfig);
+    }
+
+    KafkaValueEncoder createValueEncoder() {
+        return KafkaValueEncoder.create(m_valueFormat, m_timeZone, m_binaryEncoding, m_skipInternals);
+    }
+
+    /**
+     * The sends issued by a decoder for one attempt at a block
+     */
+    static final class SendAttempt {
+        // Sends not completed yet, the callbacks notify it when it drops to zero
+        final AtomicInteger m_pendingSends = new AtomicInteger(0);
+        final AtomicBoolean m_failure = new AtomicBoolean(false);
+
+        void sendCompleted() {
+            if (m_pendingSends.decrementAndGet() == 0) {
+                synchronized (m_pendingSends) {
+                    m_pendingSends.notifyAll();
+                }
+            }
+        }
+    }
+
     class KafkaExportDecoder extends ExportDecoderBase {
 
         String m_topic = null;
         boolean m_primed = false;
-        KafkaProducer<String, String> m_producer;
-        final CSVStringDecoder m_decoder;
-        final List<Future<RecordMetadata>> m_futures = new ArrayList<>();
-        private final AtomicBoolean m_failure = new AtomicBoolean(false);
+        Producer<String, Object> m_producer;
+        final KafkaValueEncoder m_encoder;
+        // The sends of the current attempt at a block, replaced when the block is restarted
+        volatile SendAttempt m_attempt = new SendAttempt();
         final ListeningExecutorService m_es;
 
+        // With skip.resent.rows, the export sequence numbers of the rows Kafka acknowledged. Rows up to
+        // m_sentSeqNo belong to completed blocks, rows of the current block are in m_sentSeqNos, and
+        // rows sent before the block is restarted or the source rewinds are not sent again. They
+        // are not persisted, and are lost with the decoder.
+        long m_sentSeqNo = -1;
+        final Set<Long> m_sentSeqNos = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        long m_blockSeqNo = -1;
+
         public KafkaExportDecoder(AdvertisedDataSource source) {
             super(source);
 
-            CSVStringDecoder.Builder builder = CSVStringDecoder.builder();
-            builder
-                .dateFormatter(Constants.ODBC_DATE_FORMAT_STRING)
-                .timeZone(m_timeZone)
-                .binaryEncoding(m_binaryEncoding)
-                .skipInternalFields(m_skipInternals)
-            ;
             m_es = CoreUtils.getListeningSingleThreadExecutor(
                     "Kafka Export decoder for partition " +
                             source.tableName + " - " + source.partitionId, CoreUtils.MEDIUM_STACK_SIZE);
 
-            m_decoder = builder.build();
+            m_encoder = createValueEncoder();
         }
 
         final void checkOnFirstRow() throws RestartBlockException {
             if (!m_primed) try {
-                m_producer = new KafkaProducer<>(m_producerConfig);
+                m_producer = createProducer();
             }
             catch (ConfigException e) {
                 LOG.error("Unable to instantiate a Kafka producer", e);
@@ -320,6 +387,15 @@ public class KafkaExportClient extends ExportClientBase {
             m_primed = true;
         }
 
+        /**
+         * Start a new attempt for a restarted block. Callbacks of the sends of earlier attempts
+         * still count down and flag their own attempt, so a send that completes late can't fail
+         * or hold back the retry.
+         */
+        private void restartAttempt() {
+            m_attempt = new SendAttempt();
+        }
+
         private void populateTopic(String tableName) {
             if (m_tableTopics != null && m_tableTopics.containsKey(tableName.toLowerCase())) {
                 m_topic = m_tableTopics.get(tableName.toLowerCase()).intern();
@@ -335,24 +411,54 @@ public class KafkaExportClient extends ExportClientBase {
 
         @Override
         public void onBlockCompletion(ExportRow row) throws RestartBlockException {
+            completeBlock();
+        }
+
+        @Override
+        public void onBlockCompletion(ExportRowCursor cursor) throws RestartBlockException {
+            completeBlock();
+        }
+
+        /**
+         * Wait for the sends of the block, the block is restarted if one failed or if no send
+         * completed for the acks timeout
+         */
+        private void completeBlock() throws RestartBlockException {
+            final SendAttempt attempt = m_attempt;
+            boolean completed = false;
             try {
-                if (m_pollFutures || m_failure.get()) {
-                    ImmutableList<Future<RecordMetadata>> pollFutures = ImmutableList.copyOf(m_futures);
-                    for (Future<RecordMetadata> fut: pollFutures) {
-                        fut.get(m_acksTimeout, TimeUnit.MILLISECONDS);
+                if (m_pollFutures || attempt.m_failure.get()) {
+                    synchronized (attempt.m_pendingSends) {
+                        int pending = attempt.m_pendingSends.get();
+                        long deadline = System.currentTimeMillis() + m_acksTimeout;
+                        while (pending > 0) {
+                            long remaining = deadline - System.currentTimeMillis();
+                            if (remaining <= 0) {
+                                throw new RestartBlockException("Send operation timed out", true);
+                            }
+                            attempt.m_pendingSends.wait(remaining);
+                            if (attempt.m_pendingSends.get() < pending) {
+                                pending = attempt.m_pendingSends.get();
+                                deadline = System.currentTimeMillis() + m_acksTimeout;
+                            }
+                        }
+                    }
+                    if (attempt.m_failure.get()) {
+                        throw new RestartBlockException("Send operation failed to complete", true);
                     }
                 }
-            } catch (TimeoutException e) {
-                throw new RestartBlockException("Send operation timed out", e, true);
-            } catch (ExecutionException e) {
-                LOG.warn("Send operation failed to complete", e.getCause());
-                throw new RestartBlockException("Send operation failed to complete", e.getCause(), true);
+                if (m_skipResentRows) {
+                    m_sentSeqNo = Math.max(m_sentSeqNo, m_blockSeqNo);
+                    m_sentSeqNos.clear();
+                }
+                completed = true;
             } catch (InterruptedException e) {
                 LOG.warn("Iterrupted send operation", e);
                 throw new RestartBlockException("Iterrupted send operation", e, true);
             } finally {
-                m_futures.clear();
-                m_failure.set(false);
+                if (!completed) {
+                    restartAttempt();
+                }
             }
         }
 
@@ -362,30 +468,105 @@ public class KafkaExportClient extends ExportClientBase {
             if (m_topic == null) populateTopic(row.tableName);
         }
 
+        @Override
+        public void onBlockStart(ExportRowCursor cursor) throws RestartBlockException {
+            if (!m_primed) checkOnFirstRow();
+            if (m_topic == null) populateTopic(cursor.getTableName());
+        }
+
         @Override
         public boolean processRow(ExportRow rd) throws RestartBlockException {
             if (!m_primed) checkOnFirstRow();
 
-            String decoded = m_decoder.decode(rd.generation, rd.tableName, rd.types, rd.names, null, rd.values);
+            long seqNo = m_skipResentRows ? (Long) rd.values[EXPORT_SEQUENCE_COLUMN] : -1;
+            if (m_skipResentRows && isSent(seqNo)) {
+                return true;
+            }
+            Object encoded;
+            try {
+                encoded = m_encoder.encode(rd);
+            } catch (IOException e) {
+                LOG.error("Unable to encode row for table %s", e, rd.tableName);
+                return false;
+            }
             //Use partition value by default if its null use partition id.
             //partition value will be null only if partition column is overridden table.column and is nullable
             String pval = (rd.partitionValue == null) ? String.valueOf(rd.partitionId) : rd.partitionValue.toString();
-            ProducerRecord<String, String> krec = new ProducerRecord<String, String>(m_topic, pval, decoded);
+            return send(pval, encoded, seqNo);
+        }
+
+        @Override
+        public boolean processRow(ExportRowCursor cursor) throws RestartBlockException {
+            if (!m_primed) checkOnFirstRow();
+
+            long seqNo = m_skipResentRows ? cursor.getLong(EXPORT_SEQUENCE_COLUMN) : -1;
+            if (m_skipResentRows && isSent(seqNo)) {
+                return true;
+            }
+            Object encoded;
+            try {
+                encoded = m_encoder.encode(cursor);
+            } catch (IOException e) {
+                LOG.error("Unable to encode row for table %s", e, cursor.getTableName());
+                return false;
+            }
+            //The cursor falls back to the partition id if the partition value is null
+            return send(cursor.getPartitionValue().toString(), encoded, seqNo);
+        }
+
+        @Override
+        public RowEncoder createRowEncoder() {
+            // Each encoder formats with its own decoder, they are not thread safe
+            return createValueEncoder();
+        }
+
+        @Override
+        public boolean processEncodedRow(ExportRowCursor cursor, Object encoded) throws RestartBlockException {
+            if (!m_primed) checkOnFirstRow();
+
+            long seqNo = m_skipResentRows ? cursor.getLong(EXPORT_SEQUENCE_COLUMN) : -1;
+            if (m_skipResentRows && isSent(seqNo)) {
+                return true;
+            }
+            return send(cursor.getPartitionValue().toString(), encoded, seqNo);
+        }
+
+        private boolean isSent(long seqNo) {
+            m_blockSeqNo = seqNo;
+            return seqNo <= m_sentSeqNo || m_sentSeqNos.contains(seqNo);
+        }
+
+        private boolean send(String pval, Object encoded, final long seqNo) throws RestartBlockException {
+            ProducerRecord<String, Object> krec = new ProducerRecord<String, Object>(m_topic, pval, encoded);
+            final SendAttempt attempt = m_attempt;
+            attempt.m_pendingSends.incrementAndGet();
             try {
-                m_futures.add(m_producer.send(krec, new Callback() {
+                m_producer.send(krec, new Callback() {
                     @Override
                     public void onCompletion(RecordMetadata metadata, Exception e) {
+                        if (attempt != m_attempt) {
+                            // The block was restarted since, the retry sends the row again if needed
+                            attempt.sendCompleted();
+                            return;
+                        }
                         if (e != null){
                             LOG.warn("Failed to send data. Verify if the kafka server matches bootstrap.servers %s", e,
                                     m_producerConfig.getProperty(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG));
-                            m_failure.compareAndSet(false, true);
+                            attempt.m_failure.compareAndSet(false, true);
+                        } else if (m_skipResentRows) {
+                            m_sentSeqNos.add(seqNo);
                         }
+                        attempt.sendCompleted();
                     }
-                }));
+                });
             } catch (KafkaException e) {
+                attempt.m_pendingSends.decrementAndGet();
+                restartAttempt();
                 LOG.warn("Unable to send %s", e, krec);
                 throw new RestartBlockException("Unable to send message", e, true);
             } catch (IllegalStateException e) {
+                attempt.m_pendingSends.decrementAndGet();
+                restartAttempt();
                 LOG.warn("Unable to send %s", e, krec);
                 if (m_producer != null) try { m_producer.close(); } catch (Exception ignoreIt) {}
                 m_primed = false;
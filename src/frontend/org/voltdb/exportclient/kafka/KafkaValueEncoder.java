@@ -0,0 +1,162 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient.kafka;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.TimeZone;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.json_voltpatches.JSONException;
+import org.voltdb.common.Constants;
+import org.voltdb.exportclient.ExportDecoderBase.BinaryEncoding;
+import org.voltdb.exportclient.ExportDecoderBase.RowEncoder;
+import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowCursor;
+import org.voltdb.exportclient.decode.AvroDecoder;
+import org.voltdb.exportclient.decode.CSVStringDecoder;
+import org.voltdb.exportclient.decode.JsonStringDecoder;
+
+import com.google_voltpatches.common.base.Charsets;
+
+/**
+ * Serializes export rows into the values of Kafka records. CSV values are strings, for the
+ * configured value serializer, JSON and Avro values are serialized straight into byte arrays
+ * for the {@link org.apache.kafka.common.serialization.ByteArraySerializer}.
+ *
+ * Encoders are not thread safe, each decoder and each thread of the export encoder pool uses
+ * its own.
+ */
+abstract class KafkaValueEncoder implements RowEncoder {
+
+    enum ValueFormat {
+        CSV, JSON, AVRO
+    }
+
+    @Override
+    public abstract Object encode(ExportRowCursor cursor) throws IOException;
+
+    abstract Object encode(ExportRow row) throws IOException;
+
+    static KafkaValueEncoder create(ValueFormat format, TimeZone timeZone,
+            BinaryEncoding binaryEncoding, boolean skipInternals) {
+        switch (format) {
+        case JSON:
+            return new JsonValueEncoder(timeZone, skipInternals);
+        case AVRO:
+            return new AvroValueEncoder(timeZone, skipInternals);
+        default:
+            return new CSVValueEncoder(timeZone, binaryEncoding, skipInternals);
+        }
+    }
+
+    static class CSVValueEncoder extends KafkaValueEncoder {
+        private final CSVStringDecoder m_decoder;
+
+        CSVValueEncoder(TimeZone timeZone, BinaryEncoding binaryEncoding, boolean skipInternals) {
+            CSVStringDecoder.Builder builder = CSVStringDecoder.builder();
+            builder
+                .dateFormatter(Constants.ODBC_DATE_FORMAT_STRING)
+                .timeZone(timeZone)
+                .binaryEncoding(binaryEncoding)
+                .skipInternalFields(skipInternals)
+            ;
+            m_decoder = builder.build();
+        }
+
+        @Override
+        public Object encode(ExportRowCursor cursor) {
+            return m_decoder.decode(null, cursor);
+        }
+
+        @Override
+        Object encode(ExportRow row) {
+            return m_decoder.decode(row.generation, row.tableName, row.types, row.names, null, row.values);
+        }
+    }
+
+    static class JsonValueEncoder extends KafkaValueEncoder {
+        private final JsonStringDecoder m_decoder;
+
+        JsonValueEncoder(TimeZone timeZone, boolean skipInternals) {
+            JsonStringDecoder.Builder builder = JsonStringDecoder.builder();
+            builder.timeZone(timeZone).skipInternalFields(skipInternals);
+            m_decoder = builder.build();
+        }
+
+        @Override
+        public Object encode(ExportRowCursor cursor) throws IOException {
+            try {
+                return m_decoder.decode(null, cursor).getBytes(Charsets.UTF_8);
+            } catch (JSONException e) {
+                throw new IOException("Unable to encode row as JSON", e);
+            }
+        }
+
+        @Override
+        Object encode(ExportRow row) throws IOException {
+            try {
+                return m_decoder.decode(row.generation, row.tableName, row.types, row.names, null, row.values)
+                        .getBytes(Charsets.UTF_8);
+            } catch (JSONException e) {
+                throw new IOException("Unable to encode row as JSON", e);
+            }
+        }
+    }
+
+    static class AvroValueEncoder extends KafkaValueEncoder {
+        private final AvroDecoder m_decoder;
+        private final ByteArrayOutputStream m_out = new ByteArrayOutputStream(1024);
+        private Schema m_schema;
+        private GenericDatumWriter<GenericRecord> m_writer;
+        private BinaryEncoder m_encoder;
+
+        AvroValueEncoder(TimeZone timeZone, boolean skipInternals) {
+            AvroDecoder.Builder builder = new AvroDecoder.Builder();
+            builder.timeZone(timeZone).skipInternalFields(skipInternals);
+            m_decoder = builder.build();
+        }
+
+        @Override
+        public Object encode(ExportRowCursor cursor) throws IOException {
+            return serialize(m_decoder.decode(null, cursor));
+        }
+
+        @Override
+        Object encode(ExportRow row) throws IOException {
+            return serialize(m_decoder.decode(row.generation, row.tableName, row.types, row.names, null, row.values));
+        }
+
+        private byte[] serialize(GenericRecord record) throws IOException {
+            // Records of a generation share their schema
+            if (record.getSchema() != m_schema) {
+                m_schema = record.getSchema();
+                m_writer = new GenericDatumWriter<>(m_schema);
+            }
+            m_out.reset();
+            m_encoder = EncoderFactory.get().binaryEncoder(m_out, m_encoder);
+            m_writer.write(record, m_encoder);
+            m_encoder.flush();
+            return m_out.toByteArray();
+        }
+    }
+}
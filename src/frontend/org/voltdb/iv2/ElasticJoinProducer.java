@@ -19,6 +19,7 @@ package org.voltdb.iv2;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import org.apache.zookeeper_voltpatches.KeeperException;
@@ -55,6 +56,7 @@ public class ElasticJoinProducer extends JoinProducerBase implements TaskLog {
         @Override
         public void run()
         {
+            deregisterTaskLogStats();
             RejoinMessage rm = new RejoinMessage(m_mailbox.getHSId(),
                                                  RejoinMessage.Type.REPLAY_FINISHED);
             m_mailbox.send(m_coordinatorHsId, rm);
@@ -302,4 +304,11 @@ public class ElasticJoinProducer extends JoinProducerBase implements TaskLog {
     public void enableRecording(long snapshotSpHandle) {
         //Implemented by the nest task log, it is enabled immediately on construction
     }
+
+    @Override
+    public void populateStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        if (m_taskLog != null) {
+            m_taskLog.populateStats(columnNameToIndex, rowValues);
+        }
+    }
 }
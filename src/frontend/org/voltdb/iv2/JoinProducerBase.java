@@ -29,10 +29,13 @@ import org.voltcore.utils.Pair;
 import org.voltdb.DRConsumerDrIdTracker.DRSiteDrIdTracker;
 import org.voltdb.SiteProcedureConnection;
 import org.voltdb.SnapshotCompletionInterest;
+import org.voltdb.StatsAgent;
+import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.messaging.RejoinMessage;
 import org.voltdb.rejoin.StreamSnapshotSink.RestoreWork;
 import org.voltdb.rejoin.TaskLog;
+import org.voltdb.rejoin.TaskLogStats;
 import org.voltdb.utils.CachedByteBufferAllocator;
 import org.voltdb.utils.MiscUtils;
 
@@ -143,7 +146,7 @@ public abstract class JoinProducerBase extends SiteTasker {
     }
 
     // Load the pro task log
-    protected static TaskLog initializeTaskLog(String voltroot, int pid)
+    protected TaskLog initializeTaskLog(String voltroot, int pid)
     {
         // Construct task log and start logging task messages
         File overflowDir = new File(voltroot, "join_overflow");
@@ -153,7 +156,9 @@ public abstract class JoinProducerBase extends SiteTasker {
             Constructor<?> taskLogConstructor;
             try {
                 taskLogConstructor = taskLogKlass.getConstructor(int.class, File.class);
-                return (TaskLog) taskLogConstructor.newInstance(pid, overflowDir);
+                TaskLog taskLog = (TaskLog) taskLogConstructor.newInstance(pid, overflowDir);
+                registerTaskLogStats(pid, taskLog);
+                return taskLog;
             } catch (InvocationTargetException e) {
                 VoltDB.crashLocalVoltDB("Unable to construct join task log", true, e.getCause());
             } catch (Exception e) {
@@ -163,6 +168,24 @@ public abstract class JoinProducerBase extends SiteTasker {
         return null;
     }
 
+    // Report the task log of the partition in @Statistics REJOIN until its replay is done
+    private void registerTaskLogStats(int pid, TaskLog taskLog)
+    {
+        StatsAgent agent = VoltDB.instance().getStatsAgent();
+        if (agent != null) {
+            agent.registerStatsSource(StatsSelector.REJOIN, m_mailbox.getHSId(), new TaskLogStats(pid, taskLog));
+        }
+    }
+
+    // The task log has been replayed, stop reporting it
+    protected void deregisterTaskLogStats()
+    {
+        StatsAgent agent = VoltDB.instance().getStatsAgent();
+        if (agent != null) {
+            agent.deregisterStatsSourcesFor(StatsSelector.REJOIN, m_mailbox.getHSId());
+        }
+    }
+
     // Received a datablock. Reset the watchdog timer and hand the block to the Site.
     protected void restoreBlock(RestoreWork rejoinWork, SiteProcedureConnection siteConnection)
     {
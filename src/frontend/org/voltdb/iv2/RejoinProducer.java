@@ -113,6 +113,7 @@ public class RejoinProducer extends JoinProducerBase {
         @Override
         public void run()
         {
+            deregisterTaskLogStats();
             REJOINLOG.debug(m_whoami + "informing rejoinCoordinator "
                     + CoreUtils.hsIdToString(m_coordinatorHsId)
                     + " of REPLAY_FINISHED");
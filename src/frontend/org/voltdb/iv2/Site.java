@@ -120,6 +120,9 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
 
     private static final double m_taskLogReplayRatio =
             Double.valueOf(System.getProperty("TASKLOG_REPLAY_RATIO", "0.6"));
+    // Transactions replayed from the task log in a row while no new task is waiting
+    private static final int m_taskLogReplayBatchSize =
+            Integer.getInteger("TASKLOG_REPLAY_BATCH_SIZE", 256);
 
     // Set to false trigger shutdown.
     volatile boolean m_shouldContinue = true;
@@ -437,6 +440,12 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             return m_ee.tableStreamSerializeMore(tableId, type, outputBuffers);
         }
 
+        @Override
+        public long getTableGeneration(int tableId)
+        {
+            return m_ee.tableGeneration(tableId);
+        }
+
         @Override
         public void forceAllDRNodeBuffersToDisk(final boolean nofsync)
         {
@@ -855,8 +864,14 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                             task.runForRejoin(getSiteProcedureConnection(), m_rejoinTaskLog);
                         }
                     } else {
-                        //If there are no tasks, do task log work
-                        didWork = replayFromTaskLog(mrm);
+                        //If there are no tasks, do task log work in batches until
+                        //a new task shows up so it is paced by the mrm above
+                        int replayed = 0;
+                        while (replayed < m_taskLogReplayBatchSize && m_scheduler.peek() == null &&
+                                replayFromTaskLog(mrm)) {
+                            replayed++;
+                        }
+                        didWork = replayed > 0;
                     }
                     if (!didWork) {
                         Thread.yield();
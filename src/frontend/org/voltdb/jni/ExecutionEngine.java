@@ -811,6 +811,15 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     public abstract long tableHashCode(int tableId);
 
+    /**
+     * Get the generation of a persistent table. The generation changes every time the table is
+     * modified after its previous generation was read, so two equal generations mean the content
+     * of the table did not change in between.
+     * @param tableId table to get the generation of
+     * @return generation of the table or -1 if the table doesn't exist
+     */
+    public abstract long tableGeneration(int tableId);
+
     /**
      * Compute the partition to which the parameter value maps using the
      * ExecutionEngine's hashinator.  Currently only valid for int types
@@ -1124,6 +1133,13 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     protected native long nativeTableHashCode(long pointer, int tableId);
 
+    /**
+     * Get the generation of a persistent table.
+     * @param pointer Pointer to an engine instance
+     * @param tableId table to get the generation of
+     */
+    protected native long nativeTableGeneration(long pointer, int tableId);
+
     protected native long nativeApplyBinaryLog(long pointer, long txnId, long spHandle, long lastCommittedSpHandle,
             long uniqueId, int remoteClusterId, long undoToken);
 
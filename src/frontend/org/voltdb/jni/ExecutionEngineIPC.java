@@ -132,7 +132,8 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         , ExecuteTask(28)
         , ApplyBinaryLog(29)
         , ShutDown(30)
-        , SetViewsEnabled(31);
+        , SetViewsEnabled(31)
+        , TableGeneration(32);
 
         Commands(final int id) {
             m_id = id;
@@ -1655,6 +1656,32 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         }
     }
 
+    @Override
+    public long tableGeneration(int tableId) {
+        try {
+            m_data.clear();
+            m_data.putInt(Commands.TableGeneration.m_id);
+            m_data.putInt(tableId);
+
+            m_data.flip();
+            m_connection.write();
+
+            m_connection.readStatusByte();
+            ByteBuffer generation = ByteBuffer.allocate(8);
+            while (generation.hasRemaining()) {
+                int read = m_connection.m_socketChannel.read(generation);
+                if (read <= 0) {
+                    throw new EOFException();
+                }
+            }
+            generation.flip();
+            return generation.getLong();
+        } catch (final IOException e) {
+            System.out.println("Exception: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public int hashinate(Object value, HashinatorConfig config)
     {
@@ -707,6 +707,11 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         return nativeTableHashCode(pointer, tableId);
     }
 
+    @Override
+    public long tableGeneration(int tableId) {
+        return nativeTableGeneration(pointer, tableId);
+    }
+
     @Override
     public int hashinate(
             Object value,
@@ -22,10 +22,18 @@ import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.voltdb.VoltType;
 import org.voltdb.common.Constants;
 import org.voltdb.compiler.AdHocPlannedStatement;
+import org.voltdb.planner.parseinfo.StmtTargetTableScan;
+import org.voltdb.plannodes.AbstractPlanNode;
 
 /**
  * CorePlan is an immutable representation of a SQL execution plan.
@@ -68,6 +76,12 @@ public class CorePlan {
     private int partitioningParamIndex = -1;
     private Object partitioningParamValue = null;
 
+    /**
+     * Upper case names of the tables the plan reads or writes, or null if not known.
+     * (Not serialized either, only needed to tell which catalog changes affect the plan.)
+     */
+    private Set<String> tables = null;
+
     /**
      * Constructor from QueryPlanner output.
      *
@@ -101,6 +115,30 @@ public class CorePlan {
         this.catalogHash = catalogHash;
         parameterTypes = plan.parameterTypes();
         readOnly = plan.isReadOnly();
+        tables = tablesUsed(plan.rootPlanGraph, plan.subPlanGraph);
+    }
+
+    /**
+     * Collect the tables read or updated by the plan graphs, the same way
+     * statement usage is recorded in the catalog.
+     */
+    private static Set<String> tablesUsed(AbstractPlanNode... graphs) {
+        Map<String, StmtTargetTableScan> tablesRead = new TreeMap<>();
+        Set<String> tablesUsed = new TreeSet<>();
+        for (AbstractPlanNode graph : graphs) {
+            if (graph == null) {
+                continue;
+            }
+            graph.getTablesAndIndexes(tablesRead, null);
+            String updated = graph.getUpdatedTable();
+            if (updated != null) {
+                tablesUsed.add(updated.toUpperCase(Locale.ROOT));
+            }
+        }
+        for (String table : tablesRead.keySet()) {
+            tablesUsed.add(table.toUpperCase(Locale.ROOT));
+        }
+        return Collections.unmodifiableSet(tablesUsed);
     }
 
     /***
@@ -292,6 +330,13 @@ public class CorePlan {
         return partitioningParamValue;
     }
 
+    public void setTables(Set<String> tables) {
+        this.tables = tables;
+    }
+    public Set<String> getTables() {
+        return tables;
+    }
+
     public VoltType getPartitioningParamType() {
         if (partitioningParamIndex < 0 || partitioningParamIndex >= parameterTypes.length) {
             return VoltType.NULL;
@@ -299,6 +344,19 @@ public class CorePlan {
         return parameterTypes[partitioningParamIndex];
     }
 
+    /**
+     * @return a copy of this plan that is good for the catalog with the given hash, for
+     * carrying plans over catalog changes that don't affect them
+     */
+    public CorePlan forCatalogHash(byte[] catalogHash) {
+        CorePlan plan = new CorePlan(aggregatorFragment, collectorFragment, aggregatorHash, collectorHash,
+                isReplicatedTableDML, readOnly, parameterTypes, catalogHash);
+        plan.partitioningParamIndex = partitioningParamIndex;
+        plan.partitioningParamValue = partitioningParamValue;
+        plan.tables = tables;
+        return plan;
+    }
+
     public boolean wasPlannedAgainstHash(byte[] catalogHash) {
         return Arrays.equals(catalogHash, this.catalogHash);
     }
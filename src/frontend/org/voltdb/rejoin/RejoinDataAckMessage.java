@@ -25,30 +25,36 @@ import org.voltcore.messaging.VoltMessage;
 import org.voltdb.messaging.VoltDbMessageFactory;
 
 /**
- *
+ * Acks blocks of a snapshot stream once the rejoining site has consumed them. Every acked block
+ * gives the source back the buffer it was held in, so the acks are the credits that let the
+ * source keep streaming. The acks that pile up for a data target are sent together.
  */
 public class RejoinDataAckMessage extends VoltMessage {
     private boolean m_isEOS = false;
     private long m_targetId = -1;
-    private int m_blockIndex = -1;
+    private int[] m_blockIndexes = new int[] { -1 };
 
     public RejoinDataAckMessage() {
         m_subject = Subject.DEFAULT.getId();
     }
 
     public RejoinDataAckMessage(boolean isEOS, long targetId, int blockIndex) {
+        this(isEOS, targetId, new int[] { blockIndex });
+    }
+
+    public RejoinDataAckMessage(boolean isEOS, long targetId, int[] blockIndexes) {
         m_subject = Subject.DEFAULT.getId();
         m_isEOS = isEOS;
         m_targetId = targetId;
-        m_blockIndex = blockIndex;
+        m_blockIndexes = blockIndexes;
     }
 
     public long getTargetId() {
         return m_targetId;
     }
 
-    public int getBlockIndex() {
-        return m_blockIndex;
+    public int[] getBlockIndexes() {
+        return m_blockIndexes;
     }
 
     public boolean isEOS() {
@@ -60,7 +66,8 @@ public class RejoinDataAckMessage extends VoltMessage {
         int msgsize = super.getSerializedSize();
         msgsize += 1 + // m_isEOS
                 8 + // m_targetId
-                4;  // m_blockIndex
+                4 + // number of block indexes
+                4 * m_blockIndexes.length;
         return msgsize;
     }
 
@@ -68,7 +75,10 @@ public class RejoinDataAckMessage extends VoltMessage {
     protected void initFromBuffer(ByteBuffer buf) throws IOException {
         m_isEOS = buf.get() == 1;
         m_targetId = buf.getLong();
-        m_blockIndex = buf.getInt();
+        m_blockIndexes = new int[buf.getInt()];
+        for (int i = 0; i < m_blockIndexes.length; i++) {
+            m_blockIndexes[i] = buf.getInt();
+        }
     }
 
     @Override
@@ -76,7 +86,10 @@ public class RejoinDataAckMessage extends VoltMessage {
         buf.put(VoltDbMessageFactory.REJOIN_DATA_ACK_ID);
         buf.put(m_isEOS ? 1 : (byte) 0);
         buf.putLong(m_targetId);
-        buf.putInt(m_blockIndex);
+        buf.putInt(m_blockIndexes.length);
+        for (int blockIndex : m_blockIndexes) {
+            buf.putInt(blockIndex);
+        }
         buf.limit(buf.position());
     }
 }
@@ -23,12 +23,15 @@ import java.nio.ByteBuffer;
 import org.voltcore.messaging.Subject;
 import org.voltcore.messaging.VoltMessage;
 import org.voltdb.messaging.VoltDbMessageFactory;
+import org.voltdb.utils.CompressionCodec;
 
 /**
  *
  */
 public class RejoinDataMessage extends VoltMessage {
     private long m_targetId = -1;
+    // id of the codec the data is compressed with
+    private byte m_codecId = (byte) CompressionCodec.SNAPPY.getId();
     // compressed snapshot data
     private byte[] m_data = null;
 
@@ -37,8 +40,13 @@ public class RejoinDataMessage extends VoltMessage {
     }
 
     public RejoinDataMessage(long targetId, byte[] data) {
+        this(targetId, CompressionCodec.SNAPPY, data);
+    }
+
+    public RejoinDataMessage(long targetId, CompressionCodec codec, byte[] data) {
         m_subject = Subject.DEFAULT.getId();
         m_targetId = targetId;
+        m_codecId = (byte) codec.getId();
         m_data = data;
     }
 
@@ -46,6 +54,10 @@ public class RejoinDataMessage extends VoltMessage {
         return m_targetId;
     }
 
+    public CompressionCodec getCodec() throws IOException {
+        return CompressionCodec.fromId(m_codecId);
+    }
+
     public byte[] getData() {
         return m_data;
     }
@@ -55,6 +67,7 @@ public class RejoinDataMessage extends VoltMessage {
         int msgsize = super.getSerializedSize();
         msgsize +=
                 8 + // m_targetId
+                1 + // m_codecId
                 4 + // data length
                 m_data.length;
         return msgsize;
@@ -63,6 +76,7 @@ public class RejoinDataMessage extends VoltMessage {
     @Override
     protected void initFromBuffer(ByteBuffer buf) throws IOException {
         m_targetId = buf.getLong();
+        m_codecId = buf.get();
         int len = buf.getInt();
         m_data = new byte[len];
         buf.get(m_data);
@@ -72,6 +86,7 @@ public class RejoinDataMessage extends VoltMessage {
     public void flattenToBuffer(ByteBuffer buf) throws IOException {
         buf.put(VoltDbMessageFactory.REJOIN_DATA_ID);
         buf.putLong(m_targetId);
+        buf.put(m_codecId);
         buf.putInt(m_data.length);
         buf.put(m_data);
         buf.limit(buf.position());
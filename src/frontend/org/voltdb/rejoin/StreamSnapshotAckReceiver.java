@@ -94,8 +94,12 @@ public class StreamSnapshotAckReceiver implements Runnable {
                 if (ackCallback == null) {
                     rejoinLog.error("Unknown target ID " + m_msgFactory.getAckTargetId(msg) +
                                     " in stream snapshot ack message");
-                } else if (m_msgFactory.getAckBlockIndex(msg) != -1) {
-                    ackCallback.receiveAck(m_msgFactory.getAckBlockIndex(msg));
+                } else {
+                    for (int blockIndex : m_msgFactory.getAckBlockIndexes(msg)) {
+                        if (blockIndex != -1) {
+                            ackCallback.receiveAck(blockIndex);
+                        }
+                    }
                 }
 
                 if (m_msgFactory.isAckEOS(msg)) {
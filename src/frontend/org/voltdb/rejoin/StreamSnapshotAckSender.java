@@ -17,6 +17,10 @@
 
 package org.voltdb.rejoin;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.voltcore.logging.VoltLogger;
@@ -55,25 +59,74 @@ public class StreamSnapshotAckSender implements Runnable {
 
     @Override
     public void run() {
+        List<Pair<Long, RejoinDataAckMessage>> acks = new ArrayList<Pair<Long, RejoinDataAckMessage>>();
         while (true) {
-            long hsId;
-            RejoinDataAckMessage ackMsg;
             try {
-                Pair<Long, RejoinDataAckMessage> work = m_blockIndices.take();
-                hsId = work.getFirst();
-                ackMsg = work.getSecond();
+                acks.add(m_blockIndices.take());
             } catch (InterruptedException e1) {
                 break;
             }
+            // Acks that were queued while the previous ones were sent go out together
+            m_blockIndices.drainTo(acks);
+            boolean terminate = sendAcks(acks);
+            acks.clear();
+            if (terminate) {
+                break;
+            }
+        }
+    }
 
+    /**
+     * Send the acks with one message per data target
+     * @return true if the acks included the one that terminates the thread
+     */
+    private boolean sendAcks(List<Pair<Long, RejoinDataAckMessage>> acks) {
+        Map<Pair<Long, Long>, List<RejoinDataAckMessage>> byTarget =
+                new LinkedHashMap<Pair<Long, Long>, List<RejoinDataAckMessage>>();
+        for (Pair<Long, RejoinDataAckMessage> ack : acks) {
+            RejoinDataAckMessage ackMsg = ack.getSecond();
             if (ackMsg == null) {
+                sendAcks(byTarget);
                 rejoinLog.debug(m_blockIndices.size() + " acks remaining, " +
                         "terminating ack sender");
                 // special value of -1 terminates the thread
-                break;
+                return true;
             }
+            Pair<Long, Long> target = Pair.of(ack.getFirst(), ackMsg.getTargetId());
+            List<RejoinDataAckMessage> targetAcks = byTarget.get(target);
+            if (targetAcks == null) {
+                targetAcks = new ArrayList<RejoinDataAckMessage>();
+                byTarget.put(target, targetAcks);
+            }
+            targetAcks.add(ackMsg);
+        }
+        sendAcks(byTarget);
+        return false;
+    }
 
-            m_mb.send(hsId, ackMsg);
+    private void sendAcks(Map<Pair<Long, Long>, List<RejoinDataAckMessage>> byTarget) {
+        for (Map.Entry<Pair<Long, Long>, List<RejoinDataAckMessage>> e : byTarget.entrySet()) {
+            List<RejoinDataAckMessage> targetAcks = e.getValue();
+            if (targetAcks.size() == 1) {
+                m_mb.send(e.getKey().getFirst(), targetAcks.get(0));
+                continue;
+            }
+            int count = 0;
+            for (RejoinDataAckMessage ackMsg : targetAcks) {
+                count += ackMsg.getBlockIndexes().length;
+            }
+            int[] blockIndexes = new int[count];
+            boolean isEOS = false;
+            int i = 0;
+            for (RejoinDataAckMessage ackMsg : targetAcks) {
+                for (int blockIndex : ackMsg.getBlockIndexes()) {
+                    blockIndexes[i++] = blockIndex;
+                }
+                // The end of stream is the last block of a target, the receiver handles it after the other blocks
+                isEOS |= ackMsg.isEOS();
+            }
+            m_mb.send(e.getKey().getFirst(), new RejoinDataAckMessage(isEOS, e.getKey().getSecond(), blockIndexes));
         }
+        byTarget.clear();
     }
 }
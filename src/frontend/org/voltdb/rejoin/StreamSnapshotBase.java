@@ -19,6 +19,7 @@ package org.voltdb.rejoin;
 
 import org.voltcore.messaging.VoltMessage;
 import org.voltdb.exceptions.SerializableException;
+import org.voltdb.utils.CompressionCodec;
 
 /**
  * Base class for reading and writing snapshot streams over the network.
@@ -30,19 +31,19 @@ public abstract class StreamSnapshotBase {
     public static final int contentOffset = tableIdOffset + 4;
 
     public static interface MessageFactory {
-        public VoltMessage makeDataMessage(long targetId, byte[] data);
+        public VoltMessage makeDataMessage(long targetId, CompressionCodec codec, byte[] data);
 
         public boolean isAckEOS(VoltMessage msg);
         public long getAckTargetId(VoltMessage msg);
-        public int getAckBlockIndex(VoltMessage msg);
+        public int[] getAckBlockIndexes(VoltMessage msg);
         public SerializableException getException(VoltMessage msg);
     }
 
     public static class DefaultMessageFactory implements MessageFactory {
         @Override
-        public VoltMessage makeDataMessage(long targetId, byte[] data)
+        public VoltMessage makeDataMessage(long targetId, CompressionCodec codec, byte[] data)
         {
-            return new RejoinDataMessage(targetId, data);
+            return new RejoinDataMessage(targetId, codec, data);
         }
 
         @Override
@@ -60,10 +61,10 @@ public abstract class StreamSnapshotBase {
         }
 
         @Override
-        public int getAckBlockIndex(VoltMessage msg)
+        public int[] getAckBlockIndexes(VoltMessage msg)
         {
             assert msg instanceof RejoinDataAckMessage;
-            return ((RejoinDataAckMessage) msg).getBlockIndex();
+            return ((RejoinDataAckMessage) msg).getBlockIndexes();
         }
 
         @Override
@@ -21,31 +21,36 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 
-import org.voltcore.logging.VoltLogger;
 import org.voltcore.messaging.Mailbox;
 import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.Pair;
 import org.voltdb.SnapshotSiteProcessor;
+import org.voltdb.VoltDB;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.FixedDBBPool;
 
 /**
  * Receives snapshot data from a replica. This is used on a rejoining partition.
+ *
+ * The blocks are decompressed by the compression service as they arrive so the site only applies
+ * them, they are still handed to the site in the order they were received.
  */
 public class StreamSnapshotDataReceiver extends StreamSnapshotBase
 implements Runnable {
-    private static final VoltLogger rejoinLog = new VoltLogger("REJOIN");
 
     /*
-     * element is a pair of <sourceHSId, blockData>. The hsId should remain the
+     * element is a pair of <sourceHSId, blockData> being decoded. The hsId should remain the
      * same for the length of the data transfer process for this partition.
      */
-    private final LinkedBlockingQueue<StreamSnapshotSink.DecodedContainer> m_queue =
-            new LinkedBlockingQueue<StreamSnapshotSink.DecodedContainer>();
+    private final LinkedBlockingQueue<Future<StreamSnapshotSink.DecodedContainer>> m_queue =
+            new LinkedBlockingQueue<Future<StreamSnapshotSink.DecodedContainer>>();
 
     private final Mailbox m_mb;
     private final Queue<BBContainer> m_dataBufferPool;
@@ -92,10 +97,14 @@ implements Runnable {
     /**
      * Get the next message from queue.
      *
-     * @return null if the queue is empty.
+     * @return null if the queue is empty or the next message is still being decoded.
      */
     public StreamSnapshotSink.DecodedContainer poll() {
-        return m_queue.poll();
+        Future<StreamSnapshotSink.DecodedContainer> next = m_queue.peek();
+        if (next == null || !next.isDone()) {
+            return null;
+        }
+        return getDecoded(m_queue.poll());
     }
 
     /**
@@ -105,7 +114,63 @@ implements Runnable {
      * @throws InterruptedException
      */
     public StreamSnapshotSink.DecodedContainer take() throws InterruptedException {
-        return m_queue.take();
+        return getDecoded(m_queue.take());
+    }
+
+    private StreamSnapshotSink.DecodedContainer getDecoded(Future<StreamSnapshotSink.DecodedContainer> decoded) {
+        try {
+            return decoded.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (!m_closed) {
+                VoltDB.crashLocalVoltDB("Error decoding a message from a recovery stream.", true, e.getCause());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decompress the data of the message into a buffer from the pool
+     */
+    private StreamSnapshotSink.DecodedContainer decode(RejoinDataMessage dataMsg) throws IOException {
+        BBContainer container = null;
+        BBContainer compressionBufferC = null;
+        boolean success = false;
+        try {
+            byte[] data = dataMsg.getData();
+
+            container = m_dataBufferPool.poll();
+            if (container == null) {
+                container = new TrackedDataBBContainer(DBBPool.allocateDirect(SnapshotSiteProcessor.m_snapshotBufferLength));
+            }
+            ByteBuffer messageBuffer = container.b();
+            messageBuffer.clear();
+
+            compressionBufferC = m_compressedDataBufferPool.poll();
+            if (compressionBufferC == null) {
+                compressionBufferC = new TrackedCompressedDataBBContainer(DBBPool.allocateDirect(SnapshotSiteProcessor.m_snapshotBufferCompressedLen));
+            }
+            ByteBuffer compressionBuffer = compressionBufferC.b();
+            compressionBuffer.clear();
+            compressionBuffer.limit(data.length);
+            compressionBuffer.put(data);
+            compressionBuffer.flip();
+            int uncompressedSize =
+                    dataMsg.getCodec().uncompress(
+                            compressionBuffer,
+                            messageBuffer);
+            messageBuffer.limit(uncompressedSize);
+            success = true;
+            return new StreamSnapshotSink.DecodedContainer(dataMsg.m_sourceHSId, dataMsg.getTargetId(), container);
+        } finally {
+            if (!success && container != null) {
+                container.discard();
+            }
+            if (compressionBufferC != null) {
+                compressionBufferC.discard();
+            }
+        }
     }
 
     public int size() {
@@ -114,76 +179,26 @@ implements Runnable {
 
     @Override
     public void run() {
-        try {
-            while (true) {
-                BBContainer container = null;
-                BBContainer compressionBufferC = null;
-                ByteBuffer compressionBuffer = null;
-                boolean success = false;
-
-                try {
-                    VoltMessage msg = m_mb.recvBlocking();
-                    if (msg == null) {
-                        // If interrupted, break
-                        break;
-                    }
-
-                    assert(msg instanceof RejoinDataMessage);
-                    RejoinDataMessage dataMsg = (RejoinDataMessage) msg;
-                    byte[] data = dataMsg.getData();
-
-                    // Only grab the buffer from the pool after receiving a message from the
-                    // mailbox. If the buffer is grabbed before receiving the message,
-                    // this thread could hold on to a buffer it may not need and other receivers
-                    // will be blocked if the pool has no more buffers left.
-                    container = m_dataBufferPool.poll();
-                    if (container == null) {
-                        container = new TrackedDataBBContainer(DBBPool.allocateDirect(SnapshotSiteProcessor.m_snapshotBufferLength));
-                    }
-                    ByteBuffer messageBuffer = container.b();
-                    messageBuffer.clear();
-
-                    compressionBufferC = m_compressedDataBufferPool.poll();
-                    if (compressionBufferC == null) {
-                        compressionBufferC = new TrackedCompressedDataBBContainer(DBBPool.allocateDirect(SnapshotSiteProcessor.m_snapshotBufferCompressedLen));
-                    }
-                    compressionBuffer = compressionBufferC.b();
-                    compressionBuffer.clear();
-                    compressionBuffer.limit(data.length);
-                    compressionBuffer.put(data);
-                    compressionBuffer.flip();
-                    int uncompressedSize =
-                            CompressionService.decompressBuffer(
-                                    compressionBuffer,
-                                    messageBuffer);
-                    messageBuffer.limit(uncompressedSize);
-                    m_queue.offer(new StreamSnapshotSink.DecodedContainer(dataMsg.m_sourceHSId, dataMsg.getTargetId(), container));
-                    success = true;
-                } finally {
-                    if (!success && container != null) {
-                        container.discard();
-                    }
-                    if (compressionBuffer != null) {
-                        compressionBufferC.discard();
-                    }
-                }
+        while (true) {
+            VoltMessage msg = m_mb.recvBlocking();
+            if (msg == null) {
+                // If interrupted, break
+                break;
             }
-        } catch (IOException e) {
-            /*
-             * Wait until the last message is delivered and then wait some more
-             * so it can be processed so that closed can be set and the
-             * exception suppressed.
-             */
-            try {
-                while (!m_queue.isEmpty()) {
-                    Thread.sleep(50);
+
+            assert(msg instanceof RejoinDataMessage);
+            final RejoinDataMessage dataMsg = (RejoinDataMessage) msg;
+
+            // Only grab the buffers from the pools when decoding the message. If the buffers
+            // are grabbed before receiving the message, this thread could hold on to buffers
+            // it may not need and other receivers will be blocked if the pools have no more
+            // buffers left.
+            m_queue.offer(CompressionService.submitCompressionTask(new Callable<StreamSnapshotSink.DecodedContainer>() {
+                @Override
+                public StreamSnapshotSink.DecodedContainer call() throws Exception {
+                    return decode(dataMsg);
                 }
-                Thread.sleep(300);
-            } catch (InterruptedException e2) {}
-            if (m_closed) {
-                return;
-            }
-            rejoinLog.error("Error reading a message from a recovery stream.", e);
+            }));
         }
     }
 }
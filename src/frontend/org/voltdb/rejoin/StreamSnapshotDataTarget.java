@@ -27,6 +27,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -43,6 +44,7 @@ import org.voltcore.utils.Pair;
 import org.voltdb.SnapshotDataTarget;
 import org.voltdb.SnapshotFormat;
 import org.voltdb.VoltDB;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.CompressionService;
 
 import com.google_voltpatches.common.base.Preconditions;
@@ -159,6 +161,11 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         // A listenable future used to notify a listener when this buffer is discarded
         final SettableFuture<Boolean> m_future;
 
+        // The message compressed by the compression service, started when the work is queued so the
+        // blocks waiting to be sent are compressed in parallel instead of one at a time by the sender
+        private ListenableFuture<byte[]> m_compressed;
+        private CompressionCodec m_codec;
+
         /**
          * Creates an empty send work to terminate the sender thread
          */
@@ -198,37 +205,81 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
 
         /**
-         * Compress the data in the BBContainer provided, then package it up in
-         * a RejoinDataMessage instance, and finally hand it off to the messaging
-         * subsystem.
+         * Start compressing the message on the compression service
          */
-        protected int send(Mailbox mb, MessageFactory msgFactory, BBContainer message) throws IOException {
-            final ByteBuffer messageBuffer = message.b();
-            if (messageBuffer.isDirect()) {
-                byte[] data = CompressionService.compressBuffer(messageBuffer);
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, data));
-                return data.length;
+        void startCompression() {
+            final CompressionCodec codec = CompressionCodec.forRejoin();
+            m_codec = codec;
+            m_compressed = CompressionService.submitCompressionTask(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return compressMessage(codec);
+                }
+            });
+        }
+
+        private synchronized byte[] compressMessage(CompressionCodec codec) throws IOException {
+            if (m_message == null) {
+                // discarded before it was sent
+                return null;
+            }
+            return compress(codec, m_message.b(), m_message.b().remaining());
+        }
+
+        private static byte[] compress(CompressionCodec codec, ByteBuffer buffer, int len) throws IOException {
+            if (buffer.isDirect()) {
+                return CompressionService.compressBuffer(codec, buffer);
             } else {
-                byte compressedBytes[] =
-                    CompressionService.compressBytes(
-                            messageBuffer.array(), messageBuffer.position(),
-                            messageBuffer.remaining());
+                return CompressionService.compressBytes(codec, buffer.array(), buffer.position(), len);
+            }
+        }
 
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, compressedBytes));
-                return compressedBytes.length;
+        /**
+         * Wait until the message is compressed. Called by the sender thread before doWork() so the
+         * compression doesn't wait for the lock doWork() holds, failures are thrown by doWork().
+         */
+        void awaitCompression() {
+            if (m_compressed == null) {
+                return;
+            }
+            try {
+                m_compressed.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // thrown from doWork()
             }
         }
 
-        private void sendReplicatedDataToNonLowestSites(Mailbox mb, MessageFactory msgFactory, ByteBuffer message, int len) throws IOException {
-            byte[] compressedBytes;
-            if (message.isDirect()) {
-                compressedBytes = CompressionService.compressBuffer(message);
+        private byte[] getCompressedMessage() throws IOException {
+            if (m_compressed == null) {
+                // not queued through a sender
+                m_codec = CompressionCodec.forRejoin();
+                return compressMessage(m_codec);
             }
-            else {
-                compressedBytes =
-                    CompressionService.compressBytes(message.array(), 0, len);
+            try {
+                return m_compressed.get();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
             }
-            mb.send(Longs.toArray(m_otherDestHSIds), msgFactory.makeDataMessage(m_targetId, compressedBytes));
+        }
+
+        /**
+         * Package up the compressed message in a RejoinDataMessage instance and hand it off to the
+         * messaging subsystem.
+         */
+        protected int send(Mailbox mb, MessageFactory msgFactory) throws IOException {
+            byte[] data = getCompressedMessage();
+            mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, m_codec, data));
+            return data.length;
+        }
+
+        private void sendReplicatedDataToNonLowestSites(Mailbox mb, MessageFactory msgFactory, ByteBuffer message, int len) throws IOException {
+            final CompressionCodec codec = CompressionCodec.forRejoin();
+            byte[] compressedBytes = compress(codec, message, len);
+            mb.send(Longs.toArray(m_otherDestHSIds), msgFactory.makeDataMessage(m_targetId, codec, compressedBytes));
         }
 
         public synchronized int doWork(Mailbox mb, MessageFactory msgFactory) throws Exception {
@@ -242,7 +293,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                 int sentBytes;
                 if (m_otherDestHSIds != null) {
                     m_ackCounter = new AtomicInteger(m_otherDestHSIds.size()+1);
-                    sentBytes = send(mb, msgFactory, m_message);
+                    sentBytes = send(mb, msgFactory);
                     if (m_type == StreamSnapshotMessageType.DATA) {
                         // Copy the header from the real buffer and add a dummy table that the other non-lowest site can parse
                         ByteBuffer dummyBuffer = ByteBuffer.allocate(DATA_HEADER_BYTES);
@@ -267,7 +318,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                 }
                 else {
                     m_ackCounter = new AtomicInteger(1);
-                    sentBytes = send(mb, msgFactory, m_message);
+                    sentBytes = send(mb, msgFactory);
                 }
                 rejoinLog.trace("Sent " + m_type.name() + " from " + m_targetId +
                         " expected ackCounter " + m_ackCounter +
@@ -445,6 +496,9 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
 
         public void offer(SendWork work)
         {
+            if (!work.m_isEmpty) {
+                work.startCompression();
+            }
             m_workQueue.offer(work);
         }
 
@@ -474,6 +528,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                         }
                     }
 
+                    work.awaitCompression();
                     m_bytesSent.get(work.m_targetId).addAndGet(work.doWork(m_mb, m_msgFactory));
                     m_worksSent.get(work.m_targetId).incrementAndGet();
                 }
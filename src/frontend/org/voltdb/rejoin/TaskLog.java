@@ -18,6 +18,7 @@
 package org.voltdb.rejoin;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.voltcore.messaging.TransactionInfoBaseMessage;
 
@@ -68,4 +69,9 @@ public interface TaskLog {
      *                            with the latest one.
      */
     public void enableRecording(long snapshotSpHandle);
+
+    /**
+     * Fill in the columns of {@link TaskLogStats} with the backlog and rates of the task log
+     */
+    public void populateStats(Map<String, Integer> columnNameToIndex, Object[] rowValues);
 }
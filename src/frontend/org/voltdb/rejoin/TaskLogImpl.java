@@ -19,6 +19,7 @@ package org.voltdb.rejoin;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -36,11 +37,22 @@ import org.voltdb.utils.PersistentBinaryDeque;
 
 /**
  * A task queue that can overflow to disk.
+ *
+ * The buffers waiting to be written to disk are bounded by a memory budget, logging a task blocks
+ * once it is exceeded until the disk catches up. The overflow on disk is bounded by a disk budget,
+ * exceeding it fails the rejoin because the replay can never catch up.
  */
 public class TaskLogImpl implements TaskLog {
+    private static final VoltLogger REJOINLOG = new VoltLogger("REJOIN");
+
     // Overflow limit in MB. Default is 100GB
     private static final long m_overflowLimit =
             Long.parseLong(System.getProperty("REJOIN_OVERFLOW_LIMIT", "102400"));
+    // Limit in MB of the buffers waiting to be written to disk. Default is 256MB
+    private static final long m_memoryLimit =
+            Long.parseLong(System.getProperty("REJOIN_MEMORY_LIMIT", "256"));
+    // Rates are averaged over at least this many milliseconds
+    private static final long RATE_WINDOW_MS = 1000;
 
     private final int m_partitionId;
     private final BinaryDeque m_buffers;
@@ -58,7 +70,29 @@ public class TaskLogImpl implements TaskLog {
     private final ExecutorService m_es;
     private final String m_cursorId;
 
+    private final long m_memoryLimitBytes;
+    private final long m_diskLimitBytes;
+    // Bytes of the buffers handed to the executor and not yet written to disk
+    private final Object m_pendingLock = new Object();
+    private long m_pendingBytes = 0;
+    private boolean m_throttled = false;
+
+    // Counters for the statistics, written by the site thread
+    private volatile long m_tasksLogged = 0;
+    private volatile long m_tasksReplayed = 0;
+    private volatile long m_throttledNanos = 0;
+    private long m_rateWindowStart = System.currentTimeMillis();
+    private long m_rateWindowLogged = 0;
+    private long m_rateWindowReplayed = 0;
+    private long m_logRate = 0;
+    private long m_replayRate = 0;
+
     public TaskLogImpl(int partitionId, File overflowDir) throws IOException {
+        this(partitionId, overflowDir, m_memoryLimit * 1024 * 1024, m_overflowLimit * 1024 * 1024);
+    }
+
+    public TaskLogImpl(int partitionId, File overflowDir, long memoryLimitBytes, long diskLimitBytes)
+            throws IOException {
         /*
          * Rejoin coordinator should have already cleared everything in the
          * overflow dir. Assume no file name collision will happen.
@@ -81,6 +115,8 @@ public class TaskLogImpl implements TaskLog {
         m_buffers = new PersistentBinaryDeque(Integer.toString(partitionId), overflowDir, new VoltLogger("REJOIN"));
         m_reader = m_buffers.openForRead(m_cursorId);
         m_es = CoreUtils.getSingleThreadExecutor("TaskLog partition " + partitionId);
+        m_memoryLimitBytes = memoryLimitBytes;
+        m_diskLimitBytes = diskLimitBytes;
     }
 
     /**
@@ -98,23 +134,33 @@ public class TaskLogImpl implements TaskLog {
             m_tail.compile();
 
             final RejoinTaskBuffer boundTail = m_tail;
+            final int bytes = boundTail.getContainer().b().remaining();
             final Runnable r = new Runnable() {
                 @Override
                 public void run() {
                     try {
                         m_buffers.offer(boundTail.getContainer());
-                        if (m_reader.sizeInBytes() > m_overflowLimit * 1024 * 1024) {
+                        if (m_reader.sizeInBytes() > m_diskLimitBytes) {
                             // we can never catch up, should break rejoin.
                             VoltDB.crashLocalVoltDB("On-disk task log is full. Please reduce " +
                                     "workload and try live rejoin again, or use blocking rejoin.");
                         }
                     } catch (Throwable t) {
                         VoltDB.crashLocalVoltDB("Error in task log buffering transactions", true, t);
+                    } finally {
+                        synchronized (m_pendingLock) {
+                            m_pendingBytes -= bytes;
+                            m_pendingLock.notifyAll();
+                        }
                     }
                 }
             };
 
+            synchronized (m_pendingLock) {
+                m_pendingBytes += bytes;
+            }
             m_es.execute(r);
+            waitForMemory();
 
             // Reset
             m_tail = null;
@@ -128,6 +174,32 @@ public class TaskLogImpl implements TaskLog {
         }
     }
 
+    /**
+     * Block while the buffers waiting to be written to disk exceed the memory budget
+     */
+    private void waitForMemory() throws IOException {
+        synchronized (m_pendingLock) {
+            if (m_pendingBytes <= m_memoryLimitBytes) {
+                return;
+            }
+            if (!m_throttled) {
+                m_throttled = true;
+                REJOINLOG.info("Task log of partition " + m_partitionId + " exceeded its memory budget of " +
+                        m_memoryLimitBytes + " bytes, logging waits for the disk to catch up.");
+            }
+            final long start = System.nanoTime();
+            try {
+                while (m_pendingBytes > m_memoryLimitBytes && !m_closed) {
+                    m_pendingLock.wait();
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                m_throttledNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
     @Override
     public void logTask(TransactionInfoBaseMessage message) throws IOException {
         if (message.getSpHandle() <= m_snapshotSpHandle) return;
@@ -139,6 +211,7 @@ public class TaskLogImpl implements TaskLog {
         m_bufferHeadroom = m_tail.appendTask(message.m_sourceHSId, message);
         m_taskCount++;
         m_tasksPendingInCurrentTail++;
+        m_tasksLogged++;
     }
 
     private final AtomicInteger m_pendingPolls = new AtomicInteger(0);
@@ -202,6 +275,7 @@ public class TaskLogImpl implements TaskLog {
                 m_head = null;
             } else {
                 m_taskCount--;
+                m_tasksReplayed++;
             }
         } else if ((m_taskCount - m_tasksPendingInCurrentTail == 0) && m_tail != null) {
             m_tasksPendingInCurrentTail = 0;
@@ -238,10 +312,13 @@ public class TaskLogImpl implements TaskLog {
         close(false);
     }
 
-    private boolean m_closed = false;
+    private volatile boolean m_closed = false;
     public void close(boolean synchronous) throws IOException {
         if (m_closed) return;
         m_closed = true;
+        synchronized (m_pendingLock) {
+            m_pendingLock.notifyAll();
+        }
         m_es.shutdown();
         if (synchronous) {
             try {
@@ -268,4 +345,48 @@ public class TaskLogImpl implements TaskLog {
     public void enableRecording(long snapshotSpHandle) {
         m_snapshotSpHandle = snapshotSpHandle;
     }
+
+    @Override
+    public synchronized void populateStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        final long logged = m_tasksLogged;
+        final long replayed = m_tasksReplayed;
+        final long now = System.currentTimeMillis();
+        if (now - m_rateWindowStart >= RATE_WINDOW_MS) {
+            m_logRate = (logged - m_rateWindowLogged) * 1000 / (now - m_rateWindowStart);
+            m_replayRate = (replayed - m_rateWindowReplayed) * 1000 / (now - m_rateWindowStart);
+            m_rateWindowStart = now;
+            m_rateWindowLogged = logged;
+            m_rateWindowReplayed = replayed;
+        }
+
+        long diskBytes = 0;
+        if (!m_closed) {
+            try {
+                diskBytes = m_reader.sizeInBytes();
+            } catch (IOException e) {
+                // Closed concurrently
+            }
+        }
+        long memoryBytes;
+        synchronized (m_pendingLock) {
+            memoryBytes = m_pendingBytes;
+        }
+        final long backlog = Math.max(0, logged - replayed);
+        // The backlog drains at the replay rate less the rate new tasks are logged
+        final long catchupSeconds = m_replayRate > m_logRate ? backlog / (m_replayRate - m_logRate) :
+                                    (backlog == 0 ? 0 : -1);
+
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.BACKLOG_TASKS.name())] = backlog;
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.MEMORY_BYTES.name())] = memoryBytes;
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.MEMORY_LIMIT.name())] = m_memoryLimitBytes;
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.DISK_BYTES.name())] = diskBytes;
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.DISK_LIMIT.name())] = m_diskLimitBytes;
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.TASKS_LOGGED.name())] = logged;
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.TASKS_REPLAYED.name())] = replayed;
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.LOG_RATE.name())] = m_logRate;
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.REPLAY_RATE.name())] = m_replayRate;
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.THROTTLED_MILLIS.name())] =
+                TimeUnit.NANOSECONDS.toMillis(m_throttledNanos);
+        rowValues[columnNameToIndex.get(TaskLogStats.StatName.CATCHUP_SECONDS.name())] = catchupSeconds;
+    }
 }
@@ -0,0 +1,110 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.rejoin;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Statistics of the task log of a joining partition: the transactions waiting to be replayed, the
+ * memory and disk they take against their budgets, the log and replay rates and the predicted
+ * time to catch up. The catch-up time is -1 while the replay doesn't outpace the logging.
+ */
+public class TaskLogStats extends StatsSource {
+
+    private final int m_partitionId;
+    private final TaskLog m_taskLog;
+
+    public enum StatName {
+        PARTITION_ID,
+        BACKLOG_TASKS,
+        MEMORY_BYTES,
+        MEMORY_LIMIT,
+        DISK_BYTES,
+        DISK_LIMIT,
+        TASKS_LOGGED,
+        TASKS_REPLAYED,
+        LOG_RATE,
+        REPLAY_RATE,
+        THROTTLED_MILLIS,
+        CATCHUP_SECONDS
+    };
+
+    public TaskLogStats(int partitionId, TaskLog taskLog) {
+        super(false);
+        m_partitionId = partitionId;
+        m_taskLog = taskLog;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new VoltTable.ColumnInfo(StatName.PARTITION_ID.name(), VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo(StatName.BACKLOG_TASKS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.MEMORY_BYTES.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.MEMORY_LIMIT.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.DISK_BYTES.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.DISK_LIMIT.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.TASKS_LOGGED.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.TASKS_REPLAYED.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.LOG_RATE.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.REPLAY_RATE.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.THROTTLED_MILLIS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.CATCHUP_SECONDS.name(), VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        rowValues[columnNameToIndex.get(StatName.PARTITION_ID.name())] = m_partitionId;
+        m_taskLog.populateStats(columnNameToIndex, rowValues);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        return new Iterator<Object>() {
+            boolean returnRow = true;
+
+            @Override
+            public boolean hasNext() {
+                return returnRow;
+            }
+
+            @Override
+            public Object next() {
+                if (returnRow) {
+                    returnRow = false;
+                    return new Object();
+                } else {
+                    return null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
@@ -20,6 +20,7 @@ package org.voltdb.sysprocs;
 import java.util.HashMap;
 import java.util.TreeSet;
 import java.util.Iterator;
+import java.util.function.LongSupplier;
 
 import org.voltdb.SnapshotFormat;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
@@ -136,12 +137,15 @@ public class SnapshotRegistry {
             public final String filename;
             public final long size;
             public final Throwable error;
+            // Bytes written so far while the table is being written, null once it is done
+            private final LongSupplier inProgressBytes;
 
             private Table(String name, String filename) {
                 this.name = name;
                 this.filename = filename;
                 size = 0;
                 error = null;
+                inProgressBytes = null;
             }
 
             public Table(Table t, long size, Throwable error) {
@@ -149,6 +153,22 @@ public class SnapshotRegistry {
                 this.filename = t.filename;
                 this.size = size;
                 this.error = error;
+                inProgressBytes = null;
+            }
+
+            public Table(Table t, LongSupplier inProgressBytes) {
+                this.name = t.name;
+                this.filename = t.filename;
+                this.size = t.size;
+                this.error = t.error;
+                this.inProgressBytes = inProgressBytes;
+            }
+
+            /**
+             * @return bytes written for this table so far, the final size once it is done
+             */
+            public long bytesWritten() {
+                return inProgressBytes == null ? size : inProgressBytes.getAsLong();
             }
         }
     }
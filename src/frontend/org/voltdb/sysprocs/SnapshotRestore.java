@@ -20,7 +20,6 @@ package org.voltdb.sysprocs;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -42,6 +41,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -142,6 +142,11 @@ public class SnapshotRestore extends VoltSystemProcedure {
     //Report every minute.
     static final long m_reportInterval = 60000;
     static DateFormat m_reportDateFormat = new SimpleDateFormat("HH:mm:ss");
+    // Bytes of table data read from the save files on this host and when the first of them was read,
+    // used to report the restore throughput of the host.
+    static final AtomicLong m_restoredBytes = new AtomicLong();
+    static volatile long m_restoreStartTime = 0;
+    static long m_nextThroughputReportTime = 0;
 
     private static synchronized void initializeTableSaveFiles(
             String filePath,
@@ -175,13 +180,16 @@ public class SnapshotRestore extends VoltSystemProcedure {
             relevantPartitionSet.add(part_id);
         }
 
+        // All the files are read ahead at the same time, split the read ahead budget that used
+        // to go to the one file being read between them so the memory used stays bounded.
+        final int readAheadChunks = Math.max(2, st.getLocalSites().length * 2 / originalHostIds.length);
         for (int originalHostId : originalHostIds) {
             final File f = getSaveFileForPartitionedTable(filePath, fileNonce,
                     tableName,
                     originalHostId);
             TableSaveFile savefile = getTableSaveFile(
                     f,
-                    st.getLocalSites().length * 2,
+                    readAheadChunks,
                     relevantPartitionSet.toArray(new Integer[relevantPartitionSet.size()]));
 
             m_saveFiles.offer(savefile);
@@ -195,6 +203,11 @@ public class SnapshotRestore extends VoltSystemProcedure {
             }
             assert(m_saveFiles.peekLast().getCompleted());
         }
+
+        // Read, checksum and decompress the files in parallel, each has its own chunk reader
+        for (TableSaveFile savefile : m_saveFiles) {
+            savefile.prefetch();
+        }
     }
 
     private static synchronized boolean hasMoreChunks() throws IOException {
@@ -215,6 +228,18 @@ public class SnapshotRestore extends VoltSystemProcedure {
 
     private static synchronized BBContainer getNextChunk() throws IOException {
         BBContainer c = null;
+        // Take a chunk from whichever file already has one ready, moving that file to the back
+        // so the files are drained evenly. Only block when none of them has a chunk ready.
+        for (int ii = m_saveFiles.size(); c == null && ii > 0; ii--) {
+            TableSaveFile f = m_saveFiles.peek();
+            c = f.pollNextChunk();
+            if (c == null && !f.hasMoreChunks()) {
+                f.close();
+                m_saveFiles.poll();
+            } else {
+                m_saveFiles.offer(m_saveFiles.poll());
+            }
+        }
         while (c == null && m_saveFiles.peek() != null) {
             TableSaveFile f = m_saveFiles.peek();
             c = f.getNextChunk();
@@ -483,6 +508,9 @@ public class SnapshotRestore extends VoltSystemProcedure {
                 // can't be attempting to set and clear this HashSet simultaneously
                 m_initializedTableSaveFileNames.clear();
                 m_saveFiles.clear();// Tests will reuse a VoltDB process that fails a restore
+                m_restoredBytes.set(0);
+                m_restoreStartTime = 0;
+                m_nextThroughputReportTime = 0;
 
                 m_filePath = (String) params.toArray()[0];
                 m_filePathType = (String) params.toArray()[1];
@@ -1382,8 +1410,7 @@ public class SnapshotRestore extends VoltSystemProcedure {
         final boolean isStartWithNoAutomatedRestore =
             startAction == StartAction.CREATE && mode != org.voltdb.OperationMode.INITIALIZING;
 
-        final boolean isCLEnabled =
-            VoltDB.instance().getCommandLog().getClass().getSimpleName().equals("CommandLogImpl");
+        final boolean isCLEnabled = VoltDB.instance().getCommandLog().isEnabled();
 
         final boolean isStartedWithCreateAction = startAction == StartAction.CREATE;
 
@@ -1624,10 +1651,9 @@ public class SnapshotRestore extends VoltSystemProcedure {
             int readAheadChunks,
             Integer relevantPartitionIds[]) throws IOException
             {
-        FileInputStream savefile_input = new FileInputStream(saveFile);
         TableSaveFile savefile =
                 new TableSaveFile(
-                        savefile_input,
+                        saveFile,
                         readAheadChunks,
                         relevantPartitionIds);
         return savefile;
@@ -1724,6 +1750,41 @@ public class SnapshotRestore extends VoltSystemProcedure {
         }
     }
 
+    /**
+     * Count table data read from the save files on this host and log the restore throughput
+     * of the host every report interval.
+     */
+    private static void reportThroughput(long bytes) {
+        long now = System.currentTimeMillis();
+        if (m_restoreStartTime == 0) {
+            m_restoreStartTime = now;
+        }
+        long total = m_restoredBytes.addAndGet(bytes);
+        synchronized (m_restoredBytes) {
+            if (m_nextThroughputReportTime == 0) {
+                m_nextThroughputReportTime = now + m_reportInterval;
+            } else if (now > m_nextThroughputReportTime) {
+                m_nextThroughputReportTime = now + m_reportInterval;
+                SNAP_LOG.info(throughputString(total, now) + " Next progress report at "
+                        + m_reportDateFormat.format(new Date(m_nextThroughputReportTime)));
+            }
+        }
+    }
+
+    private static String throughputString(long bytes, long now) {
+        final double seconds = Math.max(1, now - m_restoreStartTime) / 1000.0;
+        final double megabytes = bytes / (1024.0 * 1024.0);
+        return String.format("%.1f MB of table data read from snapshot files on this host in %.1f seconds (%.1f MB/s).",
+                megabytes, seconds, megabytes / seconds);
+    }
+
+    private static void logTableThroughput(String tableName) {
+        if (m_restoreStartTime != 0) {
+            SNAP_LOG.info("Finished distributing table " + tableName + ". "
+                    + throughputString(m_restoredBytes.get(), System.currentTimeMillis()));
+        }
+    }
+
     private static class DigestScanResult {
         List<JSONObject> digests;
         Map<String, Map<Integer, Pair<Long, Long>>> exportSequenceNumbers;
@@ -2344,6 +2405,7 @@ public class SnapshotRestore extends VoltSystemProcedure {
                 if (c == null) {
                     continue;   // Should be equivalent to break
                 }
+                reportThroughput(c.b().remaining());
                 try {
                     if (needsConversion == null) {
                         VoltTable old_table =
@@ -2463,6 +2525,7 @@ public class SnapshotRestore extends VoltSystemProcedure {
             }
         }
 
+        logTableThroughput(tableName);
         return results[0];
     }
 
@@ -2523,128 +2586,148 @@ public class SnapshotRestore extends VoltSystemProcedure {
             return result;
         }
 
-        Boolean needsConversion = null;
-        org.voltcore.utils.DBBPool.BBContainer c = null;
-        TreeMap<Integer, VoltTable> partitioned_table_cache = new TreeMap<>();
         SnapshotRestoreResultSet resultSet = new SnapshotRestoreResultSet();
         VoltTable firstResult = null;
+        /*
+         * Convert, partition and compress the next chunk on a separate thread while the sites load
+         * the current one, so the loads into the partitions overlap with the preparation of the
+         * next chunk instead of waiting for it.
+         */
+        ExecutorService prepareService = CoreUtils.getSingleThreadExecutor("Snapshot Restore Prepare");
+        Future<SynthesizedPlanFragment[]> nextChunk = null;
 
         try {
             final Table new_catalog_table = getCatalogTable(tableName);
             final boolean preserveDRHiddenColumn =
                 DrRoleType.XDCR.value().equals(m_cluster.getDrrole()) && new_catalog_table.getIsdred();
             final boolean preserveViewHiddenColumn = CatalogUtil.needsViewHiddenColumn(new_catalog_table);
-            while (hasMoreChunks()) {
-                VoltTable table = null;
-
-                c = null;
-                c = getNextChunk();
-                if (c == null) {
-                    continue;//Should be equivalent to break
-                }
+            final Callable<SynthesizedPlanFragment[]> prepareChunk = new Callable<SynthesizedPlanFragment[]>() {
+                private Boolean needsConversion = null;
+                private final TreeMap<Integer, VoltTable> partitioned_table_cache = new TreeMap<>();
+
+                @Override
+                public SynthesizedPlanFragment[] call() throws Exception {
+                    while (hasMoreChunks()) {
+                        VoltTable table = null;
+
+                        final BBContainer c = getNextChunk();
+                        if (c == null) {
+                            continue;//Should be equivalent to break
+                        }
+                        reportThroughput(c.b().remaining());
+
+                        // use if will load as partitioned table
+                        Map<Integer, byte[]> partitioned_tables = null;
+                        // use if will load as replicated table
+                        byte compressedTable[] = null;
+                        int[] dependencyIds = null;
+                        SynthesizedPlanFragment[] pfs = null;
+                        try {
+                            if (needsConversion == null) {
+                                VoltTable old_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b().duplicate(), true);
+                                needsConversion = SavedTableConverter.needsConversion(old_table, new_catalog_table,
+                                                                                      preserveDRHiddenColumn,
+                                                                                      preserveViewHiddenColumn);
+                            }
 
-                // use if will load as partitioned table
-                Map<Integer, byte[]> partitioned_tables = null;
-                // use if will load as replicated table
-                byte compressedTable[] = null;
-                int[] dependencyIds = null;
-                SynthesizedPlanFragment[] pfs = null;
-                try {
-                    if (needsConversion == null) {
-                        VoltTable old_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b().duplicate(), true);
-                        needsConversion = SavedTableConverter.needsConversion(old_table, new_catalog_table,
-                                                                              preserveDRHiddenColumn,
-                                                                              preserveViewHiddenColumn);
-                    }
+                            final VoltTable old_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), true);
+                            if (needsConversion) {
+                                table = SavedTableConverter.convertTable(old_table, new_catalog_table,
+                                                                         preserveDRHiddenColumn,
+                                                                         preserveViewHiddenColumn);
+                            } else {
+                                table = old_table;
+                            }
 
-                    final VoltTable old_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), true);
-                    if (needsConversion) {
-                        table = SavedTableConverter.convertTable(old_table, new_catalog_table,
-                                                                 preserveDRHiddenColumn,
-                                                                 preserveViewHiddenColumn);
-                    } else {
-                        table = old_table;
-                    }
+                            if (asReplicated) {
+                                compressedTable = TableCompressor.getCompressedTableBytes(table);
+                                dependencyIds = new int[sites_to_partitions.size()];
+                                pfs = new SynthesizedPlanFragment[sites_to_partitions.size() + 1];
+                            } else {
+                                partitioned_tables = createPartitionedTables(tableName, table, partitionCount, partitioned_table_cache);
+                                if (partitioned_tables.isEmpty()) {
+                                    continue;
+                                }
+                                int depIdCnt = 0;
+                                for (int pid : partitioned_tables.keySet()) {
+                                    depIdCnt += partition_to_siteCount.get(pid).getValue();
+                                }
+                                dependencyIds = new int[depIdCnt];
+                                pfs = new SynthesizedPlanFragment[depIdCnt + 1];
+                            }
+                        } finally {
+                            c.discard();
+                        }
 
-                    if (asReplicated) {
-                        compressedTable = TableCompressor.getCompressedTableBytes(table);
-                        dependencyIds = new int[sites_to_partitions.size()];
-                        pfs = new SynthesizedPlanFragment[sites_to_partitions.size() + 1];
-                    } else {
-                        partitioned_tables = createPartitionedTables(tableName, table, partitionCount, partitioned_table_cache);
-                        if (partitioned_tables.isEmpty()) {
-                            continue;
+                        int pfs_index = 0;
+                        for (long site_id : sites_to_partitions.keySet())
+                        {
+                            if(asReplicated) {
+                                dependencyIds[pfs_index] = TableSaveFileState.getNextDependencyId();
+                                SynthesizedPlanFragment loadFragment = new SynthesizedPlanFragment();
+                                loadFragment.fragmentId = SysProcFragmentId.PF_restoreLoadTable;
+                                loadFragment.siteId = m_actualToGenerated.get(site_id);
+                                loadFragment.multipartition = false;
+                                loadFragment.outputDepId = dependencyIds[pfs_index];
+                                loadFragment.inputDepIds = new int [] {};
+                                loadFragment.parameters = ParameterSet.fromArrayNoCopy(
+                                        tableName,
+                                        dependencyIds[pfs_index],
+                                        compressedTable,
+                                        K_CHECK_UNIQUE_VIOLATIONS_REPLICATED,
+                                        relevantPartitionIds,
+                                        Boolean.toString(isRecover));
+                                pfs[pfs_index++] = loadFragment;
+                            } else {
+                                int partition_id = sites_to_partitions.get(site_id);
+                                byte[] tableBytes = partitioned_tables.get(partition_id);
+                                if (tableBytes != null) {
+                                    dependencyIds[pfs_index] = TableSaveFileState.getNextDependencyId();
+                                    SynthesizedPlanFragment loadFragment = new SynthesizedPlanFragment();
+                                    loadFragment.fragmentId = SysProcFragmentId.PF_restoreLoadTable;
+                                    loadFragment.siteId = m_actualToGenerated.get(site_id);
+                                    loadFragment.multipartition = false;
+                                    loadFragment.outputDepId = dependencyIds[pfs_index];
+                                    loadFragment.inputDepIds = new int [] {};
+                                    loadFragment.parameters = ParameterSet.fromArrayNoCopy(
+                                            tableName,
+                                            dependencyIds[pfs_index],
+                                            tableBytes,
+                                            K_CHECK_UNIQUE_VIOLATIONS_PARTITIONED,
+                                            new int[] {partition_id},
+                                            Boolean.toString(isRecover));
+                                    pfs[pfs_index++] = loadFragment;
+                                }
+                            }
                         }
-                        int depIdCnt = 0;
-                        for (int pid : partitioned_tables.keySet()) {
-                            depIdCnt += partition_to_siteCount.get(pid).getValue();
+                        int result_dependency_id = TableSaveFileState.getNextDependencyId();
+                        SynthesizedPlanFragment aggregatorFragment = new SynthesizedPlanFragment();
+                        aggregatorFragment.fragmentId =
+                                SysProcFragmentId.PF_restoreReceiveResultTables;
+                        aggregatorFragment.multipartition = false;
+                        aggregatorFragment.outputDepId = result_dependency_id;
+                        aggregatorFragment.inputDepIds = dependencyIds;
+                        if(asReplicated) {
+                            aggregatorFragment.parameters = ParameterSet.fromArrayNoCopy(
+                                    result_dependency_id,
+                                    "Received confirmation of successful partitioned-to-replicated table load");
+                        } else {
+                            aggregatorFragment.parameters = ParameterSet.fromArrayNoCopy(
+                                    result_dependency_id,
+                                    "Received confirmation of successful partitioned-to-partitioned table load");
                         }
-                        dependencyIds = new int[depIdCnt];
-                        pfs = new SynthesizedPlanFragment[depIdCnt + 1];
+                        assert(pfs.length == pfs_index+1);
+                        pfs[pfs_index] = aggregatorFragment;
+                        return pfs;
                     }
-                } finally {
-                    c.discard();
+                    return null;
                 }
+            };
 
-                int pfs_index = 0;
-                for (long site_id : sites_to_partitions.keySet())
-                {
-                    if(asReplicated) {
-                        dependencyIds[pfs_index] = TableSaveFileState.getNextDependencyId();
-                        SynthesizedPlanFragment loadFragment = new SynthesizedPlanFragment();
-                        loadFragment.fragmentId = SysProcFragmentId.PF_restoreLoadTable;
-                        loadFragment.siteId = m_actualToGenerated.get(site_id);
-                        loadFragment.multipartition = false;
-                        loadFragment.outputDepId = dependencyIds[pfs_index];
-                        loadFragment.inputDepIds = new int [] {};
-                        loadFragment.parameters = ParameterSet.fromArrayNoCopy(
-                                tableName,
-                                dependencyIds[pfs_index],
-                                compressedTable,
-                                K_CHECK_UNIQUE_VIOLATIONS_REPLICATED,
-                                relevantPartitionIds,
-                                Boolean.toString(isRecover));
-                        pfs[pfs_index++] = loadFragment;
-                    } else {
-                        int partition_id = sites_to_partitions.get(site_id);
-                        byte[] tableBytes = partitioned_tables.get(partition_id);
-                        if (tableBytes != null) {
-                            dependencyIds[pfs_index] = TableSaveFileState.getNextDependencyId();
-                            SynthesizedPlanFragment loadFragment = new SynthesizedPlanFragment();
-                            loadFragment.fragmentId = SysProcFragmentId.PF_restoreLoadTable;
-                            loadFragment.siteId = m_actualToGenerated.get(site_id);
-                            loadFragment.multipartition = false;
-                            loadFragment.outputDepId = dependencyIds[pfs_index];
-                            loadFragment.inputDepIds = new int [] {};
-                            loadFragment.parameters = ParameterSet.fromArrayNoCopy(
-                                    tableName,
-                                    dependencyIds[pfs_index],
-                                    tableBytes,
-                                    K_CHECK_UNIQUE_VIOLATIONS_PARTITIONED,
-                                    new int[] {partition_id},
-                                    Boolean.toString(isRecover));
-                            pfs[pfs_index++] = loadFragment;
-                        }
-                    }
-                }
-                int result_dependency_id = TableSaveFileState.getNextDependencyId();
-                SynthesizedPlanFragment aggregatorFragment = new SynthesizedPlanFragment();
-                aggregatorFragment.fragmentId =
-                        SysProcFragmentId.PF_restoreReceiveResultTables;
-                aggregatorFragment.multipartition = false;
-                aggregatorFragment.outputDepId = result_dependency_id;
-                aggregatorFragment.inputDepIds = dependencyIds;
-                if(asReplicated) {
-                    aggregatorFragment.parameters = ParameterSet.fromArrayNoCopy(
-                            result_dependency_id,
-                            "Received confirmation of successful partitioned-to-replicated table load");
-                } else {
-                    aggregatorFragment.parameters = ParameterSet.fromArrayNoCopy(
-                            result_dependency_id,
-                            "Received confirmation of successful partitioned-to-partitioned table load");
-                }
-                assert(pfs.length == pfs_index+1);
-                pfs[pfs_index] = aggregatorFragment;
+            nextChunk = prepareService.submit(prepareChunk);
+            SynthesizedPlanFragment[] pfs;
+            while ((pfs = nextChunk.get()) != null) {
+                nextChunk = prepareService.submit(prepareChunk);
                 VoltTable[] results = executeSysProcPlanFragments(pfs, m_mbox);
                 VoltTable vt = results[0];
                 if (firstResult == null) {
@@ -2654,14 +2737,26 @@ public class SnapshotRestore extends VoltSystemProcedure {
                     resultSet.parseRestoreResultRow(vt);
                 }
             }
+            nextChunk = null;
         } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
             VoltTable result = PrivateVoltTableFactory.createUninitializedVoltTable();
             result = constructResultsTable();
             result.addRow(m_hostId, hostname, CoreUtils.getSiteIdFromHSId(m_siteId), tableName,
                     relevantPartitionIds[0], "FAILURE",
-                    "Unable to load table: " + tableName + " error:\n" + CoreUtils.throwableToString(e));
+                    "Unable to load table: " + tableName + " error:\n" + CoreUtils.throwableToString(cause));
             return result;
         } finally {
+            // Stop preparing chunks before closing the files they are read from
+            if (nextChunk != null) {
+                nextChunk.cancel(true);
+            }
+            prepareService.shutdownNow();
+            try {
+                prepareService.awaitTermination(365, TimeUnit.DAYS);
+            } catch (InterruptedException e) {
+                SNAP_LOG.warn("Interrupted waiting for restore chunk preparation to stop", e);
+            }
             synchronized (SnapshotRestore.class) {
                 TableSaveFile tsf = null;
                 while ((tsf = m_saveFiles.poll()) != null) {
@@ -2674,6 +2769,7 @@ public class SnapshotRestore extends VoltSystemProcedure {
             }
         }
 
+        logTableThroughput(tableName);
         VoltTable result = null;
         if (!resultSet.isEmpty()) {
             result = new VoltTable(VoltTableUtil.extractTableSchema(firstResult));
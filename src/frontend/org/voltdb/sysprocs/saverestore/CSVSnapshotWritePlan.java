@@ -60,7 +60,8 @@ import com.google_voltpatches.common.primitives.Longs;
  * selection which is seeded such that each node in the cluster will reach the
  * same conclusion about whether or not it is writing a given partition.  Each
  * partitioned table is written to the same target per table by each selected
- * site on a node. */
+ * site on a node.  Subclasses write other file formats the same way by
+ * overriding the format, the filter and the target. */
 public class CSVSnapshotWritePlan extends SnapshotWritePlan
 {
 
@@ -86,7 +87,7 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
          * a random replica to do the work. Will not work in failure
          * cases, but we don't use dedupe when we want durability.
          */
-        List<Long> sitesToInclude = CSVSnapshotWritePlan.computeDedupedLocalSites(txnId, tracker);
+        List<Long> sitesToInclude = CSVSnapshotWritePlan.computeDedupedLocalSites(txnId, tracker, getFormat());
         // If there's no work to do on this host, just claim success and get out:
         if (sitesToInclude.isEmpty() && !tracker.isFirstHost()) {
             return null;
@@ -100,7 +101,7 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
                     context.getHostId(),
                     file_path,
                     file_nonce,
-                    SnapshotFormat.CSV,
+                    getFormat(),
                     config.tables);
 
         boolean noTargetsCreated = true;
@@ -124,7 +125,7 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
             }
 
             List<SnapshotDataFilter> filters = new ArrayList<SnapshotDataFilter>();
-            filters.add(new CSVSnapshotFilter(CatalogUtil.getVoltTable(table), ',', null));
+            filters.add(createFilter(table));
 
             final SnapshotTableTask task =
                     new SnapshotTableTask(
@@ -163,6 +164,21 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
                 partitionedSnapshotTasks, replicatedSnapshotTasks);
     }
 
+    protected SnapshotFormat getFormat()
+    {
+        return SnapshotFormat.CSV;
+    }
+
+    protected SnapshotDataFilter createFilter(Table table)
+    {
+        return new CSVSnapshotFilter(CatalogUtil.getVoltTable(table), ',', null);
+    }
+
+    protected SnapshotDataTarget createTarget(File saveFilePath, Table table) throws IOException
+    {
+        return new SimpleFileSnapshotDataTarget(saveFilePath, !table.getIsreplicated());
+    }
+
     private Callable<Boolean> createDeferredSetup(final String file_path,
                                                   final String pathType,
                                                   final String file_nonce,
@@ -215,10 +231,10 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
                 table,
                 file_path,
                 file_nonce,
-                SnapshotFormat.CSV,
+                getFormat(),
                 hostId);
 
-        sdt = new SimpleFileSnapshotDataTarget(saveFilePath, !table.getIsreplicated());
+        sdt = createTarget(saveFilePath, table);
 
         m_targets.add(sdt);
         final Runnable onClose = new TargetStatsClosure(sdt, table.getTypeName(), numTables, snapshotRecord);
@@ -227,7 +243,7 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
         return sdt;
     }
 
-    static private List<Long> computeDedupedLocalSites(long txnId, SiteTracker tracker)
+    static private List<Long> computeDedupedLocalSites(long txnId, SiteTracker tracker, SnapshotFormat format)
     {
         MessageDigest digest;
         try {
@@ -264,7 +280,7 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
         }
 
         if (sitesToInclude.isEmpty()) {
-            SNAP_LOG.info("This host was not selected to write CSV data for any partition");
+            SNAP_LOG.info("This host was not selected to write " + format + " data for any partition");
         }
 
         return sitesToInclude;
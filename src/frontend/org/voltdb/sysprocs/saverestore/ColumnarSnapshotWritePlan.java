@@ -0,0 +1,63 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.voltdb.ColumnarSnapshotFilter;
+import org.voltdb.SimpleFileSnapshotDataTarget;
+import org.voltdb.SnapshotDataFilter;
+import org.voltdb.SnapshotDataTarget;
+import org.voltdb.SnapshotFormat;
+import org.voltdb.catalog.Table;
+import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.CompressionCodec;
+
+/**
+ * Create a snapshot write plan for a columnar snapshot, see {@link ColumnarTableSaveFile} for the
+ * file format. Tables are deduped across the cluster the same way as a CSV snapshot. The chunks of
+ * the copy-on-write streams are encoded by the filter on the computation service and written on the
+ * IO thread of the target, so the sites do the same work as for any other snapshot.
+ */
+public class ColumnarSnapshotWritePlan extends CSVSnapshotWritePlan
+{
+    // The same codec for the header and the blocks even if the configuration changes mid snapshot
+    private final CompressionCodec m_codec = CompressionCodec.forSnapshots();
+
+    @Override
+    protected SnapshotFormat getFormat()
+    {
+        return SnapshotFormat.COLUMNAR;
+    }
+
+    @Override
+    protected SnapshotDataFilter createFilter(Table table)
+    {
+        return new ColumnarSnapshotFilter(CatalogUtil.getVoltTable(table), m_codec);
+    }
+
+    @Override
+    protected SnapshotDataTarget createTarget(File saveFilePath, Table table) throws IOException
+    {
+        final byte[] header = ColumnarTableSaveFile.serializeHeader(table.getTypeName(), table.getIsreplicated(),
+                CatalogUtil.getVoltTable(table), m_codec);
+        return new SimpleFileSnapshotDataTarget(saveFilePath, !table.getIsreplicated(), SnapshotFormat.COLUMNAR,
+                header);
+    }
+}
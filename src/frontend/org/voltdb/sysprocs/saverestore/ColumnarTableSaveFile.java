@@ -0,0 +1,598 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+import org.voltdb.types.VoltDecimalHelper;
+import org.voltdb.utils.CompressionCodec;
+
+import com.google_voltpatches.common.primitives.UnsignedBytes;
+
+/**
+ * Format and reader of the table files of a COLUMNAR snapshot, for offloading data to analytics
+ * tools without a conversion step.
+ *
+ * A file starts with a header describing the table: the magic, the format version, the id of the
+ * {@link CompressionCodec} the columns are compressed with, the table name, whether the table is
+ * replicated and the name and type of every column.
+ *
+ * It is followed by one block per chunk of the copy-on-write stream of a partition. A block has the
+ * partition id, the row count and the length of the rest of the block, so readers can skip it, and
+ * then for each column a flags byte, a null bitmap if any value is null, the min and max of the non
+ * null values and the non null values serialized one after the other and compressed. Min and max are
+ * kept for the numeric and timestamp columns, and for string and varbinary columns if both are at
+ * most {@link #MAX_STATS_VALUE_LENGTH} bytes long. NaN float values are left out of min and max.
+ */
+public class ColumnarTableSaveFile implements Closeable {
+    public static final int MAGIC = 0x56435446; // VCTF
+    public static final int VERSION = 1;
+    public static final int MAX_STATS_VALUE_LENGTH = 64;
+
+    private static final byte HAS_NULLS = 1;
+    private static final byte HAS_STATS = 2;
+
+    // Unsigned byte order of UTF-8 is code point order, so it works for strings too
+    private static final Comparator<byte[]> BYTES_ORDER = UnsignedBytes.lexicographicalComparator();
+
+    /**
+     * Min and max of the non null values of a column in a block, boxed the way
+     * {@link VoltTable#get(int, VoltType)} boxes them.
+     */
+    public static class ColumnStats {
+        private final boolean m_hasNulls;
+        private final Object m_min;
+        private final Object m_max;
+
+        ColumnStats(boolean hasNulls, Object min, Object max) {
+            m_hasNulls = hasNulls;
+            m_min = min;
+            m_max = max;
+        }
+
+        public boolean hasNulls() {
+            return m_hasNulls;
+        }
+
+        /**
+         * @return false if every value is null or the column type has no stats
+         */
+        public boolean hasMinMax() {
+            return m_min != null;
+        }
+
+        public Object getMin() {
+            return m_min;
+        }
+
+        public Object getMax() {
+            return m_max;
+        }
+    }
+
+    /**
+     * One block of a file, the columns are only uncompressed by {@link #toVoltTable()}.
+     */
+    public class Block {
+        private final int m_partitionId;
+        private final int m_rowCount;
+        private final ColumnStats[] m_stats;
+        private final byte[][] m_nulls;
+        private final byte[][] m_values;
+
+        Block(int partitionId, int rowCount, ColumnStats[] stats, byte[][] nulls, byte[][] values) {
+            m_partitionId = partitionId;
+            m_rowCount = rowCount;
+            m_stats = stats;
+            m_nulls = nulls;
+            m_values = values;
+        }
+
+        public int getPartitionId() {
+            return m_partitionId;
+        }
+
+        public int getRowCount() {
+            return m_rowCount;
+        }
+
+        public ColumnStats getColumnStats(int column) {
+            return m_stats[column];
+        }
+
+        public VoltTable toVoltTable() throws IOException {
+            final VoltType[] types = m_types;
+            VoltTable.ColumnInfo[] columns = new VoltTable.ColumnInfo[types.length];
+            ByteBuffer[] values = new ByteBuffer[types.length];
+            for (int ii = 0; ii < types.length; ii++) {
+                columns[ii] = new VoltTable.ColumnInfo(m_columnNames[ii], types[ii]);
+                values[ii] = ByteBuffer.wrap(m_codec.uncompress(m_values[ii]));
+            }
+            VoltTable table = new VoltTable(columns);
+            Object[] row = new Object[types.length];
+            for (int rowIndex = 0; rowIndex < m_rowCount; rowIndex++) {
+                for (int ii = 0; ii < types.length; ii++) {
+                    if (m_nulls[ii] != null && (m_nulls[ii][rowIndex >> 3] & (1 << (rowIndex & 7))) != 0) {
+                        row[ii] = null;
+                    } else {
+                        row[ii] = readValue(types[ii], values[ii]);
+                    }
+                }
+                table.addRow(row);
+            }
+            return table;
+        }
+    }
+
+    private final DataInputStream m_in;
+    private final CompressionCodec m_codec;
+    private final String m_tableName;
+    private final boolean m_isReplicated;
+    private final String[] m_columnNames;
+    private final VoltType[] m_types;
+
+    public ColumnarTableSaveFile(File file) throws IOException {
+        this(new BufferedInputStream(new FileInputStream(file), 1024 * 1024));
+    }
+
+    public ColumnarTableSaveFile(InputStream in) throws IOException {
+        m_in = new DataInputStream(in);
+        try {
+            if (m_in.readInt() != MAGIC) {
+                throw new IOException("Not a columnar table file");
+            }
+            final int version = m_in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported columnar table file version " + version);
+            }
+            m_codec = CompressionCodec.fromId(m_in.readInt());
+            m_tableName = readString(m_in);
+            m_isReplicated = m_in.readBoolean();
+            final int columnCount = m_in.readInt();
+            m_columnNames = new String[columnCount];
+            m_types = new VoltType[columnCount];
+            for (int ii = 0; ii < columnCount; ii++) {
+                m_columnNames[ii] = readString(m_in);
+                m_types[ii] = VoltType.get(m_in.readByte());
+            }
+        } catch (IOException e) {
+            m_in.close();
+            throw e;
+        }
+    }
+
+    public String getTableName() {
+        return m_tableName;
+    }
+
+    public boolean isReplicated() {
+        return m_isReplicated;
+    }
+
+    public CompressionCodec getCodec() {
+        return m_codec;
+    }
+
+    public int getColumnCount() {
+        return m_types.length;
+    }
+
+    public String getColumnName(int column) {
+        return m_columnNames[column];
+    }
+
+    public VoltType getColumnType(int column) {
+        return m_types[column];
+    }
+
+    /**
+     * @return the next block, or null at the end of the file
+     */
+    public Block readBlock() throws IOException {
+        final int partitionId;
+        try {
+            partitionId = m_in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        final int rowCount = m_in.readInt();
+        m_in.readInt(); // length, only needed to skip the block
+        ColumnStats[] stats = new ColumnStats[m_types.length];
+        byte[][] nulls = new byte[m_types.length][];
+        byte[][] values = new byte[m_types.length][];
+        for (int ii = 0; ii < m_types.length; ii++) {
+            final byte flags = m_in.readByte();
+            if ((flags & HAS_NULLS) != 0) {
+                nulls[ii] = new byte[(rowCount + 7) >> 3];
+                m_in.readFully(nulls[ii]);
+            }
+            Object min = null;
+            Object max = null;
+            if ((flags & HAS_STATS) != 0) {
+                min = readStatsValue(m_types[ii], m_in);
+                max = readStatsValue(m_types[ii], m_in);
+            }
+            stats[ii] = new ColumnStats(nulls[ii] != null, min, max);
+            values[ii] = new byte[m_in.readInt()];
+            m_in.readFully(values[ii]);
+        }
+        return new Block(partitionId, rowCount, stats, nulls, values);
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_in.close();
+    }
+
+    /**
+     * @return the header of a file for the given table, schema is a table with its columns
+     */
+    public static byte[] serializeHeader(String tableName, boolean isReplicated, VoltTable schema,
+                                         CompressionCodec codec) {
+        final byte[] name = tableName.getBytes(StandardCharsets.UTF_8);
+        final byte[][] columnNames = new byte[schema.getColumnCount()][];
+        int length = 4 + 4 + 4 + 4 + name.length + 1 + 4;
+        for (int ii = 0; ii < columnNames.length; ii++) {
+            columnNames[ii] = schema.getColumnName(ii).getBytes(StandardCharsets.UTF_8);
+            length += 4 + columnNames[ii].length + 1;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.putInt(codec.getId());
+        buf.putInt(name.length).put(name);
+        buf.put((byte) (isReplicated ? 1 : 0));
+        buf.putInt(columnNames.length);
+        for (int ii = 0; ii < columnNames.length; ii++) {
+            buf.putInt(columnNames[ii].length).put(columnNames[ii]);
+            buf.put(schema.getColumnType(ii).getValue());
+        }
+        return buf.array();
+    }
+
+    /**
+     * Encode the rows of a chunk of the snapshot stream of a partition as one block
+     */
+    public static byte[] serializeBlock(int partitionId, VoltTable rows, CompressionCodec codec) throws IOException {
+        final int columnCount = rows.getColumnCount();
+        final int rowCount = rows.getRowCount();
+        ColumnEncoder[] encoders = new ColumnEncoder[columnCount];
+        for (int ii = 0; ii < columnCount; ii++) {
+            encoders[ii] = new ColumnEncoder(rows.getColumnType(ii), rowCount);
+        }
+        rows.resetRowPosition();
+        for (int rowIndex = 0; rows.advanceRow(); rowIndex++) {
+            for (int ii = 0; ii < columnCount; ii++) {
+                encoders[ii].add(rows, ii, rowIndex);
+            }
+        }
+
+        byte[][] columns = new byte[columnCount][];
+        int length = 4 + 4 + 4;
+        for (int ii = 0; ii < columnCount; ii++) {
+            columns[ii] = encoders[ii].finish(codec);
+            length += columns[ii].length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.putInt(partitionId);
+        buf.putInt(rowCount);
+        buf.putInt(length - 12);
+        for (byte[] column : columns) {
+            buf.put(column);
+        }
+        return buf.array();
+    }
+
+    /**
+     * Accumulates the values, nulls and min and max of one column of a block
+     */
+    private static class ColumnEncoder {
+        private final VoltType m_type;
+        private final byte[] m_nulls;
+        private boolean m_hasNulls = false;
+        private ByteBuffer m_values;
+        private long m_minLong = Long.MAX_VALUE;
+        private long m_maxLong = Long.MIN_VALUE;
+        private double m_minDouble = Double.POSITIVE_INFINITY;
+        private double m_maxDouble = Double.NEGATIVE_INFINITY;
+        private Object m_min;
+        private Object m_max;
+        private boolean m_hasValues = false;
+
+        ColumnEncoder(VoltType type, int rowCount) {
+            m_type = type;
+            m_nulls = new byte[(rowCount + 7) >> 3];
+            final int width = type.isVariableLength() ? 32 : type.getLengthInBytesForFixedTypesWithoutCheck();
+            m_values = ByteBuffer.allocate(Math.max(64, width * rowCount));
+        }
+
+        private void ensureRemaining(int length) {
+            if (m_values.remaining() < length) {
+                ByteBuffer values = ByteBuffer.allocate(Math.max(m_values.capacity() * 2, m_values.position() + length));
+                m_values.flip();
+                values.put(m_values);
+                m_values = values;
+            }
+        }
+
+        void add(VoltTable rows, int column, int rowIndex) {
+            switch (m_type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+            case TIMESTAMP: {
+                final long value = m_type == VoltType.TIMESTAMP ? rows.getTimestampAsLong(column) : rows.getLong(column);
+                if (rows.wasNull()) {
+                    addNull(rowIndex);
+                    return;
+                }
+                ensureRemaining(8);
+                if (m_type == VoltType.TINYINT) {
+                    m_values.put((byte) value);
+                } else if (m_type == VoltType.SMALLINT) {
+                    m_values.putShort((short) value);
+                } else if (m_type == VoltType.INTEGER) {
+                    m_values.putInt((int) value);
+                } else {
+                    m_values.putLong(value);
+                }
+                m_minLong = Math.min(m_minLong, value);
+                m_maxLong = Math.max(m_maxLong, value);
+                break;
+            }
+            case FLOAT: {
+                final double value = rows.getDouble(column);
+                if (rows.wasNull()) {
+                    addNull(rowIndex);
+                    return;
+                }
+                ensureRemaining(8);
+                m_values.putDouble(value);
+                // A NaN would turn both into NaN, so it is left out of the stats
+                if (!Double.isNaN(value)) {
+                    m_minDouble = Math.min(m_minDouble, value);
+                    m_maxDouble = Math.max(m_maxDouble, value);
+                }
+                break;
+            }
+            case DECIMAL: {
+                final BigDecimal value = rows.getDecimalAsBigDecimal(column);
+                if (value == null) {
+                    addNull(rowIndex);
+                    return;
+                }
+                ensureRemaining(16);
+                VoltDecimalHelper.serializeBigDecimal(value, m_values);
+                if (m_min == null || value.compareTo((BigDecimal) m_min) < 0) {
+                    m_min = value;
+                }
+                if (m_max == null || value.compareTo((BigDecimal) m_max) > 0) {
+                    m_max = value;
+                }
+                break;
+            }
+            case STRING:
+            case VARBINARY: {
+                final byte[] value = m_type == VoltType.STRING ? rows.getStringAsBytes(column) : rows.getVarbinary(column);
+                if (value == null) {
+                    addNull(rowIndex);
+                    return;
+                }
+                ensureRemaining(4 + value.length);
+                m_values.putInt(value.length);
+                m_values.put(value);
+                if (m_min == null || BYTES_ORDER.compare(value, (byte[]) m_min) < 0) {
+                    m_min = value;
+                }
+                if (m_max == null || BYTES_ORDER.compare(value, (byte[]) m_max) > 0) {
+                    m_max = value;
+                }
+                break;
+            }
+            case GEOGRAPHY_POINT: {
+                final GeographyPointValue value = rows.getGeographyPointValue(column);
+                if (value == null) {
+                    addNull(rowIndex);
+                    return;
+                }
+                ensureRemaining(GeographyPointValue.getLengthInBytes());
+                value.flattenToBuffer(m_values);
+                break;
+            }
+            case GEOGRAPHY: {
+                final GeographyValue value = rows.getGeographyValue(column);
+                if (value == null) {
+                    addNull(rowIndex);
+                    return;
+                }
+                ensureRemaining(4 + value.getLengthInBytes());
+                m_values.putInt(value.getLengthInBytes());
+                value.flattenToBuffer(m_values);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported column type " + m_type);
+            }
+            m_hasValues = true;
+        }
+
+        private void addNull(int rowIndex) {
+            m_nulls[rowIndex >> 3] |= 1 << (rowIndex & 7);
+            m_hasNulls = true;
+        }
+
+        private boolean hasStats() {
+            if (!m_hasValues) {
+                return false;
+            }
+            switch (m_type) {
+            case STRING:
+            case VARBINARY:
+                return ((byte[]) m_min).length <= MAX_STATS_VALUE_LENGTH &&
+                       ((byte[]) m_max).length <= MAX_STATS_VALUE_LENGTH;
+            case FLOAT:
+                // Every value was NaN
+                return m_minDouble <= m_maxDouble;
+            case GEOGRAPHY_POINT:
+            case GEOGRAPHY:
+                return false;
+            default:
+                return true;
+            }
+        }
+
+        byte[] finish(CompressionCodec codec) throws IOException {
+            final boolean hasStats = hasStats();
+            final byte[] compressed = codec.compress(m_values.array(), 0, m_values.position());
+            int length = 1 + (m_hasNulls ? m_nulls.length : 0) + 4 + compressed.length;
+            if (hasStats) {
+                length += statsValueLength(m_min) + statsValueLength(m_max);
+            }
+
+            ByteBuffer buf = ByteBuffer.allocate(length);
+            buf.put((byte) ((m_hasNulls ? HAS_NULLS : 0) | (hasStats ? HAS_STATS : 0)));
+            if (m_hasNulls) {
+                buf.put(m_nulls);
+            }
+            if (hasStats) {
+                switch (m_type) {
+                case FLOAT:
+                    buf.putDouble(m_minDouble);
+                    buf.putDouble(m_maxDouble);
+                    break;
+                case DECIMAL:
+                    VoltDecimalHelper.serializeBigDecimal((BigDecimal) m_min, buf);
+                    VoltDecimalHelper.serializeBigDecimal((BigDecimal) m_max, buf);
+                    break;
+                case STRING:
+                case VARBINARY:
+                    buf.putInt(((byte[]) m_min).length).put((byte[]) m_min);
+                    buf.putInt(((byte[]) m_max).length).put((byte[]) m_max);
+                    break;
+                default:
+                    buf.putLong(m_minLong);
+                    buf.putLong(m_maxLong);
+                }
+            }
+            buf.putInt(compressed.length);
+            buf.put(compressed);
+            return buf.array();
+        }
+
+        private int statsValueLength(Object value) {
+            switch (m_type) {
+            case DECIMAL:
+                return 16;
+            case STRING:
+            case VARBINARY:
+                return 4 + ((byte[]) value).length;
+            default:
+                return 8;
+            }
+        }
+    }
+
+    private static Object readStatsValue(VoltType type, DataInputStream in) throws IOException {
+        switch (type) {
+        case TINYINT:
+            return (byte) in.readLong();
+        case SMALLINT:
+            return (short) in.readLong();
+        case INTEGER:
+            return (int) in.readLong();
+        case BIGINT:
+            return in.readLong();
+        case TIMESTAMP:
+            return new TimestampType(in.readLong());
+        case FLOAT:
+            return in.readDouble();
+        case DECIMAL: {
+            byte[] bytes = new byte[16];
+            in.readFully(bytes);
+            return VoltDecimalHelper.deserializeBigDecimal(ByteBuffer.wrap(bytes));
+        }
+        case STRING:
+        case VARBINARY: {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return type == VoltType.STRING ? new String(bytes, StandardCharsets.UTF_8) : bytes;
+        }
+        default:
+            throw new IOException("Column type " + type + " has no stats");
+        }
+    }
+
+    private static Object readValue(VoltType type, ByteBuffer buf) {
+        switch (type) {
+        case TINYINT:
+            return buf.get();
+        case SMALLINT:
+            return buf.getShort();
+        case INTEGER:
+            return buf.getInt();
+        case BIGINT:
+            return buf.getLong();
+        case TIMESTAMP:
+            return new TimestampType(buf.getLong());
+        case FLOAT:
+            return buf.getDouble();
+        case DECIMAL:
+            return VoltDecimalHelper.deserializeBigDecimal(buf);
+        case STRING:
+        case VARBINARY: {
+            byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            return type == VoltType.STRING ? new String(bytes, StandardCharsets.UTF_8) : bytes;
+        }
+        case GEOGRAPHY_POINT:
+            return GeographyPointValue.unflattenFromBuffer(buf);
+        case GEOGRAPHY: {
+            final int length = buf.getInt();
+            final int end = buf.position() + length;
+            GeographyValue value = GeographyValue.unflattenFromBuffer(buf);
+            buf.position(end);
+            return value;
+        }
+        default:
+            throw new IllegalArgumentException("Unsupported column type " + type);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
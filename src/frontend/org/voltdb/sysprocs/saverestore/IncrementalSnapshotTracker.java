@@ -0,0 +1,168 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.voltdb.SystemProcedureExecutionContext;
+import org.voltdb.catalog.Table;
+
+/**
+ * Keeps track of the table files written by the native snapshots of this host so an incremental
+ * snapshot can carry over the file of a table that wasn't modified since the previous snapshot to
+ * the same path instead of writing the table again.
+ *
+ * Whether a table was modified is told by the generations the EE hands out for every table at
+ * every site, see {@link SystemProcedureExecutionContext#getTableGeneration(int)}. The tracking is
+ * kept in memory only, the first snapshot after a restart writes every table.
+ */
+public class IncrementalSnapshotTracker {
+
+    /**
+     * A table file of a successful snapshot and what it was written from
+     */
+    static class TableFile {
+        final File m_file;
+        final Map<Integer, Long> m_generations;
+        final byte[] m_schema;
+        final List<Integer> m_partitionIds;
+        final int m_partitionCount;
+        // Attributes of the file when the snapshot completed, to tell that it is still the same file
+        final Object m_fileKey;
+        final long m_size;
+        final long m_lastModified;
+
+        TableFile(File file, Map<Integer, Long> generations, byte[] schema, List<Integer> partitionIds,
+                  int partitionCount) throws IOException {
+            m_file = file;
+            m_generations = generations;
+            m_schema = schema;
+            m_partitionIds = partitionIds;
+            m_partitionCount = partitionCount;
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            m_fileKey = attributes.fileKey();
+            m_size = attributes.size();
+            m_lastModified = attributes.lastModifiedTime().toMillis();
+        }
+
+        /**
+         * @return true if the file holds the current contents of the table and can be carried over
+         */
+        boolean canCarryOver(Map<Integer, Long> generations, byte[] schema, List<Integer> partitionIds,
+                             int partitionCount) {
+            if (generations == null || !generations.equals(m_generations) ||
+                    !Arrays.equals(schema, m_schema) ||
+                    !partitionIds.equals(m_partitionIds) || partitionCount != m_partitionCount) {
+                return false;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(m_file.toPath(), BasicFileAttributes.class);
+                return Objects.equals(attributes.fileKey(), m_fileKey) &&
+                        attributes.size() == m_size &&
+                        attributes.lastModifiedTime().toMillis() == m_lastModified;
+            } catch (IOException e) {
+                // Deleted or otherwise gone
+                return false;
+            }
+        }
+    }
+
+    // Generations of the tables at the snapshot being set up, by partition and then table name
+    private static Map<Integer, Map<String, Long>> m_pendingGenerations = new HashMap<>();
+
+    // Table files of the last successful snapshot to each path, by path and then table name
+    private static final Map<String, Map<String, TableFile>> m_tableFiles = new HashMap<>();
+
+    /**
+     * Record the generations of the tables of the site at the point of a native snapshot. Called
+     * by every site before the snapshot is set up.
+     */
+    public static synchronized void recordGenerations(SystemProcedureExecutionContext context) {
+        Map<String, Long> generations = new HashMap<>();
+        for (Table table : SnapshotUtil.getTablesToSave(context.getDatabase())) {
+            generations.put(table.getTypeName(), context.getTableGeneration(table.getRelativeIndex()));
+        }
+        m_pendingGenerations.put(context.getPartitionId(), generations);
+    }
+
+    /**
+     * @return the generations recorded for the snapshot being set up by table name and then
+     * partition, tables that aren't known to all the given partitions are left out
+     */
+    static synchronized Map<String, Map<Integer, Long>> takeGenerations(List<Integer> partitionIds) {
+        Map<Integer, Map<String, Long>> pending = m_pendingGenerations;
+        m_pendingGenerations = new HashMap<>();
+
+        Map<String, Map<Integer, Long>> generations = new HashMap<>();
+        if (partitionIds.isEmpty() || !pending.keySet().containsAll(partitionIds)) {
+            return generations;
+        }
+        for (Map.Entry<String, Long> e : pending.get(partitionIds.get(0)).entrySet()) {
+            Map<Integer, Long> tableGenerations = new HashMap<>();
+            for (int partitionId : partitionIds) {
+                Long generation = pending.get(partitionId).get(e.getKey());
+                if (generation == null || generation < 0) {
+                    break;
+                }
+                tableGenerations.put(partitionId, generation);
+            }
+            if (tableGenerations.size() == partitionIds.size()) {
+                generations.put(e.getKey(), tableGenerations);
+            }
+        }
+        return generations;
+    }
+
+    static synchronized TableFile getTableFile(String path, String tableName) {
+        Map<String, TableFile> tableFiles = m_tableFiles.get(path);
+        return tableFiles == null ? null : tableFiles.get(tableName);
+    }
+
+    /**
+     * Remember the table files of a snapshot that completed successfully
+     */
+    static synchronized void snapshotCompleted(String path, Map<String, TableFile> tableFiles) {
+        Map<String, TableFile> previous = m_tableFiles.get(path);
+        if (previous == null) {
+            m_tableFiles.put(path, new HashMap<>(tableFiles));
+        } else {
+            previous.putAll(tableFiles);
+        }
+    }
+
+    /**
+     * @return true if the header of the table file has the completed flag set
+     */
+    static boolean isCompleted(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(8);
+            return raf.read() == 1;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -19,9 +19,11 @@ package org.voltdb.sysprocs.saverestore;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -31,6 +33,7 @@ import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.InstanceId;
 import org.voltdb.DefaultSnapshotDataTarget;
 import org.voltdb.ExtensibleSnapshotDigestData;
+import org.voltdb.PrivateVoltTableFactory;
 import org.voltdb.SnapshotDataFilter;
 import org.voltdb.SnapshotDataTarget;
 import org.voltdb.SnapshotFormat;
@@ -103,6 +106,29 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
             tableArray = config.tables;
         }
 
+        // Generations of the tables at this snapshot, to tell whether they changed by the next one
+        final boolean isActiveActiveDRed = DrRoleType.XDCR.value().equals(context.getCluster().getDrrole());
+        final List<Integer> localPartitions = tracker.getPartitionsForHost(context.getHostId());
+        final Map<String, Map<Integer, Long>> generations =
+                IncrementalSnapshotTracker.takeGenerations(localPartitions);
+        final Map<String, byte[]> schemas = new HashMap<>();
+        if (!generations.isEmpty()) {
+            for (Table table : tableArray) {
+                schemas.put(table.getTypeName(),
+                        PrivateVoltTableFactory.getSchemaBytes(getSchemaTable(table, isActiveActiveDRed)));
+            }
+        }
+
+        final Map<Table, IncrementalSnapshotTracker.TableFile> carriedOver =
+                getTablesToCarryOver(file_path, file_nonce, jsData, context, tableArray, localPartitions,
+                        generations, schemas);
+        final List<Table> writtenTables = new ArrayList<Table>();
+        for (Table table : tableArray) {
+            if (!carriedOver.containsKey(table)) {
+                writtenTables.add(table);
+            }
+        }
+
         m_snapshotRecord =
             SnapshotRegistry.startSnapshot(
                     txnId,
@@ -110,13 +136,21 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     file_path,
                     file_nonce,
                     SnapshotFormat.NATIVE,
-                    tableArray);
+                    writtenTables.toArray(new Table[0]));
 
         final ArrayList<SnapshotTableTask> partitionedSnapshotTasks =
             new ArrayList<SnapshotTableTask>();
         final ArrayList<SnapshotTableTask> replicatedSnapshotTasks =
             new ArrayList<SnapshotTableTask>();
         for (final Table table : tableArray) {
+            if (carriedOver.containsKey(table)) {
+                result.addRow(context.getHostId(),
+                        CoreUtils.getHostnameOrAddress(),
+                        table.getTypeName(),
+                        "SUCCESS",
+                        "");
+                continue;
+            }
             final SnapshotTableTask task =
                     new SnapshotTableTask(
                             table,
@@ -157,7 +191,60 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
         return createDeferredSetup(file_path, pathType, file_nonce, txnId, partitionTransactionIds,
                 context, extraSnapshotData, tracker, hashinatorData, timestamp,
                 newPartitionCount, tableArray, m_snapshotRecord, partitionedSnapshotTasks,
-                replicatedSnapshotTasks, isTruncationSnapshot);
+                replicatedSnapshotTasks, isTruncationSnapshot, writtenTables, carriedOver,
+                generations, schemas, isActiveActiveDRed);
+    }
+
+    /**
+     * Pick the tables of an incremental snapshot whose file from the previous snapshot to the same
+     * path can be carried over. The previous file is hard linked next to the file of this snapshot
+     * so it outlives the deletion of the previous snapshot, a table that can't be linked is written.
+     */
+    private static Map<Table, IncrementalSnapshotTracker.TableFile> getTablesToCarryOver(
+            String file_path, String file_nonce, JSONObject jsData, SystemProcedureExecutionContext context,
+            Table[] tables, List<Integer> localPartitions, Map<String, Map<Integer, Long>> generations,
+            Map<String, byte[]> schemas)
+    {
+        final Map<Table, IncrementalSnapshotTracker.TableFile> carriedOver = new HashMap<>();
+        if (jsData == null || !jsData.optBoolean(SnapshotUtil.JSON_INCREMENTAL, false) || generations.isEmpty()) {
+            return carriedOver;
+        }
+
+        // Keep at least one table written so the snapshot goes through the usual completion steps
+        for (int ii = 1; ii < tables.length; ii++) {
+            final Table table = tables[ii];
+            final IncrementalSnapshotTracker.TableFile previous =
+                    IncrementalSnapshotTracker.getTableFile(file_path, table.getTypeName());
+            if (previous == null ||
+                    !previous.canCarryOver(generations.get(table.getTypeName()), schemas.get(table.getTypeName()),
+                            localPartitions, context.getNumberOfPartitions())) {
+                continue;
+            }
+
+            final File baseFile = getBaseFile(SnapshotUtil.constructFileForTable(
+                    table, file_path, file_nonce, SnapshotFormat.NATIVE, context.getHostId()));
+            try {
+                Files.createLink(baseFile.toPath(), previous.m_file.toPath());
+                carriedOver.put(table, new IncrementalSnapshotTracker.TableFile(baseFile,
+                        generations.get(table.getTypeName()), schemas.get(table.getTypeName()),
+                        localPartitions, context.getNumberOfPartitions()));
+            } catch (IOException | UnsupportedOperationException e) {
+                SNAP_LOG.warn("Unable to link " + baseFile + " to " + previous.m_file +
+                        ", table " + table.getTypeName() + " will be written: " + e.getMessage());
+                baseFile.delete();
+            }
+        }
+
+        if (!carriedOver.isEmpty()) {
+            SNAP_LOG.info("Incremental snapshot " + file_nonce + " carries over " + carriedOver.size() +
+                    " of " + tables.length + " tables unchanged since the previous snapshot to " + file_path);
+        }
+        return carriedOver;
+    }
+
+    private static File getBaseFile(File tableFile)
+    {
+        return new File(tableFile.getParentFile(), tableFile.getName() + SnapshotUtil.BASE_EXTENSION);
     }
 
     private Callable<Boolean> createDeferredSetup(final String file_path,
@@ -175,7 +262,12 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                                                   final SnapshotRegistry.Snapshot snapshotRecord,
                                                   final ArrayList<SnapshotTableTask> partitionedSnapshotTasks,
                                                   final ArrayList<SnapshotTableTask> replicatedSnapshotTasks,
-                                                  final boolean isTruncationSnapshot)
+                                                  final boolean isTruncationSnapshot,
+                                                  final List<Table> writtenTables,
+                                                  final Map<Table, IncrementalSnapshotTracker.TableFile> carriedOver,
+                                                  final Map<String, Map<Integer, Long>> generations,
+                                                  final Map<String, byte[]> schemas,
+                                                  final boolean isActiveActiveDRed)
     {
         return new Callable<Boolean>() {
             private final HashMap<Integer, SnapshotDataTarget> m_createdTargets = Maps.newHashMap();
@@ -184,7 +276,7 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
             public Boolean call() throws Exception
             {
                 // TRAIL [SnapSave:6]  - 3.3 [1 site/host] Create completion tasks
-                final AtomicInteger numTables = new AtomicInteger(tables.length);
+                final AtomicInteger numTables = new AtomicInteger(writtenTables.size());
 
                 NativeSnapshotWritePlan.createFileBasedCompletionTasks(file_path, pathType, file_nonce,
                         txnId, partitionTransactionIds, context, extraSnapshotData,
@@ -204,6 +296,36 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     task.setTarget(target);
                 }
 
+                for (Map.Entry<Table, IncrementalSnapshotTracker.TableFile> e : carriedOver.entrySet()) {
+                    final Table table = e.getKey();
+                    DefaultSnapshotDataTarget.writeBaseFileReference(
+                            SnapshotUtil.constructFileForTable(table, file_path, file_nonce,
+                                                               SnapshotFormat.NATIVE, context.getHostId()),
+                            e.getValue().m_file.getName(),
+                            context.getHostId(),
+                            context.getCluster().getTypeName(),
+                            context.getDatabase().getTypeName(),
+                            table.getTypeName(),
+                            context.getNumberOfPartitions(),
+                            table.getIsreplicated(),
+                            tracker.getPartitionsForHost(context.getHostId()),
+                            getSchemaTable(table, isActiveActiveDRed),
+                            txnId,
+                            timestamp);
+                }
+
+                if (!generations.isEmpty()) {
+                    // Remember the table files for the next incremental snapshot to the same path
+                    SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(new Runnable() {
+                        @Override
+                        public void run()
+                        {
+                            recordTableFiles(file_path, file_nonce, context, tracker, writtenTables,
+                                    carriedOver, generations, schemas);
+                        }
+                    });
+                }
+
                 if (isTruncationSnapshot) {
                     // Only sync the DR Log on Native Snapshots
                     SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(new Runnable() {
@@ -269,51 +391,81 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                 SnapshotFormat.NATIVE,
                 hostId);
 
+        sdt = new DefaultSnapshotDataTarget(saveFilePath,
+                hostId,
+                clusterName,
+                databaseName,
+                table.getTypeName(),
+                partitionCount,
+                table.getIsreplicated(),
+                tracker.getPartitionsForHost(hostId),
+                getSchemaTable(table, isActiveActiveDRed),
+                txnId,
+                timestamp);
+
+        m_targets.add(sdt);
+        final Runnable onClose = new TargetStatsClosure(sdt, table.getTypeName(), numTables, snapshotRecord);
+        sdt.setOnCloseHandler(onClose);
+
+        return sdt;
+    }
+
+    private static VoltTable getSchemaTable(Table table, boolean isActiveActiveDRed)
+    {
         if (isActiveActiveDRed && table.getIsdred()) {
-            sdt = new DefaultSnapshotDataTarget(saveFilePath,
-                    hostId,
-                    clusterName,
-                    databaseName,
-                    table.getTypeName(),
-                    partitionCount,
-                    table.getIsreplicated(),
-                    tracker.getPartitionsForHost(hostId),
-                    CatalogUtil.getVoltTable(table, CatalogUtil.DR_HIDDEN_COLUMN_INFO),
-                    txnId,
-                    timestamp);
+            return CatalogUtil.getVoltTable(table, CatalogUtil.DR_HIDDEN_COLUMN_INFO);
         }
         else if (CatalogUtil.needsViewHiddenColumn(table)) {
-            sdt = new DefaultSnapshotDataTarget(saveFilePath,
-                    hostId,
-                    clusterName,
-                    databaseName,
-                    table.getTypeName(),
-                    partitionCount,
-                    table.getIsreplicated(),
-                    tracker.getPartitionsForHost(hostId),
-                    CatalogUtil.getVoltTable(table, CatalogUtil.VIEW_HIDDEN_COLUMN_INFO),
-                    txnId,
-                    timestamp);
+            return CatalogUtil.getVoltTable(table, CatalogUtil.VIEW_HIDDEN_COLUMN_INFO);
         }
         else {
-            sdt = new DefaultSnapshotDataTarget(saveFilePath,
-                    hostId,
-                    clusterName,
-                    databaseName,
-                    table.getTypeName(),
-                    partitionCount,
-                    table.getIsreplicated(),
-                    tracker.getPartitionsForHost(hostId),
-                    CatalogUtil.getVoltTable(table),
-                    txnId,
-                    timestamp);
+            return CatalogUtil.getVoltTable(table);
         }
+    }
 
-        m_targets.add(sdt);
-        final Runnable onClose = new TargetStatsClosure(sdt, table.getTypeName(), numTables, snapshotRecord);
-        sdt.setOnCloseHandler(onClose);
+    /**
+     * Hand the table files of this snapshot to the {@link IncrementalSnapshotTracker} once every file
+     * has been written successfully. Runs after the data targets are closed.
+     */
+    private void recordTableFiles(String file_path, String file_nonce,
+                                  SystemProcedureExecutionContext context, SiteTracker tracker,
+                                  List<Table> writtenTables,
+                                  Map<Table, IncrementalSnapshotTracker.TableFile> carriedOver,
+                                  Map<String, Map<Integer, Long>> generations,
+                                  Map<String, byte[]> schemas)
+    {
+        for (SnapshotDataTarget target : m_targets) {
+            if (target.getLastWriteException() != null) {
+                return;
+            }
+        }
 
-        return sdt;
+        final List<Integer> localPartitions = tracker.getPartitionsForHost(context.getHostId());
+        final Map<String, IncrementalSnapshotTracker.TableFile> tableFiles = new HashMap<>();
+        try {
+            for (Table table : writtenTables) {
+                final Map<Integer, Long> tableGenerations = generations.get(table.getTypeName());
+                if (tableGenerations == null) {
+                    continue;
+                }
+                final File file = SnapshotUtil.constructFileForTable(table, file_path, file_nonce,
+                        SnapshotFormat.NATIVE, context.getHostId());
+                if (!IncrementalSnapshotTracker.isCompleted(file)) {
+                    return;
+                }
+                tableFiles.put(table.getTypeName(), new IncrementalSnapshotTracker.TableFile(file,
+                        tableGenerations, schemas.get(table.getTypeName()), localPartitions,
+                        context.getNumberOfPartitions()));
+            }
+        } catch (IOException e) {
+            SNAP_LOG.warn("Unable to record the table files of snapshot " + file_nonce +
+                    ", the next incremental snapshot to " + file_path + " will write every table", e);
+            return;
+        }
+        for (Map.Entry<Table, IncrementalSnapshotTracker.TableFile> e : carriedOver.entrySet()) {
+            tableFiles.put(e.getKey().getTypeName(), e.getValue());
+        }
+        IncrementalSnapshotTracker.snapshotCompleted(file_path, tableFiles);
     }
 
     static void createFileBasedCompletionTasks(
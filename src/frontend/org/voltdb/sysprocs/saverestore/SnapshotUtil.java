@@ -44,7 +44,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -93,6 +97,10 @@ public class SnapshotUtil {
 
     public final static String HASH_EXTENSION = ".hash";
     public final static String COMPLETION_EXTENSION = ".finished";
+    /**
+     * Link to the table file of an earlier snapshot that an incremental snapshot carried over
+     */
+    public final static String BASE_EXTENSION = ".base";
 
     public static final String JSON_PATH = "path";
     public static final String JSON_PATH_TYPE = "pathType";
@@ -109,6 +117,10 @@ public class SnapshotUtil {
     public static final String JSON_NEW_PARTITION_COUNT = "newPartitionCount";
     public static final String JSON_TABLES = "tables";
     public static final String JSON_SKIPTABLES = "skiptables";
+    /**
+     * Carry over the files of the tables not modified since the previous native snapshot to the same path
+     */
+    public static final String JSON_INCREMENTAL = "incremental";
     /**
      * milestone used to mark a shutdown save snapshot
      */
@@ -802,17 +814,126 @@ public class SnapshotUtil {
             VoltLogger logger) {
 
         NamedSnapshots namedSnapshots = new NamedSnapshots(namedSnapshotMap, stype);
-        retrieveSnapshotFilesInternal(directory, namedSnapshots, filter, validate, stype, logger, 0);
+        retrieveSnapshotFilesInternal(directory, namedSnapshots, filter, validate, stype, logger, 0, null, null);
+    }
+
+    /**
+     * Same as {@link #retrieveSnapshotFiles(File, Map, FileFilter, boolean, SnapshotPathType, VoltLogger)}
+     * with the table files scanned on up to the given number of threads. Validating a snapshot reads
+     * every table file completely, which is what the threads are for.
+     */
+    public static void retrieveSnapshotFiles(
+            File directory,
+            Map<String, Snapshot> namedSnapshotMap,
+            FileFilter filter,
+            boolean validate,
+            SnapshotPathType stype,
+            VoltLogger logger,
+            int threads) {
+        if (threads <= 1) {
+            retrieveSnapshotFiles(directory, namedSnapshotMap, filter, validate, stype, logger);
+            return;
+        }
+
+        NamedSnapshots namedSnapshots = new NamedSnapshots(namedSnapshotMap, stype);
+        ExecutorService es = CoreUtils.getListeningExecutorService("Snapshot file scanner", threads);
+        try {
+            List<Pair<File, Future<TableFileSummary>>> tableFiles = new ArrayList<>();
+            retrieveSnapshotFilesInternal(directory, namedSnapshots, filter, validate, stype, logger, 0,
+                    es, tableFiles);
+            // Add the table files in the order they were found, as the serial scan does
+            for (Pair<File, Future<TableFileSummary>> tableFile : tableFiles) {
+                File f = tableFile.getFirst();
+                try {
+                    addTableFile(namedSnapshots, f, tableFile.getSecond().get());
+                } catch (ExecutionException e) {
+                    System.err.println(e.getCause().getMessage());
+                    System.err.println("Error: Unable to process " + f.getPath());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    /**
+     * What a scan of a table file found out about it
+     */
+    private static class TableFileSummary {
+        final Set<Integer> m_partitionIds;
+        final long m_txnId;
+        final String m_tableName;
+        final boolean m_isReplicated;
+        final boolean m_completed;
+        final Set<Integer> m_corruptedPartitionIds;
+        final int m_totalPartitions;
+
+        TableFileSummary(TableSaveFile saveFile, Set<Integer> partitionIds) {
+            m_partitionIds = partitionIds;
+            m_txnId = saveFile.getTxnId();
+            m_tableName = saveFile.getTableName();
+            m_isReplicated = saveFile.isReplicated();
+            m_completed = saveFile.getCompleted();
+            m_corruptedPartitionIds = saveFile.getCorruptedPartitionIds();
+            m_totalPartitions = saveFile.getTotalPartitions();
+        }
+    }
+
+    private static TableFileSummary scanTableFile(File f, boolean validate) throws IOException {
+        HashSet<Integer> partitionIds = new HashSet<Integer>();
+        TableSaveFile saveFile = new TableSaveFile(f, 1, null, true);
+        try {
+            for (Integer partitionId : saveFile.getPartitionIds()) {
+                partitionIds.add(partitionId);
+            }
+            if (validate && saveFile.getCompleted()) {
+                while (saveFile.hasMoreChunks()) {
+                    BBContainer cont = saveFile.getNextChunk();
+                    if (cont != null) {
+                        cont.discard();
+                    }
+                }
+            }
+            partitionIds.removeAll(saveFile.getCorruptedPartitionIds());
+            return new TableFileSummary(saveFile, partitionIds);
+        } finally {
+            saveFile.close();
+        }
     }
 
+    private static void addTableFile(NamedSnapshots namedSnapshots, File f, TableFileSummary summary) {
+        String nonce = parseNonceFromSnapshotFilename(f.getName());
+        Snapshot named_s = namedSnapshots.get(nonce);
+        named_s.setTxnId(summary.m_txnId);
+        TableFiles namedTableFiles = named_s.m_tableFiles.get(summary.m_tableName);
+        if (namedTableFiles == null) {
+            namedTableFiles = new TableFiles(summary.m_isReplicated);
+            named_s.m_tableFiles.put(summary.m_tableName, namedTableFiles);
+        }
+        namedTableFiles.m_files.add(f);
+        namedTableFiles.m_completed.add(summary.m_completed);
+        namedTableFiles.m_validPartitionIds.add(summary.m_partitionIds);
+        namedTableFiles.m_corruptParititionIds.add(summary.m_corruptedPartitionIds);
+        namedTableFiles.m_totalPartitionCounts.add(summary.m_totalPartitions);
+    }
+
+    /**
+     * @param es If not null the table files are scanned on it and added to
+     * <code>pendingTableFiles</code> for the caller to add to the snapshots
+     */
     private static void retrieveSnapshotFilesInternal(
             File directory,
             NamedSnapshots namedSnapshots,
             FileFilter filter,
-            boolean validate,
+            final boolean validate,
             SnapshotPathType stype,
             VoltLogger logger,
-            int recursion) {
+            int recursion,
+            ExecutorService es,
+            List<Pair<File, Future<TableFileSummary>>> pendingTableFiles) {
 
         if (recursion == 32) {
             return;
@@ -837,7 +958,8 @@ public class SnapshotUtil {
                     System.err.println("Warning: Skipping directory " + f.getPath()
                             + " due to lack of read permission");
                 } else {
-                    retrieveSnapshotFilesInternal(f, namedSnapshots, filter, validate, stype, logger, recursion++);
+                    retrieveSnapshotFilesInternal(f, namedSnapshots, filter, validate, stype, logger, recursion++,
+                            es, pendingTableFiles);
                 }
                 continue;
             }
@@ -896,38 +1018,16 @@ public class SnapshotUtil {
                             continue;
                         }
                     }
-                } else {
-                    HashSet<Integer> partitionIds = new HashSet<Integer>();
-                    TableSaveFile saveFile = new TableSaveFile(fis, 1, null, true);
-                    try {
-                        for (Integer partitionId : saveFile.getPartitionIds()) {
-                            partitionIds.add(partitionId);
-                        }
-                        if (validate && saveFile.getCompleted()) {
-                            while (saveFile.hasMoreChunks()) {
-                                BBContainer cont = saveFile.getNextChunk();
-                                if (cont != null) {
-                                    cont.discard();
-                                }
-                            }
+                } else if (es != null) {
+                    final File tableFile = f;
+                    pendingTableFiles.add(Pair.of(f, es.submit(new Callable<TableFileSummary>() {
+                        @Override
+                        public TableFileSummary call() throws IOException {
+                            return scanTableFile(tableFile, validate);
                         }
-                        partitionIds.removeAll(saveFile.getCorruptedPartitionIds());
-                        String nonce = parseNonceFromSnapshotFilename(f.getName());
-                        Snapshot named_s = namedSnapshots.get(nonce);
-                        named_s.setTxnId(saveFile.getTxnId());
-                        TableFiles namedTableFiles = named_s.m_tableFiles.get(saveFile.getTableName());
-                        if (namedTableFiles == null) {
-                            namedTableFiles = new TableFiles(saveFile.isReplicated());
-                            named_s.m_tableFiles.put(saveFile.getTableName(), namedTableFiles);
-                        }
-                        namedTableFiles.m_files.add(f);
-                        namedTableFiles.m_completed.add(saveFile.getCompleted());
-                        namedTableFiles.m_validPartitionIds.add(partitionIds);
-                        namedTableFiles.m_corruptParititionIds.add(saveFile.getCorruptedPartitionIds());
-                        namedTableFiles.m_totalPartitionCounts.add(saveFile.getTotalPartitions());
-                    } finally {
-                        saveFile.close();
-                    }
+                    })));
+                } else {
+                    addTableFile(namedSnapshots, f, scanTableFile(f, validate));
                 }
             } catch (IOException e) {
                 System.err.println(e.getMessage());
@@ -1207,6 +1307,8 @@ public class SnapshotUtil {
         String extension = ".vpt";
         if (format == SnapshotFormat.CSV) {
             extension = ".csv";
+        } else if (format == SnapshotFormat.COLUMNAR) {
+            extension = ".vct";
         }
 
         StringBuilder filename_builder = new StringBuilder(fileNonce);
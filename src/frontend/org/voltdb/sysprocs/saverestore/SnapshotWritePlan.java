@@ -91,6 +91,9 @@ public abstract class SnapshotWritePlan
             m_tableName = tableName;
             m_numTables = numTables;
             m_snapshotRecord = snapshotRecord;
+            // Report the progress of the table until its target is closed
+            m_snapshotRecord.updateTable(m_tableName, registryTable ->
+                    m_snapshotRecord.new Table(registryTable, m_sdt::getBytesWritten));
         }
 
         @Override
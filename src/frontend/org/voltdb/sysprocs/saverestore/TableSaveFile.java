@@ -18,6 +18,7 @@
 package org.voltdb.sysprocs.saverestore;
 
 import java.io.EOFException;
+import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -26,6 +27,7 @@ import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -43,9 +45,10 @@ import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.DefaultSnapshotDataTarget;
 import org.voltdb.EELibraryLoader;
 import org.voltdb.messaging.FastDeserializer;
-import org.voltdb.utils.CompressionService;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.PosixAdvise;
 
 /**
@@ -97,14 +100,44 @@ public class TableSaveFile
         this(fis, readAheadChunks, relevantPartitionIds, false);
     }
 
-    // XXX maybe consider an IOException subclass at some point
+    /**
+     * Files written by an incremental snapshot for the tables it carried over can only be
+     * opened this way because their chunks are read from a base file in the same directory.
+     */
+    public TableSaveFile(
+            File file,
+            int readAheadChunks,
+            Integer[] relevantPartitionIds) throws IOException {
+        this(file, readAheadChunks, relevantPartitionIds, false);
+    }
+
     public TableSaveFile(
+            File file,
+            int readAheadChunks,
+            Integer[] relevantPartitionIds,
+            boolean continueOnCorruptedChunk) throws IOException {
+        this(new FileInputStream(file), file, readAheadChunks, relevantPartitionIds, continueOnCorruptedChunk);
+    }
+
+    public TableSaveFile(
+            FileInputStream fis,
+            int readAheadChunks,
+            Integer[] relevantPartitionIds,
+            boolean continueOnCorruptedChunk) throws IOException {
+        this(fis, null, readAheadChunks, relevantPartitionIds, continueOnCorruptedChunk);
+    }
+
+    // XXX maybe consider an IOException subclass at some point
+    private TableSaveFile(
             FileInputStream fis,
+            File file,
             int readAheadChunks,
             Integer[] relevantPartitionIds,
             boolean continueOnCorruptedChunk) throws IOException
             {
                 m_fd = fis.getFD();
+                m_ownedInput = file == null ? null : fis;
+                String baseFileName = null;
                 FileChannel dataIn = fis.getChannel();
         try {
             EELibraryLoader.loadExecutionEngineLibrary(true);
@@ -243,6 +276,7 @@ public class TableSaveFile
                 m_tableName = fd.readString();
                 m_isReplicated = fd.readBoolean();
                 m_isCompressed = false;
+                m_codec = CompressionCodec.SNAPPY;
                 m_checksumType = ChecksumType.CRC32;
                 if (!m_isReplicated) {
                     m_partitionIds = (int[])fd.readArray(int.class);
@@ -288,7 +322,9 @@ public class TableSaveFile
                 m_tableName = obj.getString("tableName");
                 m_isReplicated = obj.getBoolean("isReplicated");
                 m_isCompressed = obj.optBoolean("isCompressed", false);
+                m_codec = CompressionCodec.fromName(obj.optString(DefaultSnapshotDataTarget.COMPRESSION_KEY, null));
                 m_checksumType = ChecksumType.valueOf(obj.optString("checksumType", "CRC32"));
+                baseFileName = obj.optString(DefaultSnapshotDataTarget.BASE_FILE_KEY, null);
                 if (!m_isReplicated) {
                     JSONArray partitionIds = obj.getJSONArray("partitionIds");
                     m_partitionIds = new int[partitionIds.length()];
@@ -323,6 +359,35 @@ public class TableSaveFile
         } catch (JSONException e) {
             throw new IOException(e);
         }
+
+        if (baseFileName == null) {
+            m_base = null;
+        } else if (file == null) {
+            throw new IOException("Table file for " + m_tableName + " reads its data from " + baseFileName +
+                    " and has to be opened by path");
+        } else {
+            m_base = openBaseFile(new File(file.getParentFile(), baseFileName),
+                    readAheadChunks, relevantPartitionIds, continueOnCorruptedChunk);
+        }
+    }
+
+    private TableSaveFile openBaseFile(
+            File baseFile,
+            int readAheadChunks,
+            Integer[] relevantPartitionIds,
+            boolean continueOnCorruptedChunk) throws IOException {
+        final TableSaveFile base = new TableSaveFile(baseFile, readAheadChunks, relevantPartitionIds,
+                continueOnCorruptedChunk);
+        if (base.m_base != null ||
+                !base.m_tableName.equals(m_tableName) ||
+                base.m_isReplicated != m_isReplicated ||
+                base.m_totalPartitions != m_totalPartitions ||
+                !Arrays.equals(base.m_partitionIds, m_partitionIds) ||
+                !Arrays.equals(base.m_tableHeader.array(), m_tableHeader.array())) {
+            base.close();
+            throw new IOException("Base file " + baseFile + " doesn't hold the table file's data for " + m_tableName);
+        }
+        return base;
     }
 
     public int[] getVersionNumber()
@@ -373,7 +438,7 @@ public class TableSaveFile
     }
 
     public boolean getCompleted() {
-        return m_completed;
+        return m_completed && (m_base == null || m_base.getCompleted());
     }
 
     public long getTxnId() {
@@ -385,6 +450,13 @@ public class TableSaveFile
     }
 
     public void close() throws IOException {
+        if (m_base != null) {
+            m_base.close();
+        }
+        if (m_ownedInput != null) {
+            m_ownedInput.close();
+        }
+
         Thread chunkReader;
         synchronized (this) {
             m_hasMoreChunks.set(false);
@@ -417,6 +489,9 @@ public class TableSaveFile
     }
 
     public Set<Integer> getCorruptedPartitionIds() {
+        if (m_base != null && !m_base.getCorruptedPartitionIds().isEmpty()) {
+            return m_base.getCorruptedPartitionIds();
+        }
         return m_corruptedPartitions;
     }
 
@@ -427,6 +502,9 @@ public class TableSaveFile
     // Will get the next chunk of the table that is just over the chunk size
     public synchronized BBContainer getNextChunk() throws IOException
     {
+        if (m_base != null) {
+            return m_base.getNextChunk();
+        }
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
@@ -435,11 +513,7 @@ public class TableSaveFile
             return c;
         }
 
-        if (m_chunkReader == null) {
-            m_chunkReader = new ChunkReader();
-            m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
-            m_chunkReaderThread.start();
-        }
+        startChunkReader();
 
         Container c = null;
         while (c == null && (m_hasMoreChunks.get() || !m_availableChunks.isEmpty())) {
@@ -462,8 +536,59 @@ public class TableSaveFile
         return c;
     }
 
+    /**
+     * Start reading, checksumming and decompressing chunks in the background without waiting
+     * for the first call to {@link #getNextChunk()}. Up to the number of read ahead chunks
+     * given to the constructor are materialized. Several files can be prefetched at once so
+     * their chunks are read in parallel.
+     */
+    public synchronized void prefetch() {
+        if (m_base != null) {
+            m_base.prefetch();
+            return;
+        }
+        if (m_hasMoreChunks.get()) {
+            startChunkReader();
+        }
+    }
+
+    /**
+     * Like {@link #getNextChunk()} but doesn't wait for the chunk reader.
+     * @return the next chunk if one has already been read, null otherwise. Use
+     * {@link #hasMoreChunks()} to tell apart a file that is done from one that is still being read.
+     */
+    public synchronized BBContainer pollNextChunk() throws IOException
+    {
+        if (m_base != null) {
+            return m_base.pollNextChunk();
+        }
+        if (m_chunkReaderException != null) {
+            throw m_chunkReaderException;
+        }
+        if (m_hasMoreChunks.get()) {
+            startChunkReader();
+        }
+        Container c = m_availableChunks.poll();
+        if (c != null && m_hasMoreChunks.get()) {
+            m_chunkReads.release();
+        }
+        return c;
+    }
+
+    private void startChunkReader() {
+        assert(Thread.holdsLock(this));
+        if (m_chunkReader == null) {
+            m_chunkReader = new ChunkReader();
+            m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
+            m_chunkReaderThread.start();
+        }
+    }
+
     public synchronized boolean hasMoreChunks() throws IOException
     {
+        if (m_base != null) {
+            return m_base.hasMoreChunks();
+        }
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
@@ -473,6 +598,10 @@ public class TableSaveFile
     // thread safe file channels
     private final FileChannel m_saveFile;
     private final FileDescriptor m_fd;
+    // Set when the file was opened by path and is closed along with this
+    private final FileInputStream m_ownedInput;
+    // File the chunks are read from when this file was carried over by an incremental snapshot
+    private final TableSaveFile m_base;
     private final ByteBuffer m_tableHeader;
     private final boolean m_completed;
     private final int m_versionNum[] = new int[4];
@@ -483,6 +612,7 @@ public class TableSaveFile
     private final String m_tableName;
     private final boolean m_isReplicated;
     private final boolean m_isCompressed;
+    private final CompressionCodec m_codec;
     private final int m_partitionIds[];
     private final int m_totalPartitions;
     private final long m_txnId;
@@ -532,7 +662,7 @@ public class TableSaveFile
         private void readChunksV2() {
             //For reading the compressed input.
             final BBContainer fileInputBufferC =
-                    DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
+                    DBBPool.allocateDirect(CompressionCodec.maxCompressedLengthOfAny(DEFAULT_CHUNKSIZE));
             final ByteBuffer fileInputBuffer = fileInputBufferC.b();
             long sinceLastFAdvise = Long.MAX_VALUE;
             long positionAtLastFAdvise = 0;
@@ -658,7 +788,7 @@ public class TableSaveFile
                         sinceLastFAdvise += read;
                     }
                     fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                    nextChunkLength = m_codec.uncompressedLength(fileInputBuffer);
 
                     /*
                      * Validate the rest of the chunk. This can fail if the data is corrupted
@@ -704,7 +834,7 @@ public class TableSaveFile
                         m_tableHeader.position(0);
                         buf.put(m_tableHeader);
                         //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, buf);
+                        m_codec.uncompress(fileInputBuffer, buf);
                         completedRead = true;
                     } finally {
                         if (!completedRead) {
@@ -785,7 +915,7 @@ public class TableSaveFile
         private void readChunks() {
             //For reading the compressed input.
             BBContainer fileInputBufferC =
-                    DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
+                    DBBPool.allocateDirect(CompressionCodec.maxCompressedLengthOfAny(DEFAULT_CHUNKSIZE));
             ByteBuffer fileInputBuffer = fileInputBufferC.b();
             while (m_hasMoreChunks.get()) {
                 /*
@@ -880,7 +1010,7 @@ public class TableSaveFile
                             }
                         }
                         fileInputBuffer.flip();
-                        nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                        nextChunkLength = m_codec.uncompressedLength(fileInputBuffer);
                     }
 
                     /*
@@ -926,7 +1056,7 @@ public class TableSaveFile
                         c.b().position(c.b().position() + 4);//Leave space for row count to be moved into
                         checksumStartPosition = c.b().position();
                         if (isCompressed()) {
-                            CompressionService.decompressBuffer(fileInputBuffer, c.b());
+                            m_codec.uncompress(fileInputBuffer, c.b());
                             c.b().position(c.b().limit());
                         } else {
                             while (c.b().hasRemaining()) {
@@ -97,14 +97,7 @@ class CSVFileReader implements Runnable {
     @Override
     public void run() {
         List<String> lineList;
-        //if header option is true, check whether csv first line is valid
-        if (m_config.header) {
-            if (!checkHeader()) {
-                m_log.error("In the CSV file " + m_config.file + ", the header "+ m_listReader.getUntokenizedRow() +" does not match "
-                        + "an existing column in the table " + m_config.table + ".");
-                System.exit(-1);
-            }
-        }
+        validateHeader();
 
         while ((m_config.limitrows-- > 0)) {
             if (m_errHandler.hasReachedErrorLimit()) {
@@ -180,6 +173,92 @@ class CSVFileReader implements Runnable {
         }
     }
 
+    /**
+     * Parse and insert the records of one chunk of the file. Used by the threads of a
+     * {@link CSVParallelFileReader}, which share the column mapping of this reader.
+     *
+     * @param chunkReader reader over the records of the chunk
+     * @param lineOffset  number of lines in the file before the chunk
+     * @return false if loading should stop
+     */
+    boolean loadChunk(ICsvListReader chunkReader, long lineOffset) {
+        long parsingTime = 0;
+        try {
+            while (true) {
+                if (m_errHandler.hasReachedErrorLimit()) {
+                    return false;
+                }
+
+                List<String> lineList;
+                try {
+                    long st = System.nanoTime();
+                    lineList = chunkReader.read();
+                    parsingTime += System.nanoTime() - st;
+                    if (lineList == null) {
+                        return true;
+                    }
+                    m_totalRowCount.incrementAndGet();
+
+                    if (lineList.isEmpty()) {
+                        continue;
+                    }
+
+                    String[] lineValues = lineList.toArray(new String[0]);
+                    String lineCheckResult;
+                    String[] reorderValues = new String[m_columnCount];
+                    if ((lineCheckResult = checkparams_trimspace_reorder(lineValues, reorderValues)) != null) {
+                        final RowWithMetaData metaData
+                                = new RowWithMetaData(chunkReader.getUntokenizedRow(),
+                                        lineOffset + chunkReader.getLineNumber());
+                        if (m_errHandler.handleError(metaData, null, lineCheckResult)) {
+                            return false;
+                        }
+                        continue;
+                    }
+
+                    RowWithMetaData lineData
+                            = new RowWithMetaData(chunkReader.getUntokenizedRow(),
+                                    lineOffset + chunkReader.getLineNumber());
+                    m_loader.insertRow(lineData, reorderValues);
+                } catch (SuperCsvException e) {
+                    final RowWithMetaData metaData
+                            = new RowWithMetaData(chunkReader.getUntokenizedRow(),
+                                    lineOffset + chunkReader.getLineNumber());
+                    if (m_errHandler.handleError(metaData, null, e.getMessage())) {
+                        return false;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            m_log.error("Failed to read CSV line from file: " + ex);
+            return false;
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+            return false;
+        } finally {
+            synchronized (this) {
+                m_parsingTime += parsingTime;
+            }
+        }
+    }
+
+    CSVDataLoader getLoader() {
+        return m_loader;
+    }
+
+    /**
+     * If header option is true, check whether csv first line is valid
+     */
+    void validateHeader() {
+        if (m_config.header) {
+            if (!checkHeader()) {
+                m_log.error("In the CSV file " + m_config.file + ", the header "+ m_listReader.getUntokenizedRow() +" does not match "
+                        + "an existing column in the table " + m_config.table + ".");
+                System.exit(-1);
+            }
+        }
+    }
+
     private boolean checkHeader() {
         try {
             String[] firstline = m_listReader.getHeader(false);
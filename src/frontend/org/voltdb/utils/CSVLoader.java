@@ -118,6 +118,10 @@ public class CSVLoader implements BulkLoaderErrorHandler {
      * Stop when all connections are lost?
      */
     public static final boolean DEFAULT_STOP_ON_DISCONNECT = false;
+    /**
+     * Number of threads parsing the file
+     */
+    public static final int DEFAULT_READERS = 1;
     /**
      * Used for testing only.
      */
@@ -331,6 +335,9 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
         @Option(desc = "Stop when all connections are lost", hasArg = false)
         boolean stopondisconnect = DEFAULT_STOP_ON_DISCONNECT;
+
+        @Option(desc = "number of threads parsing the input file in parallel (default: 1)")
+        int readers = DEFAULT_READERS;
         /**
          * Validate command line options.
          */
@@ -357,6 +364,15 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             if (batch < 0) {
                 exitWithMessageAndUsage("batch size number must be >= 0");
             }
+            if (readers < 1) {
+                exitWithMessageAndUsage("readers must be >= 1");
+            }
+            if (readers > 1 && file.equals("")) {
+                exitWithMessageAndUsage("--readers requires an input file, standard input is read by a single reader");
+            }
+            if (readers > 1 && limitrows != Integer.MAX_VALUE) {
+                exitWithMessageAndUsage("--limitrows and --readers are mutually exclusive");
+            }
             if(!customNullString.isEmpty() && !blank.equals("error")){
                 blank = "empty";
             }
@@ -512,8 +528,19 @@ public class CSVLoader implements BulkLoaderErrorHandler {
             CSVFileReader.initializeReader(cfg, csvClient, listReader);
 
             CSVFileReader csvReader = new CSVFileReader(dataLoader, errHandler);
+            CSVParallelFileReader parallelReader = null;
 
-            Thread readerThread = new Thread(csvReader);
+            Thread readerThread;
+            if (config.readers > 1 && CSVParallelFileReader.canSplit(config.charset)) {
+                parallelReader = new CSVParallelFileReader(csvReader, config, csvPreference, config.readers);
+                readerThread = new Thread(parallelReader);
+            } else {
+                if (config.readers > 1) {
+                    System.out.println("The charset " + config.charset + " can't be split for parallel reading, " +
+                                       "using a single reader");
+                }
+                readerThread = new Thread(csvReader);
+            }
             readerThread.setName("CSVFileReader");
             readerThread.setDaemon(true);
 
@@ -527,7 +554,7 @@ public class CSVLoader implements BulkLoaderErrorHandler {
 
             errHandler.waitForErrorFlushComplete();
 
-            readerTime = (csvReader.m_parsingTime) / 1000000;
+            readerTime = (parallelReader == null ? csvReader.m_parsingTime : parallelReader.getParsingTime()) / 1000000;
             insertCount = dataLoader.getProcessedRows();
             ackCount = insertCount - dataLoader.getFailedRows();
             rowsQueued = CSVFileReader.m_totalRowCount.get();
@@ -0,0 +1,296 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.supercsv.io.CsvListReader;
+import org.supercsv.prefs.CsvPreference;
+import org.supercsv_voltpatches.tokenizer.Tokenizer;
+import org.voltcore.logging.VoltLogger;
+
+/**
+ * Reads a CSV file on several threads. The file is scanned once for record boundaries, honoring
+ * the quote and escape characters so a quoted value spanning lines isn't split, and cut into
+ * chunks of whole records. The chunks are parsed, checked and inserted by a pool of parser
+ * threads, the loader hashes every row to the batch of its partition.
+ *
+ * Only charsets that encode the separators, quotes and line feeds as single ASCII bytes can be
+ * scanned this way, see {@link #canSplit(String)}.
+ */
+class CSVParallelFileReader implements Runnable {
+    private static final VoltLogger m_log = new VoltLogger("CSVLOADER");
+
+    // Records are collected into chunks of at least this size
+    static int CHUNK_SIZE = Integer.getInteger("CSVLOADER_CHUNK_SIZE", 4 * 1024 * 1024);
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+    private static final byte LF = '\n';
+    private static final Chunk END_OF_FILE = new Chunk(new byte[0], 0, 0);
+
+    private final CSVFileReader m_reader;
+    private final CSVLoader.CSVConfig m_config;
+    private final CsvPreference m_preference;
+    private final Charset m_charset;
+    private final Thread[] m_parsers;
+    private final BlockingQueue<Chunk> m_chunks;
+    private volatile boolean m_stopped = false;
+
+    /**
+     * Records from a line of the file to the beginning of a later line
+     */
+    static class Chunk {
+        final byte[] m_data;
+        final int m_length;
+        // Number of lines in the file before the chunk
+        final long m_lineOffset;
+
+        Chunk(byte[] data, int length, long lineOffset) {
+            m_data = data;
+            m_length = length;
+            m_lineOffset = lineOffset;
+        }
+    }
+
+    /**
+     * Tracks whether the scanner is inside a quoted value, follows the rules of the Tokenizer
+     */
+    private enum ScanState {
+        NORMAL,
+        ESCAPE,      // after the escape character outside quotes
+        QUOTED,
+        QUOTE        // after a quote character inside quotes, either closing or doubled
+    }
+
+    /**
+     * @return true if the separators and line feeds of the charset are single ASCII bytes
+     */
+    static boolean canSplit(String charset) {
+        try {
+            Charset cs = Charset.forName(charset);
+            return cs.equals(StandardCharsets.UTF_8) ||
+                    (cs.newEncoder().maxBytesPerChar() == 1 && Arrays.equals("\n".getBytes(cs), new byte[] { LF }));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    CSVParallelFileReader(CSVFileReader reader, CSVLoader.CSVConfig config, CsvPreference preference, int threads) {
+        m_reader = reader;
+        m_config = config;
+        m_preference = preference;
+        m_charset = Charset.forName(config.charset);
+        m_parsers = new Thread[threads];
+        m_chunks = new ArrayBlockingQueue<Chunk>(threads * 2);
+    }
+
+    @Override
+    public void run() {
+        m_reader.validateHeader();
+
+        for (int i = 0; i < m_parsers.length; i++) {
+            m_parsers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    parse();
+                }
+            });
+            m_parsers[i].setName("CSVFileParser-" + i);
+            m_parsers[i].setDaemon(true);
+            m_parsers[i].start();
+        }
+
+        try {
+            long lines = scan();
+            CSVFileReader.m_totalLineCount.set(lines);
+        } catch (IOException ex) {
+            m_log.error("Failed to read CSV file: " + ex);
+            m_stopped = true;
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+            m_stopped = true;
+        }
+
+        try {
+            for (int i = 0; i < m_parsers.length; i++) {
+                m_chunks.put(END_OF_FILE);
+            }
+            for (Thread parser : m_parsers) {
+                parser.join();
+            }
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+        }
+
+        //Now wait for processors to see endOfData and count down. After that drain to finish all callbacks
+        try {
+            m_log.debug("Waiting for CSVDataLoader to finish.");
+            m_reader.getLoader().close();
+            m_log.debug("CSVDataLoader Done.");
+        } catch (Exception ex) {
+            m_log.warn("Stopped processing because of connection error. "
+                    + "A report will be generated with what we processed so far. Error: " + ex);
+        }
+    }
+
+    long getParsingTime() {
+        synchronized (m_reader) {
+            return m_reader.m_parsingTime;
+        }
+    }
+
+    private void parse() {
+        try {
+            while (true) {
+                Chunk chunk = m_chunks.take();
+                if (chunk == END_OF_FILE) {
+                    return;
+                }
+                if (m_stopped) {
+                    continue;
+                }
+                InputStreamReader in = new InputStreamReader(
+                        new ByteArrayInputStream(chunk.m_data, 0, chunk.m_length), m_charset);
+                Tokenizer tokenizer = new Tokenizer(in, m_preference, m_config.strictquotes, m_config.escape,
+                        m_config.columnsizelimit, 0, false);
+                CsvListReader chunkReader = new CsvListReader(tokenizer, m_preference);
+                if (!m_reader.loadChunk(chunkReader, chunk.m_lineOffset)) {
+                    m_stopped = true;
+                }
+            }
+        } catch (InterruptedException e) {
+            m_log.error("CSVLoader interrupted: " + e);
+            m_stopped = true;
+        }
+    }
+
+    private long scan() throws IOException, InterruptedException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(m_config.file), SCAN_BUFFER_SIZE)) {
+            return scan(in);
+        }
+    }
+
+    /**
+     * Hand a chunk of whole records to the parsers
+     */
+    void queueChunk(Chunk chunk) throws InterruptedException {
+        m_chunks.put(chunk);
+    }
+
+    /**
+     * Cut the input into chunks of whole records and queue them for the parsers. The header line
+     * and the lines to skip are left out.
+     *
+     * @return the number of lines in the input
+     */
+    long scan(InputStream in) throws IOException, InterruptedException {
+        final byte quote = (byte) m_config.quotechar;
+        final byte escape = (byte) m_config.escape;
+        long lines = 0;
+        // The records to leave out: the header and then the lines to skip
+        boolean inHeader = m_config.header;
+        long skip = m_config.skip;
+
+        byte[] chunk = new byte[CHUNK_SIZE + CHUNK_SIZE / 4];
+        int length = 0;
+        long chunkLineOffset = 0;
+        ScanState state = ScanState.NORMAL;
+        byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+
+        int read;
+        while ((read = in.read(buffer)) != -1 && !m_stopped) {
+            for (int i = 0; i < read; i++) {
+                final byte b = buffer[i];
+                if (length == chunk.length) {
+                    chunk = Arrays.copyOf(chunk, chunk.length * 2);
+                }
+                chunk[length++] = b;
+
+                if (state == ScanState.QUOTE) {
+                    // A doubled quote stays in the quoted value, anything else ends it
+                    state = b == quote ? ScanState.QUOTED : ScanState.NORMAL;
+                    if (state == ScanState.QUOTED) {
+                        continue;
+                    }
+                }
+                if (b == LF) {
+                    lines++;
+                }
+
+                switch (state) {
+                case ESCAPE:
+                    // \N is a null, not an escaped N, either way the escape is done
+                    state = ScanState.NORMAL;
+                    if (b != LF) {
+                        break;
+                    }
+                    //$FALL-THROUGH$
+                case NORMAL:
+                    if (b == escape) {
+                        state = ScanState.ESCAPE;
+                    } else if (b == quote) {
+                        state = ScanState.QUOTED;
+                    } else if (b == LF) {
+                        // End of a record
+                        if (inHeader) {
+                            inHeader = false;
+                            length = 0;
+                            chunkLineOffset = lines;
+                        } else if (skip > 0 && lines <= skip + (m_config.header ? 1 : 0)) {
+                            length = 0;
+                            chunkLineOffset = lines;
+                        } else if (length >= CHUNK_SIZE) {
+                            queueChunk(new Chunk(chunk, length, chunkLineOffset));
+                            chunk = new byte[CHUNK_SIZE + CHUNK_SIZE / 4];
+                            length = 0;
+                            chunkLineOffset = lines;
+                        }
+                    }
+                    break;
+                case QUOTED:
+                    if (b == quote) {
+                        state = ScanState.QUOTE;
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        if (length > 0 && !m_stopped && !inHeader) {
+            if (chunk[length - 1] != LF) {
+                // The last line isn't terminated but still counts
+                lines++;
+            }
+            if (!(skip > 0 && lines <= skip + (m_config.header ? 1 : 0))) {
+                queueChunk(new Chunk(chunk, length, chunkLineOffset));
+            }
+        }
+        return lines;
+    }
+}
@@ -18,13 +18,14 @@
 package org.voltdb.utils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.SyncFailedException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.voltdb.PrivateVoltTableFactory;
@@ -38,18 +39,28 @@ public class CSVTableSaveFile {
     private final AtomicInteger m_availableBytes = new AtomicInteger(0);
     private final int m_maxAvailableBytes = 16777216;
     private final LinkedBlockingQueue<byte[]> m_available = new LinkedBlockingQueue<byte[]>();
-    private final Thread m_converterThreads[] = new Thread[CoreUtils.availableProcessors()];
+    private final Thread m_converterThreads[];
     private final AtomicReference<IOException> m_exception = new AtomicReference<IOException>(
             null);
-    private final AtomicInteger m_activeConverters = new AtomicInteger(CoreUtils.availableProcessors());
+    private final AtomicInteger m_activeConverters;
+    private final AtomicLong m_rowCount = new AtomicLong();
     private final TableSaveFile m_saveFile;
     private final char m_delimiter;
 
     public CSVTableSaveFile(File saveFile, char delimiter, Integer partitions[])
             throws IOException {
+        this(saveFile, delimiter, partitions, CoreUtils.availableProcessors());
+    }
+
+    /**
+     * @param converterThreads Number of threads converting chunks of the file to CSV
+     */
+    public CSVTableSaveFile(File saveFile, char delimiter, Integer partitions[], int converterThreads)
+            throws IOException {
         m_delimiter = delimiter;
-        final FileInputStream fis = new FileInputStream(saveFile);
-        m_saveFile = new TableSaveFile(fis, 10, partitions);
+        m_converterThreads = new Thread[converterThreads];
+        m_activeConverters = new AtomicInteger(converterThreads);
+        m_saveFile = new TableSaveFile(saveFile, 10, partitions);
         for (int ii = 0; ii < m_converterThreads.length; ii++) {
             m_converterThreads[ii] = new Thread(new ConverterThread());
             m_converterThreads[ii].start();
@@ -86,6 +97,13 @@ public class CSVTableSaveFile {
         return bytes;
     }
 
+    /**
+     * @return the number of rows converted so far
+     */
+    public long getRowCount() {
+        return m_rowCount.get();
+    }
+
     public void close() throws IOException, InterruptedException {
         m_saveFile.close();
         for (final Thread t : m_converterThreads) {
@@ -113,6 +131,7 @@ public class CSVTableSaveFile {
                             .createVoltTableFromBuffer(c.b(), true);
                     Pair<Integer, byte[]> p = VoltTableUtil.toCSV( vt, m_delimiter, null, lastNumCharacters);
                     lastNumCharacters = p.getFirst();
+                    m_rowCount.addAndGet(vt.getRowCount());
                     byte csvBytes[] = p.getSecond();
                     // should not insert empty byte[] if not last ConverterThread
                     if (csvBytes.length > 0) {
@@ -205,25 +224,40 @@ public class CSVTableSaveFile {
             SyncFailedException {
         final FileOutputStream fos = new FileOutputStream(outfile, true);
         try {
-            final CSVTableSaveFile converter = new CSVTableSaveFile(infile,
-                    delimiter, partitions);
             try {
-                while (true) {
-                    final byte bytes[] = converter.read();
-                    if (bytes.length == 0) {
-                        break;
-                    }
-                    fos.write(bytes);
-                }
+                convertTableSaveFile(delimiter, partitions, fos, infile, CoreUtils.availableProcessors());
             } finally {
-                try {
-                    converter.close();
-                } finally {
-                    fos.getFD().sync();
-                }
+                fos.getFD().sync();
             }
         } finally {
             fos.close();
         }
     }
+
+    /**
+     * Convert a table file and write the CSV to a stream that other conversions may write to
+     * concurrently. The data is written in blocks of complete lines while holding the stream's lock.
+     *
+     * @return the number of rows converted
+     */
+    public static long convertTableSaveFile(char delimiter, Integer[] partitions, OutputStream out,
+            final File infile, int converterThreads) throws IOException, InterruptedException {
+        final CSVTableSaveFile converter = new CSVTableSaveFile(infile,
+                delimiter, partitions, converterThreads);
+        try {
+            while (true) {
+                final byte bytes[] = converter.read();
+                // null if the last converter finished between the check and the poll in read()
+                if (bytes == null || bytes.length == 0) {
+                    break;
+                }
+                synchronized (out) {
+                    out.write(bytes);
+                }
+            }
+        } finally {
+            converter.close();
+        }
+        return converter.getRowCount();
+    }
 }
@@ -1049,6 +1049,9 @@ public abstract class CatalogUtil {
         }
 
         //Command log info
+        // The enterprise edition logs commands by default. The community edition
+        // ships the group commit command log but leaves it off unless the
+        // deployment explicitly enables it with <commandlog enabled="true">.
         if (deployment.getCommandlog() == null) {
             boolean enabled = false;
             if (MiscUtils.isPro()) {
@@ -2098,10 +2101,6 @@ public abstract class CatalogUtil {
     }
 
     public static void setupCommandLog(PathsType.Commandlog paths, File voltDbRoot) {
-        if (!VoltDB.instance().getConfig().m_isEnterprise) {
-            // dumb defaults if you ask for logging in community version
-            return;
-        }
         File commandlogPath;
         commandlogPath = new File(VoltDB.instance().getCommandLogPath(paths));
         if (!commandlogPath.isAbsolute())
@@ -2121,12 +2120,6 @@ public abstract class CatalogUtil {
     }
 
     public static void setupCommandLogSnapshot(PathsType.Commandlogsnapshot paths, File voltDbRoot) {
-        if (!VoltDB.instance().getConfig().m_isEnterprise) {
-            // dumb defaults if you ask for logging in community version
-            new VoltFile(voltDbRoot, "command_log_snapshot");
-            return;
-        }
-
         File commandlogSnapshotPath;
         commandlogSnapshotPath = new File(VoltDB.instance().getCommandLogSnapshotPath(paths));
         if (!commandlogSnapshotPath.isAbsolute())
@@ -0,0 +1,397 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.xerial.snappy.Snappy;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Block compression codecs that data written to disk or sent over the wire can be compressed with.
+ * The id of the codec is what gets recorded in file and message headers, so ids must never be
+ * reused. Data written before codecs could be chosen is always {@link #SNAPPY}.
+ *
+ * All the {@link ByteBuffer} methods follow the conventions of {@link Snappy}: the input is read
+ * from position to limit without moving the position, the output is written starting at its
+ * position and its limit is set to the end of the written data.
+ *
+ * The codec of each subsystem is configured through the compression element of the system
+ * settings of the deployment file, see {@link #configure}.
+ */
+public enum CompressionCodec {
+    SNAPPY(0) {
+        @Override
+        public int maxCompressedLength(int uncompressedSize) {
+            return Snappy.maxCompressedLength(uncompressedSize);
+        }
+
+        @Override
+        public int compress(ByteBuffer uncompressed, ByteBuffer compressed) throws IOException {
+            if (uncompressed.isDirect() && compressed.isDirect()) {
+                return Snappy.compress(uncompressed, compressed);
+            }
+            return super.compress(uncompressed, compressed);
+        }
+
+        @Override
+        int compress(byte[] in, int inOffset, int length, byte[] out, int outOffset) throws IOException {
+            return Snappy.compress(in, inOffset, length, out, outOffset);
+        }
+
+        @Override
+        public int uncompressedLength(ByteBuffer compressed) throws IOException {
+            if (compressed.isDirect()) {
+                return Snappy.uncompressedLength(compressed);
+            }
+            if (compressed.hasArray()) {
+                return Snappy.uncompressedLength(compressed.array(), compressed.arrayOffset() + compressed.position(),
+                                                 compressed.remaining());
+            }
+            final byte[] in = new byte[compressed.remaining()];
+            compressed.duplicate().get(in);
+            return Snappy.uncompressedLength(in);
+        }
+
+        @Override
+        public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+            if (compressed.isDirect() && uncompressed.isDirect()) {
+                return Snappy.uncompress(compressed, uncompressed);
+            }
+            return super.uncompress(compressed, uncompressed);
+        }
+
+        @Override
+        int uncompress(byte[] in, int inOffset, int length, byte[] out, int outOffset) throws IOException {
+            return Snappy.uncompress(in, inOffset, length, out, outOffset);
+        }
+    },
+
+    /**
+     * LZ4 block format prefixed by the uncompressed length as a 4 byte big endian int, the block
+     * format doesn't record it. Faster than Snappy to compress and uncompress at a similar ratio.
+     * Heap and direct buffers are both handed to LZ4 as they are.
+     */
+    LZ4(1) {
+        @Override
+        public int maxCompressedLength(int uncompressedSize) {
+            return LZ4_LENGTH_BYTES + s_lz4Compressor.maxCompressedLength(uncompressedSize);
+        }
+
+        @Override
+        public int compress(ByteBuffer uncompressed, ByteBuffer compressed) throws IOException {
+            final int length = uncompressed.remaining();
+            final int outPosition = compressed.position();
+            if (compressed.capacity() - outPosition < LZ4_LENGTH_BYTES) {
+                throw new IOException("No room for the LZ4 block");
+            }
+            putLength(compressed, outPosition, length);
+            final int compressedLength;
+            try {
+                compressedLength = LZ4_LENGTH_BYTES + s_lz4Compressor.compress(uncompressed, uncompressed.position(),
+                        length, compressed, outPosition + LZ4_LENGTH_BYTES,
+                        compressed.capacity() - outPosition - LZ4_LENGTH_BYTES);
+            } catch (LZ4Exception e) {
+                throw new IOException(e);
+            }
+            compressed.limit(outPosition + compressedLength);
+            return compressedLength;
+        }
+
+        @Override
+        int compress(byte[] in, int inOffset, int length, byte[] out, int outOffset) throws IOException {
+            putLength(out, outOffset, length);
+            try {
+                return LZ4_LENGTH_BYTES + s_lz4Compressor.compress(in, inOffset, length, out,
+                        outOffset + LZ4_LENGTH_BYTES, out.length - outOffset - LZ4_LENGTH_BYTES);
+            } catch (LZ4Exception e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public int uncompressedLength(ByteBuffer compressed) throws IOException {
+            if (compressed.remaining() < LZ4_LENGTH_BYTES) {
+                throw new IOException("Truncated LZ4 block");
+            }
+            final int position = compressed.position();
+            final int length = ((compressed.get(position) & 0xff) << 24) |
+                               ((compressed.get(position + 1) & 0xff) << 16) |
+                               ((compressed.get(position + 2) & 0xff) << 8) |
+                               (compressed.get(position + 3) & 0xff);
+            if (length < 0) {
+                throw new IOException("Invalid LZ4 uncompressed length " + length);
+            }
+            return length;
+        }
+
+        @Override
+        public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+            final int uncompressedLength = uncompressedLength(compressed);
+            final int outPosition = uncompressed.position();
+            if (uncompressedLength > uncompressed.capacity() - outPosition) {
+                throw new IOException("Uncompressed length " + uncompressedLength + " doesn't fit in the buffer");
+            }
+            try {
+                checkUncompressedLength(uncompressedLength, s_lz4Decompressor.decompress(compressed,
+                        compressed.position() + LZ4_LENGTH_BYTES, compressed.remaining() - LZ4_LENGTH_BYTES,
+                        uncompressed, outPosition, uncompressedLength));
+            } catch (LZ4Exception e) {
+                throw new IOException(e);
+            }
+            uncompressed.limit(outPosition + uncompressedLength);
+            return uncompressedLength;
+        }
+
+        @Override
+        int uncompress(byte[] in, int inOffset, int length, byte[] out, int outOffset) throws IOException {
+            if (length < LZ4_LENGTH_BYTES) {
+                throw new IOException("Truncated LZ4 block");
+            }
+            final int uncompressedLength = ByteBuffer.wrap(in, inOffset, LZ4_LENGTH_BYTES).getInt();
+            if (uncompressedLength < 0 || uncompressedLength > out.length - outOffset) {
+                throw new IOException("Invalid LZ4 uncompressed length " + uncompressedLength);
+            }
+            try {
+                checkUncompressedLength(uncompressedLength, s_lz4Decompressor.decompress(in,
+                        inOffset + LZ4_LENGTH_BYTES, length - LZ4_LENGTH_BYTES, out, outOffset, uncompressedLength));
+            } catch (LZ4Exception e) {
+                throw new IOException(e);
+            }
+            return uncompressedLength;
+        }
+
+        // The block has to hold as much data as its header says, otherwise it is damaged
+        private void checkUncompressedLength(int expected, int uncompressed) throws IOException {
+            if (uncompressed != expected) {
+                throw new IOException("LZ4 block of " + expected + " bytes only had " + uncompressed +
+                                      " bytes of data");
+            }
+        }
+    };
+
+    private static final int LZ4_LENGTH_BYTES = 4;
+    private static final LZ4Compressor s_lz4Compressor = LZ4Factory.fastestInstance().fastCompressor();
+    // Blocks come from disk and the network, the safe decompressor never reads or writes past the
+    // bounds it is given when a block is damaged
+    private static final LZ4SafeDecompressor s_lz4Decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private static volatile CompressionCodec s_snapshotCodec = SNAPPY;
+    private static volatile CompressionCodec s_pbdCodec = SNAPPY;
+    private static volatile CompressionCodec s_rejoinCodec = SNAPPY;
+
+    private final int m_id;
+
+    private CompressionCodec(int id) {
+        m_id = id;
+    }
+
+    /**
+     * @return the id recorded in headers to tell which codec the data was compressed with
+     */
+    public int getId() {
+        return m_id;
+    }
+
+    /**
+     * @return the codec with the given id
+     * @throws IOException if there is no such codec, the data was written by a newer version
+     */
+    public static CompressionCodec fromId(int id) throws IOException {
+        for (CompressionCodec codec : values()) {
+            if (codec.m_id == id) {
+                return codec;
+            }
+        }
+        throw new IOException("Unknown compression codec id " + id);
+    }
+
+    /**
+     * @return the codec with the given case insensitive name, or SNAPPY if the name is null
+     * @throws IOException if there is no such codec
+     */
+    public static CompressionCodec fromName(String name) throws IOException {
+        if (name == null) {
+            return SNAPPY;
+        }
+        try {
+            return valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown compression codec " + name);
+        }
+    }
+
+    /**
+     * Set the codecs that are used to write snapshot files, persistent binary deque segments and
+     * rejoin streams. Null leaves the codec of a subsystem unchanged.
+     */
+    public static void configure(CompressionCodec snapshot, CompressionCodec pbd, CompressionCodec rejoin) {
+        if (snapshot != null) {
+            s_snapshotCodec = snapshot;
+        }
+        if (pbd != null) {
+            s_pbdCodec = pbd;
+        }
+        if (rejoin != null) {
+            s_rejoinCodec = rejoin;
+        }
+    }
+
+    public static CompressionCodec forSnapshots() {
+        return s_snapshotCodec;
+    }
+
+    public static CompressionCodec forPBD() {
+        return s_pbdCodec;
+    }
+
+    public static CompressionCodec forRejoin() {
+        return s_rejoinCodec;
+    }
+
+    public abstract int maxCompressedLength(int uncompressedSize);
+
+    /**
+     * @return the largest compressed length of any codec, for buffers sized before the codec is known
+     */
+    public static int maxCompressedLengthOfAny(int uncompressedSize) {
+        int max = 0;
+        for (CompressionCodec codec : values()) {
+            max = Math.max(max, codec.maxCompressedLength(uncompressedSize));
+        }
+        return max;
+    }
+
+    /**
+     * Compress the remaining bytes of uncompressed into compressed. Codecs that can't work on a mix
+     * of heap and direct buffers copy the direct one to the heap.
+     * @return the compressed length
+     */
+    public int compress(ByteBuffer uncompressed, ByteBuffer compressed) throws IOException {
+        final int length = uncompressed.remaining();
+        final byte[] in;
+        final int inOffset;
+        if (uncompressed.hasArray()) {
+            in = uncompressed.array();
+            inOffset = uncompressed.arrayOffset() + uncompressed.position();
+        } else {
+            in = new byte[length];
+            inOffset = 0;
+            uncompressed.duplicate().get(in, 0, length);
+        }
+
+        final int compressedLength;
+        if (compressed.hasArray()) {
+            compressedLength = compress(in, inOffset, length, compressed.array(),
+                                        compressed.arrayOffset() + compressed.position());
+        } else {
+            final byte[] out = new byte[maxCompressedLength(length)];
+            compressedLength = compress(in, inOffset, length, out, 0);
+            compressed.duplicate().put(out, 0, compressedLength);
+        }
+        compressed.limit(compressed.position() + compressedLength);
+        return compressedLength;
+    }
+
+    /**
+     * Compress length bytes of in starting at inOffset into out starting at outOffset, out must
+     * have room for {@link #maxCompressedLength(int)} bytes
+     * @return the compressed length
+     */
+    abstract int compress(byte[] in, int inOffset, int length, byte[] out, int outOffset) throws IOException;
+
+    public byte[] compress(byte[] bytes, int offset, int length) throws IOException {
+        final byte[] out = new byte[maxCompressedLength(length)];
+        return Arrays.copyOf(out, compress(bytes, offset, length, out, 0));
+    }
+
+    /**
+     * @return the uncompressed length of the compressed data between position and limit
+     */
+    public abstract int uncompressedLength(ByteBuffer compressed) throws IOException;
+
+    /**
+     * Uncompress the remaining bytes of compressed into uncompressed. Codecs that can't work on a
+     * mix of heap and direct buffers copy the direct one to the heap.
+     * @return the uncompressed length
+     */
+    public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+        final int length = compressed.remaining();
+        final byte[] in;
+        final int inOffset;
+        if (compressed.hasArray()) {
+            in = compressed.array();
+            inOffset = compressed.arrayOffset() + compressed.position();
+        } else {
+            in = new byte[length];
+            inOffset = 0;
+            compressed.duplicate().get(in, 0, length);
+        }
+
+        final int uncompressedLength = uncompressedLength(compressed);
+        if (uncompressedLength > uncompressed.capacity() - uncompressed.position()) {
+            throw new IOException("Uncompressed length " + uncompressedLength + " doesn't fit in the buffer");
+        }
+        if (uncompressed.hasArray()) {
+            uncompress(in, inOffset, length, uncompressed.array(),
+                       uncompressed.arrayOffset() + uncompressed.position());
+        } else {
+            final byte[] out = new byte[uncompressedLength];
+            uncompress(in, inOffset, length, out, 0);
+            final ByteBuffer dup = uncompressed.duplicate();
+            dup.limit(dup.capacity());
+            dup.put(out, 0, uncompressedLength);
+        }
+        uncompressed.limit(uncompressed.position() + uncompressedLength);
+        return uncompressedLength;
+    }
+
+    /**
+     * Uncompress length bytes of in starting at inOffset into out starting at outOffset
+     * @return the uncompressed length
+     */
+    abstract int uncompress(byte[] in, int inOffset, int length, byte[] out, int outOffset) throws IOException;
+
+    public byte[] uncompress(byte[] bytes) throws IOException {
+        final int uncompressedLength = uncompressedLength(ByteBuffer.wrap(bytes));
+        final byte[] result = new byte[uncompressedLength];
+        uncompress(bytes, 0, bytes.length, result, 0);
+        return result;
+    }
+
+    private static void putLength(byte[] out, int offset, int length) {
+        out[offset] = (byte) (length >>> 24);
+        out[offset + 1] = (byte) (length >>> 16);
+        out[offset + 2] = (byte) (length >>> 8);
+        out[offset + 3] = (byte) length;
+    }
+
+    // Byte by byte, whatever the byte order of the buffer
+    private static void putLength(ByteBuffer out, int offset, int length) {
+        out.put(offset, (byte) (length >>> 24));
+        out.put(offset + 1, (byte) (length >>> 16));
+        out.put(offset + 2, (byte) (length >>> 8));
+        out.put(offset + 3, (byte) length);
+    }
+}
@@ -22,13 +22,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
-import org.voltcore.utils.DeferredSerialization;
 import org.voltdb.utils.BinaryDeque.OutputContainerFactory;
 
 import com.google_voltpatches.common.base.Preconditions;
@@ -36,8 +36,17 @@ import com.google_voltpatches.common.base.Preconditions;
 /**
  * Objects placed in the deque are stored in file segments that are up to 64 megabytes.
  * Segments only support appending objects. A segment will throw an IOException if an attempt
- * to insert an object that exceeds the remaining space is made. A segment can be used
- * for reading and writing, but not both at the same time.
+ * to insert an object that exceeds the remaining space is made. A single appender may write to
+ * a segment while readers poll from it, readers use positional reads and only see entries once
+ * they have been published.
+ *
+ * A segment that was opened read only can't be appended to, so when mmap reads are enabled each reader
+ * maps the file privately (copy on write, so what one consumer does to its entries is invisible to the
+ * file and to other cursors). Uncompressed entries are handed out as slices of the mapping and compressed
+ * entries are decompressed straight out of it. A reader's mapping is released once the reader is closed
+ * and every entry handed out from it has been discarded. Idle readers also give up their mappings when the
+ * segment is truncated or reopened for write, and map the file again on their next poll. A segment that
+ * can't be mapped is read with positional reads.
  */
 public class PBDRegularSegment extends PBDSegment {
     private static final VoltLogger LOG = new VoltLogger("HOST");
@@ -48,14 +57,28 @@ public class PBDRegularSegment extends PBDSegment {
     //ID of this segment
     private final Long m_index;
 
-    private int m_numOfEntries = -1;
-    private int m_size = -1;
+    // Entries and bytes visible to readers, published by the deque after an append completes
+    private volatile int m_numOfEntries = -1;
+    private volatile int m_size = -1;
+    // Entries and bytes written by the appender that are not yet visible to readers
+    private int m_unpublishedEntries = 0;
+    private int m_unpublishedSize = 0;
 
     private DBBPool.BBContainer m_tmpHeaderBuf = null;
 
+    private final boolean m_mmapReads;
+    private boolean m_openForWrite = false;
+    // Number of reader mappings of this file that are still live, guarded by the segment
+    private int m_liveMappings = 0;
+
     public PBDRegularSegment(Long index, File file) {
+        this(index, file, false);
+    }
+
+    public PBDRegularSegment(Long index, File file, boolean mmapReads) {
         super(file);
         m_index = index;
+        m_mmapReads = mmapReads;
         reset();
     }
 
@@ -84,6 +107,11 @@ public class PBDRegularSegment extends PBDSegment {
     @Override
     public int getNumEntries() throws IOException
     {
+        if (!m_closed && m_numOfEntries >= 0) {
+            // The header of an open segment is only changed through this instance,
+            // don't race the appender for the header buffer
+            return m_numOfEntries;
+        }
         boolean wasClosed = false;
         if (m_closed) {
             wasClosed = true;
@@ -144,6 +172,9 @@ public class PBDRegularSegment extends PBDSegment {
         if (!m_closed) {
             throw new IOException("Segment is already opened");
         }
+        if (forWrite) {
+            releaseIdleMappings("written");
+        }
 
         if (!m_file.exists()) {
             if (!forWrite) {
@@ -161,6 +192,7 @@ public class PBDRegularSegment extends PBDSegment {
         }
         m_fc.position(SEGMENT_HEADER_BYTES);
 
+        m_openForWrite = forWrite;
         m_closed = false;
     }
 
@@ -169,23 +201,31 @@ public class PBDRegularSegment extends PBDSegment {
     protected void initNumEntries(int count, int size) throws IOException {
         m_numOfEntries = count;
         m_size = size;
-
-        m_tmpHeaderBuf.b().clear();
-        m_tmpHeaderBuf.b().putInt(m_numOfEntries);
-        m_tmpHeaderBuf.b().putInt(m_size);
-        m_tmpHeaderBuf.b().flip();
-        PBDUtils.writeBuffer(m_fc, m_tmpHeaderBuf.bDR(), COUNT_OFFSET);
-        m_syncedSinceLastEdit = false;
+        m_unpublishedEntries = 0;
+        m_unpublishedSize = 0;
+        writeHeader(count, size);
     }
 
-    private void incrementNumEntries(int size) throws IOException
-    {
-        m_numOfEntries++;
-        m_size += size;
+    /**
+     * Drop the mappings readers keep between polls, they map the file again on their next poll.
+     * Changing the file under a mapping that is in use could fault a read in progress or an entry
+     * that is still out, so that is refused.
+     */
+    private void releaseIdleMappings(String change) throws IOException {
+        for (SegmentReader reader : m_readCursors.values()) {
+            reader.dropMapping();
+        }
+        synchronized (this) {
+            if (m_liveMappings > 0) {
+                throw new IOException("Segment " + m_file + " can't be " + change + " while mapped entries are outstanding");
+            }
+        }
+    }
 
+    private void writeHeader(int count, int size) throws IOException {
         m_tmpHeaderBuf.b().clear();
-        m_tmpHeaderBuf.b().putInt(m_numOfEntries);
-        m_tmpHeaderBuf.b().putInt(m_size);
+        m_tmpHeaderBuf.b().putInt(count);
+        m_tmpHeaderBuf.b().putInt(size);
         m_tmpHeaderBuf.b().flip();
         PBDUtils.writeBuffer(m_fc, m_tmpHeaderBuf.bDR(), COUNT_OFFSET);
         m_syncedSinceLastEdit = false;
@@ -211,9 +251,12 @@ public class PBDRegularSegment extends PBDSegment {
 
     @Override
     public void closeAndTruncate() throws IOException {
+        releaseIdleMappings("truncated");
         try
         {
-            if (m_ras == null) {
+            if (m_ras == null || !m_openForWrite) {
+                // Readers part way through the segment have it open read only
+                closeReadersAndFile();
                 m_ras = new RandomAccessFile( m_file, "rw");
             }
             m_ras.setLength(0);
@@ -236,6 +279,9 @@ public class PBDRegularSegment extends PBDSegment {
     }
 
     private void closeReadersAndFile() throws IOException {
+        for (SegmentReader reader : m_readCursors.values()) {
+            reader.dropMapping();
+        }
         m_readCursors.clear();
         try {
             if (m_ras != null) {
@@ -274,77 +320,28 @@ public class PBDRegularSegment extends PBDSegment {
     }
 
     @Override
-    public boolean offer(DBBPool.BBContainer cont, boolean compress) throws IOException
+    public boolean append(PreparedEntry entry) throws IOException
     {
         if (m_closed) throw new IOException("Segment closed");
-        final ByteBuffer buf = cont.b();
-        final int remaining = buf.remaining();
-        if (remaining < 32 || !buf.isDirect()) compress = false;
-        final int maxCompressedSize = (compress ? CompressionService.maxCompressedLength(remaining) : remaining) + OBJECT_HEADER_BYTES;
-        if (remaining() < maxCompressedSize) return false;
+        if (remaining() < entry.m_reservedBytes) return false;
 
         m_syncedSinceLastEdit = false;
-        DBBPool.BBContainer destBuf = cont;
-
-        try {
-            m_tmpHeaderBuf.b().clear();
-
-            if (compress) {
-                destBuf = DBBPool.allocateDirectAndPool(maxCompressedSize);
-                final int compressedSize = CompressionService.compressBuffer(buf, destBuf.b());
-                destBuf.b().limit(compressedSize);
-
-                m_tmpHeaderBuf.b().putInt(compressedSize);
-                m_tmpHeaderBuf.b().putInt(FLAG_COMPRESSED);
-            } else {
-                destBuf = cont;
-                m_tmpHeaderBuf.b().putInt(remaining);
-                m_tmpHeaderBuf.b().putInt(NO_FLAGS);
-            }
-
-            m_tmpHeaderBuf.b().flip();
-            while (m_tmpHeaderBuf.b().hasRemaining()) {
-                m_fc.write(m_tmpHeaderBuf.b());
-            }
-
-            while (destBuf.b().hasRemaining()) {
-                m_fc.write(destBuf.b());
-            }
-
-            incrementNumEntries(remaining);
-        } finally {
-            destBuf.discard();
-            if (compress) {
-                cont.discard();
-            }
-        }
+        entry.write(m_fc);
 
+        // The entry is complete on disk before the header accounts for it
+        m_unpublishedEntries++;
+        m_unpublishedSize += entry.m_uncompressedSize;
+        writeHeader(m_numOfEntries + m_unpublishedEntries, m_size + m_unpublishedSize);
         return true;
     }
 
     @Override
-    public int offer(DeferredSerialization ds) throws IOException
+    public void publishAppended()
     {
-        if (m_closed) throw new IOException("closed");
-        final int fullSize = ds.getSerializedSize() + OBJECT_HEADER_BYTES;
-        if (remaining() < fullSize) return -1;
-
-        m_syncedSinceLastEdit = false;
-        DBBPool.BBContainer destBuf = DBBPool.allocateDirectAndPool(fullSize);
-
-        try {
-            final int written = PBDUtils.writeDeferredSerialization(destBuf.b(), ds);
-            destBuf.b().flip();
-
-            while (destBuf.b().hasRemaining()) {
-                m_fc.write(destBuf.b());
-            }
-
-            incrementNumEntries(written);
-            return written;
-        } finally {
-            destBuf.discard();
-        }
+        m_size += m_unpublishedSize;
+        m_numOfEntries += m_unpublishedEntries;
+        m_unpublishedEntries = 0;
+        m_unpublishedSize = 0;
     }
 
     @Override
@@ -374,10 +371,18 @@ public class PBDRegularSegment extends PBDSegment {
         private final String m_cursorId;
         private long m_readOffset = SEGMENT_HEADER_BYTES;
         //Index of the next object to read, not an offset into the file
-        private int m_objectReadIndex = 0;
+        private volatile int m_objectReadIndex = 0;
         private int m_bytesRead = 0;
         private int m_discardCount = 0;
         private boolean m_closed = false;
+        // Readers use positional reads and their own header buffer so they don't disturb the appender
+        private final ByteBuffer m_entryHeader = ByteBuffer.allocate(OBJECT_HEADER_BYTES);
+        // Guarded by the reader: its mapping, and one reference for the open reader plus one per entry out
+        private DBBPool.MBBContainer m_mapping = null;
+        private int m_mappingRefs = 0;
+        private boolean m_holdsMapping = false;
+        // Set once mapping the file failed, the reader then sticks to positional reads
+        private boolean m_mappingFailed = false;
 
         public SegmentReader(String cursorId) {
             assert(cursorId != null);
@@ -409,83 +414,194 @@ public class PBDRegularSegment extends PBDSegment {
                 return null;
             }
 
-            final long writePos = m_fc.position();
-            m_fc.position(m_readOffset);
+            final ByteBuffer mapping = acquireMapping();
+            if (mapping != null) {
+                return pollMapped(factory, mapping);
+            }
+
+            long readOffset = m_readOffset;
+
+            //Get the length and size prefix and then read the object
+            m_entryHeader.clear();
+            PBDUtils.readBufferFully(m_fc, m_entryHeader, readOffset);
+            readOffset += OBJECT_HEADER_BYTES;
+            final int length = m_entryHeader.getInt();
+            final int flags = m_entryHeader.getInt();
+            final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
+            final int uncompressedLen;
+
+            if (length < 1) {
+                throw new IOException("Read an invalid length");
+            }
+
+            final DBBPool.BBContainer retcont;
+            if (compressed) {
+                final DBBPool.BBContainer compressedBuf = DBBPool.allocateDirectAndPool(length);
+                try {
+                    compressedBuf.b().limit(length);
+                    PBDUtils.readBufferFully(m_fc, compressedBuf.b(), readOffset);
+
+                    final CompressionCodec codec = codecOf(flags);
+                    uncompressedLen = codec.uncompressedLength(compressedBuf.bDR());
+                    retcont = factory.getContainer(uncompressedLen);
+                    retcont.b().limit(uncompressedLen);
+                    codec.uncompress(compressedBuf.bDR(), retcont.b());
+                } finally {
+                    compressedBuf.discard();
+                }
+            } else {
+                uncompressedLen = length;
+                retcont = factory.getContainer(length);
+                retcont.b().limit(length);
+                try {
+                    PBDUtils.readBufferFully(m_fc, retcont.b(), readOffset);
+                } catch (IOException | RuntimeException e) {
+                    retcont.discard();
+                    throw e;
+                }
+            }
+            readOffset += length;
+
+            m_readOffset = readOffset;
+            m_bytesRead += uncompressedLen;
+            m_objectReadIndex++;
+
+            return wrapPolled(retcont);
+        }
+
+        /**
+         * @return the mapping of this reader with a reference taken for one entry, or null if this
+         * segment is not read through a mapping
+         */
+        private ByteBuffer acquireMapping() {
+            if (!m_mmapReads || m_openForWrite) {
+                return null;
+            }
+            synchronized (this) {
+                if (m_mappingFailed) {
+                    return null;
+                }
+                if (m_mapping == null) {
+                    try (RandomAccessFile raf = new RandomAccessFile(m_file, "rw")) {
+                        if (raf.length() > Integer.MAX_VALUE) {
+                            return null;
+                        }
+                        // A private mapping needs a writable channel even though the file is never written
+                        m_mapping = DBBPool.wrapMBB(raf.getChannel().map(MapMode.PRIVATE, 0, raf.length()));
+                    } catch (IOException e) {
+                        LOG.warn("Unable to map PBD segment " + m_file + ", reading it without a mapping", e);
+                        m_mappingFailed = true;
+                        return null;
+                    }
+                    synchronized (PBDRegularSegment.this) {
+                        m_liveMappings++;
+                    }
+                }
+                if (!m_holdsMapping) {
+                    m_holdsMapping = true;
+                    m_mappingRefs++;
+                }
+                m_mappingRefs++;
+                return m_mapping.b();
+            }
+        }
+
+        private synchronized void releaseMapping() {
+            assert(m_mappingRefs > 0);
+            if (--m_mappingRefs == 0) {
+                m_mapping.discard();
+                m_mapping = null;
+                synchronized (PBDRegularSegment.this) {
+                    m_liveMappings--;
+                }
+            }
+        }
+
+        /**
+         * Give up the reader's own reference; the mapping goes away once all of its entries are discarded
+         */
+        private synchronized void dropMapping() {
+            if (m_holdsMapping) {
+                m_holdsMapping = false;
+                releaseMapping();
+            }
+        }
 
+        private BBContainer pollMapped(OutputContainerFactory factory, ByteBuffer mapping) throws IOException {
+            boolean handedOut = false;
             try {
-                //Get the length and size prefix and then read the object
-                m_tmpHeaderBuf.b().clear();
-                while (m_tmpHeaderBuf.b().hasRemaining()) {
-                    int read = m_fc.read(m_tmpHeaderBuf.b());
-                    if (read == -1) {
-                        throw new EOFException();
-                    }
+                long readOffset = m_readOffset;
+                if (readOffset + OBJECT_HEADER_BYTES > mapping.capacity()) {
+                    throw new EOFException();
                 }
-                m_tmpHeaderBuf.b().flip();
-                final int length = m_tmpHeaderBuf.b().getInt();
-                final int flags = m_tmpHeaderBuf.b().getInt();
+                final int length = mapping.getInt((int) readOffset);
+                final int flags = mapping.getInt((int) readOffset + 4);
                 final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
-                final int uncompressedLen;
+                readOffset += OBJECT_HEADER_BYTES;
 
                 if (length < 1) {
                     throw new IOException("Read an invalid length");
                 }
+                if (readOffset + length > mapping.capacity()) {
+                    throw new EOFException();
+                }
 
+                final ByteBuffer entry = mapping.duplicate();
+                entry.position((int) readOffset);
+                entry.limit((int) readOffset + length);
+
+                final int uncompressedLen;
                 final DBBPool.BBContainer retcont;
                 if (compressed) {
-                    final DBBPool.BBContainer compressedBuf = DBBPool.allocateDirectAndPool(length);
-                    try {
-                        while (compressedBuf.b().hasRemaining()) {
-                            int read = m_fc.read(compressedBuf.b());
-                            if (read == -1) {
-                                throw new EOFException();
-                            }
-                        }
-                        compressedBuf.b().flip();
-
-                        uncompressedLen = CompressionService.uncompressedLength(compressedBuf.bDR());
-                        retcont = factory.getContainer(uncompressedLen);
-                        retcont.b().limit(uncompressedLen);
-                        CompressionService.decompressBuffer(compressedBuf.bDR(), retcont.b());
-                    } finally {
-                        compressedBuf.discard();
-                    }
+                    final ByteBuffer compressedBuf = entry.slice();
+                    final CompressionCodec codec = codecOf(flags);
+                    uncompressedLen = codec.uncompressedLength(compressedBuf);
+                    retcont = factory.getContainer(uncompressedLen);
+                    retcont.b().limit(uncompressedLen);
+                    codec.uncompress(compressedBuf, retcont.b());
                 } else {
+                    // Zero copy, the entry keeps the mapping alive until it is discarded
                     uncompressedLen = length;
-                    retcont = factory.getContainer(length);
-                    retcont.b().limit(length);
-                    while (retcont.b().hasRemaining()) {
-                        int read = m_fc.read(retcont.b());
-                        if (read == -1) {
-                            throw new EOFException();
+                    retcont = new DBBPool.BBContainer(entry.slice()) {
+                        @Override
+                        public void discard() {
+                            checkDoubleFree();
+                            releaseMapping();
                         }
-                    }
-                    retcont.b().flip();
+                    };
+                    handedOut = true;
                 }
+                readOffset += length;
 
+                m_readOffset = readOffset;
                 m_bytesRead += uncompressedLen;
                 m_objectReadIndex++;
 
-                return new DBBPool.BBContainer(retcont.b()) {
-                    private boolean m_discarded = false;
+                return wrapPolled(retcont);
+            } finally {
+                if (!handedOut) {
+                    releaseMapping();
+                }
+            }
+        }
 
-                    @Override
-                    public void discard() {
-                        checkDoubleFree();
-                        if (m_discarded) {
-                            LOG.error("PBD Container discarded more than once");
-                            return;
-                        }
+        private BBContainer wrapPolled(final DBBPool.BBContainer retcont) {
+            return new DBBPool.BBContainer(retcont.b()) {
+                private boolean m_discarded = false;
 
-                        m_discarded = true;
-                        retcont.discard();
-                        m_discardCount++;
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    if (m_discarded) {
+                        LOG.error("PBD Container discarded more than once");
+                        return;
                     }
-                };
-            } finally {
-                m_readOffset = m_fc.position();
-                m_fc.position(writePos);
-            }
+
+                    m_discarded = true;
+                    retcont.discard();
+                    m_discardCount++;
+                }
+            };
         }
 
         @Override
@@ -513,6 +629,7 @@ public class PBDRegularSegment extends PBDSegment {
         @Override
         public void close() throws IOException {
             m_closed = true;
+            dropMapping();
             m_readCursors.remove(m_cursorId);
             m_closedCursors.put(m_cursorId, this);
             if (m_readCursors.isEmpty()) {
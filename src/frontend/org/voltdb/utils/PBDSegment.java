@@ -20,6 +20,7 @@ package org.voltdb.utils;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 import org.voltcore.utils.DBBPool;
@@ -101,14 +102,21 @@ public abstract class PBDSegment {
     private static final String SCANNER_CURSOR = "__scanner__";
     static final int NO_FLAGS = 0;
     static final int FLAG_COMPRESSED = 1;
+    // Compressed entries carry the id of their codec above the flag bits, entries from before codecs could be
+    // chosen have 0 there which is Snappy
+    static final int CODEC_SHIFT = 8;
 
     static final int COUNT_OFFSET = 0;
     static final int SIZE_OFFSET = 4;
 
     // Has to be able to hold at least one object (compressed or not)
     public static final int CHUNK_SIZE = Integer.getInteger("PBDSEGMENT_CHUNK_SIZE", 1024 * 1024 * 64);
+    // Read sealed segments through a private memory mapping instead of copying each entry out of the file
+    public static final String MMAP_READS_PROPERTY = "PBDSEGMENT_MMAP_READS";
     static final int OBJECT_HEADER_BYTES = 8;
     static final int SEGMENT_HEADER_BYTES = 8; // number of entries (4 bytes), total bytes of data (4 bytes)
+    // Largest entry, including its object header, that fits in an empty segment
+    static final int MAX_ENTRY_BYTES = CHUNK_SIZE - SEGMENT_HEADER_BYTES * 2;
     protected final File m_file;
 
     protected boolean m_closed = true;
@@ -162,13 +170,150 @@ public abstract class PBDSegment {
 
     abstract boolean hasAllFinishedReading() throws IOException;
 
-    abstract boolean offer(DBBPool.BBContainer cont, boolean compress) throws IOException;
+    /**
+     * Write a prepared entry to the end of this segment. Only one thread may append to a segment at a time,
+     * but appends may run concurrently with readers of this segment. The entry is not visible to readers
+     * until {@link #publishAppended()} is called.
+     *
+     * @return false if there is not enough room left in this segment for the entry
+     */
+    abstract boolean append(PreparedEntry entry) throws IOException;
 
-    abstract int offer(DeferredSerialization ds) throws IOException;
+    /**
+     * Make the entries written by {@link #append(PreparedEntry)} since the last call visible to readers
+     */
+    abstract void publishAppended();
 
     // TODO: javadoc
     abstract int size();
 
+    /**
+     * An object that has been serialized, compressed and framed with its entry header ahead of time,
+     * so that the expensive part of an offer does not have to be done while holding any lock.
+     */
+    static class PreparedEntry {
+        // null if the header has been serialized into the payload
+        private final ByteBuffer m_header;
+        private final DBBPool.BBContainer m_payload;
+        // The container offered by the caller, null for a deferred serialization
+        private final DBBPool.BBContainer m_source;
+        // Space that must be left in the segment to accept this entry
+        final int m_reservedBytes;
+        final int m_uncompressedSize;
+        private boolean m_written = false;
+
+        private PreparedEntry(ByteBuffer header, DBBPool.BBContainer payload, DBBPool.BBContainer source,
+                int reservedBytes, int uncompressedSize) {
+            m_header = header;
+            m_payload = payload;
+            m_source = source;
+            m_reservedBytes = reservedBytes;
+            m_uncompressedSize = uncompressedSize;
+        }
+
+        void write(FileChannel fc) throws IOException {
+            m_written = true;
+            if (m_header != null) {
+                while (m_header.hasRemaining()) {
+                    fc.write(m_header);
+                }
+            }
+            while (m_payload.b().hasRemaining()) {
+                fc.write(m_payload.b());
+            }
+        }
+
+        /**
+         * Discard the entry and the container it was prepared from once it has been appended
+         */
+        void discard() {
+            m_payload.discard();
+            if (m_source != null && m_source != m_payload) {
+                m_source.discard();
+            }
+        }
+
+        /**
+         * Discard what was allocated for an entry that failed to be appended. The offered container is
+         * left to the caller unless writing it to the segment had already started.
+         */
+        void discardFailed() {
+            if (m_written) {
+                discard();
+            } else if (m_payload != m_source) {
+                m_payload.discard();
+            }
+        }
+    }
+
+    /**
+     * @return the codec a compressed entry with the given flags was compressed with
+     */
+    static CompressionCodec codecOf(int flags) throws IOException {
+        return CompressionCodec.fromId(flags >>> CODEC_SHIFT);
+    }
+
+    static PreparedEntry prepare(DBBPool.BBContainer cont, boolean compress) throws IOException {
+        return prepare(cont, compress, CompressionCodec.forPBD());
+    }
+
+    /**
+     * Prepare an object for appending. The container is discarded with the entry, or if compressing it
+     * fails. If the object can never fit in a segment an IOException is thrown and the container is left
+     * to the caller.
+     */
+    static PreparedEntry prepare(DBBPool.BBContainer cont, boolean compress, CompressionCodec codec) throws IOException {
+        final ByteBuffer buf = cont.b();
+        final int remaining = buf.remaining();
+        if (remaining < 32 || !buf.isDirect()) compress = false;
+        // Reserve room for the worst case compression so entries are laid out the same regardless of the data
+        final int maxCompressedSize = (compress ? codec.maxCompressedLength(remaining) : remaining) + OBJECT_HEADER_BYTES;
+        if (maxCompressedSize > MAX_ENTRY_BYTES) {
+            throw new IOException("Failed to offer object in PBD, object size " + remaining + " exceeds the maximum");
+        }
+        final ByteBuffer header = ByteBuffer.allocate(OBJECT_HEADER_BYTES);
+
+        if (!compress) {
+            header.putInt(remaining);
+            header.putInt(NO_FLAGS);
+            header.flip();
+            return new PreparedEntry(header, cont, cont, maxCompressedSize, remaining);
+        }
+
+        DBBPool.BBContainer destBuf = DBBPool.allocateDirectAndPool(maxCompressedSize);
+        try {
+            final int compressedSize = codec.compress(buf, destBuf.b());
+            destBuf.b().limit(compressedSize);
+            header.putInt(compressedSize);
+            header.putInt(FLAG_COMPRESSED | (codec.getId() << CODEC_SHIFT));
+            header.flip();
+        } catch (IOException | RuntimeException e) {
+            destBuf.discard();
+            cont.discard();
+            throw e;
+        }
+        return new PreparedEntry(header, destBuf, cont, maxCompressedSize, remaining);
+    }
+
+    /**
+     * Prepare a deferred serialization for appending
+     */
+    static PreparedEntry prepare(DeferredSerialization ds) throws IOException {
+        final int fullSize = ds.getSerializedSize() + OBJECT_HEADER_BYTES;
+        if (fullSize > MAX_ENTRY_BYTES) {
+            throw new IOException("Failed to offer object in PBD, object size " + fullSize + " exceeds the maximum");
+        }
+        DBBPool.BBContainer destBuf = DBBPool.allocateDirectAndPool(fullSize);
+        try {
+            final int written = PBDUtils.writeDeferredSerialization(destBuf.b(), ds);
+            destBuf.b().flip();
+            return new PreparedEntry(null, destBuf, null, fullSize, written);
+        } catch (IOException | RuntimeException e) {
+            destBuf.discard();
+            throw e;
+        }
+    }
+
     abstract protected int writeTruncatedEntry(BinaryDeque.TruncatorResponse entry) throws IOException;
 
     /**
@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool;
@@ -50,6 +51,10 @@ import com.google_voltpatches.common.base.Throwables;
  * once all objects from the segment have been polled and all the containers returned by poll have been discarded.
  * Push is implemented by creating new segments at the head of the deque containing the objects to be pushed.
  *
+ * The deque monitor only guards the segment map, the cursors and the object counts. Serializing and
+ * compressing an offered object, writing it to the tail segment, and reading and decompressing a polled
+ * object all happen outside of the monitor, so writers appending to the tail don't stall behind readers
+ * polling older segments. Lock order is m_ioLock, then a cursor, then m_appendLock, then the deque monitor.
  */
 public class PersistentBinaryDeque implements BinaryDeque {
     private static final VoltLogger LOG = new VoltLogger("HOST");
@@ -77,8 +82,9 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     /**
-     * Used to read entries from the PBD. Multiple readers may be active at the same time,
-     * but only one read or write may happen concurrently.
+     * Used to read entries from the PBD. Multiple readers may be active at the same time and may read
+     * concurrently with each other and with a writer. Polls on a single cursor are serialized by
+     * synchronizing on the cursor.
      */
     private class ReadCursor implements BinaryDequeReader {
         private final String m_cursorId;
@@ -87,6 +93,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
         //that were deleted at the time this cursor was created
         private final int m_numObjectsDeleted;
         private int m_numRead;
+        // Set while this cursor is reading an entry outside of the deque monitor
+        private boolean m_pollInProgress;
 
         public ReadCursor(String cursorId, int numObjectsDeleted) throws IOException {
             m_cursorId = cursorId;
@@ -95,36 +103,70 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
         @Override
         public BBContainer poll(OutputContainerFactory ocf) throws IOException {
-            synchronized (PersistentBinaryDeque.this) {
-                if (m_closed) {
-                    throw new IOException("PBD.ReadCursor.poll(): " + m_cursorId + " - Reader has been closed");
-                }
-                assertions();
+            m_ioLock.readLock().lock();
+            try {
+                synchronized (this) {
+                    final PBDSegment segment;
+                    final PBDSegmentReader segmentReader;
+                    synchronized (PersistentBinaryDeque.this) {
+                        if (m_closed) {
+                            throw new IOException("PBD.ReadCursor.poll(): " + m_cursorId + " - Reader has been closed");
+                        }
+                        assertions();
 
-                moveToValidSegment();
-                PBDSegmentReader segmentReader = m_segment.getReader(m_cursorId);
-                if (segmentReader == null) {
-                    segmentReader = m_segment.openForRead(m_cursorId);
-                }
-                long lastSegmentId = peekLastSegment().segmentId();
-                while (!segmentReader.hasMoreEntries()) {
-                    if (m_segment.segmentId() == lastSegmentId) { // nothing more to read
-                        return null;
+                        segmentReader = findNextEntry();
+                        if (segmentReader == null) {
+                            return null;
+                        }
+                        segment = m_segment;
+                        m_pollInProgress = true;
                     }
 
-                    segmentReader.close();
-                    m_segment = m_segments.higherEntry(m_segment.segmentId()).getValue();
-                    // push to PBD will rewind cursors. So, this cursor may have already opened this segment
-                    segmentReader = m_segment.getReader(m_cursorId);
-                    if (segmentReader == null) segmentReader = m_segment.openForRead(m_cursorId);
+                    // The segment can't be deleted or closed while this reader has entries left in it,
+                    // so the read and decompression don't need the deque monitor
+                    BBContainer retcont = null;
+                    try {
+                        retcont = segmentReader.poll(ocf);
+                    } finally {
+                        synchronized (PersistentBinaryDeque.this) {
+                            m_pollInProgress = false;
+                            if (retcont != null) {
+                                m_numRead++;
+                            }
+                            assertions();
+                        }
+                    }
+                    assert (retcont.b() != null);
+                    return wrapRetCont(segment, retcont);
                 }
-                BBContainer retcont = segmentReader.poll(ocf);
+            } finally {
+                m_ioLock.readLock().unlock();
+            }
+        }
 
-                m_numRead++;
-                assertions();
-                assert (retcont.b() != null);
-                return wrapRetCont(m_segment, retcont);
+        /**
+         * Move this cursor to the segment holding the next entry it should read.
+         * @return the reader positioned at that entry, or null if there is nothing more to read
+         */
+        private PBDSegmentReader findNextEntry() throws IOException {
+            moveToValidSegment();
+            PBDSegmentReader segmentReader = m_segment.getReader(m_cursorId);
+            if (segmentReader == null) {
+                segmentReader = m_segment.openForRead(m_cursorId);
+            }
+            long lastSegmentId = peekLastSegment().segmentId();
+            while (!segmentReader.hasMoreEntries()) {
+                if (m_segment.segmentId() == lastSegmentId) { // nothing more to read
+                    return null;
+                }
+
+                segmentReader.close();
+                m_segment = m_segments.higherEntry(m_segment.segmentId()).getValue();
+                // push to PBD will rewind cursors. So, this cursor may have already opened this segment
+                segmentReader = m_segment.getReader(m_cursorId);
+                if (segmentReader == null) segmentReader = m_segment.openForRead(m_cursorId);
             }
+            return segmentReader;
         }
 
         private void moveToValidSegment() {
@@ -136,22 +178,27 @@ public class PersistentBinaryDeque implements BinaryDeque {
         }
 
         @Override
-        public int getNumObjects() throws IOException {
+        public synchronized int getNumObjects() throws IOException {
             synchronized(PersistentBinaryDeque.this) {
                 if (m_closed) {
                     throw new IOException("Cannot compute object count of " + m_cursorId + " - Reader has been closed");
                 }
-                return m_numObjects - m_numObjectsDeleted - m_numRead;
+                return numObjectsLeft();
             }
         }
 
+        // Caller must hold the deque monitor
+        private int numObjectsLeft() {
+            return m_numObjects - m_numObjectsDeleted - m_numRead;
+        }
+
         /*
          * Don't use size in bytes to determine empty, could potentially
          * diverge from object count on crash or power failure
          * although incredibly unlikely
          */
         @Override
-        public long sizeInBytes() throws IOException {
+        public synchronized long sizeInBytes() throws IOException {
             synchronized(PersistentBinaryDeque.this) {
                 if (m_closed) {
                     throw new IOException("Cannot compute size of " + m_cursorId + " - Reader has been closed");
@@ -175,7 +222,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
         }
 
         @Override
-        public boolean isEmpty() throws IOException {
+        public synchronized boolean isEmpty() throws IOException {
             synchronized(PersistentBinaryDeque.this) {
                 if (m_closed) {
                     throw new IOException("Closed");
@@ -245,6 +292,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
     private final File m_path;
     private final String m_nonce;
+    // Sealed segments are read through a memory mapping when set
+    private final boolean m_mmapReads = Boolean.getBoolean(PBDSegment.MMAP_READS_PROPERTY);
     private boolean m_initializedFromExistingFiles = false;
     private boolean m_awaitingTruncation = false;
 
@@ -252,6 +301,11 @@ public class PersistentBinaryDeque implements BinaryDeque {
     //These segments are "immutable". They will not be modified until deletion
     private final TreeMap<Long, PBDSegment> m_segments = new TreeMap<>();
     private volatile boolean m_closed = false;
+    // Held shared while segment files are written or read outside of the deque monitor, and exclusively
+    // by operations that close or rewrite segment files
+    private final ReentrantReadWriteLock m_ioLock = new ReentrantReadWriteLock();
+    // Serializes appends to the tail segment; only the holder may write to or replace the tail
+    private final Object m_appendLock = new Object();
     private final HashMap<String, ReadCursor> m_readCursors = new HashMap<>();
     private int m_numObjects;
     private int m_numDeleted;
@@ -405,7 +459,18 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void parseAndTruncate(BinaryDequeTruncator truncator) throws IOException {
+    public void parseAndTruncate(BinaryDequeTruncator truncator) throws IOException {
+        m_ioLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                parseAndTruncateLocked(truncator);
+            }
+        } finally {
+            m_ioLock.writeLock().unlock();
+        }
+    }
+
+    private void parseAndTruncateLocked(BinaryDequeTruncator truncator) throws IOException {
         if (m_closed) {
             throw new IOException("Cannot parseAndTruncate(): PBD has been closed");
         }
@@ -484,7 +549,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     private PBDSegment newSegment(long segmentId, File file) {
-        return new PBDRegularSegment(segmentId, file);
+        return new PBDRegularSegment(segmentId, file, m_mmapReads);
     }
 
     /**
@@ -534,49 +599,74 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void offer(BBContainer object) throws IOException {
+    public void offer(BBContainer object) throws IOException {
         offer(object, true);
     }
 
     @Override
-    public synchronized void offer(BBContainer object, boolean allowCompression) throws IOException {
-        assertions();
-        if (m_closed) {
-            throw new IOException("Closed");
-        }
-
-        PBDSegment tail = peekLastSegment();
+    public void offer(BBContainer object, boolean allowCompression) throws IOException {
+        // append() checks that the deque is open, the object is left to the caller if it isn't
         final boolean compress = object.b().isDirect() && allowCompression;
-        if (!tail.offer(object, compress)) {
-            tail = addSegment(tail);
-            final boolean success = tail.offer(object, compress);
-            if (!success) {
-                throw new IOException("Failed to offer object in PBD");
-            }
+        final PBDSegment.PreparedEntry entry = PBDSegment.prepare(object, compress);
+        try {
+            append(entry);
+        } catch (IOException | RuntimeException e) {
+            entry.discardFailed();
+            throw e;
         }
-        m_numObjects++;
-        assertions();
+        entry.discard();
     }
 
     @Override
-    public synchronized int offer(DeferredSerialization ds) throws IOException {
-        assertions();
+    public int offer(DeferredSerialization ds) throws IOException {
         if (m_closed) {
             throw new IOException("Cannot offer(): PBD has been Closed");
         }
 
-        PBDSegment tail = peekLastSegment();
-        int written = tail.offer(ds);
-        if (written < 0) {
-            tail = addSegment(tail);
-            written = tail.offer(ds);
-            if (written < 0) {
-                throw new IOException("Failed to offer object in PBD");
+        final PBDSegment.PreparedEntry entry = PBDSegment.prepare(ds);
+        try {
+            append(entry);
+            return entry.m_uncompressedSize;
+        } finally {
+            entry.discard();
+        }
+    }
+
+    /**
+     * Write a prepared entry to the tail segment. The deque monitor is only held to roll
+     * the tail and to publish the entry, not while it is being written.
+     */
+    private void append(PBDSegment.PreparedEntry entry) throws IOException {
+        m_ioLock.readLock().lock();
+        try {
+            synchronized (m_appendLock) {
+                PBDSegment tail;
+                synchronized (this) {
+                    assertions();
+                    if (m_closed) {
+                        throw new IOException("Cannot offer(): PBD has been Closed");
+                    }
+                    tail = peekLastSegment();
+                }
+
+                if (!tail.append(entry)) {
+                    synchronized (this) {
+                        tail = addSegment(tail);
+                    }
+                    if (!tail.append(entry)) {
+                        throw new IOException("Failed to offer object in PBD");
+                    }
+                }
+
+                synchronized (this) {
+                    tail.publishAppended();
+                    m_numObjects++;
+                    assertions();
+                }
             }
+        } finally {
+            m_ioLock.readLock().unlock();
         }
-        m_numObjects++;
-        assertions();
-        return written;
     }
 
     private PBDSegment addSegment(PBDSegment tail) throws IOException {
@@ -605,7 +695,21 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void push(BBContainer objects[]) throws IOException {
+    public void push(BBContainer objects[]) throws IOException {
+        // Pushed segments go in front of the ones readers are polling outside of the monitor
+        m_ioLock.writeLock().lock();
+        try {
+            synchronized (m_appendLock) {
+                synchronized (this) {
+                    pushLocked(objects);
+                }
+            }
+        } finally {
+            m_ioLock.writeLock().unlock();
+        }
+    }
+
+    private void pushLocked(BBContainer objects[]) throws IOException {
         assertions();
         if (m_closed) {
             throw new IOException("Cannot push(): PBD has been Closed");
@@ -656,9 +760,15 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
 
             while (currentSegmentContents.peek() != null) {
-                writeSegment.offer(currentSegmentContents.pollFirst(), false);
+                final PBDSegment.PreparedEntry entry = PBDSegment.prepare(currentSegmentContents.pollFirst(), false);
+                try {
+                    writeSegment.append(entry);
+                } finally {
+                    entry.discard();
+                }
                 m_numObjects++;
             }
+            writeSegment.publishAppended();
 
             // Don't close the last one, it'll be used for writes
             if (!m_segments.isEmpty()) {
@@ -695,7 +805,19 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void closeCursor(String cursorId) {
+    public void closeCursor(String cursorId) {
+        // Wait for any poll on the cursor to finish reading before its segment reader is closed
+        m_ioLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                closeCursorLocked(cursorId);
+            }
+        } finally {
+            m_ioLock.writeLock().unlock();
+        }
+    }
+
+    private void closeCursorLocked(String cursorId) {
         if (m_closed) {
             return;
         }
@@ -757,28 +879,51 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void sync() throws IOException {
-        if (m_closed) {
-            throw new IOException("Cannot sync(): PBD has been Closed");
-        }
-        for (PBDSegment segment : m_segments.values()) {
-            if (!segment.isClosed()) {
-                segment.sync();
+    public void sync() throws IOException {
+        m_ioLock.readLock().lock();
+        try {
+            synchronized (m_appendLock) {
+                PBDSegment tail;
+                synchronized (this) {
+                    if (m_closed) {
+                        throw new IOException("Cannot sync(): PBD has been Closed");
+                    }
+                    tail = peekLastSegment();
+                    for (PBDSegment segment : m_segments.values()) {
+                        if (segment != tail && !segment.isClosed()) {
+                            segment.sync();
+                        }
+                    }
+                }
+                // Holding the append lock keeps the tail from being written to or replaced,
+                // readers don't have to wait for the fsync
+                if (!tail.isClosed()) {
+                    tail.sync();
+                }
             }
+        } finally {
+            m_ioLock.readLock().unlock();
         }
     }
 
     @Override
-    public synchronized void close() throws IOException {
-        if (m_closed) {
-            return;
-        }
-        m_readCursors.clear();
+    public void close() throws IOException {
+        m_ioLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (m_closed) {
+                    return;
+                }
+                m_readCursors.clear();
 
-        for (PBDSegment segment : m_segments.values()) {
-            segment.close();
+                for (PBDSegment segment : m_segments.values()) {
+                    segment.close();
+                }
+                m_closed = true;
+            }
+        } finally {
+            m_ioLock.writeLock().unlock();
         }
-        m_closed = true;
     }
 
     @Override
@@ -793,18 +938,25 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void closeAndDelete() throws IOException {
-        if (m_closed) {
-            return;
-        }
-        m_readCursors.clear();
+    public void closeAndDelete() throws IOException {
+        m_ioLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (m_closed) {
+                    return;
+                }
+                m_readCursors.clear();
 
-        for (PBDSegment qs : m_segments.values()) {
-            m_usageSpecificLog.debug("Segment " + qs.file() + " has been closed and deleted due to delete all");
-            closeAndDeleteSegment(qs);
+                for (PBDSegment qs : m_segments.values()) {
+                    m_usageSpecificLog.debug("Segment " + qs.file() + " has been closed and deleted due to delete all");
+                    closeAndDeleteSegment(qs);
+                }
+                m_segments.clear();
+                m_closed = true;
+            }
+        } finally {
+            m_ioLock.writeLock().unlock();
         }
-        m_segments.clear();
-        m_closed = true;
     }
 
     public static class ByteBufferTruncatorResponse extends TruncatorResponse {
@@ -879,6 +1031,10 @@ public class PersistentBinaryDeque implements BinaryDeque {
     private void assertions() {
         if (!assertionsOn || m_closed) return;
         for (ReadCursor cursor : m_readCursors.values()) {
+            if (cursor.m_pollInProgress) {
+                // Counts are updated when the poll completes
+                continue;
+            }
             int numObjects = 0;
             try {
                 for (PBDSegment segment : m_segments.values()) {
@@ -889,7 +1045,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
                         numObjects += segment.getNumEntries() - reader.readIndex();
                     }
                 }
-                assert numObjects == cursor.getNumObjects() : numObjects + " != " + cursor.getNumObjects();
+                assert numObjects == cursor.numObjectsLeft() : numObjects + " != " + cursor.numObjectsLeft();
             } catch (Exception e) {
                 Throwables.propagate(e);
             }
@@ -917,6 +1073,18 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     public ExportSequenceNumberTracker scanForGap(BinaryDequeScanner scaner) throws IOException
+    {
+        m_ioLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                return scanForGapLocked(scaner);
+            }
+        } finally {
+            m_ioLock.writeLock().unlock();
+        }
+    }
+
+    private ExportSequenceNumberTracker scanForGapLocked(BinaryDequeScanner scaner) throws IOException
     {
         if (m_closed) {
             throw new IOException("Cannot parseAndTruncate(): PBD has been closed");
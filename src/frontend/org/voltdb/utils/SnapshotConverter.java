@@ -17,18 +17,29 @@
 
 package org.voltdb.utils;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil.Snapshot;
 import org.voltdb.sysprocs.saverestore.SnapshotPathType;
@@ -48,6 +59,8 @@ public class SnapshotConverter {
         File outdir = null;
         String type = null;
         char delimiter = '\0';
+        int threads = CoreUtils.availableProcessors();
+        boolean compress = false;
 
         for (int ii = 0; ii < args.length; ii++) {
             String arg = args[ii];
@@ -120,6 +133,23 @@ public class SnapshotConverter {
                     System.exit(-1);
                 }
                 ii++;
+            } else if (arg.equals("--threads")) {
+                if (args.length < ii + 2) {
+                    System.err.println("Error: Not enough args following --threads");
+                    printHelpAndQuit(-1);
+                }
+                try {
+                    threads = Integer.parseInt(args[ii + 1]);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    System.err.println("Error: --threads must be a number >= 1");
+                    printHelpAndQuit(-1);
+                }
+                ii++;
+            } else if (arg.equals("--compress")) {
+                compress = true;
             }  else if (arg.equals("--type")) {
                 if (args.length < ii + 1) {
                     System.err.println("Error: Not enough args following --type");
@@ -249,9 +279,10 @@ public class SnapshotConverter {
          * For every output file that will be created attempt to instantiate and print an error
          * if the file already exists or couldn't be created.
          */
+        final String extension = "." + type.toLowerCase() + (compress ? ".gz" : "");
         for (Map.Entry<String, Map<File, Set<Integer>>> entry : tableToFilesWithPartitions.entrySet()) {
             String tableName = entry.getKey();
-            File outfile = new File(outdir.getPath() + File.separator + tableName + "." + type.toLowerCase());
+            File outfile = new File(outdir.getPath() + File.separator + tableName + extension);
             try {
                 if (!outfile.createNewFile()) {
                     System.err.println("Error: Failed to create output file "
@@ -271,42 +302,115 @@ public class SnapshotConverter {
         }
 
         /*
-         * Actually convert the tables and write the data to the appropriate destination
+         * Actually convert the tables and write the data to the appropriate destination. The files of
+         * all the tables are converted concurrently, each on its own converter thread, writing blocks
+         * of complete lines to the output of its table.
          */
-        for (Map.Entry<String, Map<File, Set<Integer>>> entry : tableToFilesWithPartitions.entrySet()) {
-            String tableName = entry.getKey();
-            File outfile = new File(outdir.getPath() + File.separator + tableName + "." + type.toLowerCase());
+        if (!convertTables(tableToFilesWithPartitions, outdir, extension, delimiter, compress, threads)) {
+            System.exit(-1);
+        }
+    }
+
+    private static boolean convertTables(Map<String, Map<File, Set<Integer>>> tableToFilesWithPartitions,
+            File outdir, String extension, final char delimiter, boolean compress, int threads) {
+        final long start = System.nanoTime();
+        final AtomicLong totalRows = new AtomicLong();
+        boolean fail = false;
+        int fileCount = 0;
+        for (Map<File, Set<Integer>> tableFiles : tableToFilesWithPartitions.values()) {
+            fileCount += tableFiles.size();
+        }
+        // Split the threads between the files, a few files still get all the threads
+        final int converterThreads = Math.max(1, threads / Math.max(1, fileCount));
+        ExecutorService es = CoreUtils.getListeningExecutorService("Snapshot converter", threads);
+        Map<String, FileOutputStream> files = new TreeMap<String, FileOutputStream>();
+        Map<String, OutputStream> outputs = new TreeMap<String, OutputStream>();
+        try {
+            List<Future<Boolean>> conversions = new ArrayList<Future<Boolean>>();
+            for (Map.Entry<String, Map<File, Set<Integer>>> entry : tableToFilesWithPartitions.entrySet()) {
+                final String tableName = entry.getKey();
+                final File outfile = new File(outdir.getPath() + File.separator + tableName + extension);
+                final OutputStream out;
+                try {
+                    FileOutputStream fos = new FileOutputStream(outfile, true);
+                    files.put(tableName, fos);
+                    OutputStream bos = new BufferedOutputStream(fos, 1024 * 1024);
+                    out = compress ? new GZIPOutputStream(bos, 1024 * 64) : bos;
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                    System.err.println("Error: Failed to open " + outfile.getPath());
+                    fail = true;
+                    continue;
+                }
+                outputs.put(tableName, out);
 
-            Map<File, Set<Integer>> partitionsFromFile = entry.getValue();
-            for (Map.Entry<File, Set<Integer>> e2 : partitionsFromFile.entrySet()) {
-                File infile = e2.getKey();
-                Set<Integer> partitionSet = e2.getValue();
-                Integer partitions[] = null;
-                if (partitionSet != null) {
-                    partitions = new Integer[partitionSet.size()];
-                    int ii = 0;
-                    for (Integer partition : partitionSet) {
-                        partitions[ii++] = partition;
+                for (Map.Entry<File, Set<Integer>> e2 : entry.getValue().entrySet()) {
+                    final File infile = e2.getKey();
+                    Set<Integer> partitionSet = e2.getValue();
+                    final Integer partitions[] = partitionSet == null ? null :
+                        partitionSet.toArray(new Integer[partitionSet.size()]);
+                    conversions.add(es.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            long fileStart = System.nanoTime();
+                            try {
+                                long rows = CSVTableSaveFile.convertTableSaveFile(delimiter, partitions, out, infile,
+                                        converterThreads);
+                                totalRows.addAndGet(rows);
+                                System.out.println(String.format("Converted %d rows of table %s from %s in %.1f seconds",
+                                        rows, tableName, infile.getPath(), (System.nanoTime() - fileStart) / 1e9));
+                                return true;
+                            } catch (Exception e) {
+                                System.err.println(e.getMessage());
+                                System.err.println("Error: Failed to convert " + infile.getPath() + " to " + outfile.getPath());
+                                return false;
+                            }
+                        }
+                    }));
+                }
+            }
+            for (Future<Boolean> conversion : conversions) {
+                try {
+                    if (!conversion.get()) {
+                        fail = true;
                     }
+                } catch (ExecutionException e) {
+                    System.err.println(e.getCause().getMessage());
+                    fail = true;
+                } catch (InterruptedException e) {
+                    return false;
                 }
+            }
+        } finally {
+            es.shutdownNow();
+            for (Map.Entry<String, OutputStream> e : outputs.entrySet()) {
+                OutputStream out = e.getValue();
                 try {
-                    CSVTableSaveFile.convertTableSaveFile(delimiter, partitions, outfile, infile);
-                } catch (Exception e) {
-                    System.err.println(e.getMessage());
-                    System.err.println("Error: Failed to convert " + infile.getPath() + " to " + outfile.getPath());
+                    if (out instanceof GZIPOutputStream) {
+                        ((GZIPOutputStream) out).finish();
+                    }
+                    out.flush();
+                    files.get(e.getKey()).getFD().sync();
+                    out.close();
+                } catch (IOException ioe) {
+                    System.err.println(ioe.getMessage());
+                    System.err.println("Error: Failed to write output of table " + e.getKey());
+                    fail = true;
                 }
             }
         }
 
-        if (fail) {
-            System.exit(-1);
-        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("Converted %d rows of %d tables in %.1f seconds, %.0f rows/s",
+                totalRows.get(), tableToFilesWithPartitions.size(), seconds, totalRows.get() / Math.max(seconds, 0.001)));
+        return !fail;
     }
 
     private static void printHelpAndQuit( int code) {
         System.out.println("Usage: snapshotconverter --help");
         System.out.println("snapshotconverter --dir dir1 --dir dir2 --dir dir3 " +
-                "--table table1 --table table2 --table table3 --type CSV|TSV --outdir dir snapshot_name --timezone GMT+0");
+                "--table table1 --table table2 --table table3 --type CSV|TSV --outdir dir snapshot_name --timezone GMT+0 " +
+                "[--threads n] [--compress]");
         System.exit(code);
     }
 }
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil.Snapshot;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil.SnapshotFilter;
@@ -50,17 +51,37 @@ public class SnapshotVerifier {
         }
 
         HashSet<String> snapshotNames = new HashSet<String>();
+        int threads = CoreUtils.availableProcessors();
         for (int ii = 0; ii < args.length; ii++) {
             if (args[ii].equals("--dir")) {
                 ii++;
                 continue;
             }
+            if (args[ii].equals("--threads")) {
+                if (ii + 1 >= args.length) {
+                    System.err.println("Error: No thread count specified after --threads");
+                    printHelpAndQuit(-1);
+                }
+                try {
+                    threads = Integer.parseInt(args[ii + 1]);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    System.err.println("Error: --threads must be a number >= 1");
+                    printHelpAndQuit(-1);
+                }
+                ii++;
+                continue;
+            }
             snapshotNames.add(args[ii]);
         }
 
         List<String> directories = new ArrayList<String>();
         for (int ii = 0; ii < args.length; ii++) {
-            if (args[ii].equals("--dir")) {
+            if (args[ii].equals("--threads")) {
+                ii++;
+            } else if (args[ii].equals("--dir")) {
                 if (ii + 1 >= args.length) {
                     System.err.println("Error: No directories specified after --dir");
                     printHelpAndQuit(-1);
@@ -75,7 +96,7 @@ public class SnapshotVerifier {
             directories.add(".");
         }
 
-        verifySnapshots(directories, snapshotNames);
+        verifySnapshots(directories, snapshotNames, threads);
     }
 
     /**
@@ -85,6 +106,17 @@ public class SnapshotVerifier {
      */
     public static void verifySnapshots(
             final List<String> directories, final Set<String> snapshotNames) {
+        verifySnapshots(directories, snapshotNames, 1);
+    }
+
+    /**
+     * Perform snapshot verification reading up to <code>threads</code> table files at a time.
+     * @param directories list of directories to search for snapshots
+     * @param snapshotNames set of snapshot names/nonces to verify
+     * @param threads number of table files to verify concurrently
+     */
+    public static void verifySnapshots(
+            final List<String> directories, final Set<String> snapshotNames, int threads) {
 
         FileFilter filter = new SnapshotFilter();
         if (!snapshotNames.isEmpty()) {
@@ -93,7 +125,8 @@ public class SnapshotVerifier {
 
         Map<String, Snapshot> snapshots = new HashMap<String, Snapshot>();
         for (String directory : directories) {
-            SnapshotUtil.retrieveSnapshotFiles(new File(directory), snapshots, filter, true, SnapshotPathType.SNAP_PATH, CONSOLE_LOG);
+            SnapshotUtil.retrieveSnapshotFiles(new File(directory), snapshots, filter, true, SnapshotPathType.SNAP_PATH,
+                    CONSOLE_LOG, threads);
         }
 
         if (snapshots.isEmpty()) {
@@ -108,8 +141,8 @@ public class SnapshotVerifier {
 
     private static void printHelpAndQuit( int code) {
         System.out.println("Usage: snapshotverifier --help");
-        System.out.println("Specific snapshot: snapshotverifier snapshot_name --dir dir1 --dir dir2 --dir dir3");
-        System.out.println("All snapshots: snapshotverifier --dir dir1 --dir dir2 --dir dir3");
+        System.out.println("Specific snapshot: snapshotverifier snapshot_name --dir dir1 --dir dir2 --dir dir3 [--threads n]");
+        System.out.println("All snapshots: snapshotverifier --dir dir1 --dir dir2 --dir dir3 [--threads n]");
         System.exit(code);
     }
 }
@@ -59,8 +59,10 @@ import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.EstTimeUpdater;
+import org.voltcore.utils.ZeroCopySerialization;
 import org.voltdb.AdmissionControlGroup;
 
 import junit.framework.TestCase;
@@ -452,4 +454,85 @@ public class TestNIOWriteStream extends TestCase {
         assertEquals(0, queue.get());
     }
 
+    public void testZeroCopyPayload() throws IOException {
+        final ByteBuffer written = ByteBuffer.allocate(1024);
+        MockChannel channel = new MockChannel(MockChannel.SINK, 0) {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                int remaining = src.remaining();
+                written.put(src);
+                return remaining;
+            }
+        };
+        MockPort port = new MockPort();
+        VoltNIOWriteStream wstream = new VoltNIOWriteStream(port);
+
+        final ByteBuffer payloadBuf = ByteBuffer.allocateDirect(200);
+        for (int i = 0; i < 200; i++) {
+            payloadBuf.put((byte) i);
+        }
+        payloadBuf.flip();
+        final AtomicLong discarded = new AtomicLong();
+        final BBContainer payload = new BBContainer(payloadBuf) {
+            @Override
+            public void discard() {
+                checkDoubleFree();
+                discarded.incrementAndGet();
+            }
+        };
+
+        wstream.enqueue(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        wstream.enqueue(new ZeroCopySerialization() {
+            @Override
+            public int getSerializedSize() {
+                return 4 + payload.b().remaining();
+            }
+
+            @Override
+            public int getPayloadSize() {
+                return payload.b().remaining();
+            }
+
+            @Override
+            public void serializeHeader(ByteBuffer buf) {
+                buf.putInt(payload.b().remaining());
+            }
+
+            @Override
+            public BBContainer takePayload() {
+                return payload;
+            }
+
+            @Override
+            public void serialize(ByteBuffer buf) {
+                fail("The payload should not be copied");
+            }
+
+            @Override
+            public void cancel() {
+                fail("Nothing to cancel");
+            }
+        });
+        wstream.enqueue(ByteBuffer.wrap(new byte[] { 4, 5 }));
+        wstream.serializeQueuedWrites(pool);
+        // The header spans two 4 byte pool buffers, the payload is queued in its own container
+        // and the last write starts a new pool buffer after it
+        assertEquals(4, wstream.getOutstandingMessageCount());
+        assertEquals(3 + 4 + 200 + 2, wstream.drainTo(channel));
+        assertTrue(wstream.isEmpty());
+        assertEquals(1, discarded.get());
+
+        written.flip();
+        assertEquals(1, written.get());
+        assertEquals(2, written.get());
+        assertEquals(3, written.get());
+        assertEquals(200, written.getInt());
+        for (int i = 0; i < 200; i++) {
+            assertEquals((byte) i, written.get());
+        }
+        assertEquals(4, written.get());
+        assertEquals(5, written.get());
+        assertFalse(written.hasRemaining());
+        wstream.shutdown();
+    }
 }
@@ -31,9 +31,22 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltcore.network.VoltNetworkPool.IOStatsIntf;
+import org.voltcore.utils.Pair;
 
 import io.netty.buffer.CompositeByteBuf;
 import jsr166y.ThreadLocalRandom;
@@ -308,4 +321,162 @@ public class TestVoltNetwork extends TestCase {
         runInvokeCallbacks(selector, vn, vp);
     }
 
+    public void testPickRebalance() {
+        assertNull(VoltNetworkPool.pickRebalance(new double[] { 0.5, 0.1 }));
+        assertNull(VoltNetworkPool.pickRebalance(new double[] { 0.9, 0.8 }));
+        assertTrue(Arrays.equals(new int[] { 1, 2 }, VoltNetworkPool.pickRebalance(new double[] { 0.5, 0.95, 0.2 })));
+    }
+
+    /** Echoes every message back and records the thread that handled it */
+    private static class EchoHandler extends VoltProtocolHandler {
+        final LinkedBlockingQueue<String> m_threads = new LinkedBlockingQueue<>();
+        final AtomicInteger m_stopping = new AtomicInteger();
+
+        @Override
+        public void stopping(Connection c) {
+            m_stopping.incrementAndGet();
+        }
+
+        @Override
+        public int getMaxRead() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            m_threads.offer(Thread.currentThread().getName());
+            ByteBuffer echo = ByteBuffer.allocate(4 + message.remaining());
+            echo.putInt(message.remaining());
+            echo.put(message);
+            echo.flip();
+            c.writeStream().enqueue(echo);
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return new Runnable() {
+                @Override
+                public void run() {}
+            };
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    private static String roundTrip(SocketChannel client, EchoHandler handler, int value) throws Exception {
+        ByteBuffer out = ByteBuffer.allocate(8);
+        out.putInt(4).putInt(value).flip();
+        while (out.hasRemaining()) {
+            client.write(out);
+        }
+        ByteBuffer in = ByteBuffer.allocate(8);
+        while (in.hasRemaining()) {
+            assertTrue(client.read(in) >= 0);
+        }
+        in.flip();
+        assertEquals(4, in.getInt());
+        assertEquals(value, in.getInt());
+        return handler.m_threads.poll(10, TimeUnit.SECONDS);
+    }
+
+    public void testMovePort() throws Exception {
+        VoltNetworkPool pool = new VoltNetworkPool(2, 0, null, "Test");
+        pool.start();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+                SocketChannel accepted = server.accept();
+                EchoHandler handler = new EchoHandler();
+                VoltPort port = (VoltPort)pool.registerChannel(accepted, handler, null, null);
+
+                final VoltNetwork from = port.m_network;
+                final String fromThread = roundTrip(client, handler, 1);
+                assertEquals(from.networkThreadName, fromThread);
+
+                final VoltNetwork to = pool.getNetworks()[0] == from ? pool.getNetworks()[1] : pool.getNetworks()[0];
+                from.move(port, to);
+                final long deadline = System.currentTimeMillis() + 10000;
+                while (to.numPorts() == 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertSame(to, port.m_network);
+                assertEquals(0, from.numPorts());
+                assertEquals(1, to.numPorts());
+
+                // Reads and writes carry on from the other network
+                for (int ii = 2; ii < 10; ii++) {
+                    assertEquals(to.networkThreadName, roundTrip(client, handler, ii));
+                }
+
+                // Stats have a row for each network of the pool
+                Map<Long, Pair<String, long[]>> stats = pool.getIOStats(false, new ArrayList<IOStatsIntf>());
+                final int toIndex = pool.getNetworks()[0] == to ? 0 : 1;
+                assertEquals(to.networkThreadName, stats.get(VoltNetworkPool.networkStatsKey(toIndex)).getFirst());
+                // the counters belong to the connection, so they moved with it
+                assertEquals(9, stats.get(VoltNetworkPool.networkStatsKey(toIndex)).getSecond()[1]);
+                assertEquals(0, stats.get(VoltNetworkPool.networkStatsKey(1 - toIndex)).getSecond()[1]);
+                assertEquals(9, stats.get(-1L).getSecond()[1]);
+
+                port.unregister().get();
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testUnregisterWhileMoving() throws Exception {
+        VoltNetworkPool pool = new VoltNetworkPool(2, 0, null, "Test");
+        pool.start();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+                SocketChannel accepted = server.accept();
+                EchoHandler handler = new EchoHandler();
+                VoltPort port = (VoltPort)pool.registerChannel(accepted, handler, null, null);
+
+                final VoltNetwork from = port.m_network;
+                final VoltNetwork to = pool.getNetworks()[0] == from ? pool.getNetworks()[1] : pool.getNetworks()[0];
+
+                // Hold the network thread so the unregistration is queued behind the move
+                final CountDownLatch hold = new CountDownLatch(1);
+                from.queueTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            hold.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                from.move(port, to);
+                assertTrue(client.isConnected());
+                Future<?> unregistered = port.unregister();
+                hold.countDown();
+
+                unregistered.get(10, TimeUnit.SECONDS);
+                assertSame(to, port.m_network);
+                assertEquals(1, handler.m_stopping.get());
+                assertEquals(0, from.numPorts());
+                assertEquals(0, to.numPorts());
+                assertFalse(accepted.isOpen());
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
 }
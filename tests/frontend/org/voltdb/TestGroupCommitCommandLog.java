@@ -0,0 +1,417 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.Pair;
+import org.voltdb.CommandLog.CompletionChecks;
+import org.voltdb.CommandLog.DurabilityListener;
+import org.voltdb.SnapshotCompletionInterest.SnapshotCompletionEvent;
+import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.sysprocs.saverestore.SnapshotPathType;
+import org.voltdb.utils.VoltFile;
+
+public class TestGroupCommitCommandLog {
+    // 8MB log split into 1MB segments, with truncation requested at 4MB of sealed segments
+    private static final int LOG_SIZE_MB = 8;
+    private static final int PARAM_BYTES = 50 * 1024;
+
+    private MockVoltDB m_mockVolt = null;
+    private File m_logDir = null;
+    private GroupCommitCommandLog m_log = null;
+    private CountingListener m_listener = null;
+
+    /**
+     * Tracks how many logged transactions have been released by a group commit
+     */
+    private static class CountingListener implements DurabilityListener {
+        private int m_added = 0;
+        private int m_durable = 0;
+
+        private class Checks implements CompletionChecks {
+            final int m_count;
+
+            Checks(int count) {
+                m_count = count;
+            }
+
+            @Override
+            public CompletionChecks startNewCheckList(int startSize) {
+                return new Checks(m_added);
+            }
+
+            @Override
+            public void addTask(TransactionTask task) {}
+
+            @Override
+            public void setLastDurableUniqueId(long uniqueId) {}
+
+            @Override
+            public boolean isChanged() {
+                return false;
+            }
+
+            @Override
+            public int getTaskListSize() {
+                return m_count;
+            }
+
+            @Override
+            public void processChecks() {}
+        }
+
+        @Override
+        public void configureUniqueIdListener(DurableUniqueIdListener listener, boolean install) {}
+
+        @Override
+        public void createFirstCompletionCheck(boolean isSyncLogging, boolean commandLoggingEnabled) {}
+
+        @Override
+        public boolean completionCheckInitialized() {
+            return true;
+        }
+
+        @Override
+        public synchronized void addTransaction(TransactionTask pendingTask) {
+            m_added++;
+        }
+
+        @Override
+        public void initializeLastDurableUniqueId(long uniqueId) {}
+
+        @Override
+        public int getNumberOfTasks() {
+            return 0;
+        }
+
+        @Override
+        public synchronized CompletionChecks startNewTaskList(int nextMaxRowCnt) {
+            return new Checks(m_added);
+        }
+
+        @Override
+        public synchronized void processDurabilityChecks(CompletionChecks completionChecks) {
+            m_durable = Math.max(m_durable, completionChecks.getTaskListSize());
+            notifyAll();
+        }
+
+        synchronized int durable() {
+            return m_durable;
+        }
+
+        synchronized void awaitDurable(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 60 * 1000;
+            while (m_durable < count) {
+                long now = System.currentTimeMillis();
+                assertTrue("Timed out waiting for the group commit", now < deadline);
+                wait(deadline - now);
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        m_mockVolt = new MockVoltDB();
+        VoltDB.replaceVoltDBInstanceForTest(m_mockVolt);
+        m_logDir = File.createTempFile("test-group-commit-command-log", "");
+        m_logDir.delete();
+        assertTrue(m_logDir.mkdir());
+        m_listener = new CountingListener();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_log != null) {
+            m_log.shutdown();
+            m_log = null;
+        }
+        VoltFile.recursivelyDelete(m_logDir);
+        m_logDir = null;
+        m_mockVolt.shutdown(null);
+        m_mockVolt = null;
+    }
+
+    private static Iv2InitiateTaskMessage makeTask(long spHandle, String payload) {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName("Insert");
+        invocation.setParams(TxnEgo.getSequence(spHandle), payload);
+        Iv2InitiateTaskMessage task =
+            new Iv2InitiateTaskMessage(1, 2, Long.MIN_VALUE, spHandle, spHandle, false, true, invocation, 4, 5, false);
+        task.setSpHandle(spHandle);
+        return task;
+    }
+
+    private void startLog(Map<Integer, Long> starting) {
+        startLog(starting, 1, 4);
+    }
+
+    private void startLog(Map<Integer, Long> starting, int fsyncInterval, int maxTxns) {
+        m_log = new GroupCommitCommandLog(false, fsyncInterval, maxTxns, m_logDir.getPath(), m_logDir.getPath());
+        m_log.init(LOG_SIZE_MB, 0, starting.size(), null, starting);
+        m_log.registerDurabilityListener(m_listener);
+        assertFalse(m_log.needsInitialization());
+    }
+
+    private void logTxns(List<Long> spHandles, TxnEgo from, int count, String payload) {
+        TxnEgo ego = from;
+        for (int i = 0; i < count; i++) {
+            ego = ego.makeNext();
+            long spHandle = ego.getTxnId();
+            spHandles.add(spHandle);
+            assertNotNull(m_log.log(makeTask(spHandle, payload), spHandle, null, m_listener, null));
+        }
+    }
+
+    private static SnapshotCompletionEvent truncationEvent(Map<Integer, Long> partitionTxnIds) {
+        return new SnapshotCompletionEvent(null, SnapshotPathType.SNAP_CL, "truncation", 0, partitionTxnIds,
+                true, true, null, Collections.<String, Map<Integer, Pair<Long, Long>>>emptyMap(),
+                Collections.<Integer, Long>emptyMap(), null, 0, 0);
+    }
+
+    /**
+     * Write enough to seal several segments, truncate the ones covered by a snapshot, keep
+     * writing and make sure replay sees exactly the transactions after the snapshot.
+     */
+    @Test
+    public void testWriteSealTruncateReplay() throws Exception {
+        Map<Integer, Long> starting = new HashMap<>();
+        TxnEgo zero = TxnEgo.makeZero(0);
+        starting.put(0, zero.getTxnId());
+        startLog(starting);
+
+        String payload = new String(new char[PARAM_BYTES]).replace('\0', 'x');
+        // One maxtxns batch at a time, so a slow writer can't put everything into one group commit
+        List<Long> spHandles = new ArrayList<>();
+        TxnEgo last = zero;
+        for (int i = 0; i < 60; i += 4) {
+            logTxns(spHandles, last, 4, payload);
+            m_listener.awaitDurable(i + 4);
+            last = new TxnEgo(spHandles.get(spHandles.size() - 1));
+        }
+
+        int segmentsBefore = GroupCommitLogReader.listSegments(m_logDir).size();
+        assertTrue("Expected sealed segments, found " + segmentsBefore, segmentsBefore > 2);
+
+        // A truncation snapshot taken after the first 40 transactions covers every sealed
+        // segment whose transactions all precede it
+        long snapshotSpHandle = spHandles.get(39);
+        Map<Integer, Long> snapshotTxnIds = new HashMap<>();
+        snapshotTxnIds.put(0, snapshotSpHandle);
+        m_log.snapshotCompleted(truncationEvent(snapshotTxnIds));
+        int segmentsAfter = GroupCommitLogReader.listSegments(m_logDir).size();
+        assertTrue(segmentsAfter < segmentsBefore);
+
+        // An unsuccessful or non-truncation snapshot must not delete anything
+        Map<Integer, Long> everything = new HashMap<>();
+        everything.put(0, Long.MAX_VALUE);
+        m_log.snapshotCompleted(new SnapshotCompletionEvent(null, SnapshotPathType.SNAP_AUTO, "auto", 0,
+                everything, false, true, null, Collections.<String, Map<Integer, Pair<Long, Long>>>emptyMap(),
+                Collections.<Integer, Long>emptyMap(), null, 0, 0));
+        assertEquals(segmentsAfter, GroupCommitLogReader.listSegments(m_logDir).size());
+
+        last = new TxnEgo(spHandles.get(spHandles.size() - 1));
+        logTxns(spHandles, last, 10, "tail");
+        m_log.shutdown();
+        m_log = null;
+
+        // Replay starts right after the newest spHandle the remaining segments do not contain
+        GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+        long replayFrom = reader.getStartingSpHandles().get(0);
+        assertTrue(replayFrom <= snapshotSpHandle);
+        int next = spHandles.indexOf(replayFrom) + 1;
+        assertTrue(next > 0);
+
+        GroupCommitLogReader.Entry entry;
+        while ((entry = reader.next()) != null) {
+            assertTrue(entry.isInvocation());
+            assertEquals(0, entry.m_partitionId);
+            assertEquals(spHandles.get(next).longValue(), entry.m_spHandle);
+            assertEquals(TxnEgo.getSequence(entry.m_spHandle),
+                         entry.m_invocation.getStoredProcedureInvocation().getParams().toArray()[0]);
+            next++;
+        }
+        assertEquals(spHandles.size(), next);
+    }
+
+    /**
+     * Segments left by a previous incarnation are replayed and then dropped by the first
+     * truncation snapshot, while the new incarnation numbers its segments after them
+     */
+    @Test
+    public void testPreviousIncarnationSegments() throws Exception {
+        Map<Integer, Long> starting = new HashMap<>();
+        TxnEgo zero = TxnEgo.makeZero(0);
+        starting.put(0, zero.getTxnId());
+        startLog(starting);
+        List<Long> spHandles = new ArrayList<>();
+        logTxns(spHandles, zero, 5, "first");
+        m_listener.awaitDurable(5);
+        m_log.shutdown();
+        m_log = null;
+
+        // Restart on the same directory, as recover does after replay
+        Map<Integer, Long> replayed = new HashMap<>();
+        replayed.put(0, spHandles.get(spHandles.size() - 1));
+        m_listener = new CountingListener();
+        startLog(replayed);
+        assertEquals(2, GroupCommitLogReader.listSegments(m_logDir).size());
+        List<Long> newHandles = new ArrayList<>();
+        logTxns(newHandles, new TxnEgo(replayed.get(0)), 3, "second");
+        m_listener.awaitDurable(3);
+
+        m_log.snapshotCompleted(truncationEvent(replayed));
+        assertEquals(1, GroupCommitLogReader.listSegments(m_logDir).size());
+
+        m_log.shutdown();
+        m_log = null;
+        GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+        assertEquals(replayed, reader.getStartingSpHandles());
+        for (long spHandle : newHandles) {
+            assertEquals(spHandle, reader.next().m_spHandle);
+        }
+        assertNull(reader.next());
+    }
+
+    /**
+     * With a long fsync interval a group commit only happens once maxtxns transactions are
+     * pending, fewer stay pending until shutdown flushes them
+     */
+    @Test
+    public void testMaxTxnsForcesGroupCommit() throws Exception {
+        Map<Integer, Long> starting = new HashMap<>();
+        TxnEgo zero = TxnEgo.makeZero(0);
+        starting.put(0, zero.getTxnId());
+        startLog(starting, 60 * 1000, 4);
+
+        List<Long> spHandles = new ArrayList<>();
+        logTxns(spHandles, zero, 4, "full batch");
+        m_listener.awaitDurable(4);
+
+        logTxns(spHandles, new TxnEgo(spHandles.get(3)), 3, "partial batch");
+        Thread.sleep(200);
+        assertEquals(4, m_listener.durable());
+
+        m_log.shutdown();
+        m_log = null;
+        assertEquals(7, m_listener.durable());
+        GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+        for (long spHandle : spHandles) {
+            assertEquals(spHandle, reader.next().m_spHandle);
+        }
+        assertNull(reader.next());
+    }
+
+    /**
+     * Below maxtxns, pending transactions become durable when the fsync interval elapses
+     */
+    @Test
+    public void testFsyncIntervalForcesGroupCommit() throws Exception {
+        Map<Integer, Long> starting = new HashMap<>();
+        TxnEgo zero = TxnEgo.makeZero(0);
+        starting.put(0, zero.getTxnId());
+        startLog(starting, 50, 1000);
+
+        List<Long> spHandles = new ArrayList<>();
+        logTxns(spHandles, zero, 3, "interval");
+        m_listener.awaitDurable(3);
+
+        GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+        for (long spHandle : spHandles) {
+            assertEquals(spHandle, reader.next().m_spHandle);
+        }
+        assertNull(reader.next());
+    }
+
+    /**
+     * A crash in the middle of a group commit leaves part of the last batch in the segment.
+     * After restarting on the same directory replay returns the complete entries of that batch,
+     * stops at the torn one and carries on with what the new incarnation logs.
+     */
+    @Test
+    public void testReplayAfterCrashMidBatch() throws Exception {
+        Map<Integer, Long> starting = new HashMap<>();
+        TxnEgo zero = TxnEgo.makeZero(0);
+        starting.put(0, zero.getTxnId());
+        startLog(starting, 60 * 1000, 4);
+        List<Long> spHandles = new ArrayList<>();
+        logTxns(spHandles, zero, 4, "durable");
+        m_listener.awaitDurable(4);
+        logTxns(spHandles, new TxnEgo(spHandles.get(3)), 4, "torn");
+        m_listener.awaitDurable(8);
+        m_log.shutdown();
+        m_log = null;
+
+        // Cut the segment inside the third entry of the second batch
+        File segment = GroupCommitLogReader.listSegments(m_logDir).get(0).getSecond();
+        long entryBytes = GroupCommitLogReader.serializeInvocation(
+                makeTask(spHandles.get(7), "torn"), spHandles.get(7), null).remaining();
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.setLength(raf.length() - entryBytes - entryBytes / 2);
+        }
+        List<Long> survivors = spHandles.subList(0, 6);
+
+        // Restart as recover does, with the last replayed spHandle, and keep logging
+        Map<Integer, Long> replayed = new HashMap<>();
+        replayed.put(0, survivors.get(survivors.size() - 1));
+        m_listener = new CountingListener();
+        startLog(replayed, 1, 4);
+        List<Long> newHandles = new ArrayList<>();
+        logTxns(newHandles, new TxnEgo(replayed.get(0)), 2, "after restart");
+        m_listener.awaitDurable(2);
+        m_log.shutdown();
+        m_log = null;
+
+        GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+        assertEquals(starting, reader.getStartingSpHandles());
+        List<Long> expected = new ArrayList<>(survivors);
+        expected.addAll(newHandles);
+        for (long spHandle : expected) {
+            GroupCommitLogReader.Entry entry = reader.next();
+            assertNotNull(entry);
+            assertEquals(spHandle, entry.m_spHandle);
+        }
+        assertNull(reader.next());
+    }
+}
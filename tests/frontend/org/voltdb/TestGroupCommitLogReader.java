@@ -0,0 +1,267 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.utils.VoltFile;
+
+public class TestGroupCommitLogReader {
+    private File m_logDir = null;
+
+    @Before
+    public void setUp() throws IOException {
+        m_logDir = File.createTempFile("test-group-commit-log", "");
+        m_logDir.delete();
+        assertTrue(m_logDir.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        VoltFile.recursivelyDelete(m_logDir);
+        m_logDir = null;
+    }
+
+    private static Iv2InitiateTaskMessage makeTask(long txnId, String procName) {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName(procName);
+        invocation.setParams(1l, "haha", 3.3);
+        Iv2InitiateTaskMessage task =
+            new Iv2InitiateTaskMessage(1, 2, Long.MIN_VALUE, txnId, txnId, false, true, invocation, 4, 5, false);
+        task.setSpHandle(txnId);
+        return task;
+    }
+
+    private void writeSegment(long id, Map<Integer, Long> startingSpHandles, ByteBuffer... entries)
+            throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(GroupCommitLogReader.segmentFile(m_logDir, id))) {
+            fos.getChannel().write(GroupCommitLogReader.createSegmentHeader(id, startingSpHandles));
+            fos.getChannel().write(entries);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        TxnEgo p0 = TxnEgo.makeZero(0).makeNext();
+        TxnEgo p1 = TxnEgo.makeZero(1).makeNext();
+        Map<Integer, Long> starting = new TreeMap<>();
+        starting.put(0, TxnEgo.makeZero(0).getTxnId());
+        starting.put(1, TxnEgo.makeZero(1).getTxnId());
+
+        // Write the second segment first to make sure the reader orders by segment id
+        writeSegment(11, starting,
+                GroupCommitLogReader.serializeInvocation(makeTask(p1.getTxnId(), "mp"), p1.getTxnId(), new int[] {0, 1}));
+        writeSegment(10, starting,
+                GroupCommitLogReader.serializeInvocation(makeTask(p0.getTxnId(), "sp"), p0.getTxnId(), null),
+                GroupCommitLogReader.serializeFault(5, new HashSet<Long>(), 0, p0.getTxnId()));
+
+        GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+        assertTrue(reader.hasSegments());
+        assertEquals(2, reader.getSegmentCount());
+        assertEquals(starting, reader.getStartingSpHandles());
+
+        GroupCommitLogReader.Entry entry = reader.next();
+        assertTrue(entry.isInvocation());
+        assertEquals(p0.getTxnId(), entry.m_spHandle);
+        assertEquals(0, entry.m_partitionId);
+        assertNull(entry.m_involvedPartitions);
+        assertEquals("sp", entry.m_invocation.getStoredProcedureName());
+        assertEquals(p0.getTxnId(), entry.m_invocation.getTxnId());
+
+        entry = reader.next();
+        assertFalse(entry.isInvocation());
+        assertEquals(0, entry.m_partitionId);
+        assertEquals(p0.getTxnId(), entry.m_spHandle);
+
+        entry = reader.next();
+        assertTrue(entry.isInvocation());
+        assertEquals(1, entry.m_partitionId);
+        assertArrayEquals(new int[] {0, 1}, entry.m_involvedPartitions);
+        assertEquals("mp", entry.m_invocation.getStoredProcedureName());
+
+        assertNull(reader.next());
+
+        GroupCommitLogReader.deleteSegments(m_logDir);
+        assertFalse(new GroupCommitLogReader(m_logDir).hasSegments());
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        TxnEgo p0 = TxnEgo.makeZero(0).makeNext();
+        Map<Integer, Long> starting = new TreeMap<>();
+        starting.put(0, TxnEgo.makeZero(0).getTxnId());
+        writeSegment(0, starting,
+                GroupCommitLogReader.serializeInvocation(makeTask(p0.getTxnId(), "first"), p0.getTxnId(), null),
+                GroupCommitLogReader.serializeInvocation(makeTask(p0.makeNext().getTxnId(), "second"),
+                                                         p0.makeNext().getTxnId(), null));
+
+        // Chop a few bytes off the last entry, as if the group commit was torn by a crash
+        File segment = GroupCommitLogReader.segmentFile(m_logDir, 0);
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+        GroupCommitLogReader.Entry entry = reader.next();
+        assertEquals("first", entry.m_invocation.getStoredProcedureName());
+        assertNull(reader.next());
+    }
+
+    /**
+     * Cut a segment at every length, as a crash can leave it, and make sure the reader returns
+     * exactly the entries that were completely written and nothing past them
+     */
+    @Test
+    public void testTruncatedAtEveryOffset() throws IOException {
+        TxnEgo ego = TxnEgo.makeZero(0);
+        Map<Integer, Long> starting = new TreeMap<>();
+        starting.put(0, ego.getTxnId());
+        ByteBuffer[] entries = new ByteBuffer[3];
+        long[] entryEnds = new long[entries.length];
+        long end = GroupCommitLogReader.createSegmentHeader(0, starting).remaining();
+        final long headerBytes = end;
+        for (int i = 0; i < entries.length; i++) {
+            ego = ego.makeNext();
+            entries[i] = GroupCommitLogReader.serializeInvocation(makeTask(ego.getTxnId(), "txn" + i),
+                                                                  ego.getTxnId(), null);
+            end += entries[i].remaining();
+            entryEnds[i] = end;
+        }
+        for (ByteBuffer entry : entries) {
+            entry.mark();
+        }
+        File segment = GroupCommitLogReader.segmentFile(m_logDir, 0);
+
+        for (long length = 0; length <= end; length++) {
+            for (ByteBuffer entry : entries) {
+                entry.reset();
+            }
+            writeSegment(0, starting, entries);
+            try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+                raf.setLength(length);
+            }
+
+            GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+            if (length < headerBytes) {
+                // A segment without a complete header is skipped
+                assertNull(reader.getStartingSpHandles());
+                assertNull(reader.next());
+                continue;
+            }
+            assertEquals(starting, reader.getStartingSpHandles());
+            int complete = 0;
+            while (complete < entryEnds.length && entryEnds[complete] <= length) {
+                complete++;
+            }
+            for (int i = 0; i < complete; i++) {
+                GroupCommitLogReader.Entry entry = reader.next();
+                assertNotNull("Missing entry " + i + " with " + length + " bytes", entry);
+                assertEquals("txn" + i, entry.m_invocation.getStoredProcedureName());
+            }
+            assertNull("Entry read past a cut at " + length, reader.next());
+        }
+    }
+
+    /**
+     * A truncated or damaged segment ends at the damage and the reader carries on with the
+     * next segment
+     */
+    @Test
+    public void testDamagedSegmentFollowedBySegment() throws IOException {
+        TxnEgo p0 = TxnEgo.makeZero(0).makeNext();
+        TxnEgo p1 = p0.makeNext();
+        TxnEgo p2 = p1.makeNext();
+        Map<Integer, Long> starting = new TreeMap<>();
+        starting.put(0, TxnEgo.makeZero(0).getTxnId());
+        ByteBuffer first = GroupCommitLogReader.serializeInvocation(makeTask(p0.getTxnId(), "first"), p0.getTxnId(), null);
+        writeSegment(0, starting, first,
+                GroupCommitLogReader.serializeInvocation(makeTask(p1.getTxnId(), "damaged"), p1.getTxnId(), null));
+        Map<Integer, Long> next = new TreeMap<>();
+        next.put(0, p1.getTxnId());
+        writeSegment(1, next,
+                GroupCommitLogReader.serializeInvocation(makeTask(p2.getTxnId(), "next"), p2.getTxnId(), null));
+
+        // Flip a byte in the payload of the second entry of the first segment
+        File segment = GroupCommitLogReader.segmentFile(m_logDir, 0);
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            long offset = raf.length() - 10;
+            raf.seek(offset);
+            int b = raf.read();
+            raf.seek(offset);
+            raf.write(b ^ 0xff);
+        }
+
+        GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+        assertEquals("first", reader.next().m_invocation.getStoredProcedureName());
+        assertEquals("next", reader.next().m_invocation.getStoredProcedureName());
+        assertNull(reader.next());
+
+        // A first segment cut inside its header is skipped, the log starts with the next one
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.setLength(GroupCommitLogReader.SEGMENT_HEADER_BYTES - 1);
+        }
+        reader = new GroupCommitLogReader(m_logDir);
+        assertEquals(2, reader.getSegmentCount());
+        assertEquals(next, reader.getStartingSpHandles());
+        assertEquals("next", reader.next().m_invocation.getStoredProcedureName());
+        assertNull(reader.next());
+    }
+
+    /**
+     * Space past the last entry that reads as zeros, as a file system can leave after a crash,
+     * ends the segment
+     */
+    @Test
+    public void testZeroFilledTail() throws IOException {
+        TxnEgo p0 = TxnEgo.makeZero(0).makeNext();
+        Map<Integer, Long> starting = new TreeMap<>();
+        starting.put(0, TxnEgo.makeZero(0).getTxnId());
+        writeSegment(0, starting,
+                GroupCommitLogReader.serializeInvocation(makeTask(p0.getTxnId(), "only"), p0.getTxnId(), null),
+                ByteBuffer.allocate(4096));
+
+        GroupCommitLogReader reader = new GroupCommitLogReader(m_logDir);
+        assertEquals("only", reader.next().m_invocation.getStoredProcedureName());
+        assertNull(reader.next());
+    }
+}
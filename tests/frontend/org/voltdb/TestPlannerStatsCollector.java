@@ -0,0 +1,62 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.PlannerStatsCollector.CacheUse;
+
+public class TestPlannerStatsCollector {
+
+    // Evictions of both caches from a single stats row
+    private static void assertEvictions(PlannerStatsCollector stats, boolean interval, long cache1, long cache2) {
+        Object[][] rows = stats.getStatsRows(interval, System.currentTimeMillis());
+        assertEquals(1, rows.length);
+        assertEquals(cache1, rows[0][stats.columnNameToIndex.get("CACHE1_EVICTIONS")]);
+        assertEquals(cache2, rows[0][stats.columnNameToIndex.get("CACHE2_EVICTIONS")]);
+    }
+
+    @Test
+    public void testEvictionsAcrossCacheSwitch() {
+        PlannerStatsCollector stats = new PlannerStatsCollector(CoreUtils.getHSIdFromHostAndSite(0, 1));
+
+        stats.endStatsCollection(10, 10, 5, 7, CacheUse.MISS, 0);
+        assertEvictions(stats, true, 5L, 7L);
+
+        stats.endStatsCollection(10, 10, 8, 9, CacheUse.MISS, 0);
+        // A catalog update switches to a new cache, whose counts start over
+        stats.endStatsCollection(10, 10, 2, 1, CacheUse.MISS, 0);
+        assertEvictions(stats, true, 5L, 3L);
+
+        stats.endStatsCollection(10, 10, 4, 1, CacheUse.HIT1, 0);
+        assertEvictions(stats, true, 2L, 0L);
+
+        // Updates that don't report evictions leave them alone
+        stats.endStatsCollection(10, 10, CacheUse.HIT2, 0);
+        assertEvictions(stats, true, 0L, 0L);
+        assertEvictions(stats, false, 12L, 10L);
+    }
+}
@@ -0,0 +1,59 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import junit.framework.TestCase;
+
+public class TestSnapshotWriterPool extends TestCase {
+
+    public void testAssign() {
+        SnapshotWriterPool pool = new SnapshotWriterPool(3);
+        assertEquals(3, pool.getWriterCount());
+
+        // Idle writers are filled up by number of open targets
+        SnapshotWriterPool.Writer first = pool.assign();
+        SnapshotWriterPool.Writer second = pool.assign();
+        SnapshotWriterPool.Writer third = pool.assign();
+        assertEquals(0, first.getIndex());
+        assertEquals(1, second.getIndex());
+        assertEquals(2, third.getIndex());
+        assertSame(first, pool.assign());
+        assertEquals(2, first.getOpenTargets());
+
+        // The writer with the least data waiting wins over the one with the fewest targets
+        first.queued(1024);
+        second.queued(4096);
+        third.queued(2048);
+        assertSame(first, pool.assign());
+
+        first.written(1024, 1000);
+        assertEquals(0, first.getPendingBytes());
+        assertEquals(1000, first.getBytesWritten());
+        pool.release(first);
+        pool.release(first);
+        pool.release(first);
+        assertEquals(0, first.getOpenTargets());
+        assertSame(first, pool.assign());
+    }
+}
@@ -32,8 +32,10 @@ import java.util.Random;
 import junit.framework.TestCase;
 
 import org.json_voltpatches.JSONException;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.TableHelper.RandomTable;
 import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
 import org.voltdb.types.TimestampType;
@@ -1455,4 +1457,46 @@ public class TestVoltTable extends TestCase {
                 .forEach(s -> System.out.println(s));
         }
     }
+
+    public void testPooledResultBuffer() {
+        VoltTable heap = new VoltTable(new ColumnInfo("ID", VoltType.BIGINT), new ColumnInfo("NAME", VoltType.STRING));
+        for (int i = 0; i < 100; i++) {
+            heap.addRow(i, "row " + i);
+        }
+        // Stand in for a table cached from the EE
+        ByteBuffer cached = ByteBuffer.allocateDirect(heap.getSerializedSize());
+        heap.flattenToBuffer(cached);
+        cached.flip();
+        VoltTable table = PrivateVoltTableFactory.createVoltTableFromSharedBuffer(cached);
+        assertTrue(ResultBufferPool.convertToPooledBuffer(table));
+        assertTrue(ResultBufferPool.getAllocatedBytes() > 0);
+        assertTrue(ResultBufferPool.getAllocatedBytes() <= ResultBufferPool.MAX_ALLOCATED_BYTES);
+
+        // Overwriting the cached buffer doesn't change the pooled copy
+        cached.clear();
+        while (cached.hasRemaining()) {
+            cached.put((byte) 0);
+        }
+        assertTrue(table.hasSameContents(heap));
+
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { table }, null, 42);
+        ByteBuffer expected = ByteBuffer.allocate(response.getSerializedSize());
+        response.flattenToBuffer(expected);
+        expected.flip();
+
+        BBContainer payload = ResultBufferPool.takeResult(response);
+        assertNotNull(payload);
+        assertNull(ResultBufferPool.takeResult(response));
+        ByteBuffer actual = ByteBuffer.allocate(response.getSerializedSize());
+        response.flattenHeaderToBuffer(actual);
+        assertEquals(table.getSerializedSize() - 4, payload.b().remaining());
+        actual.put(payload.b());
+        actual.flip();
+        assertEquals(expected, actual);
+        payload.discard();
+
+        // Tables that weren't copied out of the EE are left alone and have nothing to hand over
+        assertFalse(ResultBufferPool.convertToPooledBuffer(heap));
+        assertNull(ResultBufferPool.takeResult(new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { heap }, null)));
+    }
 }
@@ -0,0 +1,126 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.client.TestDistributer.MockVolt;
+
+/**
+ * Measures how many invocations per second a single Distributer can queue and complete when
+ * many application threads share it, against mock servers that answer every call immediately.
+ *
+ * Throughput is reported at 1, 8 and 64 caller threads. Compare the numbers against a build from
+ * before a Distributer change to see how it scales with callers.
+ * Run with: java org.voltdb.client.DistributerBenchmark [seconds] [servers]
+ */
+public class DistributerBenchmark {
+    private static final int[] THREAD_COUNTS = { 1, 8, 64 };
+    private static final int BASE_PORT = 21212;
+
+    private final int m_seconds;
+    private final int m_servers;
+
+    DistributerBenchmark(int seconds, int servers) {
+        m_seconds = seconds;
+        m_servers = servers;
+    }
+
+    private long run(final int threads) throws Exception {
+        List<MockVolt> volts = new ArrayList<>();
+        final Distributer dist = new Distributer();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicLong completed = new AtomicLong();
+        final ProcedureCallback callback = new ProcedureCallback() {
+            @Override
+            public void clientCallback(ClientResponse clientResponse) {
+                completed.incrementAndGet();
+            }
+        };
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < m_servers; i++) {
+                MockVolt volt = new TestDistributer().new MockVolt(BASE_PORT + i);
+                volt.quiet = true;
+                volt.start();
+                volts.add(volt);
+                dist.createConnection("localhost", "", "", BASE_PORT + i, ClientAuthScheme.HASH_SHA1);
+            }
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(es.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        while (!done.get()) {
+                            ProcedureInvocation invocation =
+                                    new ProcedureInvocation(dist.m_sysHandle.getAndDecrement(), "Foo", 1L);
+                            dist.queue(invocation, callback, true, System.nanoTime(),
+                                       Distributer.USE_DEFAULT_CLIENT_TIMEOUT);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            Thread.sleep(m_seconds * 1000L);
+            done.set(true);
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            dist.drain();
+        } finally {
+            es.shutdownNow();
+            dist.shutdown();
+            for (MockVolt volt : volts) {
+                volt.shutdown();
+            }
+        }
+        return completed.get();
+    }
+
+    private void report(int threads) throws Exception {
+        long completed = run(threads);
+        System.out.printf("threads=%d servers=%d calls/s=%.1f%n", threads, m_servers, completed / (double) m_seconds);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int servers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        DistributerBenchmark benchmark = new DistributerBenchmark(seconds, servers);
+        // Warm up before measuring
+        new DistributerBenchmark(Math.max(1, seconds / 5), servers).run(8);
+        for (int threads : THREAD_COUNTS) {
+            benchmark.report(threads);
+        }
+    }
+}
@@ -24,6 +24,10 @@
 package org.voltdb.client;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
@@ -32,6 +36,7 @@ import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -43,11 +48,14 @@ import org.voltcore.network.QueueMonitor;
 import org.voltcore.network.ReverseDNSCache;
 import org.voltcore.network.VoltNetworkPool;
 import org.voltcore.network.VoltProtocolHandler;
+import org.voltcore.network.WriteStream;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
 import junit.framework.TestCase;
 
 public class TestDistributer extends TestCase {
@@ -55,6 +63,7 @@ public class TestDistributer extends TestCase {
     class MockInputHandler extends VoltProtocolHandler {
 
         volatile boolean gotPing = false;
+        volatile boolean quiet = false;
         AtomicBoolean sendResponses = new AtomicBoolean(true);
         AtomicBoolean sendProcTimeout = new AtomicBoolean(false);
         volatile Semaphore invokedSubscribe = new Semaphore(0);
@@ -105,7 +114,9 @@ public class TestDistributer extends TestCase {
                     buf.clear();
                     c.writeStream().enqueue(buf);
                     roundTrips.incrementAndGet();
-                    System.err.println("Sending response.");
+                    if (!quiet) {
+                        System.err.println("Sending response.");
+                    }
                 }
                 else {
                     System.err.println("Witholding response.");
@@ -170,6 +181,7 @@ public class TestDistributer extends TestCase {
     // A fake server.
     class MockVolt extends Thread {
         boolean handleConnection = true;
+        boolean quiet = false;
         MockVolt(int port) throws IOException {
             network = new VoltNetworkPool();
             network.start();
@@ -238,6 +250,7 @@ public class TestDistributer extends TestCase {
                         responseBuffer.putInt(0);
                         responseBuffer.flip();
                         handler = new MockInputHandler();
+                        handler.quiet = quiet;
                         client.write(responseBuffer);
 
                         client.configureBlocking(false);
@@ -890,6 +903,162 @@ public class TestDistributer extends TestCase {
        }
     }
 
+    @Test
+    public void testClientBatch() throws Exception {
+        if (ClientConfig.ENABLE_SSL_FOR_TEST) return;
+        // TODO: write a mock server that can grock ssl
+        MockVolt volt0 = null;
+        MockVolt volt1 = null;
+
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.start();
+            volt1 = new MockVolt(20001);
+            volt1.start();
+
+            Client clt = ClientFactory.createClient();
+            clt.createConnection("localhost", 20000);
+            clt.createConnection("localhost", 20001);
+            clt.drain();
+            int before = volt0.handler.roundTrips.get() + volt1.handler.roundTrips.get();
+            List<AtomicInteger> writes = countWrites(clt);
+            assertEquals(2, writes.size());
+
+            ProcedureBatch batch = clt.createBatch();
+            List<ListenableFuture<ClientResponse>> calls = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                calls.add(batch.add("Foo", i));
+            }
+            assertEquals(6, batch.size());
+            assertFalse(calls.get(0).isDone());
+
+            List<ClientResponse> responses = batch.execute().get(10, TimeUnit.SECONDS);
+            assertEquals(6, responses.size());
+            for (int i = 0; i < 6; i++) {
+                assertEquals(ClientResponse.SUCCESS, responses.get(i).getStatus());
+                assertSame(responses.get(i), calls.get(i).get());
+            }
+            assertEquals(6, volt0.handler.roundTrips.get() + volt1.handler.roundTrips.get() - before);
+            // Each connection got its 3 calls in one write
+            for (AtomicInteger connectionWrites : writes) {
+                assertEquals(1, connectionWrites.get());
+            }
+
+            try {
+                batch.execute();
+                fail("A batch can only be executed once");
+            }
+            catch (IllegalStateException expected) {
+            }
+            clt.close();
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+            if (volt1 != null) {
+                volt1.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Count the writes queued on each connection of a client from now on
+     */
+    private static List<AtomicInteger> countWrites(Client client) throws Exception {
+        Field distributerField = ClientImpl.class.getDeclaredField("m_distributer");
+        distributerField.setAccessible(true);
+        Field connectionsField = Distributer.class.getDeclaredField("m_connections");
+        connectionsField.setAccessible(true);
+        Field connectionField = Distributer.NodeConnection.class.getDeclaredField("m_connection");
+        connectionField.setAccessible(true);
+
+        List<AtomicInteger> counts = new ArrayList<>();
+        for (Object cxn : (List<?>) connectionsField.get(distributerField.get(client))) {
+            final Connection connection = (Connection) connectionField.get(cxn);
+            final WriteStream writeStream = connection.writeStream();
+            final AtomicInteger count = new AtomicInteger();
+            final WriteStream countingStream = (WriteStream) Proxy.newProxyInstance(
+                    WriteStream.class.getClassLoader(), new Class<?>[] { WriteStream.class },
+                    (proxy, method, args) -> {
+                        if (method.getName().endsWith("nqueue")) {
+                            count.incrementAndGet();
+                        }
+                        return invoke(writeStream, method, args);
+                    });
+            connectionField.set(cxn, Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                    (proxy, method, args) -> method.getName().equals("writeStream") ?
+                            countingStream : invoke(connection, method, args)));
+            counts.add(count);
+        }
+        return counts;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void testClientAsyncCalls() throws Exception {
+        if (ClientConfig.ENABLE_SSL_FOR_TEST) return;
+        // TODO: write a mock server that can grock ssl
+        MockVolt volt0 = new MockVolt(20000);
+        Client clt = null;
+
+        try {
+            volt0.start();
+
+            final AtomicInteger completed = new AtomicInteger(0);
+            ClientConfig config = new ClientConfig();
+            config.setMaxOutstandingTxns(2);
+            config.setProcedureCallTimeout(500);
+            config.setResponseExecutor(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    completed.incrementAndGet();
+                    command.run();
+                }
+            });
+            clt = ClientFactory.createClient(config);
+            clt.createConnection("localhost", 20000);
+            clt.drain();
+
+            // More calls than max outstanding are held, not blocked on, and all complete
+            List<ListenableFuture<ClientResponse>> calls = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                calls.add(clt.callProcedureAsync("Foo", i));
+            }
+            for (ListenableFuture<ClientResponse> call : calls) {
+                assertEquals(ClientResponse.SUCCESS, call.get(10, TimeUnit.SECONDS).getStatus());
+            }
+            assertEquals(10, completed.get());
+
+            // Without responses the calls that are held time out without ever blocking the caller
+            volt0.handler.sendResponses.set(false);
+            calls.clear();
+            final long start = System.nanoTime();
+            for (int i = 0; i < 4; i++) {
+                calls.add(clt.callProcedureAsync("Foo", i));
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+            for (ListenableFuture<ClientResponse> call : calls) {
+                assertEquals(ClientResponse.CONNECTION_TIMEOUT, call.get(10, TimeUnit.SECONDS).getStatus());
+            }
+            assertEquals(14, completed.get());
+        }
+        finally {
+            if (clt != null) {
+                clt.close();
+            }
+            volt0.shutdown();
+        }
+    }
+
     @Test
     public void testClientBlockedOnMaxOutstanding() throws Exception {
         // TODO: write a mock server that can grock ssl
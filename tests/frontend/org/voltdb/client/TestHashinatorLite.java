@@ -102,6 +102,31 @@ public class TestHashinatorLite extends TestCase {
         }
     }
 
+    /*
+     * The columnar bulk load path hashes integer values without boxing them, it has to pick the
+     * same partitions as the boxed values of every integer type.
+     */
+    @Test
+    public void testUnboxedLongHash() throws Exception {
+        int partitionCount = 7;
+        byte[] configBytes = ElasticHashinator.getConfigureBytes(partitionCount, ElasticHashinator.DEFAULT_TOTAL_TOKENS);
+        HashinatorLite h1 = new HashinatorLite(configBytes, false);
+        for (int i = 0; i < 10000; i++) {
+            long value = (i % 2 == 0) ? r.nextInt() : r.nextLong();
+            if (value == Long.MIN_VALUE) {
+                continue;
+            }
+            int hash = h1.hashinateLong(value);
+            assertEquals(h1.getHashedPartitionForParameter(VoltType.BIGINT.getValue(), value), hash);
+            if (value > Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                assertEquals(h1.getHashedPartitionForParameter(VoltType.INTEGER.getValue(), (int) value), hash);
+            }
+            if (value > Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                assertEquals(h1.getHashedPartitionForParameter(VoltType.SMALLINT.getValue(), (short) value), hash);
+            }
+        }
+    }
+
     @Test
     public void testSizeChanges() {
         int partitionCount;
@@ -0,0 +1,195 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.common.Constants;
+import org.voltdb.planner.BoundPlan;
+import org.voltdb.planner.CorePlan;
+
+public class TestAdHocPlanCacheWarmer extends TestCase {
+
+    private static final String DB_PATH = "/clusters#cluster/databases#database";
+
+    private static byte[] hash(int seed) {
+        byte[] hash = new byte[20];
+        Arrays.fill(hash, (byte) seed);
+        return hash;
+    }
+
+    private static Catalog makeCatalog(String... tables) {
+        Catalog catalog = new Catalog();
+        StringBuilder sb = new StringBuilder();
+        sb.append("add / clusters cluster\n");
+        sb.append("add /clusters#cluster databases database\n");
+        for (String table : tables) {
+            sb.append("add ").append(DB_PATH).append(" tables ").append(table).append('\n');
+        }
+        catalog.execute(sb.toString());
+        return catalog;
+    }
+
+    private static CorePlan makeCore(String fragmentJson, byte[] catalogHash, String... tables) {
+        CorePlan core = new CorePlan(fragmentJson.getBytes(Constants.UTF8ENCODING), null, hash(7), null, false, true,
+                                     new VoltType[] { VoltType.BIGINT }, catalogHash);
+        core.setTables(new HashSet<>(Arrays.asList(tables)));
+        return core;
+    }
+
+    private static BoundPlan makePlan(String table, byte[] catalogHash, int partitioningParamIndex,
+                                      Object partitioningValue, String... constants) {
+        CorePlan core = makeCore("{\"PLAN_NODES\":[{\"TARGET_TABLE_NAME\":\"" + table + "\"}]}", catalogHash, table);
+        core.setPartitioningParamIndex(partitioningParamIndex);
+        core.setPartitioningParamValue(partitioningValue);
+        return new BoundPlan(core, constants.length == 0 ? null : constants);
+    }
+
+    public void testChangedTables() {
+        String diff = "set " + DB_PATH + "/tables#FOO isreplicated true\n" +
+                      "set $PREV estimatedtuplecount 10\n" +
+                      "add " + DB_PATH + "/tables#bar columns C1\n" +
+                      "set " + DB_PATH + "/procedures#PROC readonly false\n" +
+                      "delete " + DB_PATH + " tables BAZ\n";
+        Set<String> changed = AdHocPlanCacheWarmer.changedTables(diff);
+        assertEquals(3, changed.size());
+        assertTrue(changed.contains("FOO"));
+        assertTrue(changed.contains("BAR"));
+        assertTrue(changed.contains("BAZ"));
+
+        assertTrue(AdHocPlanCacheWarmer.changedTables("").isEmpty());
+        assertNull(AdHocPlanCacheWarmer.changedTables("add " + DB_PATH + " functions F\n"));
+    }
+
+    public void testCarryOver() {
+        AdHocCompilerCache from = new AdHocCompilerCache(100, 100);
+        AdHocCompilerCache to = new AdHocCompilerCache(100, 100);
+        from.warmCorePlans("select from foo", Arrays.asList(makePlan("FOO", hash(1), 0, null)));
+        from.warmCorePlans("select from bar", Arrays.asList(makePlan("BAR", hash(1), -1, 5L, "5")));
+
+        AdHocPlanCacheWarmer.carryOver(from, to,
+                "set " + DB_PATH + "/tables#FOO isreplicated true\n", hash(2));
+        assertNull(to.getWithParsedToken("select from foo"));
+        List<BoundPlan> plans = to.getWithParsedToken("select from bar");
+        assertEquals(1, plans.size());
+        assertTrue(plans.get(0).m_core.wasPlannedAgainstHash(hash(2)));
+        assertEquals(-1, plans.get(0).m_core.getPartitioningParamIndex());
+        assertEquals(5L, plans.get(0).m_core.getPartitioningParamValue());
+        assertEquals("5", plans.get(0).m_constants[0]);
+
+        // A function change can affect any plan
+        AdHocCompilerCache none = new AdHocCompilerCache(100, 100);
+        AdHocPlanCacheWarmer.carryOver(from, none, "add " + DB_PATH + " functions F\n", hash(2));
+        assertEquals(0, none.getCoreCacheSize());
+    }
+
+    public void testCarryOverChecksRecordedTables() {
+        AdHocCompilerCache from = new AdHocCompilerCache(100, 100);
+        // Reads FOO, and has a column that happens to be named after table BAR
+        from.warmCorePlans("select bar from foo", Arrays.asList(new BoundPlan(makeCore(
+                "{\"PLAN_NODES\":[{\"TARGET_TABLE_NAME\":\"FOO\",\"COLUMN_NAME\":\"BAR\"}]}",
+                hash(1), "FOO"), null)));
+        // Joins FOO and BAZ
+        from.warmCorePlans("select from foo, baz", Arrays.asList(new BoundPlan(makeCore(
+                "{\"PLAN_NODES\":[]}", hash(1), "FOO", "BAZ"), null)));
+        // Planned without a record of its tables
+        CorePlan unknown = makeCore("{\"PLAN_NODES\":[]}", hash(1));
+        unknown.setTables(null);
+        from.warmCorePlans("select from unknown", Arrays.asList(new BoundPlan(unknown, null)));
+
+        // DDL on a table none of the plans use keeps all of them, even one that names it
+        AdHocCompilerCache afterBar = new AdHocCompilerCache(100, 100);
+        AdHocPlanCacheWarmer.carryOver(from, afterBar, "add " + DB_PATH + "/tables#BAR columns C2\n", hash(2));
+        assertNotNull(afterBar.getWithParsedToken("select bar from foo"));
+        assertNotNull(afterBar.getWithParsedToken("select from foo, baz"));
+        assertNull(afterBar.getWithParsedToken("select from unknown"));
+
+        // DDL on a table used by one of the plans only drops that one
+        AdHocCompilerCache afterBaz = new AdHocCompilerCache(100, 100);
+        AdHocPlanCacheWarmer.carryOver(from, afterBaz, "delete " + DB_PATH + " tables BAZ\n", hash(2));
+        assertNotNull(afterBaz.getWithParsedToken("select bar from foo"));
+        assertNull(afterBaz.getWithParsedToken("select from foo, baz"));
+
+        // A change that touches no table keeps even the plan without a record
+        AdHocCompilerCache afterProc = new AdHocCompilerCache(100, 100);
+        AdHocPlanCacheWarmer.carryOver(from, afterProc, "set " + DB_PATH + "/procedures#PROC readonly false\n", hash(2));
+        assertEquals(3, afterProc.getCoreCacheSize());
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        File file = File.createTempFile("adhoc_plan_cache", "");
+        try {
+            Catalog catalog = makeCatalog("FOO", "BAR");
+            AdHocCompilerCache cache = new AdHocCompilerCache(100, 100);
+            cache.warmCorePlans("select from foo", Arrays.asList(makePlan("FOO", hash(1), 0, null),
+                                                                  makePlan("FOO", hash(1), -1, "x", null, "x")));
+            cache.warmCorePlans("select from bar", Arrays.asList(makePlan("BAR", hash(1), -1, null)));
+            AdHocPlanCacheWarmer.save(file, catalog, hash(1), cache);
+
+            // Same catalog, everything comes back
+            AdHocCompilerCache loaded = new AdHocCompilerCache(100, 100);
+            assertEquals(2, AdHocPlanCacheWarmer.load(file, catalog, hash(1), loaded));
+            List<BoundPlan> plans = loaded.getWithParsedToken("select from foo");
+            assertEquals(2, plans.size());
+            assertEquals(cache.getWithParsedToken("select from foo"), plans);
+            assertNull(plans.get(1).m_constants[0]);
+            assertEquals("x", plans.get(1).m_core.getPartitioningParamValue());
+            assertEquals(Collections.singleton("FOO"), plans.get(1).m_core.getTables());
+
+            // A catalog that dropped one of the tables keeps the plans of the other
+            AdHocCompilerCache afterDrop = new AdHocCompilerCache(100, 100);
+            assertEquals(1, AdHocPlanCacheWarmer.load(file, makeCatalog("BAR"), hash(3), afterDrop));
+            assertNull(afterDrop.getWithParsedToken("select from foo"));
+            assertTrue(afterDrop.getWithParsedToken("select from bar").get(0).m_core.wasPlannedAgainstHash(hash(3)));
+
+            // A damaged file is refused
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(30);
+                int b = raf.read();
+                raf.seek(30);
+                raf.write(b ^ 0xff);
+            }
+            try {
+                AdHocPlanCacheWarmer.load(file, catalog, hash(1), new AdHocCompilerCache(100, 100));
+                fail("Expected a checksum failure");
+            }
+            catch (IOException expected) {
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import com.google_voltpatches.common.cache.Weigher;
+
+public class TestTinyLfuCache extends TestCase {
+
+    private static final Weigher<String, String> LENGTH_WEIGHER = new Weigher<String, String>() {
+        @Override
+        public int weigh(String key, String value) {
+            return value.length();
+        }
+    };
+
+    public void testBoundedByCount() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, 0, null, 1);
+        for (int i = 0; i < 1000; i++) {
+            assertNull(cache.putIfAbsent("key" + i, "value" + i));
+            assertTrue(cache.size() <= 100);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.evictionCount());
+        assertEquals("value999", cache.putIfAbsent("key999", "other"));
+    }
+
+    public void testBoundedByWeight() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(1000, 10000, LENGTH_WEIGHER, 2);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append('x');
+        }
+        final String hundred = sb.toString();
+        for (int i = 0; i < 1000; i++) {
+            cache.putIfAbsent("key" + i, hundred);
+            assertTrue(cache.weightedSize() <= 10000);
+        }
+        assertEquals(cache.size() * 100L, cache.weightedSize());
+
+        // An entry bigger than the share of a shard is kept if it is used often enough,
+        // the other shard gives up entries for it
+        sb.setLength(0);
+        for (int i = 0; i < 6000; i++) {
+            sb.append('y');
+        }
+        final String big = sb.toString();
+        for (int i = 0; i < 3; i++) {
+            assertNull(cache.get("big"));
+        }
+        assertNull(cache.putIfAbsent("big", big));
+        assertSame(big, cache.get("big"));
+        assertTrue(cache.weightedSize() <= 10000);
+        assertEquals((cache.size() - 1) * 100L + 6000, cache.weightedSize());
+
+        // An entry bigger than the whole cache is never kept
+        sb.append(sb);
+        assertNull(cache.putIfAbsent("huge", sb.toString()));
+        assertNull(cache.get("huge"));
+        assertSame(big, cache.get("big"));
+        assertTrue(cache.weightedSize() <= 10000);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    public void testFrequentEntriesSurviveScan() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, 0, null, 1);
+        for (int i = 0; i < 50; i++) {
+            cache.putIfAbsent("hot" + i, "hot");
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals("hot", cache.get("hot" + i));
+            }
+        }
+        // A flood of statements that are each seen once shouldn't push out the ones still in use
+        for (int i = 0; i < 10000; i++) {
+            cache.get("cold" + i);
+            cache.putIfAbsent("cold" + i, "cold");
+            cache.get("hot" + (i % 50));
+        }
+        int hotLeft = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot" + i) != null) {
+                hotLeft++;
+            }
+        }
+        assertEquals(50, hotLeft);
+        assertEquals(100, cache.size());
+    }
+
+    public void testMissThenPutCountsOnce() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(2, 0, null, 1);
+        assertNull(cache.get("a"));
+        cache.putIfAbsent("a", "a");
+        assertNull(cache.get("b"));
+        cache.putIfAbsent("b", "b");
+        // a moves to the main region, one more use gives it two
+        assertEquals("a", cache.get("a"));
+        assertNull(cache.get("c"));
+        cache.putIfAbsent("c", "c");
+
+        // b has lost its place, requesting it again gives it two uses as well
+        assertNull(cache.get("b"));
+        cache.putIfAbsent("b", "b");
+        assertNull(cache.get("d"));
+        cache.putIfAbsent("d", "d");
+
+        // b only displaces a if it has been requested more often, a tie keeps a
+        assertEquals("a", cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertEquals(2, cache.size());
+    }
+
+    public void testRemove() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10, 100, LENGTH_WEIGHER, 1);
+        cache.putIfAbsent("a", "aaaa");
+        cache.putIfAbsent("b", "bb");
+        assertEquals(6, cache.weightedSize());
+        assertEquals("aaaa", cache.remove("a"));
+        assertNull(cache.remove("a"));
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.weightedSize());
+        // Removed entries still queued for eviction must not be counted twice
+        for (int i = 0; i < 100; i++) {
+            cache.putIfAbsent("k" + i, "v");
+        }
+        assertEquals(10, cache.size());
+    }
+
+    public void testConcurrentAccess() throws Exception {
+        final TinyLfuCache<String, String> cache = new TinyLfuCache<>(256, 0, null, 4);
+        ExecutorService es = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                futures.add(es.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 20000; i++) {
+                            String key = "key" + ((i * 31 + seed) % 1000);
+                            String value = cache.get(key);
+                            if (value == null) {
+                                value = cache.putIfAbsent(key, key);
+                            }
+                            assertTrue(value == null || value.equals(key));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            es.shutdown();
+        }
+        assertTrue(cache.size() <= 256);
+    }
+}
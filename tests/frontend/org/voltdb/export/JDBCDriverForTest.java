@@ -23,6 +23,150 @@
 
 package org.voltdb.export;
 
-public class JDBCDriverForTest {
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
+import org.hsqldb_voltpatches.jdbc.JDBCDriver;
+
+/**
+ * Driver for JDBC export tests. jdbc:voltdbtest:name connects to the in-memory HSQLDB database
+ * name, through connections that can be told to fail commits.
+ *
+ * The HSQLDB bundled with VoltDB rejects quoted names, so the quotes are taken out of the
+ * statements and the tables written to need names that aren't reserved words.
+ */
+public class JDBCDriverForTest implements Driver {
+    public static final String URL_PREFIX = "jdbc:voltdbtest:";
+
+    private static final AtomicInteger s_commitsToFail = new AtomicInteger();
+
+    private final Driver m_hsqldb = new JDBCDriver();
+
+    /**
+     * Make the next count commits of transactions that inserted rows fail, rolling them back
+     */
+    public static void failCommits(int count) {
+        s_commitsToFail.set(count);
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        final Connection conn = m_hsqldb.connect("jdbc:hsqldb:mem:" + url.substring(URL_PREFIX.length()), info);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new TestConnection(conn));
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    private static String unquote(String sql) {
+        return sql.replace("\"", "");
+    }
+
+    private static class TestConnection implements InvocationHandler {
+        private final Connection m_conn;
+        private boolean m_inserted = false;
+
+        TestConnection(Connection conn) {
+            m_conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "prepareStatement":
+                args[0] = unquote((String) args[0]);
+                if (((String) args[0]).startsWith("INSERT")) {
+                    m_inserted = true;
+                }
+                break;
+            case "commit":
+                if (m_inserted && s_commitsToFail.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    m_inserted = false;
+                    m_conn.rollback();
+                    throw new SQLException("Commit failed by the test");
+                }
+                m_inserted = false;
+                break;
+            case "rollback":
+                m_inserted = false;
+                break;
+            default:
+                break;
+            }
+            final Object result;
+            try {
+                result = method.invoke(m_conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement && method.getName().equals("createStatement")) {
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { Statement.class },
+                        new TestStatement((Statement) result));
+            }
+            return result;
+        }
+    }
+
+    private static class TestStatement implements InvocationHandler {
+        private final Statement m_stmt;
+
+        TestStatement(Statement stmt) {
+            m_stmt = stmt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith("execute") && args != null && args[0] instanceof String) {
+                // The pool validates connections with SELECT 1, which HSQLDB only takes with a FROM clause
+                args[0] = "SELECT 1".equals(args[0]) ? "VALUES (1)" : unquote((String) args[0]);
+            }
+            try {
+                return method.invoke(m_stmt, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
 }
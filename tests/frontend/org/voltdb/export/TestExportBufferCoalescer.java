@@ -0,0 +1,136 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class TestExportBufferCoalescer {
+
+    private static final byte[] SCHEMA = { 1, 2, 3, 4, 5 };
+
+    // Buffer laid out like the buffers pushed by the EE, with rows of a single byte column
+    private static ByteBuffer getBuffer(long generation, byte[] schema, int rows, byte firstValue) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(StreamBlock.HEADER_SIZE + 13 + schema.length + rows * 14);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(StreamBlock.HEADER_SIZE);
+        buf.put((byte) StreamBlockQueue.EXPORT_BUFFER_VERSION);
+        buf.putLong(generation);
+        buf.putInt(schema.length);
+        buf.put(schema);
+        for (int i = 0; i < rows; i++) {
+            buf.putInt(10);     // row length
+            buf.putInt(0);      // partition column index
+            buf.putInt(1);      // column count
+            buf.put((byte) 0);  // null flags
+            buf.put((byte) (firstValue + i));
+        }
+        buf.flip();
+        return buf;
+    }
+
+    @Test
+    public void testMergeBuffers() {
+        ExportBufferCoalescer coalescer = new ExportBufferCoalescer(1024, 1000);
+        assertTrue(coalescer.isEnabled());
+        assertNull(coalescer.drain());
+
+        ByteBuffer first = getBuffer(7, SCHEMA, 2, (byte) 0);
+        assertTrue(coalescer.canHold(first));
+        assertTrue(coalescer.hold(10, 2, 100, first));
+        final long epoch = coalescer.getEpoch();
+        ByteBuffer second = getBuffer(7, SCHEMA, 3, (byte) 2);
+        assertTrue(coalescer.canAppend(12, second));
+        assertFalse(coalescer.hold(12, 3, 101, second));
+        assertFalse(coalescer.isFull());
+        assertEquals(10, coalescer.getStartSequenceNumber());
+        assertEquals(5, coalescer.getTupleCount());
+        assertEquals(101, coalescer.getUniqueId());
+
+        ByteBuffer merged = coalescer.drain();
+        assertTrue(coalescer.isEmpty());
+        assertEquals(0, coalescer.getTupleCount());
+        ByteBuffer expected = getBuffer(7, SCHEMA, 5, (byte) 0);
+        assertEquals(expected.limit(), merged.limit());
+        for (int i = StreamBlock.HEADER_SIZE; i < expected.limit(); i++) {
+            assertEquals(expected.get(i), merged.get(i));
+        }
+
+        // A single held buffer is queued as is, in a new epoch
+        ByteBuffer single = getBuffer(7, SCHEMA, 1, (byte) 0);
+        assertTrue(coalescer.hold(15, 1, 102, single));
+        assertTrue(coalescer.getEpoch() > epoch);
+        assertSame(single, coalescer.drain());
+    }
+
+    @Test
+    public void testCanAppend() {
+        ExportBufferCoalescer coalescer = new ExportBufferCoalescer(1024, 1000);
+        assertTrue(coalescer.canAppend(10, getBuffer(7, SCHEMA, 1, (byte) 0)));
+        coalescer.hold(10, 2, 100, getBuffer(7, SCHEMA, 2, (byte) 0));
+
+        // Sequence numbers must follow the held ones
+        assertFalse(coalescer.canAppend(13, getBuffer(7, SCHEMA, 1, (byte) 0)));
+        // Generation and schema must be the same
+        assertFalse(coalescer.canAppend(12, getBuffer(8, SCHEMA, 1, (byte) 0)));
+        assertFalse(coalescer.canAppend(12, getBuffer(7, new byte[] { 1, 2, 3, 4, 6 }, 1, (byte) 0)));
+        assertFalse(coalescer.canAppend(12, getBuffer(7, new byte[] { 1, 2, 3, 4 }, 1, (byte) 0)));
+        assertTrue(coalescer.canAppend(12, getBuffer(7, SCHEMA, 1, (byte) 0)));
+        coalescer.discard();
+        assertTrue(coalescer.isEmpty());
+    }
+
+    @Test
+    public void testCanHold() {
+        // Disabled without a maximum delay
+        assertFalse(new ExportBufferCoalescer(1024, 0).canHold(getBuffer(7, SCHEMA, 1, (byte) 0)));
+
+        ExportBufferCoalescer coalescer = new ExportBufferCoalescer(14 * 4, 1000);
+        // Buffers as large as the target are not held
+        assertFalse(coalescer.canHold(getBuffer(7, SCHEMA, 4, (byte) 0)));
+        // Buffers that don't parse are not held
+        ByteBuffer bad = getBuffer(7, SCHEMA, 1, (byte) 0);
+        bad.put(StreamBlock.HEADER_SIZE, (byte) (StreamBlockQueue.EXPORT_BUFFER_VERSION + 1));
+        assertFalse(coalescer.canHold(bad));
+        bad = getBuffer(7, SCHEMA, 1, (byte) 0);
+        bad.putInt(StreamBlock.HEADER_SIZE + 9, 1000);
+        assertFalse(coalescer.canHold(bad));
+
+        // Held buffers are full once their rows reach the target
+        coalescer.hold(0, 2, 0, getBuffer(7, SCHEMA, 2, (byte) 0));
+        assertFalse(coalescer.isFull());
+        coalescer.hold(2, 2, 0, getBuffer(7, SCHEMA, 2, (byte) 2));
+        assertTrue(coalescer.isFull());
+        coalescer.discard();
+    }
+}
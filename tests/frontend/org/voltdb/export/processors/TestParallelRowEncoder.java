@@ -0,0 +1,190 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.export.processors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.VoltType;
+import org.voltdb.export.AdvertisedDataSource;
+import org.voltdb.exportclient.ExportDecoderBase;
+import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowCursor;
+
+import com.google_voltpatches.common.collect.Sets;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+public class TestParallelRowEncoder extends TestCase {
+    private static final int THREADS = 3;
+
+    private ListeningExecutorService m_pool;
+
+    class EncodingDecoder extends ExportDecoderBase {
+        final AtomicInteger m_created = new AtomicInteger();
+        final Set<String> m_threads = Collections.synchronizedSet(Sets.<String>newHashSet());
+
+        EncodingDecoder() {
+            super(source());
+        }
+
+        @Override
+        public RowEncoder createRowEncoder() {
+            m_created.incrementAndGet();
+            return new RowEncoder() {
+                @Override
+                public Object encode(ExportRowCursor cursor) {
+                    m_threads.add(Thread.currentThread().getName());
+                    return "row " + cursor.getLong(0);
+                }
+            };
+        }
+
+        @Override
+        public void sourceNoLongerAdvertised(AdvertisedDataSource source) {
+        }
+    }
+
+    @Override
+    public void setUp() {
+        m_pool = CoreUtils.getListeningExecutorService("Test export encoder", THREADS);
+    }
+
+    @Override
+    public void tearDown() {
+        m_pool.shutdownNow();
+    }
+
+    private static AdvertisedDataSource source() {
+        return new AdvertisedDataSource(0, "foo", "mytable", null, 0, 1,
+                new ArrayList<>(Arrays.asList("ID")), new ArrayList<>(Arrays.asList(VoltType.BIGINT)),
+                Arrays.asList(8), AdvertisedDataSource.ExportFormat.SEVENDOTX);
+    }
+
+    private static ExportRow schema() {
+        return new ExportRow("mytable", Arrays.asList("ID"), Arrays.asList(VoltType.BIGINT), Arrays.asList(8),
+                null, null, 0, 0, 1L);
+    }
+
+    // Rows of a single BIGINT column, laid out like the rows of an export block
+    private static ByteBuffer block(int rows) {
+        ByteBuffer buf = ByteBuffer.allocate(rows * 21).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < rows; i++) {
+            buf.putInt(17);     // row length
+            buf.putInt(0);      // partition column index
+            buf.putInt(1);      // column count
+            buf.put((byte) 0);  // null flags
+            buf.putLong(i);
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static ExportRowCursor cursorOn(ByteBuffer buf) {
+        ExportRowCursor cursor = new ExportRowCursor();
+        cursor.reset(buf, schema(), 0);
+        return cursor;
+    }
+
+    public void testRowsEncodedInOrder() throws IOException {
+        EncodingDecoder decoder = new EncodingDecoder();
+        ParallelRowEncoder encoder = new ParallelRowEncoder(decoder, m_pool, THREADS);
+        final int rows = ParallelRowEncoder.MIN_ROWS_PER_RANGE * 10 + 7;
+        ByteBuffer buf = block(rows);
+
+        encoder.encode(buf, schema(), 0);
+        assertTrue(encoder.isEncoded());
+        assertNull(encoder.getFailure());
+        assertEquals(rows, encoder.getRowCount());
+        ExportRowCursor cursor = cursorOn(buf);
+        for (int i = 0; i < rows; i++) {
+            assertEquals("row " + i, encoder.getEncodedRow(i));
+            cursor.seekRow(encoder.getRowPosition(i));
+            assertEquals(i, cursor.getLong(0));
+        }
+        // The decoder thread and the pool both encoded, with one encoder per range
+        assertTrue(decoder.m_threads.size() > 1);
+        assertTrue(decoder.m_created.get() <= THREADS + 1);
+
+        // Encoders are reused for the following blocks
+        int created = decoder.m_created.get();
+        encoder.clear();
+        assertFalse(encoder.isEncoded());
+        encoder.encode(block(rows), schema(), 0);
+        assertEquals(rows, encoder.getRowCount());
+        assertEquals(created, decoder.m_created.get());
+    }
+
+    public void testSmallBlockEncodedByDecoderThread() {
+        EncodingDecoder decoder = new EncodingDecoder();
+        ParallelRowEncoder encoder = new ParallelRowEncoder(decoder, m_pool, THREADS);
+        encoder.encode(block(3), schema(), 0);
+        assertEquals(3, encoder.getRowCount());
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), decoder.m_threads);
+    }
+
+    public void testRowsAfterMalformedRowDropped() {
+        EncodingDecoder decoder = new EncodingDecoder();
+        ParallelRowEncoder encoder = new ParallelRowEncoder(decoder, m_pool, THREADS);
+        final int rows = ParallelRowEncoder.MIN_ROWS_PER_RANGE * 4;
+        ByteBuffer buf = block(rows);
+        // Corrupt the column count of a row in the last range
+        final int badRow = rows - 10;
+        buf.putInt(badRow * 21 + 8, 2);
+
+        encoder.encode(buf, schema(), 0);
+        assertEquals(badRow, encoder.getRowCount());
+        assertNotNull(encoder.getFailure());
+        ArrayList<Object> encoded = new ArrayList<>();
+        for (int i = 0; i < encoder.getRowCount(); i++) {
+            encoded.add(encoder.getEncodedRow(i));
+        }
+        assertEquals("row " + (badRow - 1), encoded.get(badRow - 1));
+
+        // A row overrunning the block stops the rows that are located
+        buf = block(5);
+        buf.limit(5 * 21 - 3);
+        encoder.encode(buf, schema(), 0);
+        assertEquals(4, encoder.getRowCount());
+        assertNotNull(encoder.getFailure());
+    }
+
+    public void testDecoderWithoutEncoder() {
+        ExportDecoderBase decoder = new ExportDecoderBase(source()) {
+            @Override
+            public void sourceNoLongerAdvertised(AdvertisedDataSource source) {
+            }
+        };
+        assertNull(decoder.acquireRowEncoder());
+        assertNull(ParallelRowEncoder.forDecoder(decoder));
+    }
+}
@@ -321,6 +321,94 @@ public class TestExportDecoderBase extends TestCase
     }
 
 
+    public void testExportRowCursor() throws IOException {
+        long l = System.currentTimeMillis();
+        vtable.clearRowData();
+        vtable.addRow(l, l, l, 0, l, l, (byte) 1, (short) 2, 3, 4, 5.5, 6, "xx", new BigDecimal(88), GEOG_POINT, GEOG);
+        vtable.addRow(l, l, l, 0, l, l, null, null, null, null, null, null, null, null, null, null);
+        vtable.addRow(l, l, l, 0, l, l, (byte) 7, (short) 8, 9, 10, 11.5, 12, "yy", new BigDecimal(13), GEOG_POINT, GEOG);
+        byte[] rowBytes = ExportEncoder.encodeTable(vtable, "mytable", 7, 1L);
+        ByteBuffer bb = ByteBuffer.wrap(rowBytes);
+        bb.order(ByteOrder.LITTLE_ENDIAN);
+        int schemaSize = bb.getInt();
+        ExportRow schemaRow = ExportRow.decodeBufferSchema(bb, schemaSize, 1, 0);
+        int rowsStart = bb.position();
+
+        // Decode every row the boxed way to compare with
+        List<ExportRow> expected = new ArrayList<>();
+        while (bb.hasRemaining()) {
+            bb.getInt(); // row size
+            expected.add(ExportRow.decodeRow(schemaRow, 0, 0L, bb));
+        }
+        bb.position(rowsStart);
+
+        ExportRowCursor cursor = new ExportRowCursor();
+        cursor.reset(bb, schemaRow, 0);
+        assertEquals("mytable", cursor.getTableName());
+        assertEquals(schemaRow.types.size(), cursor.getColumnCount());
+        List<Integer> positions = new ArrayList<>();
+        for (ExportRow row : expected) {
+            assertTrue(cursor.advanceRow());
+            positions.add(cursor.getRowPosition());
+            assertEquals(7, cursor.getPartitionColumnIndex());
+            assertEquals(row.partitionValue, cursor.getPartitionValue());
+            Object[] values = cursor.getValues();
+            for (int i = 0; i < values.length; i++) {
+                if (row.values[i] == null) {
+                    assertTrue(cursor.isNull(i));
+                    assertNull(values[i]);
+                } else if (row.values[i] instanceof BigDecimal) {
+                    assertEquals(0, ((BigDecimal) row.values[i]).compareTo((BigDecimal) values[i]));
+                } else {
+                    assertEquals(row.values[i].toString(), values[i].toString());
+                }
+            }
+            ExportRow copy = cursor.toExportRow();
+            assertEquals(row.partitionValue, copy.partitionValue);
+            assertEquals(row.values.length, copy.values.length);
+        }
+        assertFalse(cursor.advanceRow());
+
+        // Primitive accessors of the first row
+        cursor.seekRow(positions.get(0));
+        assertEquals(l, cursor.getLong(0));
+        assertEquals(1L, cursor.getLong(6));
+        assertEquals(2L, cursor.getLong(7));
+        assertEquals(3L, cursor.getLong(8));
+        assertEquals(4L, cursor.getLong(9));
+        assertEquals(5.5, cursor.getDouble(10));
+        assertEquals(6L, cursor.getLong(11));
+        assertEquals("xx", cursor.getString(12));
+        assertEquals(2, cursor.getLength(12));
+        assertEquals(0, cursor.getDecimal(13).compareTo(new BigDecimal(88)));
+        assertEquals(GEOG_POINT.toString(), cursor.getGeographyPoint(14).toString());
+        assertEquals(GEOG.toString(), cursor.getGeography(15).toString());
+
+        // The null partition column falls back to the partition id
+        cursor.seekRow(positions.get(1));
+        assertTrue(cursor.isNull(7));
+        assertEquals(0, cursor.getPartitionValue());
+
+        // The values array is reused and refreshed when the cursor moves
+        cursor.seekRow(positions.get(2));
+        Object[] values = cursor.getValues();
+        assertEquals("yy", values[12]);
+        cursor.seekRow(positions.get(0));
+        assertSame(values, cursor.getValues());
+        assertEquals("xx", values[12]);
+
+        // Strings are also read from direct buffers
+        ByteBuffer direct = ByteBuffer.allocateDirect(rowBytes.length - rowsStart);
+        direct.put(rowBytes, rowsStart, rowBytes.length - rowsStart);
+        direct.flip();
+        cursor.reset(direct, schemaRow, 3);
+        assertTrue(cursor.advanceRow());
+        assertEquals("xx", cursor.getString(12));
+        assertEquals(3, cursor.getPartitionId());
+        vtable.clearRowData();
+    }
+
+
     public void testExportDecoderPartitioning() throws IOException {
         AdvertisedDataSource source = constructTestSource();
 
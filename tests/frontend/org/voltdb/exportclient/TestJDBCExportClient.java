@@ -29,9 +29,20 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.util.Properties;
 
 import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.export.AdvertisedDataSource;
+import org.voltdb.export.JDBCDriverForTest;
+import org.voltdb.exportclient.ExportDecoderBase.RestartBlockException;
 
 public class TestJDBCExportClient extends ExportClientTestBase {
     @Test
@@ -205,4 +216,180 @@ public class TestJDBCExportClient extends ExportClientTestBase {
             client.shutdown();
         }
     }
+
+    @Test
+    public void testBatchConfig() throws Exception
+    {
+        final JDBCExportClient client = new JDBCExportClient();
+        final Properties config = new Properties();
+        config.setProperty("jdbcurl", "fakeurl");
+        config.setProperty("jdbcuser", "fakeuser");
+        config.setProperty("jdbcdriver", "org.voltdb.export.JDBCDriverForTest");
+        try {
+            client.configure(config);
+            assertEquals(1, client.m_batchRows);
+            assertFalse(client.m_useCopy);
+            assertEquals(1, client.m_parallelConnections);
+        } finally {
+            client.shutdown();
+        }
+
+        config.setProperty("batchrows", "100");
+        config.setProperty("copy", "true");
+        config.setProperty("parallelconnections", "4");
+        try {
+            client.configure(config);
+            assertEquals(100, client.m_batchRows);
+            assertTrue(client.m_useCopy);
+            assertEquals(4, client.m_parallelConnections);
+        } finally {
+            client.shutdown();
+        }
+
+        for (String[] invalid : new String[][] { { "batchrows", "0" }, { "batchrows", "10x" },
+                { "parallelconnections", "0" }, { "parallelconnections", "x" } }) {
+            final JDBCExportClient badClient = new JDBCExportClient();
+            final Properties badConfig = new Properties();
+            badConfig.putAll(config);
+            badConfig.setProperty(invalid[0], invalid[1]);
+            try {
+                badClient.configure(badConfig);
+                fail("Invalid " + invalid[0]);
+            } catch (IllegalArgumentException e) {}
+            finally {
+                badClient.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testMultiRowInsert()
+    {
+        assertEquals("INSERT INTO \"t\" (\"a\", \"b\") VALUES (?, ?), (?, ?), (?, ?)",
+                JDBCExportClient.multiRowInsert("INSERT INTO \"t\" (\"a\", \"b\") VALUES (?, ?)", "(?, ?)", 3));
+        assertEquals("INSERT INTO t (a) VALUES (?)", JDBCExportClient.multiRowInsert("INSERT INTO t (a) VALUES (?)", "(?)", 1));
+    }
+
+    @Test
+    public void testAppendCopyRow() throws IOException
+    {
+        vtable.clearRowData();
+        long l = System.currentTimeMillis();
+        vtable.addRow(l, l, l, 0, l, l, (byte) 1, (short) 2, 3, 4, 5.5, 6, "x\"y,z", new BigDecimal(88), GEOG_POINT, GEOG);
+        vtable.addRow(l, l, l, 0, l, l, null, null, null, null, null, null, "", null, null, null);
+        ByteBuffer bb = ByteBuffer.wrap(ExportEncoder.encodeTable(vtable, "mytable", 7, 1L));
+        bb.order(ByteOrder.LITTLE_ENDIAN);
+        int schemaSize = bb.getInt();
+        ExportRow schemaRow = ExportRow.decodeBufferSchema(bb, schemaSize, 1, 0);
+        ExportRowCursor cursor = new ExportRowCursor();
+        cursor.reset(bb, schemaRow, 0);
+
+        StringBuilder sb = new StringBuilder();
+        assertTrue(cursor.advanceRow());
+        JDBCExportClient.appendCopyRow(sb, cursor, ExportRow.INTERNAL_FIELD_COUNT);
+        assertEquals("1,2,3,4,5.5,1970-01-01T00:00:00.000006Z,\"x\"\"y,z\",88.000000000000,\""
+                + GEOG_POINT.toWKT() + "\",\"" + GEOG.toWKT() + "\"\n", sb.toString());
+
+        // Nulls are empty fields, empty strings are quoted
+        sb.setLength(0);
+        assertTrue(cursor.advanceRow());
+        JDBCExportClient.appendCopyRow(sb, cursor, ExportRow.INTERNAL_FIELD_COUNT);
+        assertEquals(",,,,,,\"\",,,\n", sb.toString());
+    }
+
+    @Test
+    public void testRestartedParallelBlock() throws Exception
+    {
+        final int rowCount = 1003;
+        final String url = JDBCDriverForTest.URL_PREFIX + "restartedblock";
+        final JDBCExportClient client = new JDBCExportClient();
+        final Properties config = new Properties();
+        config.setProperty("jdbcurl", url);
+        config.setProperty("jdbcuser", "sa");
+        config.setProperty("jdbcdriver", "org.voltdb.export.JDBCDriverForTest");
+        config.setProperty("ignoregenerations", "true");
+        // Slices of 501 and 502 rows, each written 10 rows per statement and then the rows left over
+        config.setProperty("batchrows", "10");
+        config.setProperty("parallelconnections", "2");
+        client.configure(config);
+        final AdvertisedDataSource source = constructTestSource(false, 0);
+        final ExportDecoderBase decoder = client.constructExportDecoder(source);
+        try {
+            // Columns the HSQLDB bundled with VoltDB can create, under names that aren't reserved words
+            VoltTable table = new VoltTable(
+                    new VoltTable.ColumnInfo("VOLT_TRANSACTION_ID", VoltType.BIGINT),
+                    new VoltTable.ColumnInfo("VOLT_EXPORT_TIMESTAMP", VoltType.BIGINT),
+                    new VoltTable.ColumnInfo("VOLT_EXPORT_SEQUENCE_NUMBER", VoltType.BIGINT),
+                    new VoltTable.ColumnInfo("VOLT_PARTITION_ID", VoltType.BIGINT),
+                    new VoltTable.ColumnInfo("VOLT_OP", VoltType.BIGINT),
+                    new VoltTable.ColumnInfo("VOLT_SITE_ID", VoltType.BIGINT),
+                    new VoltTable.ColumnInfo("id", VoltType.INTEGER),
+                    new VoltTable.ColumnInfo("quantity", VoltType.SMALLINT),
+                    new VoltTable.ColumnInfo("cost", VoltType.DECIMAL));
+            long l = System.currentTimeMillis();
+            for (int i = 0; i < rowCount; i++) {
+                table.addRow(l, l, i, 0, l, l, i, (short) (i % 100), new BigDecimal(i));
+            }
+            ByteBuffer bb = ByteBuffer.wrap(ExportEncoder.encodeTable(table, "mytable", 6, 1L));
+            bb.order(ByteOrder.LITTLE_ENDIAN);
+            int schemaSize = bb.getInt();
+            ExportRow schemaRow = ExportRow.decodeBufferSchema(bb, schemaSize, 1, 0);
+            final int rowsStart = bb.position();
+
+            // One slice fails to commit, the block is not acknowledged
+            JDBCDriverForTest.failCommits(1);
+            try {
+                writeBlock(decoder, bb, rowsStart, schemaRow);
+                fail("Block acknowledged with a slice rolled back");
+            } catch (RestartBlockException e) {}
+
+            try (Connection conn = new JDBCDriverForTest().connect(url, testUser())) {
+                ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM mytable");
+                assertTrue(rs.next());
+                final long committed = rs.getLong(1);
+                assertTrue("Committed " + committed + " rows", committed == 501 || committed == 502);
+            }
+
+            // The restarted block only writes the slice that failed
+            writeBlock(decoder, bb, rowsStart, schemaRow);
+
+            try (Connection conn = new JDBCDriverForTest().connect(url, testUser())) {
+                ResultSet rs = conn.createStatement().executeQuery(
+                        "SELECT VOLT_EXPORT_SEQUENCE_NUMBER, id, quantity, cost FROM mytable ORDER BY VOLT_EXPORT_SEQUENCE_NUMBER");
+                for (int i = 0; i < rowCount; i++) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getLong(1));
+                    assertEquals(i, rs.getInt(2));
+                    assertEquals(i % 100, rs.getShort(3));
+                    assertEquals(0, new BigDecimal(i).compareTo(rs.getBigDecimal(4)));
+                }
+                assertFalse(rs.next());
+            }
+        } finally {
+            JDBCDriverForTest.failCommits(0);
+            decoder.sourceNoLongerAdvertised(source);
+            client.shutdown();
+        }
+    }
+
+    private static Properties testUser()
+    {
+        Properties info = new Properties();
+        info.setProperty("user", "sa");
+        info.setProperty("password", "");
+        return info;
+    }
+
+    private static void writeBlock(ExportDecoderBase decoder, ByteBuffer bb, int rowsStart, ExportRow schemaRow)
+            throws Exception
+    {
+        bb.position(rowsStart);
+        ExportRowCursor cursor = new ExportRowCursor();
+        cursor.reset(bb, schemaRow, 0);
+        decoder.onBlockStart(cursor);
+        while (cursor.advanceRow()) {
+            decoder.processRow(cursor);
+        }
+        decoder.onBlockCompletion(cursor);
+    }
 }
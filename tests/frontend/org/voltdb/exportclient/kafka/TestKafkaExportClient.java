@@ -23,17 +23,33 @@
 
 package org.voltdb.exportclient.kafka;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 import static junit.framework.Assert.assertFalse;
 
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.junit.Test;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltType;
+import org.voltdb.export.AdvertisedDataSource;
 import org.voltdb.exportclient.ExportClientTestBase;
+import org.voltdb.exportclient.ExportDecoderBase;
 import org.voltdb.exportclient.ExportDecoderBase.BinaryEncoding;
+import org.voltdb.exportclient.ExportDecoderBase.RestartBlockException;
+import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.kafka.KafkaValueEncoder.ValueFormat;
 
 public class TestKafkaExportClient extends ExportClientTestBase {
     @Test
@@ -94,4 +110,185 @@ public class TestKafkaExportClient extends ExportClientTestBase {
         } catch (IllegalArgumentException e) {
         }
     }
+
+    @Test
+    public void testValueFormatConfig() throws Exception
+    {
+        final KafkaExportClient client = new KafkaExportClient();
+        final Properties config = new Properties();
+        config.setProperty("metadata.broker.list", "fakehost");
+        config.setProperty("value.format", "avro");
+        client.configure(config);
+        assertEquals(ValueFormat.AVRO, client.m_valueFormat);
+        assertEquals(ByteArraySerializer.class.getName(), client.m_producerConfig.getProperty(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG));
+        assertFalse(client.m_producerConfig.containsKey("value.format"));
+
+        config.setProperty("value.format", "xml");
+        try {
+            client.configure(config);
+            fail("argument check failed");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testSkipResentRowsConfig() throws Exception
+    {
+        final KafkaExportClient client = new KafkaExportClient();
+        final Properties config = new Properties();
+        config.setProperty("metadata.broker.list", "fakehost");
+        config.setProperty("skip.resent.rows", "true");
+        client.configure(config);
+        assertTrue(client.m_skipResentRows);
+        assertTrue(client.m_pollFutures);
+        assertEquals("all", client.m_producerConfig.getProperty(ProducerConfig.ACKS_CONFIG));
+        assertEquals("1", client.m_producerConfig.getProperty(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION));
+
+        config.setProperty(ProducerConfig.ACKS_CONFIG, "1");
+        try {
+            client.configure(config);
+            fail("argument check failed");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    static class MockKafkaExportClient extends KafkaExportClient {
+        final MockProducer<String, Object> m_mock;
+
+        @SuppressWarnings("unchecked")
+        MockKafkaExportClient(boolean autoComplete) {
+            m_mock = new MockProducer<>(autoComplete, new StringSerializer(),
+                    (Serializer<Object>) (Serializer<?>) new ByteArraySerializer());
+        }
+
+        @Override
+        Producer<String, Object> createProducer() {
+            return m_mock;
+        }
+    }
+
+    private static final List<String> NAMES = Arrays.asList("VOLT_TRANSACTION_ID", "VOLT_EXPORT_TIMESTAMP",
+            "VOLT_EXPORT_SEQUENCE_NUMBER", "VOLT_PARTITION_ID", "VOLT_SITE_ID", "VOLT_EXPORT_OPERATION", "ID", "NAME");
+    private static final List<VoltType> TYPES = Arrays.asList(VoltType.BIGINT, VoltType.BIGINT,
+            VoltType.BIGINT, VoltType.BIGINT, VoltType.BIGINT, VoltType.TINYINT, VoltType.BIGINT, VoltType.STRING);
+    private static final List<Integer> LENGTHS = Arrays.asList(8, 8, 8, 8, 8, 1, 8, 64);
+
+    private static AdvertisedDataSource source() {
+        return new AdvertisedDataSource(3, "foo", "mytable", null, 0, 1, new ArrayList<>(NAMES),
+                new ArrayList<>(TYPES), LENGTHS, AdvertisedDataSource.ExportFormat.SEVENDOTX);
+    }
+
+    private static ExportRow row(long seqNo) {
+        Object[] values = { 1L, 2L, seqNo, 3L, 0L, (byte) 1, seqNo * 10, "name " + seqNo };
+        return new ExportRow("mytable", NAMES, TYPES, LENGTHS, values, 3, -1, 3, 1L);
+    }
+
+    @Test
+    public void testSkipResentRowsAfterRestart() throws Exception
+    {
+        final MockKafkaExportClient client = new MockKafkaExportClient(false);
+        final Properties config = new Properties();
+        config.setProperty("metadata.broker.list", "fakehost");
+        config.setProperty("skip.resent.rows", "true");
+        client.configure(config);
+        ExportDecoderBase decoder = client.constructExportDecoder(source());
+
+        decoder.onBlockStart(row(10));
+        for (long seqNo = 10; seqNo < 13; seqNo++) {
+            assertTrue(decoder.processRow(row(seqNo)));
+        }
+        client.m_mock.completeNext();
+        client.m_mock.errorNext(new RuntimeException("broker down"));
+        client.m_mock.completeNext();
+        try {
+            decoder.onBlockCompletion(row(12));
+            fail("block should be restarted");
+        } catch (RestartBlockException e) {
+        }
+        assertEquals(3, client.m_mock.history().size());
+
+        // Only the row that failed is sent again
+        decoder.onBlockStart(row(10));
+        for (long seqNo = 10; seqNo < 13; seqNo++) {
+            assertTrue(decoder.processRow(row(seqNo)));
+        }
+        assertEquals(4, client.m_mock.history().size());
+        assertTrue(((String) client.m_mock.history().get(3).value()).contains("name 11"));
+        client.m_mock.completeNext();
+        decoder.onBlockCompletion(row(12));
+
+        // A source rewinding to rows already sent sends nothing, and carries on with the new rows
+        decoder.onBlockStart(row(11));
+        for (long seqNo = 11; seqNo < 15; seqNo++) {
+            assertTrue(decoder.processRow(row(seqNo)));
+        }
+        assertEquals(6, client.m_mock.history().size());
+        client.m_mock.completeNext();
+        client.m_mock.completeNext();
+        decoder.onBlockCompletion(row(14));
+        decoder.sourceNoLongerAdvertised(null);
+    }
+
+    @Test
+    public void testLateCallbackOfTimedOutAttempt() throws Exception
+    {
+        final MockKafkaExportClient client = new MockKafkaExportClient(false);
+        final Properties config = new Properties();
+        config.setProperty("metadata.broker.list", "fakehost");
+        config.setProperty("skip.resent.rows", "true");
+        config.setProperty("acks.retry.timeout", "50");
+        client.configure(config);
+        ExportDecoderBase decoder = client.constructExportDecoder(source());
+
+        decoder.onBlockStart(row(10));
+        assertTrue(decoder.processRow(row(10)));
+        try {
+            decoder.onBlockCompletion(row(10));
+            fail("block should be restarted");
+        } catch (RestartBlockException e) {
+        }
+
+        // The send of the first attempt fails after the retry sent the row again, the retry completes
+        decoder.onBlockStart(row(10));
+        assertTrue(decoder.processRow(row(10)));
+        assertEquals(2, client.m_mock.history().size());
+        client.m_mock.errorNext(new RuntimeException("request timed out"));
+        client.m_mock.completeNext();
+        decoder.onBlockCompletion(row(10));
+
+        // The row is known to be sent
+        decoder.onBlockStart(row(10));
+        assertTrue(decoder.processRow(row(10)));
+        assertEquals(2, client.m_mock.history().size());
+        decoder.onBlockCompletion(row(10));
+        decoder.sourceNoLongerAdvertised(null);
+    }
+
+    @Test
+    public void testByteValueFormats() throws Exception
+    {
+        for (ValueFormat format : new ValueFormat[] { ValueFormat.JSON, ValueFormat.AVRO }) {
+            final MockKafkaExportClient client = new MockKafkaExportClient(true);
+            final Properties config = new Properties();
+            config.setProperty("metadata.broker.list", "fakehost");
+            config.setProperty("value.format", format.name());
+            config.setProperty("skipinternals", "true");
+            client.configure(config);
+            ExportDecoderBase decoder = client.constructExportDecoder(source());
+
+            decoder.onBlockStart(row(10));
+            assertTrue(decoder.processRow(row(10)));
+            decoder.onBlockCompletion(row(10));
+            assertEquals(1, client.m_mock.history().size());
+            assertEquals("voltdbexportmytable", client.m_mock.history().get(0).topic());
+            assertEquals("3", client.m_mock.history().get(0).key());
+            byte[] value = (byte[]) client.m_mock.history().get(0).value();
+            assertArrayEquals((byte[]) KafkaValueEncoder.create(format, VoltDB.GMT_TIMEZONE, BinaryEncoding.HEX, true)
+                    .encode(row(10)), value);
+            if (format == ValueFormat.JSON) {
+                assertTrue(new String(value, "UTF-8").contains("name 10"));
+            }
+            decoder.sourceNoLongerAdvertised(null);
+        }
+    }
 }
@@ -48,7 +48,7 @@ public class TestStatisticsCommandLogStats extends StatisticsTestSuiteBase {
 
         Client client  = getFullyConnectedClient();
 
-        VoltTable.ColumnInfo[] expectedSchema = new VoltTable.ColumnInfo[8];
+        VoltTable.ColumnInfo[] expectedSchema = new VoltTable.ColumnInfo[15];
         expectedSchema[0] = new VoltTable.ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new VoltTable.ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new VoltTable.ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -57,6 +57,13 @@ public class TestStatisticsCommandLogStats extends StatisticsTestSuiteBase {
         expectedSchema[5] = new VoltTable.ColumnInfo(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name(), VoltType.INTEGER);
         expectedSchema[6] = new VoltTable.ColumnInfo(CommandLogStats.StatName.SEGMENT_COUNT.name(), VoltType.INTEGER);
         expectedSchema[7] = new VoltTable.ColumnInfo(CommandLogStats.StatName.FSYNC_INTERVAL.name(), VoltType.INTEGER);
+        expectedSchema[8] = new VoltTable.ColumnInfo(CommandLogStats.StatName.TXNS_LOGGED.name(), VoltType.BIGINT);
+        expectedSchema[9] = new VoltTable.ColumnInfo(CommandLogStats.StatName.BYTES_LOGGED.name(), VoltType.BIGINT);
+        expectedSchema[10] = new VoltTable.ColumnInfo(CommandLogStats.StatName.TXNS_PER_SECOND.name(), VoltType.BIGINT);
+        expectedSchema[11] = new VoltTable.ColumnInfo(CommandLogStats.StatName.FSYNC_COUNT.name(), VoltType.BIGINT);
+        expectedSchema[12] = new VoltTable.ColumnInfo(CommandLogStats.StatName.AVG_FSYNC_LATENCY.name(), VoltType.INTEGER);
+        expectedSchema[13] = new VoltTable.ColumnInfo(CommandLogStats.StatName.MAX_FSYNC_LATENCY.name(), VoltType.INTEGER);
+        expectedSchema[14] = new VoltTable.ColumnInfo(CommandLogStats.StatName.AVG_BATCH_SIZE.name(), VoltType.INTEGER);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -251,6 +251,24 @@ public class TestStreamSnapshotDataTarget {
         closeStream(dut2);
     }
 
+    @Test
+    public void testBatchedAck() throws IOException, InterruptedException, ExecutionException
+    {
+        StreamSnapshotDataTarget dut = makeDataTarget(1000, false, true);
+
+        writeAndVerify(/* dataTarget = */ dut, /* tableId = */ 0, /* hasSchema = */ true);
+        assertEquals(2, dut.m_outstandingWorkCount.get());
+
+        // ack the schema and the data block with one message
+        m_mb.deliver(new RejoinDataAckMessage(false, dut.m_targetId,
+                                              new int[] { dut.m_blockIndex - 2, dut.m_blockIndex - 1 }));
+        while (dut.m_outstandingWorkCount.get() != 0) {
+            Thread.yield();
+        }
+
+        closeStream(dut);
+    }
+
     @Test
     public void testSendHashinatorConfig() throws IOException, ExecutionException, InterruptedException
     {
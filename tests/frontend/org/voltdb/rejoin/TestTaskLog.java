@@ -30,6 +30,8 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 
 import org.junit.After;
@@ -368,4 +370,78 @@ public class TestTaskLog {
         }
         assertEquals(100, count);
     }
+
+    private Map<String, Object> getStats(TaskLog log) {
+        Map<String, Integer> columnNameToIndex = new HashMap<>();
+        for (TaskLogStats.StatName name : TaskLogStats.StatName.values()) {
+            columnNameToIndex.put(name.name(), name.ordinal());
+        }
+        Object[] rowValues = new Object[columnNameToIndex.size()];
+        log.populateStats(columnNameToIndex, rowValues);
+        Map<String, Object> stats = new HashMap<>();
+        for (TaskLogStats.StatName name : TaskLogStats.StatName.values()) {
+            stats.put(name.name(), rowValues[name.ordinal()]);
+        }
+        return stats;
+    }
+
+    private void logLargeTasks(TaskLog log, int count) throws IOException {
+        TxnEgo spego = TxnEgo.makeZero(0);
+        for (int i = 0; i < count; i++) {
+            StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+            invocation.setProcName("hah");
+            invocation.setParams(1l, "haha", new byte[1024 * 64]);
+
+            Iv2InitiateTaskMessage task =
+                new Iv2InitiateTaskMessage(1, 2, Long.MIN_VALUE, spego.getTxnId(), m_uniqueIdGenerator.getNextUniqueId(),
+                        false, true, invocation, 4, 5, false);
+            task.setSpHandle(spego.getTxnId());
+            spego = spego.makeNext();
+            log.logTask(task);
+        }
+    }
+
+    private int drain(TaskLog log) throws IOException {
+        int count = 0;
+        while (!log.isEmpty()) {
+            if (log.getNextMessage() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        logLargeTasks(m_log, 50);
+
+        Map<String, Object> stats = getStats(m_log);
+        assertEquals(50L, stats.get("TASKS_LOGGED"));
+        assertEquals(0L, stats.get("TASKS_REPLAYED"));
+        assertEquals(50L, stats.get("BACKLOG_TASKS"));
+        // nothing is replayed yet, the backlog can't be caught up
+        assertEquals(-1L, stats.get("CATCHUP_SECONDS"));
+
+        assertEquals(50, drain(m_log));
+        stats = getStats(m_log);
+        assertEquals(50L, stats.get("TASKS_REPLAYED"));
+        assertEquals(0L, stats.get("BACKLOG_TASKS"));
+        assertEquals(0L, stats.get("CATCHUP_SECONDS"));
+    }
+
+    @Test
+    public void testMemoryBudget() throws IOException {
+        m_log.close(true);
+        // a budget smaller than one buffer, every buffer is written before logging continues
+        m_log = new TaskLogImpl(0, m_tempDir, 1, Long.MAX_VALUE);
+        m_log.enableRecording(Long.MIN_VALUE);
+
+        logLargeTasks(m_log, 50);
+        Map<String, Object> stats = getStats(m_log);
+        assertEquals(1L, stats.get("MEMORY_LIMIT"));
+        assertTrue((Long) stats.get("MEMORY_BYTES") <= RejoinTaskBuffer.DEFAULT_BUFFER_SIZE);
+        assertTrue((Long) stats.get("DISK_BYTES") > 0);
+
+        assertEquals(50, drain(m_log));
+    }
 }
@@ -0,0 +1,211 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.ColumnarSnapshotFilter;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.CompressionCodec;
+
+import com.google_voltpatches.common.util.concurrent.Callables;
+
+import junit.framework.TestCase;
+
+public class TestColumnarTableSaveFile extends TestCase {
+    private static final ColumnInfo[] COLUMNS = new ColumnInfo[] {
+            new ColumnInfo("ID", VoltType.BIGINT),
+            new ColumnInfo("SMALL", VoltType.SMALLINT),
+            new ColumnInfo("AMOUNT", VoltType.DECIMAL),
+            new ColumnInfo("RATIO", VoltType.FLOAT),
+            new ColumnInfo("CREATED", VoltType.TIMESTAMP),
+            new ColumnInfo("NAME", VoltType.STRING),
+            new ColumnInfo("NOTE", VoltType.STRING),
+            new ColumnInfo("DATA", VoltType.VARBINARY) };
+
+    private static VoltTable generateChunk(int firstId, int rowCount) {
+        VoltTable table = new VoltTable(COLUMNS);
+        StringBuilder longNote = new StringBuilder();
+        for (int ii = 0; ii < ColumnarTableSaveFile.MAX_STATS_VALUE_LENGTH + 1; ii++) {
+            longNote.append('n');
+        }
+        for (int id = firstId; id < firstId + rowCount; id++) {
+            table.addRow(id,
+                         id % 7 == 0 ? null : (short) (id % 1000),
+                         new BigDecimal(id).movePointLeft(2),
+                         id % 5 == 0 ? null : id / 3.0,
+                         new TimestampType(1500000000000000L + id),
+                         "name" + (id % 100),
+                         id == firstId ? longNote.toString() : "note",
+                         new byte[] { (byte) id, 1, 2 });
+        }
+        return table;
+    }
+
+    /**
+     * Serialize the rows of a table the way the snapshot stream of a partition does
+     */
+    private static BBContainer toSnapshotChunk(VoltTable table, int partitionId) throws Exception {
+        FastSerializer fs = new FastSerializer();
+        fs.writeTable(table);
+        ByteBuffer b = fs.getBuffer();
+        b.getInt();
+        int headerLength = b.getInt();
+        b.position(b.position() + headerLength);
+        ByteBuffer payload = ByteBuffer.allocate(b.remaining() + 4);
+        payload.putInt(partitionId);
+        payload.put(b);
+        payload.flip();
+        return new BBContainer(payload) {
+            @Override
+            public void discard() {
+                checkDoubleFree();
+            }
+        };
+    }
+
+    public void testRoundTrip() throws Exception {
+        VoltTable schema = new VoltTable(COLUMNS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ColumnarTableSaveFile.serializeHeader("ORDERS", false, schema, CompressionCodec.LZ4));
+
+        ColumnarSnapshotFilter filter = new ColumnarSnapshotFilter(schema, CompressionCodec.LZ4);
+        VoltTable[] chunks = new VoltTable[] { generateChunk(0, 1000), generateChunk(1000, 1), generateChunk(2000, 0) };
+        for (int ii = 0; ii < chunks.length; ii++) {
+            BBContainer block = filter.filter(Callables.returning(toSnapshotChunk(chunks[ii], ii + 3))).call();
+            try {
+                byte[] bytes = new byte[block.b().remaining()];
+                block.b().get(bytes);
+                out.write(bytes);
+            } finally {
+                block.discard();
+            }
+        }
+
+        ColumnarTableSaveFile file = new ColumnarTableSaveFile(new ByteArrayInputStream(out.toByteArray()));
+        try {
+            assertEquals("ORDERS", file.getTableName());
+            assertFalse(file.isReplicated());
+            assertEquals(CompressionCodec.LZ4, file.getCodec());
+            assertEquals(COLUMNS.length, file.getColumnCount());
+            for (int ii = 0; ii < COLUMNS.length; ii++) {
+                assertEquals(schema.getColumnName(ii), file.getColumnName(ii));
+                assertEquals(schema.getColumnType(ii), file.getColumnType(ii));
+            }
+
+            for (int ii = 0; ii < chunks.length; ii++) {
+                ColumnarTableSaveFile.Block block = file.readBlock();
+                assertNotNull(block);
+                assertEquals(ii + 3, block.getPartitionId());
+                assertEquals(chunks[ii].getRowCount(), block.getRowCount());
+                assertTrue(chunks[ii].hasSameContents(block.toVoltTable()));
+            }
+            assertNull(file.readBlock());
+        } finally {
+            file.close();
+        }
+    }
+
+    public void testStats() throws Exception {
+        VoltTable schema = new VoltTable(COLUMNS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ColumnarTableSaveFile.serializeHeader("ORDERS", true, schema, CompressionCodec.SNAPPY));
+        out.write(ColumnarTableSaveFile.serializeBlock(16383, generateChunk(10, 100), CompressionCodec.SNAPPY));
+
+        ColumnarTableSaveFile file = new ColumnarTableSaveFile(new ByteArrayInputStream(out.toByteArray()));
+        try {
+            assertTrue(file.isReplicated());
+            ColumnarTableSaveFile.Block block = file.readBlock();
+
+            ColumnarTableSaveFile.ColumnStats id = block.getColumnStats(0);
+            assertFalse(id.hasNulls());
+            assertEquals(10L, id.getMin());
+            assertEquals(109L, id.getMax());
+
+            ColumnarTableSaveFile.ColumnStats small = block.getColumnStats(1);
+            assertTrue(small.hasNulls());
+            assertEquals((short) 10, small.getMin());
+            assertEquals((short) 109, small.getMax());
+
+            ColumnarTableSaveFile.ColumnStats amount = block.getColumnStats(2);
+            assertEquals(0, new BigDecimal("0.10").compareTo((BigDecimal) amount.getMin()));
+            assertEquals(0, new BigDecimal("1.09").compareTo((BigDecimal) amount.getMax()));
+
+            ColumnarTableSaveFile.ColumnStats ratio = block.getColumnStats(3);
+            assertTrue(ratio.hasNulls());
+            assertEquals(11 / 3.0, ratio.getMin());
+            assertEquals(109 / 3.0, ratio.getMax());
+
+            assertEquals(new TimestampType(1500000000000010L), block.getColumnStats(4).getMin());
+            assertEquals("name0", block.getColumnStats(5).getMin());
+            assertEquals("name99", block.getColumnStats(5).getMax());
+
+            // Too long to keep
+            assertFalse(block.getColumnStats(6).hasMinMax());
+            assertTrue(block.getColumnStats(7).hasMinMax());
+        } finally {
+            file.close();
+        }
+    }
+
+    public void testNaNLeftOutOfStats() throws Exception {
+        VoltTable schema = new VoltTable(new ColumnInfo("RATIO", VoltType.FLOAT));
+        VoltTable mixed = new VoltTable(new ColumnInfo("RATIO", VoltType.FLOAT));
+        mixed.addRow(2.5);
+        mixed.addRow(Double.NaN);
+        mixed.addRow(-1.0);
+        VoltTable allNaN = new VoltTable(new ColumnInfo("RATIO", VoltType.FLOAT));
+        allNaN.addRow(Double.NaN);
+        allNaN.addRow((Object) null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ColumnarTableSaveFile.serializeHeader("RATIOS", true, schema, CompressionCodec.SNAPPY));
+        out.write(ColumnarTableSaveFile.serializeBlock(16383, mixed, CompressionCodec.SNAPPY));
+        out.write(ColumnarTableSaveFile.serializeBlock(16383, allNaN, CompressionCodec.SNAPPY));
+
+        ColumnarTableSaveFile file = new ColumnarTableSaveFile(new ByteArrayInputStream(out.toByteArray()));
+        try {
+            ColumnarTableSaveFile.Block block = file.readBlock();
+            ColumnarTableSaveFile.ColumnStats ratio = block.getColumnStats(0);
+            assertEquals(-1.0, ratio.getMin());
+            assertEquals(2.5, ratio.getMax());
+            assertTrue(Double.isNaN(block.toVoltTable().fetchRow(1).getDouble(0)));
+
+            block = file.readBlock();
+            ratio = block.getColumnStats(0);
+            assertTrue(ratio.hasNulls());
+            assertFalse(ratio.hasMinMax());
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -25,6 +25,7 @@ package org.voltdb.sysprocs.saverestore;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
@@ -40,6 +41,7 @@ import org.voltdb.VoltTable;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.VoltType;
 import org.voltdb.messaging.FastSerializer;
+import org.voltdb.utils.CompressionCodec;
 
 import com.google_voltpatches.common.util.concurrent.Callables;
 
@@ -60,6 +62,11 @@ public class TestTableSaveFile extends TestCase {
     private static String TABLE_NAME = "TEST_TABLE";
     private static int TOTAL_PARTITIONS = 13;
     private static long TIMESTAMP = System.currentTimeMillis();
+    private static VoltTable.ColumnInfo[] TEST_COLUMNS = new VoltTable.ColumnInfo[] {
+            new ColumnInfo("RT_ID", VoltType.INTEGER),
+            new ColumnInfo("RT_NAME", VoltType.STRING),
+            new ColumnInfo("RT_INTVAL", VoltType.INTEGER),
+            new ColumnInfo("RT_FLOATVAL", VoltType.FLOAT) };
 
     static {
         org.voltdb.EELibraryLoader.loadExecutionEngineLibrary(true);
@@ -101,11 +108,7 @@ public class TestTableSaveFile extends TestCase {
 
     private Pair<VoltTable, File> generateTestTable(int numberOfItems)
             throws Exception {
-        VoltTable.ColumnInfo columnInfo[] = new VoltTable.ColumnInfo[] {
-                new ColumnInfo("RT_ID", VoltType.INTEGER),
-                new ColumnInfo("RT_NAME", VoltType.STRING),
-                new ColumnInfo("RT_INTVAL", VoltType.INTEGER),
-                new ColumnInfo("RT_FLOATVAL", VoltType.FLOAT) };
+        VoltTable.ColumnInfo columnInfo[] = TEST_COLUMNS;
         VoltTable table = new VoltTable(columnInfo, columnInfo.length);
         final File f = File.createTempFile("foo", "bar");
         f.deleteOnExit();
@@ -305,4 +308,151 @@ public class TestTableSaveFile extends TestCase {
             savefile.close();
         }
     }
+
+    public void testLz4Table() throws Exception {
+        System.out.println("Running testLz4Table");
+        Pair<VoltTable, File> generated;
+        CompressionCodec.configure(CompressionCodec.LZ4, null, null);
+        try {
+            generated = generateTestTable(10000);
+        } finally {
+            CompressionCodec.configure(CompressionCodec.SNAPPY, null, null);
+        }
+        VoltTable table = generated.getFirst();
+
+        TableSaveFile savefile = new TableSaveFile(generated.getSecond(), 3, null);
+        try {
+            VoltTable reaggregate_table = null;
+            while (savefile.hasMoreChunks()) {
+                final BBContainer c = savefile.getNextChunk();
+                if (c == null) {
+                    break;
+                }
+                try {
+                    VoltTable test_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), false);
+                    if (reaggregate_table == null) {
+                        reaggregate_table = test_table.clone(10000);
+                    }
+                    while (test_table.advanceRow()) {
+                        reaggregate_table.add(test_table);
+                    }
+                } finally {
+                    c.discard();
+                }
+            }
+            assertEquals(table, reaggregate_table);
+            assertTrue(savefile.getCorruptedPartitionIds().isEmpty());
+        } finally {
+            savefile.close();
+        }
+    }
+
+    public void testPrefetchAndPoll() throws Exception {
+        System.out.println("Running testPrefetchAndPoll");
+        Pair<VoltTable, File> generated = generateTestTable(100000);
+        VoltTable table = generated.getFirst();
+        File f = generated.getSecond();
+
+        FileInputStream fis = new FileInputStream(f);
+        TableSaveFile savefile = new TableSaveFile(fis, 3, null);
+        try {
+            savefile.prefetch();
+            VoltTable reaggregate_table = null;
+            int chunks = 0;
+            while (savefile.hasMoreChunks()) {
+                BBContainer c = savefile.pollNextChunk();
+                if (c == null) {
+                    // Not read yet, the reader has already been started so just wait for it
+                    c = savefile.getNextChunk();
+                    if (c == null) {
+                        break;
+                    }
+                }
+                assertEquals(chunks++, ((TableSaveFile.Container)c).partitionId);
+                try {
+                    VoltTable test_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), false);
+                    if (reaggregate_table == null) {
+                        reaggregate_table = test_table.clone(10000);
+                    }
+                    while (test_table.advanceRow()) {
+                        reaggregate_table.add(test_table);
+                    }
+                } finally {
+                    c.discard();
+                }
+            }
+            assertEquals(table, reaggregate_table);
+            assertNull(savefile.pollNextChunk());
+        } finally {
+            savefile.close();
+        }
+    }
+
+    public void testBaseFileReference() throws Exception {
+        System.out.println("Running testBaseFileReference");
+        Pair<VoltTable, File> generated = generateTestTable(10000);
+        VoltTable table = generated.getFirst();
+        File base = generated.getSecond();
+        ArrayList<Integer> partIds = new ArrayList<Integer>();
+        for (int ii = 0; ii < 5; ii++) {
+            partIds.add(ii);
+        }
+
+        final File f = File.createTempFile("foo", "bar");
+        f.deleteOnExit();
+        DefaultSnapshotDataTarget.writeBaseFileReference(f, base.getName(),
+                HOST_ID, CLUSTER_NAME, DATABASE_NAME, TABLE_NAME,
+                TOTAL_PARTITIONS, false, partIds, new VoltTable(TEST_COLUMNS),
+                TXN_ID + 1, TIMESTAMP + 1);
+
+        // The chunks come from the base file, the header from the file itself
+        savefile = new TableSaveFile(f, 3, null);
+        assertEquals(TXN_ID + 1, savefile.getTxnId());
+        assertEquals(TIMESTAMP + 1, savefile.getTimestamp());
+        assertTrue(savefile.getCompleted());
+        assertTrue(savefile.getCorruptedPartitionIds().isEmpty());
+        savefile.prefetch();
+        VoltTable reaggregate_table = null;
+        while (savefile.hasMoreChunks()) {
+            BBContainer c = savefile.getNextChunk();
+            if (c == null) {
+                break;
+            }
+            try {
+                VoltTable test_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), false);
+                if (reaggregate_table == null) {
+                    reaggregate_table = test_table.clone(10000);
+                }
+                while (test_table.advanceRow()) {
+                    reaggregate_table.add(test_table);
+                }
+            } finally {
+                c.discard();
+            }
+        }
+        assertEquals(table, reaggregate_table);
+        savefile.close();
+        savefile = null;
+
+        // Without its path the base file can't be found
+        FileInputStream fis = new FileInputStream(f);
+        try {
+            new TableSaveFile(fis, 3, null);
+            fail("Expected a file with a base file to be refused");
+        } catch (IOException expected) {
+        } finally {
+            fis.close();
+        }
+
+        // A base file that holds another table is refused
+        DefaultSnapshotDataTarget.writeBaseFileReference(f, base.getName(),
+                HOST_ID, CLUSTER_NAME, DATABASE_NAME, "OTHER_TABLE",
+                TOTAL_PARTITIONS, false, partIds, new VoltTable(TEST_COLUMNS),
+                TXN_ID + 1, TIMESTAMP + 1);
+        try {
+            new TableSaveFile(f, 3, null);
+            fail("Expected a mismatched base file to be refused");
+        } catch (IOException expected) {
+        }
+    }
 }
@@ -0,0 +1,184 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.sysprocs.saverestore.TableSaveFile;
+
+/**
+ * Compares the compression codecs on blocks of serialized tuples, the data snapshots, persistent
+ * binary deques and rejoin streams compress.
+ *
+ * With a table file of a native snapshot as argument its chunks are used, otherwise blocks of a
+ * generated table with a mix of integer, decimal, timestamp and string columns the size of a
+ * snapshot buffer. Reports the ratio and the compression and decompression throughput of each codec.
+ * Run with: java org.voltdb.utils.CompressionCodecBenchmark [seconds] [table file]
+ */
+public class CompressionCodecBenchmark {
+    private static final int BLOCK_SIZE = 1024 * 1024 * 2;
+    private static final int GENERATED_BLOCKS = 8;
+
+    private final int m_seconds;
+    private final List<ByteBuffer> m_blocks;
+    private final long m_totalBytes;
+
+    CompressionCodecBenchmark(int seconds, List<ByteBuffer> blocks) {
+        m_seconds = seconds;
+        m_blocks = blocks;
+        long total = 0;
+        for (ByteBuffer block : blocks) {
+            total += block.remaining();
+        }
+        m_totalBytes = total;
+    }
+
+    private static List<ByteBuffer> generateBlocks() {
+        String[] words = { "pending", "shipped", "delivered", "returned", "cancelled" };
+        Random r = new Random(0);
+        List<ByteBuffer> blocks = new ArrayList<>();
+        long id = 0;
+        for (int ii = 0; ii < GENERATED_BLOCKS; ii++) {
+            VoltTable table = new VoltTable(
+                    new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+                    new VoltTable.ColumnInfo("CUSTOMER", VoltType.INTEGER),
+                    new VoltTable.ColumnInfo("AMOUNT", VoltType.DECIMAL),
+                    new VoltTable.ColumnInfo("CREATED", VoltType.TIMESTAMP),
+                    new VoltTable.ColumnInfo("STATUS", VoltType.STRING),
+                    new VoltTable.ColumnInfo("NOTE", VoltType.STRING));
+            while (table.getSerializedSize() < BLOCK_SIZE - 1024) {
+                table.addRow(id++, r.nextInt(100000), new BigDecimal(r.nextInt(1000000)).movePointLeft(2),
+                             1500000000000000L + id * 1000, words[r.nextInt(words.length)],
+                             "note " + Long.toHexString(r.nextLong()));
+            }
+            ByteBuffer block = ByteBuffer.allocateDirect(table.getSerializedSize());
+            table.flattenToBuffer(block);
+            block.flip();
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    private static List<ByteBuffer> readBlocks(File file) throws Exception {
+        List<ByteBuffer> blocks = new ArrayList<>();
+        TableSaveFile saveFile = new TableSaveFile(file, 1, null);
+        try {
+            while (saveFile.hasMoreChunks()) {
+                BBContainer c = saveFile.getNextChunk();
+                if (c == null) {
+                    break;
+                }
+                try {
+                    ByteBuffer block = ByteBuffer.allocateDirect(c.b().remaining());
+                    block.put(c.b());
+                    block.flip();
+                    blocks.add(block);
+                } finally {
+                    c.discard();
+                }
+            }
+        } finally {
+            saveFile.close();
+        }
+        return blocks;
+    }
+
+    private void report(CompressionCodec codec) throws Exception {
+        int maxBlock = 0;
+        for (ByteBuffer block : m_blocks) {
+            maxBlock = Math.max(maxBlock, block.remaining());
+        }
+        BBContainer out = DBBPool.allocateDirect(codec.maxCompressedLength(maxBlock));
+        BBContainer back = DBBPool.allocateDirect(maxBlock);
+        try {
+            List<ByteBuffer> compressed = new ArrayList<>();
+            long compressedBytes = 0;
+            for (ByteBuffer block : m_blocks) {
+                out.b().clear();
+                int length = codec.compress(block, out.b());
+                ByteBuffer copy = ByteBuffer.allocateDirect(length);
+                copy.put(out.b());
+                copy.flip();
+                compressed.add(copy);
+                compressedBytes += length;
+            }
+
+            long compressBytes = 0;
+            long start = System.nanoTime();
+            long end = start + m_seconds * 1000000000L;
+            while (System.nanoTime() < end) {
+                for (ByteBuffer block : m_blocks) {
+                    out.b().clear();
+                    codec.compress(block, out.b());
+                    compressBytes += block.remaining();
+                }
+            }
+            double compressSeconds = (System.nanoTime() - start) / 1000000000.0;
+
+            long uncompressBytes = 0;
+            start = System.nanoTime();
+            end = start + m_seconds * 1000000000L;
+            while (System.nanoTime() < end) {
+                for (ByteBuffer block : compressed) {
+                    back.b().clear();
+                    uncompressBytes += codec.uncompress(block, back.b());
+                }
+            }
+            double uncompressSeconds = (System.nanoTime() - start) / 1000000000.0;
+
+            System.out.printf("codec=%s ratio=%.2f compress MB/s=%.1f uncompress MB/s=%.1f%n",
+                              codec, m_totalBytes / (double) compressedBytes,
+                              compressBytes / compressSeconds / (1024 * 1024),
+                              uncompressBytes / uncompressSeconds / (1024 * 1024));
+        } finally {
+            out.discard();
+            back.discard();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        List<ByteBuffer> blocks = args.length > 1 ? readBlocks(new File(args[1])) : generateBlocks();
+
+        CompressionCodecBenchmark benchmark = new CompressionCodecBenchmark(seconds, blocks);
+        System.out.printf("blocks=%d bytes=%d%n", blocks.size(), benchmark.m_totalBytes);
+        // Warm up before measuring
+        CompressionCodecBenchmark warmup = new CompressionCodecBenchmark(Math.max(1, seconds / 5), blocks);
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            warmup.report(codec);
+        }
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            benchmark.report(codec);
+        }
+    }
+}
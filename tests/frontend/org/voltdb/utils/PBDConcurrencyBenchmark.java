@@ -0,0 +1,180 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+
+/**
+ * Measures offer and poll throughput of a PersistentBinaryDeque under an export-like load: one writer
+ * offering compressed blocks to the tail while reader cursors drain older segments.
+ *
+ * Each configuration is run twice. The "serialized" run wraps every call in the deque monitor, which is
+ * how the deque behaved when all of its methods synchronized on it. The "concurrent" run uses the deque
+ * as is. Run with: java org.voltdb.utils.PBDConcurrencyBenchmark [seconds] [readers] [blockKB]
+ */
+public class PBDConcurrencyBenchmark {
+    private static final VoltLogger LOG = new VoltLogger("EXPORT");
+    private static final int MAX_BACKLOG = 128;
+
+    private final int m_seconds;
+    private final int m_readers;
+    private final int m_blockSize;
+
+    PBDConcurrencyBenchmark(int seconds, int readers, int blockSize) {
+        m_seconds = seconds;
+        m_readers = readers;
+        m_blockSize = blockSize;
+    }
+
+    private static long minPolled(AtomicLongArray polled) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < polled.length(); i++) {
+            min = Math.min(min, polled.get(i));
+        }
+        return min;
+    }
+
+    private ByteBuffer makeBlock(Random r, long seq) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(m_blockSize);
+        // Half random, half repeated so that compression has real work to do
+        while (buf.remaining() > 15) {
+            buf.putLong(seq);
+            buf.putLong(buf.position() % 32 == 8 ? r.nextLong() : seq);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    private void run(final boolean serialized) throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "pbd-bench-" + System.nanoTime());
+        if (!dir.mkdirs()) {
+            throw new IllegalStateException("Unable to create " + dir);
+        }
+        final PersistentBinaryDeque pbd = new PersistentBinaryDeque("bench", dir, LOG);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final long[] offered = new long[1];
+        final AtomicLongArray polled = new AtomicLongArray(m_readers);
+        ExecutorService es = Executors.newFixedThreadPool(m_readers + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < m_readers; i++) {
+                final int readerId = i;
+                final BinaryDequeReader reader = pbd.openForRead("reader" + i);
+                futures.add(es.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        while (!done.get()) {
+                            BBContainer cont;
+                            if (serialized) {
+                                synchronized (pbd) {
+                                    cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                                }
+                            } else {
+                                cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                            }
+                            if (cont == null) {
+                                Thread.yield();
+                                continue;
+                            }
+                            cont.discard();
+                            polled.incrementAndGet(readerId);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            futures.add(es.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Random r = new Random(0);
+                    long seq = 0;
+                    while (!done.get()) {
+                        // Bound the backlog so the run measures contention rather than disk space
+                        if (seq - minPolled(polled) > MAX_BACKLOG) {
+                            Thread.yield();
+                            continue;
+                        }
+                        BBContainer cont = DBBPool.wrapBB(makeBlock(r, seq++));
+                        if (serialized) {
+                            synchronized (pbd) {
+                                pbd.offer(cont);
+                            }
+                        } else {
+                            pbd.offer(cont);
+                        }
+                        offered[0]++;
+                    }
+                    return null;
+                }
+            }));
+
+            Thread.sleep(m_seconds * 1000L);
+            done.set(true);
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            es.shutdownNow();
+            pbd.closeAndDelete();
+            VoltFile.recursivelyDelete(dir);
+        }
+
+        long totalPolled = 0;
+        for (int i = 0; i < m_readers; i++) {
+            totalPolled += polled.get(i);
+        }
+        System.out.printf("%-10s readers=%d block=%dKB offers/s=%.1f polls/s=%.1f (MB/s in=%.1f out=%.1f)%n",
+                serialized ? "serialized" : "concurrent", m_readers, m_blockSize / 1024,
+                offered[0] / (double) m_seconds, totalPolled / (double) m_seconds,
+                offered[0] * (double) m_blockSize / m_seconds / (1024 * 1024),
+                totalPolled * (double) m_blockSize / m_seconds / (1024 * 1024));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int blockSize = (args.length > 2 ? Integer.parseInt(args[2]) : 2048) * 1024;
+
+        PBDConcurrencyBenchmark benchmark = new PBDConcurrencyBenchmark(seconds, readers, blockSize);
+        // Warm up before measuring
+        new PBDConcurrencyBenchmark(Math.max(1, seconds / 5), readers, blockSize).run(false);
+        benchmark.run(true);
+        benchmark.run(false);
+    }
+}
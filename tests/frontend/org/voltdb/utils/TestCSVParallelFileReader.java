@@ -0,0 +1,159 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2019 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.supercsv.io.CsvListReader;
+import org.supercsv.prefs.CsvPreference;
+import org.supercsv_voltpatches.tokenizer.Tokenizer;
+
+/**
+ * Checks that the chunks cut by the parallel reader's scanner parse into the same rows, on the
+ * same lines and in the same order, as the whole file read by the sequential reader.
+ */
+public class TestCSVParallelFileReader {
+
+    private static final String RECORDS =
+            "1,plain,10\n" +
+            "2,\"quoted, with a comma\",20\n" +
+            "3,\"embedded\nnew\nlines\",30\n" +
+            "4,\"doubled \"\"quotes\"\"\",40\n" +
+            "5,\"doubled quote before a new line\"\"\nand after\",50\n" +
+            "6,\"\"\"\"\n" +
+            "7,escaped\\,comma,70\n" +
+            "8,escaped \\\"quote,80\n" +
+            "9,\\N,90\n" +
+            "10,escaped backslash\\\\\n" +
+            "11,crlf,110\r\n" +
+            "12,\"crlf inside\r\nquotes\",120\r\n" +
+            "\n" +
+            "13,after a blank line,130\n";
+
+    private final int m_chunkSize = CSVParallelFileReader.CHUNK_SIZE;
+
+    @After
+    public void tearDown() {
+        CSVParallelFileReader.CHUNK_SIZE = m_chunkSize;
+    }
+
+    @Test
+    public void testChunksMatchSequentialRead() throws Exception {
+        verifyAllChunkSizes(RECORDS, false, 0);
+    }
+
+    @Test
+    public void testUnterminatedLastLine() throws Exception {
+        verifyAllChunkSizes(RECORDS + "14,\"no new line\nat the end\",140", false, 0);
+    }
+
+    @Test
+    public void testHeader() throws Exception {
+        verifyAllChunkSizes("ID,NAME,VALUE\n" + RECORDS, true, 0);
+        verifyAllChunkSizes("ID,NAME,VALUE\r\n" + RECORDS, true, 0);
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        verifyAllChunkSizes(RECORDS, false, 1);
+        verifyAllChunkSizes(RECORDS, false, 2);
+        verifyAllChunkSizes("ID,NAME,VALUE\n" + RECORDS, true, 2);
+        // Skipping more lines than there are leaves nothing
+        verifyAllChunkSizes("1,a,10\n2,b,20\n", false, 5);
+    }
+
+    /**
+     * Records are only cut once a chunk is at least CHUNK_SIZE bytes, so every size up to the
+     * length of the file puts a chunk boundary after each record at least once.
+     */
+    private static void verifyAllChunkSizes(String csv, boolean header, long skip) throws Exception {
+        final CSVLoader.CSVConfig config = new CSVLoader.CSVConfig();
+        config.header = header;
+        config.skip = skip;
+        final List<String> expected = readSequentially(csv, config);
+        final byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        for (int chunkSize = 1; chunkSize <= bytes.length + 1; chunkSize++) {
+            CSVParallelFileReader.CHUNK_SIZE = chunkSize;
+            assertEquals("chunk size " + chunkSize, expected, readChunks(bytes, config));
+        }
+    }
+
+    private static CsvPreference preference(CSVLoader.CSVConfig config) {
+        return new CsvPreference.Builder(config.quotechar, config.separator, "\n").build();
+    }
+
+    private static List<String> readSequentially(String csv, CSVLoader.CSVConfig config) throws IOException {
+        final CsvPreference preference = preference(config);
+        final Tokenizer tokenizer = new Tokenizer(new StringReader(csv), preference, config.strictquotes,
+                config.escape, config.columnsizelimit, config.skip, config.header);
+        final CsvListReader reader = new CsvListReader(tokenizer, preference);
+        if (config.header) {
+            reader.getHeader(false);
+        }
+        final List<String> rows = new ArrayList<>();
+        readRows(reader, 0, rows);
+        return rows;
+    }
+
+    private static List<String> readChunks(byte[] bytes, final CSVLoader.CSVConfig config) throws Exception {
+        final CsvPreference preference = preference(config);
+        final List<CSVParallelFileReader.Chunk> chunks = new ArrayList<>();
+        final CSVParallelFileReader scanner = new CSVParallelFileReader(null, config, preference, 1) {
+            @Override
+            void queueChunk(CSVParallelFileReader.Chunk chunk) {
+                chunks.add(chunk);
+            }
+        };
+        scanner.scan(new ByteArrayInputStream(bytes));
+
+        // Parse the chunks the way the parser threads do
+        final List<String> rows = new ArrayList<>();
+        for (CSVParallelFileReader.Chunk chunk : chunks) {
+            final Reader in = new InputStreamReader(
+                    new ByteArrayInputStream(chunk.m_data, 0, chunk.m_length), StandardCharsets.UTF_8);
+            final Tokenizer tokenizer = new Tokenizer(in, preference, config.strictquotes, config.escape,
+                    config.columnsizelimit, 0, false);
+            readRows(new CsvListReader(tokenizer, preference), chunk.m_lineOffset, rows);
+        }
+        return rows;
+    }
+
+    private static void readRows(CsvListReader reader, long lineOffset, List<String> rows) throws IOException {
+        List<String> row;
+        while ((row = reader.read()) != null) {
+            rows.add((lineOffset + reader.getLineNumber()) + ": " + row);
+        }
+    }
+}
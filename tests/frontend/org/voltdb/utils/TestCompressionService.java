@@ -24,6 +24,11 @@
 package org.voltdb.utils;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
 import junit.framework.TestCase;
 
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
@@ -46,4 +51,89 @@ public class TestCompressionService extends TestCase {
 
         assertEquals(someText, result);
     }
+
+    public void testCodecRoundTrip() throws IOException {
+        byte[] data = new byte[64 * 1024];
+        Random r = new Random(0);
+        for (int ii = 0; ii < data.length; ii += 8) {
+            // Half repetitive and half random so there is something to compress
+            data[ii] = (byte) r.nextInt();
+        }
+
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            byte[] compressed = codec.compress(data, 0, data.length);
+            assertTrue(codec + " didn't compress", compressed.length < data.length);
+            assertTrue(Arrays.equals(data, codec.uncompress(compressed)));
+
+            // Every mix of heap and direct buffers, the length prefix must not depend on the byte order
+            for (int mix = 0; mix < 4; mix++) {
+                final boolean direct = (mix & 1) != 0;
+                final boolean directOut = (mix & 2) != 0;
+                ByteBuffer in = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+                in.put(data).flip();
+                int max = CompressionCodec.maxCompressedLengthOfAny(data.length);
+                assertTrue(max >= codec.maxCompressedLength(data.length));
+                ByteBuffer out = directOut ? ByteBuffer.allocateDirect(max + 8) : ByteBuffer.allocate(max + 8);
+                out.order(ByteOrder.LITTLE_ENDIAN);
+                out.position(8);
+                int length = codec.compress(in, out);
+                assertEquals(0, in.position());
+                assertEquals(8 + length, out.limit());
+
+                ByteBuffer back = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+                assertEquals(data.length, codec.uncompressedLength(out));
+                assertEquals(data.length, codec.uncompress(out, back));
+                assertEquals(data.length, back.limit());
+                byte[] result = new byte[data.length];
+                back.get(result);
+                assertTrue(Arrays.equals(data, result));
+            }
+        }
+    }
+
+    public void testDamagedLz4Block() throws IOException {
+        byte[] data = new byte[16 * 1024];
+        for (int ii = 0; ii < data.length; ii += 8) {
+            data[ii] = (byte) ii;
+        }
+        final byte[] compressed = CompressionCodec.LZ4.compress(data, 0, data.length);
+
+        // A truncated block, and headers claiming more or less data than the block holds
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        byte[] longer = compressed.clone();
+        ByteBuffer.wrap(longer).putInt(data.length + 100);
+        byte[] shorter = compressed.clone();
+        ByteBuffer.wrap(shorter).putInt(data.length / 2);
+
+        for (byte[] damaged : new byte[][] { truncated, longer, shorter }) {
+            try {
+                CompressionCodec.LZ4.uncompress(damaged);
+                fail("Expected a damaged block");
+            } catch (IOException expected) {
+            }
+            for (boolean direct : new boolean[] { false, true }) {
+                ByteBuffer in = direct ? ByteBuffer.allocateDirect(damaged.length) : ByteBuffer.allocate(damaged.length);
+                in.put(damaged).flip();
+                ByteBuffer out = direct ? ByteBuffer.allocateDirect(2 * data.length) : ByteBuffer.allocate(2 * data.length);
+                try {
+                    CompressionCodec.LZ4.uncompress(in, out);
+                    fail("Expected a damaged block");
+                } catch (IOException expected) {
+                }
+            }
+        }
+    }
+
+    public void testCodecIds() throws IOException {
+        // Ids are recorded in headers, Snappy has to stay 0 for the data written before codecs
+        assertEquals(CompressionCodec.SNAPPY, CompressionCodec.fromId(0));
+        assertEquals(CompressionCodec.LZ4, CompressionCodec.fromId(1));
+        assertEquals(CompressionCodec.SNAPPY, CompressionCodec.fromName(null));
+        assertEquals(CompressionCodec.LZ4, CompressionCodec.fromName("lz4"));
+        try {
+            CompressionCodec.fromId(100);
+            fail("Expected an unknown codec");
+        } catch (IOException expected) {
+        }
+    }
 }
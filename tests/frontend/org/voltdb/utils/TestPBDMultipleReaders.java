@@ -27,6 +27,13 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -244,6 +251,60 @@ public class TestPBDMultipleReaders {
         assertEquals(1, m_pbd.numOpenSegments());
     }
 
+    @Test
+    public void testConcurrentOfferAndPoll() throws Exception {
+        final int numBuffers = s_segmentFillCount * 3;
+        final int numReaders = 2;
+        ExecutorService es = Executors.newFixedThreadPool(numReaders + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            // Readers poll the older segments while the writer appends to the tail
+            for (int r = 0; r < numReaders; r++) {
+                final BinaryDequeReader reader = m_pbd.openForRead("reader" + r);
+                futures.add(es.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        int expected = 0;
+                        while (expected < numBuffers) {
+                            BBContainer bbC = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                            if (bbC == null) {
+                                Thread.yield();
+                                continue;
+                            }
+                            try {
+                                assertEquals(expected, bbC.b().getLong(0));
+                                assertEquals(1024 * 1024 * 2, bbC.b().remaining());
+                            } finally {
+                                bbC.discard();
+                            }
+                            expected++;
+                        }
+                        assertTrue(reader.isEmpty());
+                        return null;
+                    }
+                }));
+            }
+            futures.add(es.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = 0; i < numBuffers; i++) {
+                        m_pbd.offer(DBBPool.wrapBB(TestPersistentBinaryDeque.getFilledBuffer(i)));
+                    }
+                    return null;
+                }
+            }));
+            for (Future<?> f : futures) {
+                f.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+
+        // Everything was read and discarded by both readers, only the write segment is left
+        assertEquals(1, TestPersistentBinaryDeque.getSortedDirectoryListing().size());
+        assertEquals(1, m_pbd.numOpenSegments());
+    }
+
     @Before
     public void setUp() throws Exception {
         TestPersistentBinaryDeque.setupTestDir();
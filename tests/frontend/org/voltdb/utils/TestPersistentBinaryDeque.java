@@ -473,6 +473,31 @@ public class TestPersistentBinaryDeque {
         retval.discard();
     }
 
+    @Test
+    public void testOfferWithDifferentCodecs() throws Exception {
+        System.out.println("Running testOfferWithDifferentCodecs");
+        BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+        try {
+            for (int ii = 0; ii < 4; ii++) {
+                CompressionCodec.configure(null, ii % 2 == 0 ? CompressionCodec.SNAPPY : CompressionCodec.LZ4, null);
+                m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)));
+            }
+        } finally {
+            CompressionCodec.configure(null, CompressionCodec.SNAPPY, null);
+        }
+
+        // Every entry is read back with the codec it was written with
+        for (int ii = 0; ii < 4; ii++) {
+            BBContainer cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            try {
+                assertEquals(getFilledBuffer(ii), cont.b());
+            } finally {
+                cont.discard();
+            }
+        }
+        assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+    }
+
     @Test
     public void testCloseOldSegments() throws Exception {
         System.out.println("Running testCloseOldSegments");
@@ -649,6 +674,123 @@ public class TestPersistentBinaryDeque {
         assertTrue(names.first().equals("pbd_nonce.3.pbd"));
     }
 
+    @Test
+    public void testMmapReads() throws Exception {
+        System.out.println("Running testMmapReads");
+        m_pbd.close();
+        System.setProperty(PBDSegment.MMAP_READS_PROPERTY, "true");
+        try {
+            m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, logger );
+            //Make it create two full segments, alternating compressed and uncompressed entries
+            for (int ii = 0; ii < 96; ii++) {
+                m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)), ii % 2 == 0);
+            }
+            m_pbd.sync();
+            m_pbd.close();
+
+            m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, logger );
+            BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+            BinaryDequeReader other = m_pbd.openForRead(CURSOR_ID + "other");
+            for (int ii = 0; ii < 96; ii++) {
+                BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                assertTrue(getFilledBuffer(ii).equals(retval.b()));
+                // Consumers may scribble on what they poll, that must not reach the file or other cursors
+                retval.b().putLong(0, -1);
+                retval.discard();
+
+                retval = other.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                assertTrue(getFilledBuffer(ii).equals(retval.b()));
+                retval.discard();
+            }
+            assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+
+            //Expect just the current write segment
+            TreeSet<String> names = getSortedDirectoryListing();
+            assertEquals( 1, names.size());
+            assertTrue(names.first().equals("pbd_nonce.3.pbd"));
+        } finally {
+            System.clearProperty(PBDSegment.MMAP_READS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testMmapReadsTruncateAfterPartialRead() throws Exception {
+        System.out.println("Running testMmapReadsTruncateAfterPartialRead");
+        m_pbd.close();
+        System.setProperty(PBDSegment.MMAP_READS_PROPERTY, "true");
+        try {
+            m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, logger );
+            for (int ii = 0; ii < 150; ii++) {
+                m_pbd.offer( DBBPool.wrapBB(getFilledBuffer(ii)) );
+            }
+            m_pbd.close();
+
+            m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, logger );
+            //Leave one reader part way into the second segment, holding its mapping, while
+            //a reader that hasn't started keeps the first segment around
+            m_pbd.openForRead(CURSOR_ID + "other");
+            BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+            for (int ii = 0; ii < 60; ii++) {
+                BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                assertTrue(getFilledBuffer(ii).equals(retval.b()));
+                retval.discard();
+            }
+
+            //Truncate within the first segment, which removes the segment being read
+            m_pbd.parseAndTruncate(new BinaryDequeTruncator() {
+                private int m_count = 0;
+                @Override
+                public TruncatorResponse parse(BBContainer bbc) {
+                    return ++m_count > 10 ? PersistentBinaryDeque.fullTruncateResponse() : null;
+                }
+            });
+
+            TreeSet<String> listing = getSortedDirectoryListing();
+            assertEquals(2, listing.size());
+            reader = m_pbd.openForRead(CURSOR_ID + "after");
+            for (int ii = 0; ii < 10; ii++) {
+                BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                assertTrue(getFilledBuffer(ii).equals(retval.b()));
+                retval.discard();
+            }
+            assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        } finally {
+            System.clearProperty(PBDSegment.MMAP_READS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testMmapReadsReadOnlySegments() throws Exception {
+        System.out.println("Running testMmapReadsReadOnlySegments");
+        m_pbd.close();
+        System.setProperty(PBDSegment.MMAP_READS_PROPERTY, "true");
+        try {
+            m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, logger );
+            for (int ii = 0; ii < 96; ii++) {
+                m_pbd.offer( DBBPool.wrapBB(getFilledBuffer(ii)) );
+            }
+            m_pbd.close();
+            for (File f : TEST_DIR.listFiles()) {
+                f.setWritable(false);
+            }
+
+            //Segments that can't be mapped are read without a mapping
+            m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, logger );
+            BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+            for (int ii = 0; ii < 96; ii++) {
+                BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                assertTrue(getFilledBuffer(ii).equals(retval.b()));
+                retval.discard();
+            }
+            assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        } finally {
+            System.clearProperty(PBDSegment.MMAP_READS_PROPERTY);
+            for (File f : TEST_DIR.listFiles()) {
+                f.setWritable(true);
+            }
+        }
+    }
+
     @Test
     public void testInvalidDirectory() throws Exception {
         System.out.println("Running testInvalidDirectory");
@@ -694,6 +836,41 @@ public class TestPersistentBinaryDeque {
         fail();
     }
 
+    @Test
+    public void testOfferToClosedLeavesObjectToCaller() throws Exception {
+        System.out.println("Running testOfferToClosedLeavesObjectToCaller");
+        final int[] discards = new int[1];
+        m_pbd.close();
+        // Compressed and uncompressed offers, the caller keeps the object when the deque is closed
+        for (boolean compress : new boolean[] { true, false }) {
+            BBContainer cont = new BBContainer(defaultBuffer()) {
+                @Override
+                public void discard() {
+                    discards[0]++;
+                }
+            };
+            try {
+                m_pbd.offer(cont, compress);
+                fail();
+            } catch (IOException expected) {
+            }
+            assertEquals(0, discards[0]);
+        }
+
+        // An offer that succeeds discards the object once
+        m_pbd = new PersistentBinaryDeque(TEST_NONCE, TEST_DIR, logger);
+        for (boolean compress : new boolean[] { true, false }) {
+            discards[0] = 0;
+            m_pbd.offer(new BBContainer(defaultBuffer()) {
+                @Override
+                public void discard() {
+                    discards[0]++;
+                }
+            }, compress);
+            assertEquals(1, discards[0]);
+        }
+    }
+
     @Test
     public void testPushFailsWhenClosed() throws Exception {
         System.out.println("Running testPushFailsWhenClosed");
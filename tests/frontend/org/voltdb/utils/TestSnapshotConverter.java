@@ -24,11 +24,14 @@
 package org.voltdb.utils;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.util.Calendar;
 import java.util.Random;
+import java.util.zip.GZIPInputStream;
 
 import org.voltdb.BackendTarget;
 import org.voltdb.VoltTable;
@@ -107,6 +110,38 @@ public class TestSnapshotConverter extends SaveRestoreBase
         spFile.deleteOnExit();
     }
 
+    public void testSnapshotConverterParallelCompressed() throws NoConnectionsException, IOException, ProcCallException
+    {
+        if (isValgrind()) return;
+
+        Client client = getClient();
+        int expectedLines = 1000;
+        for (int i = 0; i < expectedLines; i++) {
+            client.callProcedure("T_SP.insert", String.format("Test String %s:%d", "SP", i), i, "blab", "blab");
+            client.callProcedure("T_MP.insert", String.format("Test String %s:%d", "MP", i), i, "blab", "blab");
+        }
+
+        VoltTable[] results = client.callProcedure("@SnapshotSave", TMPDIR, TESTNONCE, 1).getResults();
+        System.out.println(results[0]);
+
+        // Convert both tables at once
+        String[] args = {"--table", "T_MP", "--table", "T_SP", "--type", "CSV", "--dir", TMPDIR, "--outdir", TMPDIR,
+                "--threads", "4", "--compress", TESTNONCE};
+        SnapshotConverter.main(args);
+        for (String table : new String[] { "T_MP", "T_SP" }) {
+            File file = new File(TMPDIR + "/" + table + ".csv.gz");
+            file.deleteOnExit();
+            LineNumberReader reader = new LineNumberReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(file))));
+            try {
+                while (reader.readLine() != null);
+                assertEquals(expectedLines, reader.getLineNumber());
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
     //
     // Build a list of the tests to be run. Use the regression suite
     // helpers to allow multiple backends.
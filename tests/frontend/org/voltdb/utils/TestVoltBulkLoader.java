@@ -24,6 +24,7 @@
 package org.voltdb.utils;
 
 import java.io.File;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -39,6 +40,7 @@ import org.voltdb.client.Client;
 import org.voltdb.client.ClientConfig;
 import org.voltdb.client.ClientFactory;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.client.VoltBulkLoader.BulkLoaderColumns;
 import org.voltdb.client.VoltBulkLoader.BulkLoaderFailureCallBack;
 import org.voltdb.client.VoltBulkLoader.VoltBulkLoader;
 import org.voltdb.common.Constants;
@@ -1046,6 +1048,120 @@ public class TestVoltBulkLoader extends TestCase {
                 "BLAH", myData2, myBatchSize2, expectedFailures2, false);
     }
 
+    //Test loading rows given column by column, including rows that fail.
+    public void testColumnarInsert() throws Exception {
+        String mySchema =
+                "create table BLAH ("
+                + "clm_integer integer not null, "
+                + // column that is partitioned on
+                "clm_tinyint tinyint default 0, "
+                + "clm_bigint bigint default 0, "
+                + "clm_string varchar(20) default null, "
+                + "clm_decimal decimal default null, "
+                + "clm_float float default null, "
+                + "clm_timestamp timestamp default null, "
+                + "PRIMARY KEY(clm_integer) "
+                + "); ";
+        try {
+            pathToCatalog = Configuration.getPathToCatalogForTest("vbl.jar");
+            pathToDeployment = Configuration.getPathToCatalogForTest("vbl.xml");
+            builder = new VoltProjectBuilder();
+
+            builder.addLiteralSchema(mySchema);
+            builder.addPartitionInfo("BLAH", "clm_integer");
+            boolean success = builder.compile(pathToCatalog, 2, 1, 0);
+            assertTrue(success);
+            MiscUtils.copyFile(builder.getPathToDeployment(), pathToDeployment);
+            config = new VoltDB.Configuration();
+            config.m_pathToCatalog = pathToCatalog;
+            config.m_pathToDeployment = pathToDeployment;
+            localServer = new ServerThread(config);
+            client1 = null;
+
+            localServer.start();
+            localServer.waitForInitialization();
+
+            client1 = ClientFactory.createClient();
+            client1.createConnection("localhost");
+
+            prepare();
+            TestFailureCallback testCallback = new TestFailureCallback();
+            VoltBulkLoader bulkLoader = client1.getNewBulkLoader("BLAH", 50, testCallback);
+
+            int rowCount = 1000;
+            int[] ids = new int[rowCount];
+            long[] tinyints = new long[rowCount];
+            long[] bigints = new long[rowCount];
+            String[] strings = new String[rowCount];
+            BigDecimal[] decimals = new BigDecimal[rowCount];
+            double[] floats = new double[rowCount];
+            long[] timestamps = new long[rowCount];
+            boolean[] nullFloats = new boolean[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                ids[i] = i + 1;
+                tinyints[i] = i % 100;
+                bigints[i] = i * 1000000000L;
+                strings[i] = i % 10 == 0 ? null : "row " + i;
+                decimals[i] = new BigDecimal(i).movePointLeft(2);
+                floats[i] = i * 1.5;
+                nullFloats[i] = i % 7 == 0;
+                timestamps[i] = i * 1000L;
+            }
+            // Duplicate primary key
+            ids[500] = 1;
+            // Doesn't fit a TINYINT
+            tinyints[700] = 1000;
+
+            BulkLoaderColumns columns = new BulkLoaderColumns(7, rowCount);
+            columns.setColumn(0, ids);
+            columns.setColumn(1, tinyints);
+            columns.setColumn(2, bigints);
+            columns.setColumn(3, strings);
+            columns.setColumn(4, decimals);
+            columns.setColumn(5, floats);
+            columns.setNulls(5, nullFloats);
+            columns.setColumn(6, timestamps);
+            bulkLoader.insertColumns(columns);
+            bulkLoader.drain();
+            assertEquals(0, bulkLoader.getOutstandingRowCount());
+            assertEquals(rowCount, bulkLoader.getCompletedRowCount());
+            bulkLoader.close();
+            assertTrue(testCallback.failureRowListMatches(new ArrayList<Integer>(Arrays.asList(500, 700))));
+
+            VoltTable result = client1.callProcedure("@AdHoc",
+                    "SELECT COUNT(*), COUNT(clm_string), COUNT(clm_float) FROM BLAH;").getResults()[0];
+            result.advanceRow();
+            assertEquals(rowCount - 2, result.getLong(0));
+            // Both failed rows had a NULL string, the second one a NULL float too
+            assertEquals(rowCount - 100, result.getLong(1));
+            assertEquals(rowCount - 2 - 142, result.getLong(2));
+
+            result = client1.callProcedure("@AdHoc",
+                    "SELECT clm_tinyint, clm_bigint, clm_string, clm_decimal, clm_timestamp FROM BLAH WHERE clm_integer = 124;").getResults()[0];
+            result.advanceRow();
+            assertEquals(23, result.getLong(0));
+            assertEquals(123000000000L, result.getLong(1));
+            assertEquals("row 123", result.getString(2));
+            assertEquals(0, new BigDecimal("1.23").compareTo(result.getDecimalAsBigDecimal(3)));
+            assertEquals(123000L, result.getTimestampAsLong(4));
+
+            VoltTable valTable = client1.callProcedure("@ValidatePartitioning", (Object)null).getResults()[0];
+            while (valTable.advanceRow()) {
+                assertEquals(0, valTable.getLong("MISPARTITIONED_ROWS"));
+            }
+        }
+        finally {
+            if (client1 != null) client1.close();
+            client1 = null;
+
+            if (localServer != null) {
+                localServer.shutdown();
+                localServer.join();
+            }
+            localServer = null;
+        }
+    }
+
     public void test_Interface(String my_schema, Object[][] my_data,
             int my_batchSize, ArrayList<Integer> expectedFailList, int flushInterval) throws Exception {
         test_Interface(my_schema, my_data,